@@ -58,6 +58,9 @@ public class Configuration {
   private boolean userThemesEnabled = true;
   private String smtpHost = "java:comp/env/mail/Session";
   private String smtpPort = "25";
+  private int mailWorkers = 2;
+  private int mailBatchSize = 50;
+  private int mailRate = 120;
   private long fileUploadSize = 2048;
   private long fileUploadQuota = -1;
   private DAOFactory daoFactory = new FileDAOFactory();
@@ -126,6 +129,30 @@ public class Configuration {
     this.smtpPort = smtpPort;
   }
 
+  public int getMailWorkers() {
+    return mailWorkers;
+  }
+
+  public void setMailWorkers(int mailWorkers) {
+    this.mailWorkers = mailWorkers;
+  }
+
+  public int getMailBatchSize() {
+    return mailBatchSize;
+  }
+
+  public void setMailBatchSize(int mailBatchSize) {
+    this.mailBatchSize = mailBatchSize;
+  }
+
+  public int getMailRate() {
+    return mailRate;
+  }
+
+  public void setMailRate(int mailRate) {
+    this.mailRate = mailRate;
+  }
+
   public long getFileUploadSize() {
     return fileUploadSize;
   }
@@ -88,6 +88,16 @@ public abstract class EventDispatcher {
     }
   }
 
+  /**
+   * Called once the change that the current thread has been firing events
+   * for has been saved, or has failed to be saved. This does nothing by
+   * default.
+   *
+   * @param saved   true if the change was saved, false otherwise
+   */
+  public void eventsCompleted(boolean saved) {
+  }
+
   /**
    * Fires a blog event to registered listeners.
    *
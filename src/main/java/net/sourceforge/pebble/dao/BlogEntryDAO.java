@@ -59,6 +59,17 @@ public interface BlogEntryDAO {
    */
   public Collection<BlogEntry> loadBlogEntries(Blog blog) throws PersistenceException;
 
+  /**
+   * Loads the IDs of all blog entries, without loading the blog entries
+   * themselves.
+   *
+   * @param blog    the Blog to load all IDs for
+   * @return a Collection of blog entry IDs
+   * @throws net.sourceforge.pebble.dao.PersistenceException
+   *          if the IDs cannot be loaded
+   */
+  public Collection<String> loadBlogEntryIds(Blog blog) throws PersistenceException;
+
   /**
    * Stores the specified blog entry.
    *
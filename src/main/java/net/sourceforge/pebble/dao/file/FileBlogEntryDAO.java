@@ -128,6 +128,37 @@ public class FileBlogEntryDAO implements BlogEntryDAO {
    */
   public Collection<BlogEntry> loadBlogEntries(Blog blog) throws PersistenceException {
     List<BlogEntry> list = new ArrayList<BlogEntry>();
+    for (File blogEntryFile : getBlogEntryFiles(blog)) {
+      list.add(loadBlogEntry(blog, blogEntryFile));
+    }
+
+    return list;
+  }
+
+  /**
+   * Loads the IDs of all blog entries, without loading the blog entries
+   * themselves.
+   *
+   * @param blog the Blog to load all IDs for
+   * @return a List of blog entry IDs
+   * @throws net.sourceforge.pebble.dao.PersistenceException
+   *          if the IDs cannot be loaded
+   */
+  public Collection<String> loadBlogEntryIds(Blog blog) throws PersistenceException {
+    List<String> list = new ArrayList<String>();
+    for (File blogEntryFile : getBlogEntryFiles(blog)) {
+      String filename = blogEntryFile.getName();
+      list.add(filename.substring(0, filename.length() - ".xml".length()));
+    }
+
+    return list;
+  }
+
+  /**
+   * Finds the files of all blog entries, held in yyyy/MM/dd directories.
+   */
+  private List<File> getBlogEntryFiles(Blog blog) {
+    List<File> list = new ArrayList<File>();
 
     File root = new File(blog.getRoot());
     File years[] = root.listFiles(new FourDigitFilenameFilter());
@@ -137,9 +168,7 @@ public class FileBlogEntryDAO implements BlogEntryDAO {
         File days[] = month.listFiles(new TwoDigitFilenameFilter());
         for (File day : days) {
           File blogEntryFiles[] = day.listFiles(new BlogEntryFilenameFilter());
-          for (File blogEntryFile : blogEntryFiles) {
-            list.add(loadBlogEntry(blog, blogEntryFile));
-          }
+          list.addAll(Arrays.asList(blogEntryFiles));
         }
       }
     }
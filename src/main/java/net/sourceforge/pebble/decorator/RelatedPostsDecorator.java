@@ -32,15 +32,14 @@
 
 package net.sourceforge.pebble.decorator;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import net.sourceforge.pebble.PluginProperties;
 import net.sourceforge.pebble.api.decorator.ContentDecoratorContext;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
-import net.sourceforge.pebble.domain.Tag;
+import net.sourceforge.pebble.domain.BlogService;
+import net.sourceforge.pebble.domain.BlogServiceException;
 import net.sourceforge.pebble.util.I18n;
 import net.sourceforge.pebble.util.StringUtils;
 
@@ -49,8 +48,8 @@ import org.apache.commons.logging.LogFactory;
 
 /**
  * Adds related posts to the current post. The posts are selected by matching
- * tags of the current post to the tags of other posts in the blog. One related
- * post per tag.
+ * tags of the current post to the tags of other posts in the blog, using
+ * the blog's related posts index so that only the related posts are loaded.
  * 
  * Each blog entry can have up to six related posts or none.
  * 
@@ -95,44 +94,28 @@ public class RelatedPostsDecorator extends ContentDecoratorSupport {
       buf.append(body);
       buf.append("<p><b>" + I18n.getMessage(blog, "common.relatedPosts") + "</b><br />");
 
-      // tags of the current entry
-      List<Tag> currentEntryTags = blogEntry.getAllTags();
+      List<String> relatedEntries = blog.getRelatedPostsIndex().getRelatedBlogEntries(blogEntry, maxPosts);
+      int numberOfRelatedEntries = 0;
+      BlogService service = new BlogService();
 
-      // all blog entries of the current blog
-      List<BlogEntry> allBlogEntries = (List<BlogEntry>) blog.getBlogEntries();
-
-      // temporary holder for accumulated unique related posts.
-      // using hash set assures that we wont have same related post twice for
-      // different tags.
-      Set<BlogEntry> relatedEntries = new HashSet<BlogEntry>();
-
-      for (BlogEntry entry : allBlogEntries) {
-
-        // don't add current entry as a related post of it self, skip it
-        if (entry.getTitle().equals(blogEntry.getTitle()))
+      for (String id : relatedEntries) {
+        BlogEntry entry;
+        try {
+          entry = service.getBlogEntry(blog, id);
+        } catch (BlogServiceException e) {
+          log.error(e.getMessage(), e);
           continue;
-
-        // loop through each of the current entry tags, and try to find related
-        // post by matching current tag to the posts tags
-        for (Tag currentTag : currentEntryTags) {
-          if (entry.hasTag(currentTag.getName())) {
-            // if we successfully selected related post - create hyperlink for
-            // it
-            // TODO: Missing escaping -- XSS vulnerabilities here :(
-            if (relatedEntries.add(entry))
-              buf.append("<a href=\"" + entry.getPermalink() + "\" rel=\"bookmark\" title=\"" + entry.getTitle()
-                  + "\">" + entry.getTitle() + "</a><br />");
-          }
         }
 
-        // do not allow more than default amount of posts or
-        // amount set through the RelatedPostsDecorator.maxPosts property
-        if (relatedEntries.size() == maxPosts) {
-          break;
+        if (entry != null) {
+          // TODO: Missing escaping -- XSS vulnerabilities here :(
+          buf.append("<a href=\"" + entry.getPermalink() + "\" rel=\"bookmark\" title=\"" + entry.getTitle()
+              + "\">" + entry.getTitle() + "</a><br />");
+          numberOfRelatedEntries++;
         }
       }
 
-      if (relatedEntries.size() == 0)
+      if (numberOfRelatedEntries == 0)
         buf.append("<i>" + I18n.getMessage(blog, "common.noRelatedPosts") + "</i>");
 
       buf.append("</p><br />");
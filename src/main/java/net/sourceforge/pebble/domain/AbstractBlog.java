@@ -436,6 +436,15 @@ public abstract class AbstractBlog extends TimePeriod {
     return getRoot() + File.separator + "logs";
   }
 
+  /**
+   * Gets the location where outbound notifications are queued.
+   *
+   * @return    an absolute, local path on the filing system
+   */
+  public String getNotificationsDirectory() {
+    return getRoot() + File.separator + "notifications";
+  }
+
   /**
    * Gets the most recent blog entries, the number
    * of which is specified.
@@ -33,6 +33,7 @@
 package net.sourceforge.pebble.domain;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -41,10 +42,11 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -73,9 +75,11 @@ import net.sourceforge.pebble.api.event.trackback.TrackBackListener;
 import net.sourceforge.pebble.api.openid.OpenIdCommentAuthorProvider;
 import net.sourceforge.pebble.api.permalink.PermalinkProvider;
 import net.sourceforge.pebble.confirmation.DefaultConfirmationStrategy;
+import net.sourceforge.pebble.dao.BlogEntryDAO;
 import net.sourceforge.pebble.dao.CategoryDAO;
 import net.sourceforge.pebble.dao.DAOFactory;
 import net.sourceforge.pebble.dao.PersistenceException;
+import net.sourceforge.pebble.dao.StaticPageDAO;
 import net.sourceforge.pebble.decorator.ContentDecoratorChain;
 import net.sourceforge.pebble.decorator.HideUnapprovedResponsesDecorator;
 import net.sourceforge.pebble.event.AuditListener;
@@ -86,19 +90,30 @@ import net.sourceforge.pebble.index.AuthorIndex;
 import net.sourceforge.pebble.index.AuthorIndexListener;
 import net.sourceforge.pebble.index.BlogEntryIndex;
 import net.sourceforge.pebble.index.BlogEntryIndexListener;
+import net.sourceforge.pebble.index.BlogEntryReindexer;
 import net.sourceforge.pebble.index.CategoryIndex;
 import net.sourceforge.pebble.index.CategoryIndexListener;
+import net.sourceforge.pebble.index.ContentManifest;
 import net.sourceforge.pebble.index.EmailSubscriptionList;
+import net.sourceforge.pebble.index.IndexFileConverter;
+import net.sourceforge.pebble.index.RelatedPostsIndex;
+import net.sourceforge.pebble.index.RelatedPostsIndexListener;
+import net.sourceforge.pebble.index.ReindexableIndex;
 import net.sourceforge.pebble.index.ResponseIndex;
 import net.sourceforge.pebble.index.ResponseIndexListener;
 import net.sourceforge.pebble.index.SearchIndex;
 import net.sourceforge.pebble.index.SearchIndexListener;
+import net.sourceforge.pebble.index.SearchIndexQueue;
 import net.sourceforge.pebble.index.StaticPageIndex;
+import net.sourceforge.pebble.index.SuggestionIndex;
+import net.sourceforge.pebble.index.SuggestionIndexListener;
 import net.sourceforge.pebble.index.TagIndex;
 import net.sourceforge.pebble.index.TagIndexListener;
 import net.sourceforge.pebble.logging.AbstractLogger;
 import net.sourceforge.pebble.logging.CombinedLogFormatLogger;
+import net.sourceforge.pebble.notification.NotificationQueue;
 import net.sourceforge.pebble.permalink.DefaultPermalinkProvider;
+import net.sourceforge.pebble.permalink.PermalinkProviderListener;
 import net.sourceforge.pebble.util.StringUtils;
 
 import org.apache.commons.codec.binary.Hex;
@@ -143,12 +158,17 @@ public class Blog extends AbstractBlog {
   public static final String FEED_DECORATORS_KEY = "feedDecorators";
   public static final String OPEN_ID_COMMENT_AUTHOR_PROVIDERS_KEY = "openIdCommentAuthorProviders";
   public static final String XSRF_SIGNING_SALT_KEY = "signingSalt";
+  public static final String BINARY_INDEXES_ENABLED_KEY = "binaryIndexesEnabled";
 
   /** the ID of this blog */
   private String id = "default";
 
-  /** the collection of Year instance that this root blog is managing */
-  private List<Year> years;
+  /**
+   * the collection of Year instance that this root blog is managing, which
+   * is replaced rather than modified when a Year is added
+   */
+  private volatile List<Year> years;
+  private final Object yearsLock = new Object();
 
   /** the root category associated with this blog */
   private Category rootCategory;
@@ -184,12 +204,25 @@ public class Blog extends AbstractBlog {
   private BlogCompanion blogCompanion;
 
   private SearchIndex searchIndex;
+  private SearchIndexQueue searchIndexQueue;
+
+  /** the queue of outbound notifications */
+  private NotificationQueue notificationQueue;
   private BlogEntryIndex blogEntryIndex;
   private ResponseIndex responseIndex;
   private TagIndex tagIndex;
   private CategoryIndex categoryIndex;
   private AuthorIndex authorIndex;
   private StaticPageIndex staticPageIndex;
+  private SuggestionIndex suggestionIndex;
+  private RelatedPostsIndex relatedPostsIndex;
+
+  /** the current, or most recent, rebuild of the blog entry indexes */
+  private volatile BlogEntryReindexer blogEntryReindexer;
+  private final Object reindexLock = new Object();
+
+  /** the IDs of blog entries saved or removed while the indexes are being rebuilt */
+  private final Set<String> blogEntriesChangedDuringReindex = new HashSet<String>();
 
   private final List<PageDecorator> pageDecorators = new CopyOnWriteArrayList<PageDecorator>();
   private final List<OpenIdCommentAuthorProvider> openIdCommentAuthorProviders = new CopyOnWriteArrayList<OpenIdCommentAuthorProvider>();
@@ -254,12 +287,17 @@ public class Blog extends AbstractBlog {
 
     // create the various indexes for this blog
     searchIndex = new SearchIndex(this);
+    searchIndexQueue = new SearchIndexQueue(this);
     blogEntryIndex = new BlogEntryIndex(this);
     responseIndex = new ResponseIndex(this);
     tagIndex = new TagIndex(this);
     categoryIndex = new CategoryIndex(this);
     authorIndex = new AuthorIndex(this);
     staticPageIndex = new StaticPageIndex(this);
+    suggestionIndex = new SuggestionIndex(this);
+    relatedPostsIndex = new RelatedPostsIndex(this);
+
+    notificationQueue = new NotificationQueue(this);
 
     decoratorChain = new ContentDecoratorChain(this);
 
@@ -355,6 +393,9 @@ public class Blog extends AbstractBlog {
   private void initBlogEntryListeners() {
     log.debug("Registering blog entry listeners");
 
+    // memoized permalinks must be discarded before any other listener sees the change
+    eventListenerList.addBlogEntryListener(new PermalinkProviderListener());
+
     for (String className : getBlogEntryListeners()) {
       try {
         Class<?> c = Class.forName(className.trim());
@@ -371,6 +412,8 @@ public class Blog extends AbstractBlog {
     eventListenerList.addBlogEntryListener(new TagIndexListener());
     eventListenerList.addBlogEntryListener(new CategoryIndexListener());
     eventListenerList.addBlogEntryListener(new AuthorIndexListener());
+    eventListenerList.addBlogEntryListener(new SuggestionIndexListener());
+    eventListenerList.addBlogEntryListener(new RelatedPostsIndexListener());
     eventListenerList.addBlogEntryListener(new SearchIndexListener());
     eventListenerList.addBlogEntryListener(new AuditListener());
     try {
@@ -530,6 +573,7 @@ public class Blog extends AbstractBlog {
     defaultProperties.setProperty(TRACKBACK_CONFIRMATION_STRATEGY_KEY, "net.sourceforge.pebble.confirmation.DefaultConfirmationStrategy");
     defaultProperties.setProperty(RICH_TEXT_EDITOR_FOR_COMMENTS_ENABLED_KEY, "true");
     defaultProperties.setProperty(GRAVATAR_SUPPORT_FOR_COMMENTS_ENABLED_KEY, "true");
+    defaultProperties.setProperty(BINARY_INDEXES_ENABLED_KEY, "false");
 
     return defaultProperties;
   }
@@ -845,20 +889,35 @@ public class Blog extends AbstractBlog {
    * @return    a Year instance
    */
   public Year getBlogForYear(int year) {
-    Iterator it = years.iterator();
-    Year y;
-    while (it.hasNext()) {
-      y = (Year)it.next();
+    Year y = findYear(years, year);
+    if (y != null) {
+      return y;
+    }
+
+    // Years are created by request threads, so are added to a sorted copy
+    // of the list that then replaces it
+    synchronized (yearsLock) {
+      y = findYear(years, year);
+      if (y == null) {
+        y = new Year(this, year);
+        List<Year> list = new ArrayList<Year>(years);
+        list.add(y);
+        Collections.sort(list);
+        years = list;
+      }
+    }
+
+    return y;
+  }
+
+  private static Year findYear(List<Year> years, int year) {
+    for (Year y : years) {
       if (y.getYear() == year) {
         return y;
       }
     }
 
-    y = new Year(this, year);
-    years.add(y);
-    Collections.sort(years);
-
-    return y;
+    return null;
   }
 
   /**
@@ -872,7 +931,8 @@ public class Blog extends AbstractBlog {
   }
 
   /**
-   * Gets all Years managed by this root blog.
+   * Gets the Years managed by this root blog, which are created as they're
+   * needed.
    *
    * @return  a Collection of Year instances
    */
@@ -889,13 +949,13 @@ public class Blog extends AbstractBlog {
     List<Year> list = new LinkedList<Year>();
     int firstYear = getBlogForFirstMonth().getYear().getYear();
     int thisYear = getBlogForThisYear().getYear();
-    // only add years that are in range
-    for (Year year : years) {
-      if (year.getYear() >= firstYear && year.getYear() <= thisYear) {
-        list.add(year);
+    // Year instances are only created as they're needed, so add those in range with blog entries
+    for (int year = thisYear; year >= firstYear; year--) {
+      Year y = getBlogForYear(year);
+      if (year == thisYear || y.hasBlogEntries()) {
+        list.add(y);
       }
     }
-    Collections.reverse(list);
     return list;
   }
 
@@ -1015,8 +1075,16 @@ public class Blog extends AbstractBlog {
     List<BlogEntry> blogEntries = new ArrayList<BlogEntry>();
     BlogService service = new BlogService();
 
-    for (int year = years.size()-1; year >= 0; year--) {
-      Year y = years.get(year);
+    // this includes years with only unpublished or future blog entries
+    List<String> blogEntryIds = blogEntryIndex.getBlogEntries();
+    if (blogEntryIds.isEmpty()) {
+      return blogEntries;
+    }
+    int lastYear = getBlogForDay(new Date(Long.parseLong(blogEntryIds.get(0)))).getMonth().getYear().getYear();
+    int firstYear = getBlogForDay(new Date(Long.parseLong(blogEntryIds.get(blogEntryIds.size()-1)))).getMonth().getYear().getYear();
+
+    for (int year = lastYear; year >= firstYear; year--) {
+      Year y = getBlogForYear(year);
       Month[] months = y.getMonths();
       for (int month = 11; month >= 0; month--) {
         try {
@@ -1384,37 +1452,18 @@ public class Blog extends AbstractBlog {
   }
 
   public BlogEntry getPreviousBlogEntry(BlogEntry blogEntry) {
-    Day firstDay = getBlogForFirstMonth().getBlogForFirstDay();
-    Day day = getBlogForDay(blogEntry.getDate());
-
-    String blogEntryId = day.getPreviousBlogEntry(blogEntry.getId());
-    while (day != firstDay && blogEntryId == null) {
-      day = day.getPreviousDay();
-      blogEntryId = day.getLastBlogEntry();
-    }
-
-    if (blogEntryId != null) {
-      BlogService service = new BlogService();
-      try {
-        return service.getBlogEntry(this, blogEntryId);
-      } catch (BlogServiceException e) {
-        // do nothing
-      }
-    }
-
-    return null;
+    String blogEntryId = blogEntryIndex.getPublishedBlogEntryBefore(Long.parseLong(blogEntry.getId()));
+    return getBlogEntry(blogEntryId);
   }
 
   public BlogEntry getNextBlogEntry(BlogEntry blogEntry) {
-    Day lastDay = getBlogForToday();
-    Day day = getBlogForDay(blogEntry.getDate());
-
-    String blogEntryId = day.getNextBlogEntry(blogEntry.getId());
-    while (day != lastDay && blogEntryId == null) {
-      day = day.getNextDay();
-      blogEntryId = day.getFirstBlogEntry();
-    }
+    // blog entries posted after today aren't shown
+    long endOfToday = getBlogForToday().getEndOfDay().getTime() + 1;
+    String blogEntryId = blogEntryIndex.getPublishedBlogEntryAfter(Long.parseLong(blogEntry.getId()), endOfToday);
+    return getBlogEntry(blogEntryId);
+  }
 
+  private BlogEntry getBlogEntry(String blogEntryId) {
     if (blogEntryId != null) {
       BlogService service = new BlogService();
       try {
@@ -1527,6 +1576,43 @@ public class Blog extends AbstractBlog {
     return this.searchIndex;
   }
 
+  /**
+   * Gets the queue of pending search index updates.
+   *
+   * @return  a SearchIndexQueue instance
+   */
+  public SearchIndexQueue getSearchIndexQueue() {
+    return this.searchIndexQueue;
+  }
+
+  /**
+   * Gets the queue of outbound notifications (hub publish requests,
+   * update pings, etc).
+   *
+   * @return  a NotificationQueue instance
+   */
+  public NotificationQueue getNotificationQueue() {
+    return this.notificationQueue;
+  }
+
+  /**
+   * Gets the index used for search-as-you-type suggestions.
+   *
+   * @return  a SuggestionIndex instance
+   */
+  public SuggestionIndex getSuggestionIndex() {
+    return this.suggestionIndex;
+  }
+
+  /**
+   * Gets the index of related blog entries.
+   *
+   * @return  a RelatedPostsIndex instance
+   */
+  public RelatedPostsIndex getRelatedPostsIndex() {
+    return this.relatedPostsIndex;
+  }
+
   /**
    * Gets the blog entry index.
    *
@@ -1586,9 +1672,9 @@ public class Blog extends AbstractBlog {
    *
    * @param request   the HttpServletRequest instance for this request
    */
-  public synchronized void log(HttpServletRequest request, int status) {
+  public void log(HttpServletRequest request, int status) {
     String externalUri = (String)request.getAttribute(Constants.EXTERNAL_URI);
-    if (externalUri.matches("/images/.+")) {
+    if (externalUri.startsWith("/images/") && externalUri.length() > "/images/".length()) {
       // do nothing, we don't want to log the following types of requests
       // - a blog's images
     } else {
@@ -1676,13 +1762,28 @@ public class Blog extends AbstractBlog {
   void start() {
     log.debug("Starting blog with ID " + getId());
 
-    // reindex the blog if the indexes don't exist
+    // reindex the blog if the indexes don't exist, otherwise bring them up to date
     File indexes = new File(getIndexesDirectory());
+    ContentManifest manifest = new ContentManifest(this);
     if (!indexes.exists()) {
       indexes.mkdir();
       reindex();
+    } else if (manifest.exists()) {
+      reindexChanges();
+    } else {
+      // indexes built before the manifest was introduced are trusted, as they always have been
+      manifest.scan();
+      manifest.write();
     }
 
+    // the indexes have been read by now, so this speeds up the next start
+    try {
+      IndexFileConverter.convert(indexes, isBinaryIndexesEnabled());
+    } catch (IOException e) {
+      log.error("Error converting indexes", e);
+    }
+    searchIndexQueue.start();
+
     File imagesDirectory = new File(getImagesDirectory());
     if (!imagesDirectory.exists()) {
       imagesDirectory.mkdir();
@@ -1699,6 +1800,7 @@ public class Blog extends AbstractBlog {
     }
 
     logger.start();
+    notificationQueue.start();
     editableTheme.restore();
 
     // call blog listeners
@@ -1713,6 +1815,9 @@ public class Blog extends AbstractBlog {
     log.debug("Stopping blog with ID " + getId());
 
     logger.stop();
+    cancelReindex();
+    searchIndexQueue.stop();
+    notificationQueue.stop();
     editableTheme.backup();
 
     // call blog listeners
@@ -1887,41 +1992,271 @@ public class Blog extends AbstractBlog {
   public void reindex() {
     log.info("Reindexing blog with ID " + getId());
 
-    reindexBlogEntries();
+    // the manifest records the files as they were before reindexing, and is
+    // only written once the reindex completes
+    ContentManifest manifest = new ContentManifest(this);
+    manifest.scan();
+    new ContentManifest(this).invalidate();
+
+    boolean reindexed = reindexBlogEntries();
     reindexStaticPages();
+    if (reindexed) {
+      manifest.write();
+    }
+  }
+
+  /**
+   * Brings the indexes up to date by reindexing only the blog entries and
+   * static pages that have been added, changed or removed since the content
+   * manifest was written. The whole blog is reindexed if there is no
+   * manifest, or the time zone has changed since it was written.
+   */
+  public void reindexChanges() {
+    ContentManifest manifest = new ContentManifest(this);
+    if (!manifest.exists()) {
+      reindex();
+      return;
+    }
+
+    ContentManifest.Changes changes = manifest.scan();
+    if (changes.isTimeZoneChanged()) {
+      reindex();
+      return;
+    }
+
+    synchronized (reindexLock) {
+      if (isReindexing()) {
+        warn("Blog entries are already being reindexed.");
+        return;
+      }
+
+      if (changes.hasBlogEntryChanges() || changes.hasStaticPageChanges()) {
+        log.info("Reindexing " + changes + " for blog with ID " + getId());
+        synchronized (this) {
+          if (changes.hasBlogEntryChanges()) {
+            reindexBlogEntries(changes.getChangedBlogEntries(), changes.getRemovedBlogEntries());
+          }
+          if (changes.hasStaticPageChanges()) {
+            reindexStaticPages(changes.getChangedStaticPages(), changes.getRemovedStaticPages());
+          }
+        }
+      }
+      manifest.write();
+    }
+  }
+
+  /**
+   * Reindexes the blog on a background thread, so that progress can be
+   * followed, and the reindex cancelled, from the utilities page.
+   */
+  public void reindexInBackground() {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        reindex();
+      }
+    }, "pebble-reindex-" + getId());
+    thread.setDaemon(true);
+    thread.start();
   }
 
-  public void reindexBlogEntries() {
-    blogEntryIndex.clear();
-    responseIndex.clear();
-    tagIndex.clear();
-    categoryIndex.clear();
-    authorIndex.clear();
-    searchIndex.clear();
+  /**
+   * Reindexes all blog entries.
+   *
+   * @return  true if all blog entries were reindexed, false if the reindex
+   *          was cancelled or another reindex was already in progress
+   */
+  public boolean reindexBlogEntries() {
+    // the indexes are all built at the same time from a single pass over the blog entries
+    BlogEntryReindexer reindexer = new BlogEntryReindexer(this, getReindexableIndexes());
+    synchronized (reindexLock) {
+      if (isReindexing()) {
+        warn("Blog entries are already being reindexed.");
+        return false;
+      }
+      blogEntryReindexer = reindexer;
+    }
 
+    searchIndexQueue.clear();
     try {
-      // to reindex all blog entries, we need to load them via the DAO
-      Collection<BlogEntry> blogEntries = DAOFactory.getConfiguredFactory().getBlogEntryDAO().loadBlogEntries(this);
-      blogEntryIndex.index(blogEntries);
-      responseIndex.index(blogEntries);
-      tagIndex.index(blogEntries);
-      categoryIndex.index(blogEntries);
-      authorIndex.index(blogEntries);
-      searchIndex.indexBlogEntries(blogEntries);
-      info("Blog entries reindexed.");
+      reindexer.reindex();
+      catchUpAfterReindex(reindexer);
+      if (reindexer.isCancelled()) {
+        warn("Reindexing of blog entries was cancelled, so the indexes are incomplete.");
+      } else {
+        info("Blog entries reindexed in " + reindexer.getElapsedTime() + " ms.");
+      }
+      if (reindexer.getNumberOfFailures() > 0) {
+        error(reindexer.getNumberOfFailures() + " blog entries could not be loaded while reindexing.");
+      }
+      return !reindexer.isCancelled();
     } catch (Exception e) {
       error(e.getClass().getName() + " reindexing blog entries - " + StringUtils.transformHTML(e.getMessage()));
       log.error("Error reindexing blog entries", e);
+      return false;
+    } finally {
+      synchronized (blogEntriesChangedDuringReindex) {
+        blogEntriesChangedDuringReindex.clear();
+      }
+
+      // these are rebuilt from the other indexes when next used
+      suggestionIndex.clear();
+      relatedPostsIndex.clear();
+    }
+  }
+
+  /**
+   * Called by the BlogService, while holding the blog lock, before and after
+   * a blog entry is saved or removed. Blog entries can be saved while the
+   * indexes are being rebuilt, and the rebuild may then add an older copy of
+   * the blog entry, so those blog entries are noted to be reindexed again
+   * once the rebuild has finished.
+   *
+   * @param blogEntryId   the ID of the blog entry
+   */
+  void blogEntryChanged(String blogEntryId) {
+    if (isReindexing()) {
+      synchronized (blogEntriesChangedDuringReindex) {
+        blogEntriesChangedDuringReindex.add(blogEntryId);
+      }
+    }
+  }
+
+  /**
+   * Reindexes the blog entries saved or removed during a rebuild. The blog
+   * lock is only held for this, rather than for the whole rebuild, so that
+   * nothing else can be saved until the indexes are up to date.
+   */
+  private void catchUpAfterReindex(BlogEntryReindexer reindexer) {
+    synchronized (this) {
+      Set<String> changed;
+      synchronized (blogEntriesChangedDuringReindex) {
+        changed = new HashSet<String>(blogEntriesChangedDuringReindex);
+        blogEntriesChangedDuringReindex.clear();
+      }
+
+      if (!changed.isEmpty() && !reindexer.isCancelled()) {
+        reindexBlogEntries(changed, Collections.<String>emptySet());
+      }
+    }
+  }
+
+  /**
+   * Reindexes the given blog entries, removing them from the indexes before
+   * adding back those that still exist.
+   *
+   * @param changedBlogEntryIds   the IDs of blog entries that have been added or changed
+   * @param removedBlogEntryIds   the IDs of blog entries that have been removed
+   */
+  private void reindexBlogEntries(Collection<String> changedBlogEntryIds, Collection<String> removedBlogEntryIds) {
+    BlogEntryDAO dao = DAOFactory.getConfiguredFactory().getBlogEntryDAO();
+    List<BlogEntry> blogEntries = new ArrayList<BlogEntry>();
+    for (String blogEntryId : changedBlogEntryIds) {
+      try {
+        BlogEntry blogEntry = dao.loadBlogEntry(this, blogEntryId);
+        if (blogEntry != null) {
+          blogEntries.add(blogEntry);
+        }
+      } catch (PersistenceException e) {
+        error("Blog entry " + blogEntryId + " could not be loaded while reindexing.");
+        log.error("Error loading blog entry " + blogEntryId, e);
+      }
+    }
+
+    try {
+      for (ReindexableIndex index : getReindexableIndexes()) {
+        for (String blogEntryId : removedBlogEntryIds) {
+          index.remove(blogEntryId);
+        }
+        for (String blogEntryId : changedBlogEntryIds) {
+          index.remove(blogEntryId);
+        }
+        for (BlogEntry blogEntry : blogEntries) {
+          index.add(blogEntry);
+        }
+        index.finish();
+      }
+      info(changedBlogEntryIds.size() + " changed and " + removedBlogEntryIds.size() + " removed blog entries reindexed.");
+    } finally {
+      suggestionIndex.clear();
+      relatedPostsIndex.clear();
+    }
+  }
+
+  private List<ReindexableIndex> getReindexableIndexes() {
+    return Arrays.<ReindexableIndex>asList(
+        blogEntryIndex, responseIndex, tagIndex, categoryIndex, authorIndex, searchIndex);
+  }
+
+  /**
+   * Gets the current, or most recent, rebuild of the blog entry indexes.
+   *
+   * @return  a BlogEntryReindexer instance, or null if the blog entries
+   *          haven't been reindexed since the blog was started
+   */
+  public BlogEntryReindexer getBlogEntryReindexer() {
+    return blogEntryReindexer;
+  }
+
+  /**
+   * Determines whether the blog entries are being reindexed.
+   *
+   * @return  true if a reindex is in progress, false otherwise
+   */
+  public boolean isReindexing() {
+    BlogEntryReindexer reindexer = blogEntryReindexer;
+    return reindexer != null && !reindexer.isFinished();
+  }
+
+  /**
+   * Cancels any reindex of the blog entries that is in progress.
+   */
+  public void cancelReindex() {
+    BlogEntryReindexer reindexer = blogEntryReindexer;
+    if (reindexer != null && !reindexer.isFinished()) {
+      reindexer.cancel();
     }
   }
 
   public void reindexStaticPages() {
+    synchronized (this) {
+      try {
+        // to reindex all static pages, we need to load them via the DAO
+        Collection<StaticPage> staticPages = DAOFactory.getConfiguredFactory().getStaticPageDAO().loadStaticPages(this);
+        staticPageIndex.reindex(staticPages);
+        searchIndex.indexStaticPages(staticPages);
+        info("Static pages reindexed.");
+      } catch (Exception e) {
+        error(e.getClass().getName() + " reindexing static pages - " + StringUtils.transformHTML(e.getMessage()));
+        log.error("Error reindexing static pages", e);
+      }
+    }
+  }
+
+  /**
+   * Reindexes the given static pages. The static page index is small, so is
+   * rebuilt in full, whereas only the given pages are updated in the search
+   * index.
+   *
+   * @param changedStaticPageIds    the IDs of static pages that have been added or changed
+   * @param removedStaticPageIds    the IDs of static pages that have been removed
+   */
+  private void reindexStaticPages(Collection<String> changedStaticPageIds, Collection<String> removedStaticPageIds) {
     try {
-      // to reindex all static pages, we need to load them via the DAO
-      Collection<StaticPage> staticPages = DAOFactory.getConfiguredFactory().getStaticPageDAO().loadStaticPages(this);
-      staticPageIndex.reindex(staticPages);
-      searchIndex.indexStaticPages(staticPages);
-      info("Static pages reindexed.");
+      StaticPageDAO dao = DAOFactory.getConfiguredFactory().getStaticPageDAO();
+      staticPageIndex.reindex(dao.loadStaticPages(this));
+
+      for (String staticPageId : removedStaticPageIds) {
+        searchIndex.remove(staticPageId);
+      }
+      for (String staticPageId : changedStaticPageIds) {
+        StaticPage staticPage = dao.loadStaticPage(this, staticPageId);
+        if (staticPage != null) {
+          searchIndex.index(staticPage);
+        } else {
+          searchIndex.remove(staticPageId);
+        }
+      }
+      info(changedStaticPageIds.size() + " changed and " + removedStaticPageIds.size() + " removed static pages reindexed.");
     } catch (Exception e) {
       error(e.getClass().getName() + " reindexing static pages - " + StringUtils.transformHTML(e.getMessage()));
       log.error("Error reindexing static pages", e);
@@ -1975,6 +2310,16 @@ public class Blog extends AbstractBlog {
     return Boolean.parseBoolean(getProperty(GRAVATAR_SUPPORT_FOR_COMMENTS_ENABLED_KEY));
   }
 
+  /**
+   * Determines whether indexes are written in the binary, memory-mapped
+   * format rather than as text.
+   *
+   * @return  true if binary indexes are enabled, false otherwise
+   */
+  public boolean isBinaryIndexesEnabled() {
+    return Boolean.parseBoolean(getProperty(BINARY_INDEXES_ENABLED_KEY));
+  }
+
   public EmailSubscriptionList getEmailSubscriptionList() {
     return emailSubscriptionList;
   }
@@ -147,48 +147,57 @@ public class BlogService {
     Blog blog = blogEntry.getBlog();
     ContentCache cache = ContentCache.getInstance();
 
-    synchronized (blog) {
-      try {
-        BlogEntry be = getBlogEntry(blog, blogEntry.getId());
-
-        if (!blogEntry.isPersistent() && be != null) {
-          // the blog entry is new but one exists with the same ID already
-          // - increment the date/ID and try again
-          blogEntry.setDate(new Date(blogEntry.getDate().getTime() + 1));
-          putBlogEntry(blogEntry);
-        } else {
-          if (!blogEntry.isPersistent()) {
-            dao.storeBlogEntry(blogEntry);
-            blogEntry.insertEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
-
-            for (Comment comment : blogEntry.getComments()) {
-              blogEntry.addEvent(new CommentEvent(comment, CommentEvent.COMMENT_ADDED));
-            }
-            for (TrackBack trackBack : blogEntry.getTrackBacks()) {
-              blogEntry.addEvent(new TrackBackEvent(trackBack, TrackBackEvent.TRACKBACK_ADDED));
-            }
+    boolean saved = false;
+    try {
+      synchronized (blog) {
+        try {
+          BlogEntry be = getBlogEntry(blog, blogEntry.getId());
+
+          if (!blogEntry.isPersistent() && be != null) {
+            // the blog entry is new but one exists with the same ID already
+            // - increment the date/ID and try again
+            blogEntry.setDate(new Date(blogEntry.getDate().getTime() + 1));
+            putBlogEntry(blogEntry);
           } else {
-            dao.storeBlogEntry(blogEntry);
-            if (blogEntry.isDirty()) {
-              blogEntry.insertEvent(new BlogEntryEvent(blogEntry, blogEntry.getPropertyChangeEvents()));
+            blog.blogEntryChanged(blogEntry.getId());
+            if (!blogEntry.isPersistent()) {
+              dao.storeBlogEntry(blogEntry);
+              blogEntry.insertEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+
+              for (Comment comment : blogEntry.getComments()) {
+                blogEntry.addEvent(new CommentEvent(comment, CommentEvent.COMMENT_ADDED));
+              }
+              for (TrackBack trackBack : blogEntry.getTrackBacks()) {
+                blogEntry.addEvent(new TrackBackEvent(trackBack, TrackBackEvent.TRACKBACK_ADDED));
+              }
+            } else {
+              dao.storeBlogEntry(blogEntry);
+              if (blogEntry.isDirty()) {
+                blogEntry.insertEvent(new BlogEntryEvent(blogEntry, blogEntry.getPropertyChangeEvents()));
+              }
             }
-          }
 
-          blogEntry.getBlog().getEventDispatcher().fireEvents(blogEntry);
+            blogEntry.getBlog().getEventDispatcher().fireEvents(blogEntry);
 
-          // and store the blog entry now that listeners have been fired
-          dao.storeBlogEntry(blogEntry);
-          cache.removeBlogEntry(blogEntry);
-        }
+            // and store the blog entry now that listeners have been fired
+            dao.storeBlogEntry(blogEntry);
+            cache.removeBlogEntry(blogEntry);
+            blog.blogEntryChanged(blogEntry.getId());
+          }
 
-        blogEntry.setPersistent(true);
-      } catch (PersistenceException pe) {
-        throw new BlogServiceException(blog, pe);
-      } finally {
-        blogEntry.clearPropertyChangeEvents();
-        blogEntry.clearEvents();
-        blogEntry.setEventsEnabled(true);
+          blogEntry.setPersistent(true);
+          saved = true;
+        } catch (PersistenceException pe) {
+          throw new BlogServiceException(blog, pe);
+        } finally {
+          blogEntry.clearPropertyChangeEvents();
+          blogEntry.clearEvents();
+          blogEntry.setEventsEnabled(true);
+        }
       }
+    } finally {
+      // asynchronous listeners are only called once the change has been saved and the blog unlocked
+      blog.getEventDispatcher().eventsCompleted(saved);
     }
   }
 
@@ -199,29 +208,40 @@ public class BlogService {
     Blog blog = blogEntry.getBlog();
     ContentCache cache = ContentCache.getInstance();
 
+    boolean saved = false;
     try {
-      DAOFactory factory = DAOFactory.getConfiguredFactory();
-      BlogEntryDAO dao = factory.getBlogEntryDAO();
-      dao.removeBlogEntry(blogEntry);
-      blogEntry.setPersistent(false);
+      synchronized (blog) {
+        try {
+          DAOFactory factory = DAOFactory.getConfiguredFactory();
+          BlogEntryDAO dao = factory.getBlogEntryDAO();
+          blog.blogEntryChanged(blogEntry.getId());
+          dao.removeBlogEntry(blogEntry);
+          blogEntry.setPersistent(false);
+
+          // remove from cache
+          cache.removeBlogEntry(blogEntry);
 
-      // remove from cache
-      cache.removeBlogEntry(blogEntry);
+          blogEntry.insertEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_REMOVED));
 
-      blogEntry.insertEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_REMOVED));
+          // and remove all of the responses, so the appropriate events are raised
+          // and the responses get unindexed
+          for (Comment comment : blogEntry.getComments()) {
+            blogEntry.addEvent(new CommentEvent(comment, CommentEvent.COMMENT_REMOVED));
+          }
+          for (TrackBack trackBack : blogEntry.getTrackBacks()) {
+            blogEntry.addEvent(new TrackBackEvent(trackBack, TrackBackEvent.TRACKBACK_REMOVED));
+          }
 
-      // and remove all of the responses, so the appropriate events are raised
-      // and the responses get unindexed
-      for (Comment comment : blogEntry.getComments()) {
-        blogEntry.addEvent(new CommentEvent(comment, CommentEvent.COMMENT_REMOVED));
-      }
-      for (TrackBack trackBack : blogEntry.getTrackBacks()) {
-        blogEntry.addEvent(new TrackBackEvent(trackBack, TrackBackEvent.TRACKBACK_REMOVED));
+          blogEntry.getBlog().getEventDispatcher().fireEvents(blogEntry);
+          blog.blogEntryChanged(blogEntry.getId());
+          saved = true;
+        } catch (PersistenceException pe) {
+          throw new BlogServiceException(blogEntry.getBlog(), pe);
+        }
       }
-
-      blogEntry.getBlog().getEventDispatcher().fireEvents(blogEntry);
-    } catch (PersistenceException pe) {
-      throw new BlogServiceException(blogEntry.getBlog(), pe);
+    } finally {
+      // asynchronous listeners are only called once the change has been saved and the blog unlocked
+      blog.getEventDispatcher().eventsCompleted(saved);
     }
   }
 
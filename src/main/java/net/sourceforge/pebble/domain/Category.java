@@ -380,6 +380,25 @@ public class Category implements Permalinkable, Comparable, Serializable {
     }
   }
 
+  /**
+   * Adds a number of blog entries to this category, sorting them just once.
+   *
+   * @param blogEntries   a Collection of blog entry ids
+   */
+  public synchronized void addBlogEntries(Collection<String> blogEntries) {
+    Set<String> existingBlogEntries = new HashSet<String>(this.blogEntries);
+    for (String blogEntry : blogEntries) {
+      if (blogEntry != null && existingBlogEntries.add(blogEntry)) {
+        this.blogEntries.add(blogEntry);
+      }
+    }
+    Collections.sort(this.blogEntries, new ReverseBlogEntryIdComparator());
+
+    if (getParent() != null) {
+      getParent().addBlogEntries(blogEntries);
+    }
+  }
+
   /**
    * Removes a blog entry from this category.
    *
@@ -31,12 +31,13 @@
  */
 package net.sourceforge.pebble.domain;
 
-import net.sourceforge.pebble.comparator.ReverseBlogEntryIdComparator;
+import net.sourceforge.pebble.index.BlogEntryIndex;
 
 import java.util.*;
 
 /**
- * Represents a blog at a daily level. This manages a collection of BlogEntry instances.
+ * Represents a blog at a daily level. The blog entries for the day are looked
+ * up in the blog entry index, rather than being held by each Day.
  *
  * @author    Simon Brown
  */
@@ -48,10 +49,9 @@ public class Day extends TimePeriod implements Permalinkable {
   /** an integer representing the day that this Day is for */
   private int day;
 
-  /** the collection of blog entry keys */
-  private List<String> blogEntries = new ArrayList<String>();
-  private List<String> publishedBlogEntries = new ArrayList<String>();
-  private List<String> unpublishedBlogEntries = new ArrayList<String>();
+  /** the start of this day, and of the next, in milliseconds */
+  private long startOfDay;
+  private long startOfNextDay;
 
   /**
    * Creates a new Day for the specified month and day.
@@ -66,6 +66,12 @@ public class Day extends TimePeriod implements Permalinkable {
     this.day = day;
     setDate(getCalendar().getTime());
 
+    Calendar cal = getCalendar();
+    cal.set(Calendar.HOUR_OF_DAY, 0);
+    this.startOfDay = cal.getTimeInMillis();
+    cal.add(Calendar.DAY_OF_MONTH, 1);
+    this.startOfNextDay = cal.getTimeInMillis();
+
 //    if (getBlog() instanceof Blog) {
 //      try {
 //        Blog blog = getBlog();
@@ -174,45 +180,35 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return    an ordered List of BlogEntry instances
    */
   public List<String> getBlogEntries() {
-    return new ArrayList<String>(blogEntries);
-  }
+    BlogEntryIndex index = getBlog().getBlogEntryIndex();
+    if (index == null) {
+      return new ArrayList<String>();
+    }
 
-  public int getNumberOfBlogEntries() {
-    return publishedBlogEntries.size();
+    return index.getBlogEntries(startOfDay, startOfNextDay);
   }
 
-  public synchronized void addPublishedBlogEntry(String blogEntryId) {
-    if (!publishedBlogEntries.contains(blogEntryId)) {
-      publishedBlogEntries.add(blogEntryId);
-      Collections.sort(publishedBlogEntries, new ReverseBlogEntryIdComparator());
+  public int getNumberOfBlogEntries() {
+    BlogEntryIndex index = getBlog().getBlogEntryIndex();
+    if (index == null) {
+      return 0;
     }
-    unpublishedBlogEntries.remove(blogEntryId);
 
-    if (!blogEntries.contains(blogEntryId)) {
-      // and add to the aggregated view
-      blogEntries.add(blogEntryId);
-      Collections.sort(blogEntries, new ReverseBlogEntryIdComparator());
-    }
+    return index.getNumberOfPublishedBlogEntries(startOfDay, startOfNextDay);
   }
 
-  public synchronized void addUnpublishedBlogEntry(String blogEntryId) {
-    if (!unpublishedBlogEntries.contains(blogEntryId)) {
-      unpublishedBlogEntries.add(blogEntryId);
-      Collections.sort(unpublishedBlogEntries, new ReverseBlogEntryIdComparator());
-    }
-    publishedBlogEntries.remove(blogEntryId);
-
-    if (!blogEntries.contains(blogEntryId)) {
-      // and add to the aggregated view
-      blogEntries.add(blogEntryId);
-      Collections.sort(blogEntries, new ReverseBlogEntryIdComparator());
+  /**
+   * Gets the published blog entries for this day.
+   *
+   * @return  a List of blog entry IDs, most recent first
+   */
+  private List<String> getPublishedBlogEntries() {
+    BlogEntryIndex index = getBlog().getBlogEntryIndex();
+    if (index == null) {
+      return new ArrayList<String>();
     }
-  }
 
-  public synchronized void removeBlogEntry(BlogEntry blogEntry) {
-    publishedBlogEntries.remove(blogEntry.getId());
-    unpublishedBlogEntries.remove(blogEntry.getId());
-    blogEntries.remove(blogEntry.getId());
+    return index.getPublishedBlogEntries(startOfDay, startOfNextDay);
   }
 
 //  /**
@@ -329,7 +325,7 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return    true if this blog contains entries, false otherwise
    */
   public boolean hasBlogEntries() {
-    return !publishedBlogEntries.isEmpty();
+    return getNumberOfBlogEntries() > 0;
   }
 
   /**
@@ -357,6 +353,7 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return  the previous BlogEntry, or null if one doesn't exist
    */
   public String getPreviousBlogEntry(String blogEntry) {
+    List<String> publishedBlogEntries = getPublishedBlogEntries();
     int index = publishedBlogEntries.indexOf(blogEntry);
     if (index >= 0 && index < (publishedBlogEntries.size()-1)) {
       return publishedBlogEntries.get(index+1);
@@ -371,6 +368,7 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return    a BlogEntry instance, or null is no entries have been posted
    */
   public String getFirstBlogEntry() {
+    List<String> publishedBlogEntries = getPublishedBlogEntries();
     if (!publishedBlogEntries.isEmpty()) {
       return publishedBlogEntries.get(publishedBlogEntries.size()-1);
     } else {
@@ -384,6 +382,7 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return    a BlogEntry instance, or null is no entries have been posted
    */
   public String getLastBlogEntry() {
+    List<String> publishedBlogEntries = getPublishedBlogEntries();
     if (!publishedBlogEntries.isEmpty()) {
       return publishedBlogEntries.get(0);
     } else {
@@ -398,6 +397,7 @@ public class Day extends TimePeriod implements Permalinkable {
    * @return  the next BlogEntry, or null if one doesn't exist
    */
   public String getNextBlogEntry(String blogEntry) {
+    List<String> publishedBlogEntries = getPublishedBlogEntries();
     int index = publishedBlogEntries.lastIndexOf(blogEntry);
     if (index > 0 && index <= publishedBlogEntries.size()) {
       return publishedBlogEntries.get(index-1);
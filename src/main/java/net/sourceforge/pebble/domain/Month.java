@@ -31,6 +31,8 @@
  */
 package net.sourceforge.pebble.domain;
 
+import net.sourceforge.pebble.index.BlogEntryIndex;
+
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -47,12 +49,16 @@ public class Month extends TimePeriod implements Permalinkable {
   /** an integer representing the month that this Month is for */
   private int month;
 
-  /** the collection of Day instances that this blog is managing */
+  /** the Day instances that have been asked for, created as needed */
   private Day[] dailyBlogs;
 
   /** the last day in this month */
   private int lastDayInMonth;
 
+  /** the start of this month, and of the next, in milliseconds */
+  private long startOfMonth;
+  private long startOfNextMonth;
+
   /**
    * Creates a new Month based upon the specified Year and month.
    *
@@ -66,15 +72,13 @@ public class Month extends TimePeriod implements Permalinkable {
     this.month = month;
     setDate(getCalendar().getTime());
 
-    Calendar cal = getBlog().getCalendar();
-    cal.setTime(getDate());
+    Calendar cal = getCalendar();
     this.lastDayInMonth = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
+    this.startOfMonth = cal.getTimeInMillis();
+    cal.add(Calendar.MONTH, 1);
+    this.startOfNextMonth = cal.getTimeInMillis();
 
-    // and create all days
     dailyBlogs = new Day[lastDayInMonth];
-    for (int day = 1; day <= lastDayInMonth; day++) {
-      dailyBlogs[day-1] = new Day(this, day);
-    }
   }
 
   private Calendar getCalendar() {
@@ -131,13 +135,7 @@ public class Month extends TimePeriod implements Permalinkable {
    * @return    true if this blog contains entries, false otherwise
    */
   public boolean hasBlogEntries() {
-    for (int i = 1; i <= lastDayInMonth; i++) {
-      if (getBlogForDay(i).hasBlogEntries()) {
-        return true;
-      }
-    }
-
-    return false;
+    return getNumberOfBlogEntries() > 0;
   }
 
   /**
@@ -146,12 +144,12 @@ public class Month extends TimePeriod implements Permalinkable {
    * @return  a List of BlogEntry instances, reverse ordered by date
    */
   public List<String> getBlogEntries() {
-    Day days[] = getAllDays();
-    List blogEntries = new ArrayList();
-    for (Day day : days) {
-      blogEntries.addAll(day.getBlogEntries());
+    BlogEntryIndex index = getBlog().getBlogEntryIndex();
+    if (index == null) {
+      return new ArrayList<String>();
     }
-    return blogEntries;
+
+    return index.getBlogEntries(startOfMonth, startOfNextMonth);
   }
 
   /**
@@ -160,13 +158,12 @@ public class Month extends TimePeriod implements Permalinkable {
    * @return  an int
    */
   public int getNumberOfBlogEntries() {
-    int count = 0;
-    Day days[] = getAllDays();
-    for (Day day : days) {
-      count += day.getNumberOfBlogEntries();
+    BlogEntryIndex index = getBlog().getBlogEntryIndex();
+    if (index == null) {
+      return 0;
     }
 
-    return count;
+    return index.getNumberOfPublishedBlogEntries(startOfMonth, startOfNextMonth);
   }
 
   /**
@@ -197,6 +194,10 @@ public class Month extends TimePeriod implements Permalinkable {
       throw new IllegalArgumentException("Invalid day of " + day + " specified, should be between 1 and " + lastDayInMonth);
     }
 
+    if (dailyBlogs[day-1] == null) {
+      dailyBlogs[day-1] = new Day(this, day);
+    }
+
     return dailyBlogs[day-1];
   }
 
@@ -33,6 +33,9 @@ package net.sourceforge.pebble.domain;
 
 import net.sourceforge.pebble.comparator.BlogEntryComparator;
 import net.sourceforge.pebble.PebbleContext;
+import net.sourceforge.pebble.index.MultiBlogSearch;
+import net.sourceforge.pebble.search.SearchException;
+import net.sourceforge.pebble.search.SearchResults;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
@@ -50,6 +53,13 @@ import java.util.*;
  */
 public class MultiBlog extends AbstractBlog {
 
+  /**
+   * searches the indexes of all public blogs; shared by every instance,
+   * because a MultiBlog is created for each request and this has a pool of
+   * threads that would otherwise never be stopped
+   */
+  private static final MultiBlogSearch MULTI_BLOG_SEARCH = new MultiBlogSearch();
+
   /**
    * Creates a new Blog instance, based at the specified location.
    *
@@ -162,6 +172,22 @@ public class MultiBlog extends AbstractBlog {
     }
   }
 
+  /**
+   * Searches all of the public blogs, returning a single page of hits
+   * merged across them.
+   *
+   * @param query         the Lucene query
+   * @param sortByDate    true to order hits by date (newest first), false to
+   *                      order them by score
+   * @param offset        the index of the first hit to return
+   * @param limit         the maximum number of hits to return
+   * @return  a SearchResults instance
+   * @throws SearchException  if something goes wrong
+   */
+  public SearchResults search(String query, boolean sortByDate, int offset, int limit) throws SearchException {
+    return MULTI_BLOG_SEARCH.search(BlogManager.getInstance().getPublicBlogs(), query, sortByDate, offset, limit);
+  }
+
   /**
    * Logs this request for blog.
    *
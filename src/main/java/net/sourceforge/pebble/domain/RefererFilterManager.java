@@ -37,7 +37,6 @@ import net.sourceforge.pebble.dao.RefererFilterDAO;
 import net.sourceforge.pebble.logging.CountedUrl;
 
 import java.util.*;
-import java.util.regex.Matcher;
 
 /**
  * A class to manage regular expressions used to filter out obscene and spam
@@ -56,6 +55,9 @@ public class RefererFilterManager {
   /** the collection of all filters */
   private Collection filters;
 
+  /** the filters compiled for matching, or null if they have changed since */
+  private volatile RefererFilterMatcher matcher;
+
   /**
    * Creates a new instance.
    */
@@ -100,6 +102,7 @@ public class RefererFilterManager {
         filters.add(newFilter);
         newFilter.setId(nextId);
         nextId++;
+        matcher = null;
       }
     } catch (PersistenceException pe) {
       pe.printStackTrace();
@@ -127,6 +130,7 @@ public class RefererFilterManager {
 
           // and now remove the in-memory representation
           filters.remove(filter);
+          matcher = null;
 
           return true;
         }
@@ -182,18 +186,24 @@ public class RefererFilterManager {
       return false;
     }
 
-    Iterator it = filters.iterator();
-    RefererFilter filter;
-    Matcher matcher;
-    while (it.hasNext()) {
-      filter = (RefererFilter)it.next();
-      matcher = filter.getCompiledExpression().matcher(referer.getUrl());
-      if (matcher.matches()) {
-        return true;
+    return getMatcher().matches(referer.getUrl());
+  }
+
+  /**
+   * Gets the compiled filters, compiling them if they have changed.
+   */
+  private RefererFilterMatcher getMatcher() {
+    RefererFilterMatcher compiled = matcher;
+    if (compiled == null) {
+      synchronized (this) {
+        if (matcher == null) {
+          matcher = new RefererFilterMatcher(filters, RefererFilterMatcher.DEFAULT_CACHE_SIZE);
+        }
+        compiled = matcher;
       }
     }
 
-    return false;
+    return compiled;
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.domain;
+
+import net.sourceforge.pebble.util.MultiPatternMatcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled, immutable view of a set of referer filters. Most filters
+ * (e.g. <code>.*www.example.com.*</code>) contain a literal that any URL
+ * they match must also contain, so all of these literals are searched for
+ * in a single pass over the URL, and only the filters whose literal was
+ * found are evaluated. The remaining filters are combined into a single
+ * regular expression. Decisions are remembered for recently seen URLs;
+ * a new instance is created whenever the filters change.
+ *
+ * @author    Simon Brown
+ */
+class RefererFilterMatcher {
+
+  /** the maximum number of URLs whose decision is remembered */
+  static final int DEFAULT_CACHE_SIZE = 10000;
+
+  /** characters that make it too hard to work out what a filter requires */
+  private static final String UNSUPPORTED_CHARACTERS = "[](){}|^$?";
+
+  /** finds the literals required by the filters below */
+  private final MultiPatternMatcher literals;
+
+  /** the filters that have a required literal, indexed by that literal */
+  private final List<List<Pattern>> filtersByLiteral = new ArrayList<List<Pattern>>();
+
+  /** the other filters combined into one expression, or null if there are none */
+  private final Pattern union;
+
+  /** filters that can't be combined with the others */
+  private final List<Pattern> others = new ArrayList<Pattern>();
+
+  /** URLs that have already been checked */
+  private final Map<String,Boolean> decisions;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param filters       a Collection of RefererFilter instances
+   * @param maximumSize   the maximum number of decisions to remember
+   */
+  RefererFilterMatcher(Collection<?> filters, final int maximumSize) {
+    Map<String,Integer> literalIndexes = new HashMap<String,Integer>();
+    List<String> literalList = new ArrayList<String>();
+    StringBuilder expression = new StringBuilder();
+
+    for (Object o : filters) {
+      RefererFilter filter = (RefererFilter)o;
+      String literal = getRequiredLiteral(filter.getExpression());
+      if (literal != null) {
+        Integer index = literalIndexes.get(literal);
+        if (index == null) {
+          index = literalList.size();
+          literalIndexes.put(literal, index);
+          literalList.add(literal);
+          filtersByLiteral.add(new ArrayList<Pattern>());
+        }
+        filtersByLiteral.get(index).add(filter.getCompiledExpression());
+      } else if (isCombinable(filter.getExpression())) {
+        if (expression.length() > 0) {
+          expression.append('|');
+        }
+        expression.append("(?:").append(filter.getExpression()).append(')');
+      } else {
+        others.add(filter.getCompiledExpression());
+      }
+    }
+
+    this.literals = literalList.isEmpty() ? null : new MultiPatternMatcher(literalList.toArray(new String[literalList.size()]), false);
+    this.union = expression.length() > 0 ? Pattern.compile(expression.toString()) : null;
+    this.decisions = Collections.synchronizedMap(new LinkedHashMap<String,Boolean>(16, 0.75f, true) {
+      private static final long serialVersionUID = 233531890107089893L;
+
+      protected boolean removeEldestEntry(Map.Entry<String,Boolean> eldest) {
+        return size() > maximumSize;
+      }
+    });
+  }
+
+  /**
+   * Works out the longest piece of literal text that any string matching
+   * the given expression must contain.
+   *
+   * @param expression    a regular expression
+   * @return  the literal, or null if it can't be determined
+   */
+  static String getRequiredLiteral(String expression) {
+    String longest = "";
+    StringBuilder run = new StringBuilder();
+    boolean lastWasLiteral = false;
+    for (int i = 0; i < expression.length(); i++) {
+      char c = expression.charAt(i);
+      if (c == '\\') {
+        if (i+1 == expression.length() || Character.isLetterOrDigit(expression.charAt(i+1))) {
+          // character classes, back references, quoting, etc
+          return null;
+        }
+        run.append(expression.charAt(++i));
+        lastWasLiteral = true;
+      } else if (UNSUPPORTED_CHARACTERS.indexOf(c) != -1) {
+        return null;
+      } else if (c == '.' || c == '*' || c == '+') {
+        if (c != '.' && lastWasLiteral) {
+          // the quantifier means that the previous character may not be there
+          run.deleteCharAt(run.length()-1);
+        }
+        if (run.length() > longest.length()) {
+          longest = run.toString();
+        }
+        run.setLength(0);
+        lastWasLiteral = false;
+      } else {
+        run.append(c);
+        lastWasLiteral = true;
+      }
+    }
+
+    if (run.length() > longest.length()) {
+      longest = run.toString();
+    }
+
+    return longest.length() > 0 ? longest : null;
+  }
+
+  /**
+   * Determines whether an expression means the same thing when it is
+   * combined with others.
+   */
+  private static boolean isCombinable(String expression) {
+    if (expression.contains("(?") || expression.contains("\\Q") || expression.contains("\\k")) {
+      // flags (including comments), quoting and named groups
+      return false;
+    }
+
+    for (int i = 0; i < expression.length()-1; i++) {
+      if (expression.charAt(i) == '\\') {
+        if (Character.isDigit(expression.charAt(i+1))) {
+          // back references would refer to the wrong group
+          return false;
+        }
+        i++;
+      }
+    }
+
+    try {
+      Pattern.compile("(?:" + expression + ")");
+      return true;
+    } catch (PatternSyntaxException pse) {
+      return false;
+    }
+  }
+
+  /**
+   * Determines whether the given URL matches any of the filters.
+   *
+   * @param url   a URL
+   * @return  true if the URL should be filtered out, false otherwise
+   */
+  boolean matches(String url) {
+    Boolean decision = decisions.get(url);
+    if (decision == null) {
+      decision = evaluate(url);
+      decisions.put(url, decision);
+    }
+
+    return decision;
+  }
+
+  private boolean evaluate(String url) {
+    if (literals != null) {
+      BitSet found = literals.matchAll(url);
+      for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i+1)) {
+        for (Pattern filter : filtersByLiteral.get(i)) {
+          if (filter.matcher(url).matches()) {
+            return true;
+          }
+        }
+      }
+    }
+
+    if (union != null && union.matcher(url).matches()) {
+      return true;
+    }
+
+    for (Pattern filter : others) {
+      if (filter.matcher(url).matches()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Gets the number of decisions currently remembered.
+   */
+  int getCacheSize() {
+    return decisions.size();
+  }
+
+}
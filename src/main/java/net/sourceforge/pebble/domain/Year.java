@@ -96,6 +96,21 @@ public class Year extends TimePeriod implements Comparable {
     return year;
   }
 
+  /**
+   * Determines whether this year has any published blog entries.
+   *
+   * @return  true if any month in this year has blog entries, false otherwise
+   */
+  public boolean hasBlogEntries() {
+    for (Month month : months) {
+      if (month.hasBlogEntries()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   /**
    * Gets the Month for the specified month. Months are lazy
    * loaded as needed.
@@ -31,6 +31,7 @@
  */
 package net.sourceforge.pebble.event;
 
+import net.sourceforge.pebble.api.event.AsynchronousListener;
 import net.sourceforge.pebble.api.event.blog.BlogEvent;
 import net.sourceforge.pebble.api.event.blog.BlogListener;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
@@ -40,17 +41,68 @@ import net.sourceforge.pebble.api.event.comment.CommentListener;
 import net.sourceforge.pebble.api.event.EventDispatcher;
 import net.sourceforge.pebble.api.event.trackback.TrackBackEvent;
 import net.sourceforge.pebble.api.event.trackback.TrackBackListener;
+import net.sourceforge.pebble.domain.Blog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Responsible for dispatching events to registered listeners, which are
- * called in the order they were added.
+ * called in the order they were added. Blog entry, comment and TrackBack
+ * listeners marked as AsynchronousListener are instead called in the
+ * background, once the change that raised the event has been saved.
  *
  * @author Simon Brown
  */
 public class DefaultEventDispatcher extends EventDispatcher {
 
+  private static final Log log = LogFactory.getLog(DefaultEventDispatcher.class);
+
+  /** the number of threads calling asynchronous listeners */
+  private static final int THREADS = 4;
+
+  /** the number of events that can be waiting for asynchronous listeners */
+  private static final int QUEUE_CAPACITY = 1000;
+
+  /** calls asynchronous listeners for all blogs */
+  private static final ThreadPoolExecutor BACKGROUND;
+
+  static {
+    BACKGROUND = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory() {
+      private int count = 0;
+      public synchronized Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "pebble-event-dispatcher-" + (++count));
+        thread.setDaemon(true);
+        return thread;
+      }
+    }, new WaitForSpacePolicy());
+    BACKGROUND.allowCoreThreadTimeOut(true);
+  }
+
+  private Executor executor = BACKGROUND;
+
+  /** listeners waiting for the change being saved by the current thread */
+  private final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<List<Runnable>>();
+
+  /**
+   * Sets the executor used to call asynchronous listeners.
+   *
+   * @param executor    an Executor instance
+   */
+  void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
   /**
    * Fires a blog event to registered listeners.
    *
@@ -78,27 +130,51 @@ public class DefaultEventDispatcher extends EventDispatcher {
    *
    * @param event   the BlogEntryEvent instance
    */
-  public void fireBlogEntryEvent(BlogEntryEvent event) {
+  public void fireBlogEntryEvent(final BlogEntryEvent event) {
+    final List<BlogEntryListener> asynchronousListeners = new ArrayList<BlogEntryListener>();
     Iterator it = getEventListenerList().getBlogEntryListeners().iterator();
     while (it.hasNext()) {
       BlogEntryListener listener = (BlogEntryListener)it.next();
-      if (event.getType() == BlogEntryEvent.BLOG_ENTRY_ADDED) {
-        listener.blogEntryAdded(event);
-      } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_REMOVED) {
-        listener.blogEntryRemoved(event);
-      } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_CHANGED) {
-        listener.blogEntryChanged(event);
-      } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_PUBLISHED) {
-        listener.blogEntryPublished(event);
-      } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_UNPUBLISHED) {
-        listener.blogEntryUnpublished(event);
+      if (listener instanceof AsynchronousListener) {
+        asynchronousListeners.add(listener);
+        continue;
       }
 
+      fireBlogEntryEvent(listener, event);
+
       // has the event been vetoed?
       if (event.isVetoed()) {
         break;
       }
     }
+
+    if (!asynchronousListeners.isEmpty()) {
+      fireLater(event.getBlogEntry().getBlog(), new Runnable() {
+        public void run() {
+          for (BlogEntryListener listener : asynchronousListeners) {
+            try {
+              fireBlogEntryEvent(listener, event);
+            } catch (RuntimeException e) {
+              log.error("Error calling " + listener.getClass().getName() + " for " + event, e);
+            }
+          }
+        }
+      });
+    }
+  }
+
+  private void fireBlogEntryEvent(BlogEntryListener listener, BlogEntryEvent event) {
+    if (event.getType() == BlogEntryEvent.BLOG_ENTRY_ADDED) {
+      listener.blogEntryAdded(event);
+    } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_REMOVED) {
+      listener.blogEntryRemoved(event);
+    } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_CHANGED) {
+      listener.blogEntryChanged(event);
+    } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_PUBLISHED) {
+      listener.blogEntryPublished(event);
+    } else if (event.getType() == BlogEntryEvent.BLOG_ENTRY_UNPUBLISHED) {
+      listener.blogEntryUnpublished(event);
+    }
   }
 
   /**
@@ -106,25 +182,49 @@ public class DefaultEventDispatcher extends EventDispatcher {
    *
    * @param event   the CommentEvent instance
    */
-  public void fireCommentEvent(CommentEvent event) {
+  public void fireCommentEvent(final CommentEvent event) {
+    final List<CommentListener> asynchronousListeners = new ArrayList<CommentListener>();
     Iterator it = getEventListenerList().getCommentListeners().iterator();
     while (it.hasNext()) {
       CommentListener listener = (CommentListener)it.next();
-      if (event.getType() == CommentEvent.COMMENT_ADDED) {
-        listener.commentAdded(event);
-      } else if (event.getType() == CommentEvent.COMMENT_REMOVED) {
-        listener.commentRemoved(event);
-      } else if (event.getType() == CommentEvent.COMMENT_APPROVED) {
-        listener.commentApproved(event);
-      } else if (event.getType() == CommentEvent.COMMENT_REJECTED) {
-        listener.commentRejected(event);
+      if (listener instanceof AsynchronousListener) {
+        asynchronousListeners.add(listener);
+        continue;
       }
 
+      fireCommentEvent(listener, event);
+
       // has the event been vetoed?
       if (event.isVetoed()) {
         break;
       }
     }
+
+    if (!asynchronousListeners.isEmpty()) {
+      fireLater(event.getComment().getBlogEntry().getBlog(), new Runnable() {
+        public void run() {
+          for (CommentListener listener : asynchronousListeners) {
+            try {
+              fireCommentEvent(listener, event);
+            } catch (RuntimeException e) {
+              log.error("Error calling " + listener.getClass().getName() + " for " + event, e);
+            }
+          }
+        }
+      });
+    }
+  }
+
+  private void fireCommentEvent(CommentListener listener, CommentEvent event) {
+    if (event.getType() == CommentEvent.COMMENT_ADDED) {
+      listener.commentAdded(event);
+    } else if (event.getType() == CommentEvent.COMMENT_REMOVED) {
+      listener.commentRemoved(event);
+    } else if (event.getType() == CommentEvent.COMMENT_APPROVED) {
+      listener.commentApproved(event);
+    } else if (event.getType() == CommentEvent.COMMENT_REJECTED) {
+      listener.commentRejected(event);
+    }
   }
 
   /**
@@ -132,25 +232,114 @@ public class DefaultEventDispatcher extends EventDispatcher {
    *
    * @param event   the TrackBackEvent instance
    */
-  public void fireTrackBackEvent(TrackBackEvent event) {
+  public void fireTrackBackEvent(final TrackBackEvent event) {
+    final List<TrackBackListener> asynchronousListeners = new ArrayList<TrackBackListener>();
     Iterator it = getEventListenerList().getTrackBackListeners().iterator();
     while (it.hasNext()) {
       TrackBackListener listener = (TrackBackListener)it.next();
-      if (event.getType() == TrackBackEvent.TRACKBACK_ADDED) {
-        listener.trackBackAdded(event);
-      } else if (event.getType() == TrackBackEvent.TRACKBACK_REMOVED) {
-        listener.trackBackRemoved(event);
-      } else if (event.getType() == TrackBackEvent.TRACKBACK_APPROVED) {
-        listener.trackBackApproved(event);
-      } else if (event.getType() == TrackBackEvent.TRACKBACK_REJECTED) {
-        listener.trackBackRejected(event);
+      if (listener instanceof AsynchronousListener) {
+        asynchronousListeners.add(listener);
+        continue;
       }
 
+      fireTrackBackEvent(listener, event);
+
       // has the event been vetoed?
       if (event.isVetoed()) {
         break;
       }
     }
+
+    if (!asynchronousListeners.isEmpty()) {
+      fireLater(event.getTrackBack().getBlogEntry().getBlog(), new Runnable() {
+        public void run() {
+          for (TrackBackListener listener : asynchronousListeners) {
+            try {
+              fireTrackBackEvent(listener, event);
+            } catch (RuntimeException e) {
+              log.error("Error calling " + listener.getClass().getName() + " for " + event, e);
+            }
+          }
+        }
+      });
+    }
+  }
+
+  private void fireTrackBackEvent(TrackBackListener listener, TrackBackEvent event) {
+    if (event.getType() == TrackBackEvent.TRACKBACK_ADDED) {
+      listener.trackBackAdded(event);
+    } else if (event.getType() == TrackBackEvent.TRACKBACK_REMOVED) {
+      listener.trackBackRemoved(event);
+    } else if (event.getType() == TrackBackEvent.TRACKBACK_APPROVED) {
+      listener.trackBackApproved(event);
+    } else if (event.getType() == TrackBackEvent.TRACKBACK_REJECTED) {
+      listener.trackBackRejected(event);
+    }
+  }
+
+  /**
+   * Calls asynchronous listeners in the background. Events are fired while
+   * a blog entry is being saved, with the blog locked, so the listeners are
+   * held until the save has completed.
+   *
+   * @param blog        the blog the event belongs to
+   * @param listeners   a Runnable that calls the listeners
+   */
+  private void fireLater(Blog blog, Runnable listeners) {
+    if (Thread.holdsLock(blog)) {
+      List<Runnable> list = deferred.get();
+      if (list == null) {
+        list = new ArrayList<Runnable>();
+        deferred.set(list);
+      }
+      list.add(listeners);
+    } else {
+      executor.execute(listeners);
+    }
+  }
+
+  /**
+   * Called once the change that the current thread has been firing events
+   * for has been saved, or has failed to be saved. The asynchronous
+   * listeners held for it are then called in the background, or discarded
+   * if the change wasn't saved.
+   *
+   * @param saved   true if the change was saved, false otherwise
+   */
+  public void eventsCompleted(boolean saved) {
+    List<Runnable> list = deferred.get();
+    if (list == null) {
+      return;
+    }
+
+    deferred.remove();
+    if (saved) {
+      for (Runnable listeners : list) {
+        executor.execute(listeners);
+      }
+    }
+  }
+
+  /**
+   * Waits for space in the queue when it's full. The listeners aren't called
+   * on the firing thread instead, because it may still be holding a lock.
+   */
+  static class WaitForSpacePolicy implements RejectedExecutionHandler {
+
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        log.warn("Asynchronous listeners not called because the executor has been shut down");
+        return;
+      }
+
+      try {
+        executor.getQueue().put(runnable);
+      } catch (InterruptedException ie) {
+        log.warn("Interrupted while waiting to call asynchronous listeners");
+        Thread.currentThread().interrupt();
+      }
+    }
+
   }
 
-}
\ No newline at end of file
+}
@@ -31,6 +31,7 @@
  */
 package net.sourceforge.pebble.event.blogentry;
 
+import net.sourceforge.pebble.api.event.AsynchronousListener;
 import net.sourceforge.pebble.api.decorator.ContentDecoratorContext;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
 import net.sourceforge.pebble.domain.Blog;
@@ -43,14 +44,12 @@ import java.util.List;
 
 /**
  * Sends an e-mail notification to e-mail subscribers when new blog entries
- * are added.
+ * are added. The same e-mail goes to every subscriber, in BCC batches, so the
+ * opt-out link leads to a page where subscribers enter their address.
  *
  * @author Simon Brown
  */
-public class EmailSubscriptionListener extends BlogEntryListenerSupport {
-
-  /** a token to be replaced when sending e-mails */
-  private static final String EMAIL_ADDRESS_TOKEN = "EMAIL_ADDRESS";
+public class EmailSubscriptionListener extends BlogEntryListenerSupport implements AsynchronousListener {
 
   /**
    * Called when a blog entry has been published.
@@ -88,19 +87,14 @@ public class EmailSubscriptionListener extends BlogEntryListenerSupport {
     message += "<a href=\"" + blogEntry.getLocalPermalink() + "\">Permalink</a>";
 
     message += " | ";
-    message += "<a href=\"" + blog.getUrl() + "unsubscribe.action?email=" + EMAIL_ADDRESS_TOKEN + "\">Opt-out</a>";
+    message += "<a href=\"" + blog.getUrl() + "unsubscribe.action\">Opt-out</a>";
 
     List<String> to = blog.getEmailSubscriptionList().getEmailAddresses();
 
-    // now send personalized e-mails to the blog owner and everybody
-    // that left a comment specifying their e-mail address
+    // now send the e-mail to all subscribers, in batches
     try {
       Session session = MailUtils.createSession();
-      for (String emailAddress : to) {
-        // customize the opt-out link and send the message
-        MailUtils.sendMail(session, blog, emailAddress, subject,
-            message.replaceAll(EMAIL_ADDRESS_TOKEN, emailAddress));
-      }
+      MailUtils.sendBulkMail(session, blog, to, subject, message);
     } catch (Exception e) {
         e.printStackTrace();
     } catch (NoClassDefFoundError e) {
@@ -40,16 +40,17 @@ import java.net.URL;
 import java.net.URLConnection;
 
 import net.sourceforge.pebble.PluginProperties;
+import net.sourceforge.pebble.api.event.AsynchronousListener;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryListener;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.notification.Notification;
+import net.sourceforge.pebble.notification.TwitterNotificationSender;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import twitter4j.Twitter;
-
 /**
  * Post new blog entries to twitter.
  * This class is based on a patch by Steve Carton (PEBBLE-15), but changes it to use the
@@ -57,7 +58,7 @@ import twitter4j.Twitter;
  * 
  * @author Steve Carton, Olaf Kock
  */
-public class PostToTwitterBlogEntryListener extends BlogEntryListenerSupport {
+public class PostToTwitterBlogEntryListener extends BlogEntryListenerSupport implements AsynchronousListener {
 
 	/** the log used by this class */
 	private static final Log log = LogFactory
@@ -88,17 +89,16 @@ public class PostToTwitterBlogEntryListener extends BlogEntryListenerSupport {
 		if (tinyUrl.equalsIgnoreCase("error"))
 			tinyUrl = longUrl;
 		String msg = composeMessage(blogEntry.getTitle(), longUrl, tinyUrl);
-		try {
-			if(getProperty(blogEntry, "simulate") != null) {
-				blogEntry.getBlog().info("Found property 'twitter.simulate' - This would have been posted to twitter with username '" + twitterUsername + "':\n" + msg);
-			} else {
-				post(twitterUrl, twitterUsername, twitterPassword, msg);
-			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		if(getProperty(blogEntry, "simulate") != null) {
+			blogEntry.getBlog().info("Found property 'twitter.simulate' - This would have been posted to twitter with username '" + twitterUsername + "':\n" + msg);
+		} else {
+			// the credentials are looked up again when the status is posted
+			Notification notification = new Notification(Notification.TWITTER, twitterUrl, null);
+			notification.addParameter(TwitterNotificationSender.STATUS, msg);
+			blogEntry.getBlog().getNotificationQueue().enqueue(notification);
 		}
 		log.debug("Blog entry <a href=\"" + longUrl
-				+ "\">" + blogEntry.getTitle() + "</a> tweeted.");
+				+ "\">" + blogEntry.getTitle() + "</a> queued for twitter.");
 	}
 
 	/**
@@ -177,22 +177,6 @@ public class PostToTwitterBlogEntryListener extends BlogEntryListenerSupport {
 		return result;
 	}
 
-	/**
-	 * Post the given message to twitter, using the given postUrl and credentials.
-	 * @param twitterUrl URL to post to
-	 * @param twitterUsername username to post as
-	 * @param twitterPassword password to authenticate username
-	 * @param msg the message to post to twitter.
-	 * @throws Exception
-	 */
-	private void post(String twitterUrl, String twitterUsername,
-			String twitterPassword, String msg) throws Exception {
-		System.out.println("Posting to Twitter: " + msg);
-		Twitter twitter = new Twitter(twitterUsername, twitterPassword, twitterUrl);
-		twitter.updateStatus(msg);
-	}
-
-
 	/**
 	 * create a shortened version of the given url
 	 * @param url
@@ -31,6 +31,7 @@
  */
 package net.sourceforge.pebble.event.blogentry;
 
+import net.sourceforge.pebble.api.event.AsynchronousListener;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
 import net.sourceforge.pebble.audit.AuditTrail;
 import net.sourceforge.pebble.decorator.PubSubHubBubFeedDecorator;
@@ -38,23 +39,22 @@ import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
 import net.sourceforge.pebble.domain.Category;
 import net.sourceforge.pebble.domain.Tag;
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.methods.PostMethod;
+import net.sourceforge.pebble.notification.Notification;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
 /**
  * Listener that posts to a PubSubHubBub Hub when a blog entry is added/published/changed.
+ * Requests are delivered by the blog's notification queue, so that several changes in
+ * quick succession result in a single request to each hub.
  *
  * @author James Roper
  */
-public class PubSubHubBubBlogEntryListener extends BlogEntryListenerSupport {
+public class PubSubHubBubBlogEntryListener extends BlogEntryListenerSupport implements AsynchronousListener {
   private final static String HUB_MODE_PARAM = "hub.mode";
   private final static String HUB_URL_PARAM = "hub.url";
   private final static String HUB_MODE = "publish";
@@ -97,30 +97,20 @@ public class PubSubHubBubBlogEntryListener extends BlogEntryListenerSupport {
     Blog blog = entry.getBlog();
     String blogUrl = blog.getUrl();
     for (String hub : getHubs(blog)) {
-      HttpClient httpClient = new HttpClient();
-      PostMethod method = new PostMethod(hub);
-      method.addParameter(HUB_MODE_PARAM, HUB_MODE);
+      hub = hub.trim();
+      Notification notification = new Notification(Notification.HUB, hub, Notification.HUB + " " + hub);
+      notification.addParameter(HUB_MODE_PARAM, HUB_MODE);
       // Add every feed that might have this
-      method.addParameter(HUB_URL_PARAM, blogUrl + ATOM_XML);
+      notification.addParameter(HUB_URL_PARAM, blogUrl + ATOM_XML);
       for (Category category : entry.getCategories()) {
-        method.addParameter(HUB_URL_PARAM, category.getPermalink() + ATOM_XML);
+        notification.addParameter(HUB_URL_PARAM, category.getPermalink() + ATOM_XML);
       }
       for (Tag tag : entry.getAllTags()) {
-        method.addParameter(HUB_URL_PARAM, tag.getPermalink() + ATOM_XML);
-      }
-      method.addParameter(HUB_URL_PARAM, blogUrl + "authors/" + entry.getAuthor() + "/" + ATOM_XML);
-      try {
-        int rc = httpClient.executeMethod(method);
-        if (rc != HttpServletResponse.SC_NO_CONTENT) {
-          String errorMessage = "Unexpected response code received from hub: " + hub + " - " + rc + " " +
-              method.getStatusText();
-          log.warn(errorMessage);
-          blog.warn(errorMessage);
-        }
-      } catch (IOException e) {
-        log.error("Error posting to hub: " + hub, e);
-        blog.warn("Error publishing to hub: " + hub + ". Message: " + e.getMessage());
+        notification.addParameter(HUB_URL_PARAM, tag.getPermalink() + ATOM_XML);
       }
+      notification.addParameter(HUB_URL_PARAM, blogUrl + "authors/" + entry.getAuthor() + "/" + ATOM_XML);
+      log.debug("Queueing publish request to hub: " + hub);
+      blog.getNotificationQueue().enqueue(notification);
     }
   }
 
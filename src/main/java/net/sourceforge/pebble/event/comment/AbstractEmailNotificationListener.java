@@ -33,6 +33,7 @@ package net.sourceforge.pebble.event.comment;
 
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.Comment;
+import net.sourceforge.pebble.api.event.AsynchronousListener;
 import net.sourceforge.pebble.api.decorator.ContentDecoratorContext;
 import net.sourceforge.pebble.api.event.comment.CommentEvent;
 import net.sourceforge.pebble.util.MailUtils;
@@ -53,7 +54,7 @@ import java.util.Map;
  *
  * @author Simon Brown
  */
-public abstract class AbstractEmailNotificationListener extends CommentListenerSupport {
+public abstract class AbstractEmailNotificationListener extends CommentListenerSupport implements AsynchronousListener {
 
   /**
    * a token to be replaced when sending e-mails
@@ -87,6 +88,8 @@ public abstract class AbstractEmailNotificationListener extends CommentListenerS
   private void sendNotification(Comment comment) {
     Blog blog = comment.getBlogEntry().getBlog();
 
+    // decorate a copy, as this is called in the background and the comment may be being displayed
+    comment = (Comment)comment.clone();
     ContentDecoratorContext context = new ContentDecoratorContext();
     context.setView(ContentDecoratorContext.DETAIL_VIEW);
     context.setMedia(ContentDecoratorContext.EMAIL);
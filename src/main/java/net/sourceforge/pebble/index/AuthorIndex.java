@@ -45,7 +45,7 @@ import java.util.*;
  *
  * @author    Simon Brown
  */
-public class AuthorIndex {
+public class AuthorIndex implements ReindexableIndex {
 
   private static final Log log = LogFactory.getLog(AuthorIndex.class);
 
@@ -75,12 +75,46 @@ public class AuthorIndex {
    */
   public synchronized void index(Collection<BlogEntry> blogEntries) {
     for (BlogEntry blogEntry : blogEntries) {
-      if (blogEntry.isPublished()) {
-        List<String> blogEntryIds = getBlogEntries(blogEntry.getAuthor());
-        blogEntryIds.add(blogEntry.getId());
-        Collections.sort(blogEntryIds, new ReverseBlogEntryIdComparator());
+      add(blogEntry);
+    }
+
+    finish();
+  }
+
+  /**
+   * Adds a blog entry to the index, without sorting or writing the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void add(BlogEntry blogEntry) {
+    if (blogEntry.isPublished()) {
+      getBlogEntries(blogEntry.getAuthor()).add(blogEntry.getId());
+    }
+  }
+
+  /**
+   * Removes a blog entry from the index, without writing the index.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public synchronized void remove(String blogEntryId) {
+    Iterator<List<String>> it = authors.values().iterator();
+    while (it.hasNext()) {
+      List<String> blogEntryIds = it.next();
+      // a blog entry saved during a reindex can have been added twice
+      if (blogEntryIds.removeAll(Collections.singleton(blogEntryId)) && blogEntryIds.isEmpty()) {
+        it.remove();
       }
     }
+  }
+
+  /**
+   * Sorts and writes the index, once blog entries have been added.
+   */
+  public synchronized void finish() {
+    for (List<String> blogEntryIds : authors.values()) {
+      Collections.sort(blogEntryIds, new ReverseBlogEntryIdComparator());
+    }
 
     writeIndex();
   }
@@ -122,27 +156,14 @@ public class AuthorIndex {
    * Helper method to load the index.
    */
   private void readIndex() {
-    File indexFile = new File(blog.getIndexesDirectory(), "authors.index");
+    IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "authors.index"), true);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String indexEntry = reader.readLine();
-        while (indexEntry != null) {
-          String[] tuple = indexEntry.split("=");
-          String author = tuple[0];
-          List<String> blogEntries = getBlogEntries(author);
-
-          if (tuple.length > 1 && tuple[1] != null) {
-            String[] blogEntryIds = tuple[1].split(",");
-            for (String blogEntry : blogEntryIds) {
-              blogEntries.add(blogEntry);
-            }
+        indexFile.read(new IndexFile.RecordHandler() {
+          public void record(String key, List<String> values) {
+            getBlogEntries(key).addAll(values);
           }
-
-          indexEntry = reader.readLine();
-        }
-
-        reader.close();
+        });
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -154,24 +175,8 @@ public class AuthorIndex {
    */
   private void writeIndex() {
     try {
-      File indexFile = new File(blog.getIndexesDirectory(), "authors.index");
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
-      for (String author : authors.keySet()) {
-        writer.write(author);
-        writer.write("=");
-        List<String> blogEntries = authors.get(author);
-        if (blogEntries != null) {
-          for (String blogEntry : blogEntries) {
-            writer.write(blogEntry);
-            writer.write(",");
-          }
-        }
-        writer.newLine();
-      }
-
-      writer.flush();
-      writer.close();
+      IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "authors.index"), true);
+      indexFile.write(authors, blog.isBinaryIndexesEnabled());
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
@@ -35,7 +35,6 @@ package net.sourceforge.pebble.index;
 import net.sourceforge.pebble.comparator.ReverseBlogEntryIdComparator;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
-import net.sourceforge.pebble.domain.Day;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -47,7 +46,7 @@ import java.util.*;
  *
  * @author    Simon Brown
  */
-public class BlogEntryIndex {
+public class BlogEntryIndex implements ReindexableIndex {
 
   private static final Log log = LogFactory.getLog(BlogEntryIndex.class);
 
@@ -57,6 +56,9 @@ public class BlogEntryIndex {
   private List<String> publishedIndexEntries = new ArrayList<String>();
   private List<String> unpublishedIndexEntries = new ArrayList<String>();
 
+  /** false while blog entries are being added, until the index is finished */
+  private boolean sorted = true;
+
   public BlogEntryIndex(Blog blog) {
     this.blog = blog;
 
@@ -71,6 +73,7 @@ public class BlogEntryIndex {
     indexEntries = new ArrayList<String>();
     publishedIndexEntries = new ArrayList<String>();
     unpublishedIndexEntries = new ArrayList<String>();
+    sorted = true;
     writeIndex(true);
     writeIndex(false);
   }
@@ -82,20 +85,48 @@ public class BlogEntryIndex {
    */
   public synchronized void index(Collection<BlogEntry> blogEntries) {
     for (BlogEntry blogEntry : blogEntries) {
-      Day day = blog.getBlogForDay(blogEntry.getDate());
-      if (blogEntry.isPublished()) {
-        publishedIndexEntries.add(blogEntry.getId());
-        day.addPublishedBlogEntry(blogEntry.getId());
-      } else {
-        unpublishedIndexEntries.add(blogEntry.getId());
-        day.addUnpublishedBlogEntry(blogEntry.getId());
-      }
-      indexEntries.add(blogEntry.getId());
+      add(blogEntry);
+    }
+
+    finish();
+  }
+
+  /**
+   * Adds a blog entry to the index, without sorting or writing the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void add(BlogEntry blogEntry) {
+    if (blogEntry.isPublished()) {
+      publishedIndexEntries.add(blogEntry.getId());
+    } else {
+      unpublishedIndexEntries.add(blogEntry.getId());
     }
+    indexEntries.add(blogEntry.getId());
+    sorted = false;
+  }
+
+  /**
+   * Removes a blog entry from the index, without writing the index.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public synchronized void remove(String blogEntryId) {
+    // a blog entry saved during a reindex can have been added twice
+    Set<String> ids = Collections.singleton(blogEntryId);
+    indexEntries.removeAll(ids);
+    publishedIndexEntries.removeAll(ids);
+    unpublishedIndexEntries.removeAll(ids);
+  }
 
+  /**
+   * Sorts and writes the index, once blog entries have been added.
+   */
+  public synchronized void finish() {
     Collections.sort(indexEntries, new ReverseBlogEntryIdComparator());
     Collections.sort(publishedIndexEntries, new ReverseBlogEntryIdComparator());
     Collections.sort(unpublishedIndexEntries, new ReverseBlogEntryIdComparator());
+    sorted = true;
 
     writeIndex(true);
     writeIndex(false);
@@ -107,14 +138,11 @@ public class BlogEntryIndex {
    * @param blogEntry   a BlogEntry instance
    */
   public synchronized void index(BlogEntry blogEntry) {
-    Day day = blog.getBlogForDay(blogEntry.getDate());
     if (blogEntry.isPublished()) {
       publishedIndexEntries.add(blogEntry.getId());
-      day.addPublishedBlogEntry(blogEntry.getId());
       writeIndex(true);
     } else {
       unpublishedIndexEntries.add(blogEntry.getId());
-      day.addUnpublishedBlogEntry(blogEntry.getId());
       writeIndex(false);
     }
     indexEntries.add(blogEntry.getId());
@@ -130,9 +158,6 @@ public class BlogEntryIndex {
    * @param blogEntry   a BlogEntry instance
    */
   public synchronized void unindex(BlogEntry blogEntry) {
-    Day day = blog.getBlogForDay(blogEntry.getDate());
-    day.removeBlogEntry(blogEntry);
-
     indexEntries.remove(blogEntry.getId());
     publishedIndexEntries.remove(blogEntry.getId());
     unpublishedIndexEntries.remove(blogEntry.getId());
@@ -145,36 +170,16 @@ public class BlogEntryIndex {
    * Helper method to load the index.
    */
   private void readIndex(boolean published) {
-    File indexFile;
-    if (published) {
-      indexFile = new File(blog.getIndexesDirectory(), "blogentries-published.index");
-    } else {
-      indexFile = new File(blog.getIndexesDirectory(), "blogentries-unpublished.index");
-    }
-
+    IndexFile indexFile = getIndexFile(published);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String indexEntry = reader.readLine();
-        while (indexEntry != null) {
-          indexEntries.add(indexEntry);
-
-          // and add it to the internal memory structures
-          Date date = new Date(Long.parseLong(indexEntry));
-          Day day = blog.getBlogForDay(date);
-
-          if (published) {
-            publishedIndexEntries.add(indexEntry);
-            day.addPublishedBlogEntry(indexEntry);
-          } else {
-            unpublishedIndexEntries.add(indexEntry);
-            day.addUnpublishedBlogEntry(indexEntry);
-          }
-
-          indexEntry = reader.readLine();
+        List<String> blogEntryIds = indexFile.readValues();
+        indexEntries.addAll(blogEntryIds);
+        if (published) {
+          publishedIndexEntries.addAll(blogEntryIds);
+        } else {
+          unpublishedIndexEntries.addAll(blogEntryIds);
         }
-
-        reader.close();
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -190,33 +195,24 @@ public class BlogEntryIndex {
    */
   private void writeIndex(boolean published) {
     try {
-      File indexFile;
-      if (published) {
-        indexFile = new File(blog.getIndexesDirectory(), "blogentries-published.index");
-      } else {
-        indexFile = new File(blog.getIndexesDirectory(), "blogentries-unpublished.index");
-      }
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
       if (published) {
-        for (String indexEntry : publishedIndexEntries) {
-          writer.write(indexEntry);
-          writer.newLine();
-        }
+        getIndexFile(true).writeValues(publishedIndexEntries, blog.isBinaryIndexesEnabled());
       } else {
-        for (String indexEntry : unpublishedIndexEntries) {
-          writer.write(indexEntry);
-          writer.newLine();
-        }
+        getIndexFile(false).writeValues(unpublishedIndexEntries, blog.isBinaryIndexesEnabled());
       }
-
-      writer.flush();
-      writer.close();
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
   }
 
+  private IndexFile getIndexFile(boolean published) {
+    if (published) {
+      return new IndexFile(new File(blog.getIndexesDirectory(), "blogentries-published.index"), false);
+    } else {
+      return new IndexFile(new File(blog.getIndexesDirectory(), "blogentries-unpublished.index"), false);
+    }
+  }
+
   /**
    * Gets the number of blog entries for this blog.
    *
@@ -271,4 +267,115 @@ public class BlogEntryIndex {
     return new ArrayList<String>(unpublishedIndexEntries);
   }
 
+  /**
+   * Gets the blog entries (published and unpublished) posted in the given
+   * time range. This is what the Day and Month archives are built on, so that
+   * they don't need to keep their own lists of blog entries.
+   *
+   * @param from    the start of the range, in milliseconds (inclusive)
+   * @param to      the end of the range, in milliseconds (exclusive)
+   * @return  a List of blog entry IDs, most recent first
+   */
+  public synchronized List<String> getBlogEntries(long from, long to) {
+    return getRange(indexEntries, from, to);
+  }
+
+  /**
+   * Gets the published blog entries posted in the given time range.
+   *
+   * @param from    the start of the range, in milliseconds (inclusive)
+   * @param to      the end of the range, in milliseconds (exclusive)
+   * @return  a List of blog entry IDs, most recent first
+   */
+  public synchronized List<String> getPublishedBlogEntries(long from, long to) {
+    return getRange(publishedIndexEntries, from, to);
+  }
+
+  /**
+   * Gets the number of published blog entries posted in the given time range.
+   *
+   * @param from    the start of the range, in milliseconds (inclusive)
+   * @param to      the end of the range, in milliseconds (exclusive)
+   * @return  the number of blog entries
+   */
+  public synchronized int getNumberOfPublishedBlogEntries(long from, long to) {
+    if (sorted) {
+      return Math.max(0, indexOf(publishedIndexEntries, from) - indexOf(publishedIndexEntries, to));
+    } else {
+      return getRange(publishedIndexEntries, from, to).size();
+    }
+  }
+
+  /**
+   * Gets the most recent published blog entry posted before the given time.
+   *
+   * @param time    a time in milliseconds
+   * @return  a blog entry ID, or null if there isn't one
+   */
+  public synchronized String getPublishedBlogEntryBefore(long time) {
+    List<String> blogEntryIds = getRange(publishedIndexEntries, Long.MIN_VALUE, time);
+    return blogEntryIds.isEmpty() ? null : blogEntryIds.get(0);
+  }
+
+  /**
+   * Gets the earliest published blog entry posted after the given time, and
+   * before the given limit.
+   *
+   * @param time    a time in milliseconds
+   * @param limit   a time in milliseconds (exclusive)
+   * @return  a blog entry ID, or null if there isn't one
+   */
+  public synchronized String getPublishedBlogEntryAfter(long time, long limit) {
+    if (sorted) {
+      int start = indexOf(publishedIndexEntries, limit);
+      int end = indexOf(publishedIndexEntries, time + 1);
+      return start < end ? publishedIndexEntries.get(end - 1) : null;
+    } else {
+      List<String> blogEntryIds = getRange(publishedIndexEntries, time + 1, limit);
+      return blogEntryIds.isEmpty() ? null : blogEntryIds.get(blogEntryIds.size() - 1);
+    }
+  }
+
+  private List<String> getRange(List<String> blogEntryIds, long from, long to) {
+    if (sorted) {
+      int start = indexOf(blogEntryIds, to);
+      int end = indexOf(blogEntryIds, from);
+      if (start < end) {
+        return new ArrayList<String>(blogEntryIds.subList(start, end));
+      } else {
+        return new ArrayList<String>();
+      }
+    } else {
+      // blog entries are being added and aren't in order yet
+      List<String> range = new ArrayList<String>();
+      for (String blogEntryId : blogEntryIds) {
+        long time = Long.parseLong(blogEntryId);
+        if (time >= from && time < to) {
+          range.add(blogEntryId);
+        }
+      }
+      Collections.sort(range, new ReverseBlogEntryIdComparator());
+      return range;
+    }
+  }
+
+  /**
+   * Finds the position of the first blog entry earlier than the given time,
+   * in a list of blog entry IDs sorted most recent first.
+   */
+  private int indexOf(List<String> blogEntryIds, long time) {
+    int low = 0;
+    int high = blogEntryIds.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Long.parseLong(blogEntryIds.get(mid)) >= time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.dao.BlogEntryDAO;
+import net.sourceforge.pebble.dao.DAOFactory;
+import net.sourceforge.pebble.dao.PersistenceException;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rebuilds a number of indexes from every blog entry in a blog. Blog entries
+ * are loaded by several threads and streamed, through a small bounded queue
+ * per index, to a thread for each index; so all indexes are built at the
+ * same time without every blog entry being held in memory.
+ *
+ * @author    Simon Brown
+ */
+public class BlogEntryReindexer {
+
+  /** the log used by this class */
+  private static final Log log = LogFactory.getLog(BlogEntryReindexer.class);
+
+  /** the number of loaded blog entries that each index can fall behind by */
+  private static final int QUEUE_SIZE = 64;
+
+  /** the most threads used to load blog entries */
+  private static final int MAX_LOADERS = 8;
+
+  private final Blog blog;
+  private final List<ReindexableIndex> indexes;
+  private final int numberOfLoaders;
+
+  /** put on each queue to say that there are no more blog entries */
+  private final BlogEntry endOfBlogEntries;
+
+  private volatile boolean cancelled = false;
+  private volatile boolean finished = false;
+  private volatile int numberOfBlogEntries = 0;
+  private final AtomicInteger numberOfBlogEntriesLoaded = new AtomicInteger();
+  private final AtomicInteger numberOfFailures = new AtomicInteger();
+  private final AtomicInteger[] numberOfBlogEntriesIndexed;
+  private volatile long startTime;
+  private volatile long endTime;
+
+  /**
+   * Creates a new instance, loading with one thread per processor.
+   *
+   * @param blog      the Blog to reindex
+   * @param indexes   the indexes to rebuild
+   */
+  public BlogEntryReindexer(Blog blog, List<ReindexableIndex> indexes) {
+    this(blog, indexes, Math.min(MAX_LOADERS, Runtime.getRuntime().availableProcessors()));
+  }
+
+  BlogEntryReindexer(Blog blog, List<ReindexableIndex> indexes, int numberOfLoaders) {
+    this.blog = blog;
+    this.indexes = new ArrayList<ReindexableIndex>(indexes);
+    this.numberOfLoaders = Math.max(1, numberOfLoaders);
+    this.endOfBlogEntries = new BlogEntry(blog);
+
+    numberOfBlogEntriesIndexed = new AtomicInteger[indexes.size()];
+    for (int i = 0; i < numberOfBlogEntriesIndexed.length; i++) {
+      numberOfBlogEntriesIndexed[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Clears and rebuilds the indexes, returning once they have all been
+   * finished or the reindex has been cancelled.
+   *
+   * @throws PersistenceException   if the blog entries can't be listed
+   */
+  public void reindex() throws PersistenceException {
+    startTime = System.currentTimeMillis();
+    ExecutorService executor = null;
+    try {
+      final BlogEntryDAO dao = DAOFactory.getConfiguredFactory().getBlogEntryDAO();
+      final List<String> blogEntryIds = new ArrayList<String>(dao.loadBlogEntryIds(blog));
+      numberOfBlogEntries = blogEntryIds.size();
+
+      for (ReindexableIndex index : indexes) {
+        index.clear();
+      }
+
+      executor = Executors.newFixedThreadPool(numberOfLoaders + indexes.size(), new ThreadFactory() {
+        private int count = 0;
+        public synchronized Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "pebble-reindex-" + blog.getId() + "-" + (++count));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+      final List<BlockingQueue<BlogEntry>> queues = new ArrayList<BlockingQueue<BlogEntry>>();
+      for (int i = 0; i < indexes.size(); i++) {
+        BlockingQueue<BlogEntry> queue = new ArrayBlockingQueue<BlogEntry>(QUEUE_SIZE);
+        queues.add(queue);
+        executor.execute(new IndexTask(indexes.get(i), queue, numberOfBlogEntriesIndexed[i]));
+      }
+
+      final AtomicInteger next = new AtomicInteger();
+      final AtomicInteger loadersRunning = new AtomicInteger(numberOfLoaders);
+      for (int i = 0; i < numberOfLoaders; i++) {
+        executor.execute(new Runnable() {
+          public void run() {
+            try {
+              int i = next.getAndIncrement();
+              while (i < blogEntryIds.size() && !cancelled) {
+                BlogEntry blogEntry = load(dao, blogEntryIds.get(i));
+                if (blogEntry != null) {
+                  for (BlockingQueue<BlogEntry> queue : queues) {
+                    queue.put(blogEntry);
+                  }
+                }
+                i = next.getAndIncrement();
+              }
+            } catch (InterruptedException ie) {
+              cancelled = true;
+            } finally {
+              // the last loader to finish tells the indexes that there's nothing more to come
+              if (loadersRunning.decrementAndGet() == 0) {
+                for (BlockingQueue<BlogEntry> queue : queues) {
+                  try {
+                    queue.put(endOfBlogEntries);
+                  } catch (InterruptedException ie) {
+                    log.error("Interrupted while ending reindex", ie);
+                  }
+                }
+              }
+            }
+          }
+        });
+      }
+
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ie) {
+      cancelled = true;
+      Thread.currentThread().interrupt();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+      endTime = System.currentTimeMillis();
+      finished = true;
+    }
+  }
+
+  private BlogEntry load(BlogEntryDAO dao, String blogEntryId) {
+    try {
+      BlogEntry blogEntry = dao.loadBlogEntry(blog, blogEntryId);
+      if (blogEntry == null) {
+        numberOfFailures.incrementAndGet();
+      }
+      return blogEntry;
+    } catch (PersistenceException pe) {
+      log.error("Error loading blog entry " + blogEntryId, pe);
+      numberOfFailures.incrementAndGet();
+      return null;
+    } finally {
+      numberOfBlogEntriesLoaded.incrementAndGet();
+    }
+  }
+
+  /**
+   * Stops the reindex as soon as possible, leaving the indexes incomplete.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Gets the number of blog entries being reindexed.
+   *
+   * @return  the number of blog entries
+   */
+  public int getNumberOfBlogEntries() {
+    return numberOfBlogEntries;
+  }
+
+  /**
+   * Gets the number of blog entries loaded so far.
+   *
+   * @return  the number of blog entries
+   */
+  public int getNumberOfBlogEntriesLoaded() {
+    return numberOfBlogEntriesLoaded.get();
+  }
+
+  /**
+   * Gets the number of blog entries added to every index so far.
+   *
+   * @return  the number of blog entries
+   */
+  public int getNumberOfBlogEntriesIndexed() {
+    int min = numberOfBlogEntries;
+    for (AtomicInteger count : numberOfBlogEntriesIndexed) {
+      min = Math.min(min, count.get());
+    }
+    return min;
+  }
+
+  /**
+   * Gets the number of blog entries that couldn't be loaded.
+   *
+   * @return  the number of blog entries
+   */
+  public int getNumberOfFailures() {
+    return numberOfFailures.get();
+  }
+
+  /**
+   * Gets the percentage of blog entries that have been indexed.
+   *
+   * @return  an int between 0 and 100
+   */
+  public int getPercentageComplete() {
+    if (numberOfBlogEntries == 0) {
+      return finished ? 100 : 0;
+    } else {
+      return (int)(100L * (getNumberOfBlogEntriesIndexed() + getNumberOfFailures()) / numberOfBlogEntries);
+    }
+  }
+
+  /**
+   * Gets how long the reindex has taken so far.
+   *
+   * @return  the time in milliseconds
+   */
+  public long getElapsedTime() {
+    return (finished ? endTime : System.currentTimeMillis()) - startTime;
+  }
+
+  /**
+   * Takes blog entries from a queue and adds them to an index, until told
+   * that there are no more.
+   */
+  private class IndexTask implements Runnable {
+
+    private final ReindexableIndex index;
+    private final BlockingQueue<BlogEntry> queue;
+    private final AtomicInteger count;
+
+    IndexTask(ReindexableIndex index, BlockingQueue<BlogEntry> queue, AtomicInteger count) {
+      this.index = index;
+      this.queue = queue;
+      this.count = count;
+    }
+
+    public void run() {
+      try {
+        BlogEntry blogEntry = queue.take();
+        while (blogEntry != endOfBlogEntries) {
+          if (!cancelled) {
+            try {
+              index.add(blogEntry);
+            } catch (RuntimeException e) {
+              log.error("Error indexing blog entry " + blogEntry.getId(), e);
+            }
+            count.incrementAndGet();
+          }
+          blogEntry = queue.take();
+        }
+      } catch (InterruptedException ie) {
+        cancelled = true;
+      } catch (Error e) {
+        // stop the loaders, and keep emptying the queue so that none of them
+        // are left waiting to put another blog entry on it
+        cancelled = true;
+        log.error("Error reindexing, so the reindex has been cancelled", e);
+        drain();
+        throw e;
+      } finally {
+        index.finish();
+      }
+    }
+
+    private void drain() {
+      try {
+        while (queue.take() != endOfBlogEntries) {
+          // discard
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+}
@@ -38,8 +38,11 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Collection;
+import java.util.Map;
 import java.io.*;
 
 /**
@@ -47,12 +50,15 @@ import java.io.*;
  *
  * @author    Simon Brown
  */
-public class CategoryIndex {
+public class CategoryIndex implements ReindexableIndex {
 
   private static final Log log = LogFactory.getLog(CategoryIndex.class);
 
   private Blog blog;
 
+  /** the blog entries added but not yet indexed, keyed on category */
+  private Map<Category,List<String>> addedBlogEntries = new HashMap<Category,List<String>>();
+
   public CategoryIndex(Blog blog) {
     this.blog = blog;
 
@@ -81,12 +87,49 @@ public class CategoryIndex {
    */
   public synchronized void index(Collection<BlogEntry> blogEntries) {
     for (BlogEntry blogEntry : blogEntries) {
-      if (blogEntry.isPublished()) {
-        for (Category category: blogEntry.getCategories()) {
-          category.addBlogEntry(blogEntry.getId());
+      add(blogEntry);
+    }
+
+    finish();
+  }
+
+  /**
+   * Adds a blog entry to the index, without sorting or writing the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void add(BlogEntry blogEntry) {
+    if (blogEntry.isPublished()) {
+      for (Category category : blogEntry.getCategories()) {
+        List<String> blogEntryIds = addedBlogEntries.get(category);
+        if (blogEntryIds == null) {
+          blogEntryIds = new ArrayList<String>();
+          addedBlogEntries.put(category, blogEntryIds);
         }
+        blogEntryIds.add(blogEntry.getId());
       }
     }
+  }
+
+  /**
+   * Removes a blog entry from the index, without writing the index.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public synchronized void remove(String blogEntryId) {
+    for (Category category : blog.getCategories()) {
+      category.removeBlogEntry(blogEntryId);
+    }
+  }
+
+  /**
+   * Indexes the blog entries that have been added, and writes the index.
+   */
+  public synchronized void finish() {
+    for (Category category : addedBlogEntries.keySet()) {
+      category.addBlogEntries(addedBlogEntries.get(category));
+    }
+    addedBlogEntries = new HashMap<Category,List<String>>();
 
     writeIndex();
   }
@@ -123,26 +166,14 @@ public class CategoryIndex {
    * Helper method to load the index.
    */
   private void readIndex() {
-    File indexFile = new File(blog.getIndexesDirectory(), "categories.index");
+    IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "categories.index"), true);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String indexEntry = reader.readLine();
-        while (indexEntry != null) {
-          String[] tuple = indexEntry.split("=");
-          Category category = blog.getCategory(tuple[0]);
-
-          if (tuple.length > 1 && tuple[1] != null) {
-            String[] blogEntries = tuple[1].split(",");
-            for (String blogEntry : blogEntries) {
-              category.addBlogEntry(blogEntry);
-            }
+        indexFile.read(new IndexFile.RecordHandler() {
+          public void record(String key, List<String> values) {
+            blog.getCategory(key).addBlogEntries(values);
           }
-
-          indexEntry = reader.readLine();
-        }
-
-        reader.close();
+        });
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -154,21 +185,13 @@ public class CategoryIndex {
    */
   private void writeIndex() {
     try {
-      File indexFile = new File(blog.getIndexesDirectory(), "categories.index");
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
+      Map<String,List<String>> records = new LinkedHashMap<String,List<String>>();
       for (Category category : blog.getCategories()) {
-        writer.write(category.getId());
-        writer.write("=");
-        for (String blogEntry : category.getBlogEntries()) {
-          writer.write(blogEntry);
-          writer.write(",");
-        }
-        writer.newLine();
+        records.put(category.getId(), category.getBlogEntries());
       }
 
-      writer.flush();
-      writer.close();
+      IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "categories.index"), true);
+      indexFile.write(records, blog.isBinaryIndexesEnabled());
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
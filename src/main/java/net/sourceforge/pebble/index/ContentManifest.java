@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.dao.file.BlogEntryFilenameFilter;
+import net.sourceforge.pebble.dao.file.FourDigitFilenameFilter;
+import net.sourceforge.pebble.dao.file.TwoDigitFilenameFilter;
+import net.sourceforge.pebble.domain.Blog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Records the size, modification time and checksum of every blog entry and
+ * static page file at the time the indexes were last brought up to date, so
+ * that only the files that have since been added, changed or removed need to
+ * be reindexed. The manifest is kept with the other indexes.
+ *
+ * @author    Simon Brown
+ */
+public class ContentManifest {
+
+  private static final Log log = LogFactory.getLog(ContentManifest.class);
+
+  private static final String MANIFEST_FILE = "content.manifest";
+  private static final String TIME_ZONE = "timeZone=";
+  private static final String BLOG_ENTRY = "e";
+  private static final String STATIC_PAGE = "p";
+  private static final String STATIC_PAGES_DIRECTORY_NAME = "pages";
+
+  private Blog blog;
+
+  /** the time zone the indexes were built with, or null if there's no manifest */
+  private String timeZoneId;
+  private Map<String,Entry> blogEntries = new HashMap<String,Entry>();
+  private Map<String,Entry> staticPages = new HashMap<String,Entry>();
+
+  public ContentManifest(Blog blog) {
+    this.blog = blog;
+
+    readManifest();
+  }
+
+  /**
+   * Determines whether a manifest has been written for the blog.
+   *
+   * @return  true if the manifest exists and could be read, false otherwise
+   */
+  public boolean exists() {
+    return timeZoneId != null;
+  }
+
+  /**
+   * Scans the blog entry and static page files, comparing them with the
+   * manifest. Files whose size and modification time are unchanged are
+   * assumed to be unchanged, otherwise their checksum is compared. The
+   * manifest is updated to reflect the files on disk, ready to be written
+   * once the changes have been indexed.
+   *
+   * @return  the changes found
+   */
+  public synchronized Changes scan() {
+    Changes changes = new Changes();
+    changes.timeZoneChanged = !blog.getTimeZoneId().equals(timeZoneId);
+
+    blogEntries = scan(getBlogEntryFiles(), blogEntries, changes.changedBlogEntries, changes.removedBlogEntries);
+    staticPages = scan(getStaticPageFiles(), staticPages, changes.changedStaticPages, changes.removedStaticPages);
+    timeZoneId = blog.getTimeZoneId();
+
+    return changes;
+  }
+
+  private Map<String,Entry> scan(Map<String,File> files, Map<String,Entry> previousEntries, Set<String> changed, Set<String> removed) {
+    Map<String,Entry> entries = new HashMap<String,Entry>();
+    for (String id : files.keySet()) {
+      File file = files.get(id);
+      Entry previous = previousEntries.get(id);
+      long length = file.length();
+      long lastModified = file.lastModified();
+
+      if (previous != null && previous.length == length && previous.lastModified == lastModified) {
+        entries.put(id, previous);
+      } else {
+        long checksum = checksum(file);
+        if (previous == null || previous.checksum != checksum) {
+          changed.add(id);
+        }
+        entries.put(id, new Entry(length, lastModified, checksum));
+      }
+    }
+
+    for (String id : previousEntries.keySet()) {
+      if (!files.containsKey(id)) {
+        removed.add(id);
+      }
+    }
+
+    return entries;
+  }
+
+  /**
+   * Writes the manifest, as of the last scan.
+   */
+  public synchronized void write() {
+    try {
+      File manifestFile = new File(blog.getIndexesDirectory(), MANIFEST_FILE);
+      BufferedWriter writer = new BufferedWriter(new FileWriter(manifestFile));
+      writer.write(TIME_ZONE + timeZoneId);
+      writer.newLine();
+      writeEntries(writer, BLOG_ENTRY, blogEntries);
+      writeEntries(writer, STATIC_PAGE, staticPages);
+      writer.flush();
+      writer.close();
+    } catch (Exception e) {
+      log.error("Error while writing manifest", e);
+    }
+  }
+
+  private void writeEntries(BufferedWriter writer, String type, Map<String,Entry> entries) throws IOException {
+    for (String id : entries.keySet()) {
+      Entry entry = entries.get(id);
+      writer.write(type + "," + id + "," + entry.length + "," + entry.lastModified + "," + entry.checksum);
+      writer.newLine();
+    }
+  }
+
+  /**
+   * Writes an empty manifest, without a time zone, so that the indexes will
+   * be rebuilt in full unless the manifest is written again.
+   */
+  public synchronized void invalidate() {
+    timeZoneId = "";
+    blogEntries = new HashMap<String,Entry>();
+    staticPages = new HashMap<String,Entry>();
+    write();
+  }
+
+  /**
+   * Helper method to load the manifest.
+   */
+  private void readManifest() {
+    File manifestFile = new File(blog.getIndexesDirectory(), MANIFEST_FILE);
+    if (manifestFile.exists()) {
+      try {
+        BufferedReader reader = new BufferedReader(new FileReader(manifestFile));
+        try {
+          String line = reader.readLine();
+          if (line == null || !line.startsWith(TIME_ZONE)) {
+            throw new IOException("Missing time zone in " + manifestFile.getAbsolutePath());
+          }
+          String manifestTimeZoneId = line.substring(TIME_ZONE.length());
+
+          line = reader.readLine();
+          while (line != null) {
+            String[] fields = line.split(",");
+            Entry entry = new Entry(Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+            if (fields[0].equals(BLOG_ENTRY)) {
+              blogEntries.put(fields[1], entry);
+            } else {
+              staticPages.put(fields[1], entry);
+            }
+            line = reader.readLine();
+          }
+
+          timeZoneId = manifestTimeZoneId;
+        } finally {
+          reader.close();
+        }
+      } catch (Exception e) {
+        log.error("Error while reading manifest", e);
+        blogEntries.clear();
+        staticPages.clear();
+      }
+    }
+  }
+
+  private Map<String,File> getBlogEntryFiles() {
+    Map<String,File> files = new HashMap<String,File>();
+    File years[] = new File(blog.getRoot()).listFiles(new FourDigitFilenameFilter());
+    if (years != null) {
+      for (File year : years) {
+        File months[] = year.listFiles(new TwoDigitFilenameFilter());
+        for (File month : months) {
+          File days[] = month.listFiles(new TwoDigitFilenameFilter());
+          for (File day : days) {
+            for (File file : day.listFiles(new BlogEntryFilenameFilter())) {
+              files.put(getId(file), file);
+            }
+          }
+        }
+      }
+    }
+
+    return files;
+  }
+
+  private Map<String,File> getStaticPageFiles() {
+    Map<String,File> files = new HashMap<String,File>();
+    File directories[] = new File(blog.getRoot(), STATIC_PAGES_DIRECTORY_NAME).listFiles();
+    if (directories != null) {
+      for (File directory : directories) {
+        File file = new File(directory, directory.getName() + ".xml");
+        if (directory.getName().matches("\\d+") && file.isFile()) {
+          files.put(directory.getName(), file);
+        }
+      }
+    }
+
+    return files;
+  }
+
+  private String getId(File file) {
+    String name = file.getName();
+    return name.substring(0, name.length() - ".xml".length());
+  }
+
+  private long checksum(File file) {
+    try {
+      CheckedInputStream in = new CheckedInputStream(new FileInputStream(file), new CRC32());
+      try {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+          // the checksum is calculated as the file is read
+        }
+        return in.getChecksum().getValue();
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      log.warn("Could not calculate checksum for " + file.getAbsolutePath(), e);
+
+      // CRC32 values are never negative, so the file will always be reindexed
+      return -1;
+    }
+  }
+
+  /**
+   * The recorded state of a single file.
+   */
+  private static class Entry {
+
+    private final long length;
+    private final long lastModified;
+    private final long checksum;
+
+    Entry(long length, long lastModified, long checksum) {
+      this.length = length;
+      this.lastModified = lastModified;
+      this.checksum = checksum;
+    }
+
+  }
+
+  /**
+   * The blog entries and static pages that have been added, changed or
+   * removed since the manifest was last written.
+   */
+  public static class Changes {
+
+    private boolean timeZoneChanged;
+    private Set<String> changedBlogEntries = new TreeSet<String>();
+    private Set<String> removedBlogEntries = new TreeSet<String>();
+    private Set<String> changedStaticPages = new TreeSet<String>();
+    private Set<String> removedStaticPages = new TreeSet<String>();
+
+    /**
+     * Determines whether the time zone of the blog differs from the one the
+     * indexes were built with, in which case they all need rebuilding.
+     */
+    public boolean isTimeZoneChanged() {
+      return timeZoneChanged;
+    }
+
+    /**
+     * Gets the IDs of blog entries that have been added or changed.
+     */
+    public Set<String> getChangedBlogEntries() {
+      return changedBlogEntries;
+    }
+
+    /**
+     * Gets the IDs of blog entries that have been removed.
+     */
+    public Set<String> getRemovedBlogEntries() {
+      return removedBlogEntries;
+    }
+
+    /**
+     * Gets the IDs of static pages that have been added or changed.
+     */
+    public Set<String> getChangedStaticPages() {
+      return changedStaticPages;
+    }
+
+    /**
+     * Gets the IDs of static pages that have been removed.
+     */
+    public Set<String> getRemovedStaticPages() {
+      return removedStaticPages;
+    }
+
+    public boolean hasBlogEntryChanges() {
+      return !changedBlogEntries.isEmpty() || !removedBlogEntries.isEmpty();
+    }
+
+    public boolean hasStaticPageChanges() {
+      return !changedStaticPages.isEmpty() || !removedStaticPages.isEmpty();
+    }
+
+    public String toString() {
+      return changedBlogEntries.size() + " changed and " + removedBlogEntries.size() + " removed blog entries, " +
+          changedStaticPages.size() + " changed and " + removedStaticPages.size() + " removed static pages";
+    }
+
+  }
+
+}
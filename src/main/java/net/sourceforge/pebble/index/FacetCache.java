@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Holds, for each facet value in the search index, the set of documents
+ * having that value as a bitset. Facet counts for a set of search results
+ * are then computed by intersecting bitsets, so their cost depends on the
+ * number of facet values and documents rather than the number of hits.
+ *
+ * @author    Simon Brown
+ */
+class FacetCache {
+
+  /** the prefix given to the names of facet fields in the index */
+  static final String FIELD_PREFIX = "facet.";
+
+  private final int maxDoc;
+
+  /** facet name -> facet value -> document bitset */
+  private final Map<String,Map<String,long[]>> facets = new HashMap<String,Map<String,long[]>>();
+
+  /**
+   * Reads the facet fields of every document in the index.
+   *
+   * @param reader    an open IndexReader
+   * @param names     the names of the facets to read
+   * @throws IOException  if the index can't be read
+   */
+  FacetCache(IndexReader reader, String[] names) throws IOException {
+    this.maxDoc = reader.maxDoc();
+
+    for (String name : names) {
+      String field = FIELD_PREFIX + name;
+      Map<String,long[]> values = new TreeMap<String,long[]>();
+      TermEnum terms = reader.terms(new Term(field, ""));
+      TermDocs termDocs = reader.termDocs();
+      try {
+        do {
+          Term term = terms.term();
+          if (term == null || !term.field().equals(field)) {
+            break;
+          }
+
+          long[] bits = newBitSet();
+          termDocs.seek(term);
+          while (termDocs.next()) {
+            int doc = termDocs.doc();
+            bits[doc >> 6] |= (1L << doc);
+          }
+          values.put(term.text(), bits);
+        } while (terms.next());
+      } finally {
+        termDocs.close();
+        terms.close();
+      }
+
+      facets.put(name, values);
+    }
+  }
+
+  /**
+   * Creates an empty bitset large enough to hold every document.
+   *
+   * @return  a long array
+   */
+  long[] newBitSet() {
+    return new long[(maxDoc >> 6) + 1];
+  }
+
+  /**
+   * Gets the documents having the specified facet value.
+   *
+   * @param name    the facet name
+   * @param value   the facet value
+   * @return  a bitset (which must not be modified), or null if no
+   *          documents have that value
+   */
+  long[] getDocuments(String name, String value) {
+    Map<String,long[]> values = facets.get(name);
+    if (values != null) {
+      return values.get(value);
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Counts, for each facet value, how many of the given documents have
+   * that value.
+   *
+   * @param documents   a bitset of documents, typically search hits
+   * @return  a Map of facet name to a Map of value to count, where only
+   *          values with a non-zero count are included, highest first
+   */
+  Map<String,Map<String,Integer>> count(long[] documents) {
+    Map<String,Map<String,Integer>> counts = new LinkedHashMap<String,Map<String,Integer>>();
+    for (String name : facets.keySet()) {
+      List<Map.Entry<String,Integer>> valueCounts = new ArrayList<Map.Entry<String,Integer>>();
+      for (Map.Entry<String,long[]> value : facets.get(name).entrySet()) {
+        int count = intersectionCount(documents, value.getValue());
+        if (count > 0) {
+          valueCounts.add(new AbstractMap.SimpleEntry<String,Integer>(value.getKey(), count));
+        }
+      }
+
+      Collections.sort(valueCounts, new Comparator<Map.Entry<String,Integer>>() {
+        public int compare(Map.Entry<String,Integer> e1, Map.Entry<String,Integer> e2) {
+          int result = e2.getValue().compareTo(e1.getValue());
+          if (result == 0) {
+            result = e1.getKey().compareTo(e2.getKey());
+          }
+          return result;
+        }
+      });
+
+      Map<String,Integer> map = new LinkedHashMap<String,Integer>();
+      for (Map.Entry<String,Integer> valueCount : valueCounts) {
+        map.put(valueCount.getKey(), valueCount.getValue());
+      }
+      counts.put(name, map);
+    }
+
+    return counts;
+  }
+
+  private static int intersectionCount(long[] a, long[] b) {
+    int count = 0;
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      count += Long.bitCount(a[i] & b[i]);
+    }
+    return count;
+  }
+
+  /**
+   * Converts a bitset into the form used by Lucene filters.
+   *
+   * @param bits    a bitset
+   * @return  a java.util.BitSet
+   */
+  static BitSet toBitSet(long[] bits) {
+    BitSet bitSet = new BitSet(bits.length << 6);
+    for (int i = 0; i < bits.length; i++) {
+      long word = bits[i];
+      while (word != 0) {
+        int bit = Long.numberOfTrailingZeros(word);
+        bitSet.set((i << 6) + bit);
+        word &= (word - 1);
+      }
+    }
+    return bitSet;
+  }
+
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * The on-disk form of an index, as a sequence of records that each have a
+ * key and a list of values. Keyed indexes (tags, categories, etc) are written
+ * as text with one <code>key=value,value</code> line per record, and lists of
+ * IDs (blog entries, responses) with one value per line.
+ * <br />
+ * For faster startup, indexes can instead be written in a binary format that
+ * is memory-mapped when read, with no line parsing or splitting. Records whose
+ * values are all numbers (e.g. blog entry IDs) store them as longs. The format
+ * is detected when a file is read, so either format can always be read,
+ * whichever one is being written.
+ *
+ * @author    Simon Brown
+ */
+public class IndexFile {
+
+  /** identifies binary files; text index files never contain a NUL character */
+  static final int MAGIC = 0x00504958;
+  static final int VERSION = 1;
+
+  private static final byte LONG_VALUES = 0;
+  private static final byte STRING_VALUES = 1;
+
+  private static final String UTF8 = "UTF-8";
+
+  /**
+   * Receives the records of an index file, in the order they were written.
+   */
+  public interface RecordHandler {
+
+    public void record(String key, List<String> values);
+
+  }
+
+  private final File file;
+  private final boolean keyed;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param file    the index file
+   * @param keyed   true if records have keys, false if the file is a single
+   *                list of values
+   */
+  public IndexFile(File file, boolean keyed) {
+    this.file = file;
+    this.keyed = keyed;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public boolean exists() {
+    return file.exists();
+  }
+
+  /**
+   * Determines whether the file is in the binary format.
+   *
+   * @return  true if the file exists and is binary, false otherwise
+   */
+  public boolean isBinary() throws IOException {
+    if (!file.exists() || file.length() < 4) {
+      return false;
+    }
+
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      return in.readInt() == MAGIC;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads all records from the file.
+   *
+   * @param handler   the RecordHandler to pass records to
+   */
+  public void read(RecordHandler handler) throws IOException {
+    if (isBinary()) {
+      readBinary(handler);
+    } else {
+      readText(handler);
+    }
+  }
+
+  /**
+   * Reads the values from a file that isn't keyed.
+   *
+   * @return  a List of values, in the order they were written
+   */
+  public List<String> readValues() throws IOException {
+    final List<String> values = new ArrayList<String>();
+    read(new RecordHandler() {
+      public void record(String key, List<String> recordValues) {
+        values.addAll(recordValues);
+      }
+    });
+
+    return values;
+  }
+
+  /**
+   * Writes the given records to the file, replacing its contents.
+   *
+   * @param records   a Map of keys to values, written in iteration order
+   * @param binary    true to write the binary format, false for text
+   */
+  public void write(Map<String,? extends Collection<String>> records, boolean binary) throws IOException {
+    if (binary) {
+      writeBinary(records);
+    } else {
+      writeText(records);
+    }
+  }
+
+  /**
+   * Writes the given values to a file that isn't keyed.
+   *
+   * @param values    the values to write, in iteration order
+   * @param binary    true to write the binary format, false for text
+   */
+  public void writeValues(Collection<String> values, boolean binary) throws IOException {
+    write(Collections.singletonMap("", values), binary);
+  }
+
+  /**
+   * Rewrites the file in the given format, if it's not already in that format.
+   *
+   * @param binary    true to convert to binary, false to convert to text
+   * @return  true if the file was converted, false otherwise
+   */
+  public boolean convert(boolean binary) throws IOException {
+    if (!file.exists() || isBinary() == binary) {
+      return false;
+    }
+
+    final Map<String,List<String>> records = new LinkedHashMap<String,List<String>>();
+    read(new RecordHandler() {
+      public void record(String key, List<String> values) {
+        records.put(key, values);
+      }
+    });
+    write(records, binary);
+
+    return true;
+  }
+
+  private void readText(RecordHandler handler) throws IOException {
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      List<String> values = new ArrayList<String>();
+      String line = reader.readLine();
+      while (line != null) {
+        if (!keyed) {
+          if (line.length() > 0) {
+            values.add(line);
+          }
+        } else {
+          int equals = line.indexOf('=');
+          if (equals > -1) {
+            handler.record(line.substring(0, equals), split(line, equals + 1));
+          } else if (line.length() > 0) {
+            handler.record(line, new ArrayList<String>());
+          }
+        }
+        line = reader.readLine();
+      }
+
+      if (!keyed) {
+        handler.record("", values);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private List<String> split(String line, int start) {
+    List<String> values = new ArrayList<String>();
+    while (start < line.length()) {
+      int comma = line.indexOf(',', start);
+      if (comma == -1) {
+        comma = line.length();
+      }
+      if (comma > start) {
+        values.add(line.substring(start, comma));
+      }
+      start = comma + 1;
+    }
+
+    return values;
+  }
+
+  private void writeText(Map<String,? extends Collection<String>> records) throws IOException {
+    BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+    try {
+      for (String key : records.keySet()) {
+        if (keyed) {
+          writer.write(key);
+          writer.write("=");
+          boolean first = true;
+          for (String value : records.get(key)) {
+            if (!first) {
+              writer.write(",");
+            }
+            writer.write(value);
+            first = false;
+          }
+          writer.newLine();
+        } else {
+          for (String value : records.get(key)) {
+            writer.write(value);
+            writer.newLine();
+          }
+        }
+      }
+      writer.flush();
+    } finally {
+      writer.close();
+    }
+  }
+
+  private void readBinary(RecordHandler handler) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.getInt();
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported index file version " + version + " in " + file.getAbsolutePath());
+      }
+
+      int numberOfRecords = buffer.getInt();
+      for (int i = 0; i < numberOfRecords; i++) {
+        String key = readString(buffer);
+        byte type = buffer.get();
+        int numberOfValues = buffer.getInt();
+        List<String> values = new ArrayList<String>(numberOfValues);
+        if (type == LONG_VALUES) {
+          for (int j = 0; j < numberOfValues; j++) {
+            values.add(Long.toString(buffer.getLong()));
+          }
+        } else {
+          for (int j = 0; j < numberOfValues; j++) {
+            values.add(readString(buffer));
+          }
+        }
+        handler.record(key, values);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private String readString(MappedByteBuffer buffer) throws IOException {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private void writeBinary(Map<String,? extends Collection<String>> records) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(records.size());
+      for (String key : records.keySet()) {
+        Collection<String> values = records.get(key);
+        writeString(out, key);
+        if (isNumeric(values)) {
+          out.writeByte(LONG_VALUES);
+          out.writeInt(values.size());
+          for (String value : values) {
+            out.writeLong(Long.parseLong(value));
+          }
+        } else {
+          out.writeByte(STRING_VALUES);
+          out.writeInt(values.size());
+          for (String value : values) {
+            writeString(out, value);
+          }
+        }
+      }
+      out.flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(UTF8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Determines whether all values can be stored as longs and read back
+   * unchanged, i.e. they are plain numbers without leading zeros.
+   */
+  private boolean isNumeric(Collection<String> values) {
+    for (String value : values) {
+      int length = value.length();
+      if (length == 0 || length > 18 || (length > 1 && value.charAt(0) == '0')) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < '0' || c > '9') {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts the index files of a blog between the text and binary formats.
+ * Blogs convert their own indexes to the configured format when started, and
+ * this can also be run from the command line, with the blog stopped, using
+ * <code>java net.sourceforge.pebble.index.IndexFileConverter &lt;indexes directory&gt; text|binary</code>.
+ *
+ * @author    Simon Brown
+ */
+public class IndexFileConverter {
+
+  private static final Log log = LogFactory.getLog(IndexFileConverter.class);
+
+  /** index files that are lists of IDs, relative to the indexes directory */
+  private static final String[] LIST_INDEX_FILES = {
+      "blogentries-published.index", "blogentries-unpublished.index",
+      "responses-approved.index", "responses-pending.index", "responses-rejected.index"
+  };
+
+  /** index files that are keyed, relative to the indexes directory */
+  private static final String[] KEYED_INDEX_FILES = {
+      "tags.index", "categories.index", "authors.index", "pages/name.index"
+  };
+
+  /**
+   * Converts all index files in the given directory that aren't already in
+   * the given format.
+   *
+   * @param indexesDirectory    the indexes directory of a blog
+   * @param binary              true to convert to binary, false to convert to text
+   * @return  the number of index files converted
+   */
+  public static int convert(File indexesDirectory, boolean binary) throws IOException {
+    int converted = 0;
+    for (String filename : LIST_INDEX_FILES) {
+      if (new IndexFile(new File(indexesDirectory, filename), false).convert(binary)) {
+        converted++;
+      }
+    }
+    for (String filename : KEYED_INDEX_FILES) {
+      if (new IndexFile(new File(indexesDirectory, filename), true).convert(binary)) {
+        converted++;
+      }
+    }
+
+    if (converted > 0) {
+      log.info("Converted " + converted + " index files in " + indexesDirectory.getAbsolutePath() + " to " + (binary ? "binary" : "text"));
+    }
+
+    return converted;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2 || !(args[1].equals("text") || args[1].equals("binary"))) {
+      System.out.println("Usage : net.sourceforge.pebble.index.IndexFileConverter <indexes directory> text|binary");
+      return;
+    }
+
+    File indexesDirectory = new File(args[0]);
+    int converted = convert(indexesDirectory, args[1].equals("binary"));
+    System.out.println("Converted " + converted + " index files to " + args[1]);
+  }
+
+}
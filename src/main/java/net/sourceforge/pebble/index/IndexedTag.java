@@ -36,8 +36,11 @@ import net.sourceforge.pebble.domain.Tag;
 import net.sourceforge.pebble.comparator.ReverseBlogEntryIdComparator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Collections;
+import java.util.Set;
 
 /**
  * Represents a tag.
@@ -80,6 +83,21 @@ public class IndexedTag extends Tag {
     }
   }
 
+  /**
+   * Adds a number of blog entries to this tag, sorting them just once.
+   *
+   * @param blogEntryIds    a Collection of blog entry IDs
+   */
+  public synchronized void addBlogEntries(Collection<String> blogEntryIds) {
+    Set<String> existingBlogEntryIds = new HashSet<String>(blogEntries);
+    for (String blogEntryId : blogEntryIds) {
+      if (blogEntryId != null && existingBlogEntryIds.add(blogEntryId)) {
+        blogEntries.add(blogEntryId);
+      }
+    }
+    Collections.sort(blogEntries, new ReverseBlogEntryIdComparator());
+  }
+
   /**
    * Removes a blog entry to this tag.
    *
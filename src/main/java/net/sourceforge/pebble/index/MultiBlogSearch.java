@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.search.SearchException;
+import net.sourceforge.pebble.search.SearchHit;
+import net.sourceforge.pebble.search.SearchResults;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches the indexes of several blogs at once, e.g. for the home page of
+ * a multi-blog installation. Each blog is searched on a bounded pool of
+ * threads using its cached index snapshot, so a federated search opens no
+ * readers of its own. Only the best offset+limit hits of each blog are
+ * ranked, and only the documents on the requested page are ever read.
+ *
+ * @author    Simon Brown
+ */
+public class MultiBlogSearch {
+
+  /** the log used by this class */
+  private static final Log log = LogFactory.getLog(MultiBlogSearch.class);
+
+  /** the default number of blogs searched at the same time */
+  public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  /** the default time to wait for all blogs to be searched, in milliseconds */
+  public static final long DEFAULT_TIMEOUT = 2000;
+
+  private final ThreadPoolExecutor executor;
+  private final long timeout;
+
+  /**
+   * Creates a new instance with the default number of threads and timeout.
+   */
+  public MultiBlogSearch() {
+    this(DEFAULT_THREADS, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param threads   the maximum number of blogs searched at the same time
+   * @param timeout   the time to wait for all blogs to be searched, in
+   *                  milliseconds, after which the slowest are left out
+   */
+  public MultiBlogSearch(int threads, long timeout) {
+    this.timeout = timeout;
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      private int count = 0;
+      public synchronized Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "pebble-multi-blog-search-" + (++count));
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // don't hold on to threads when nobody is searching
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Searches the specified blogs, returning a single page of hits merged
+   * across all of them. If the offset is beyond the last hit, the last page
+   * is returned instead.
+   *
+   * @param blogs         the blogs to search
+   * @param queryString   the Lucene query
+   * @param sortByDate    true to order hits by date (newest first), false to
+   *                      order them by score
+   * @param offset        the index of the first hit to return
+   * @param limit         the maximum number of hits to return
+   * @return  a SearchResults instance
+   * @throws SearchException  if something goes wrong
+   */
+  public SearchResults search(Collection<Blog> blogs, String queryString, boolean sortByDate, int offset, int limit) throws SearchException {
+    log.debug("Performing multi-blog search : " + queryString);
+
+    SearchResults searchResults = new SearchResults();
+    searchResults.setQuery(queryString);
+    if (queryString == null || queryString.length() == 0 || blogs.isEmpty()) {
+      return searchResults;
+    }
+
+    limit = Math.max(limit, 1);
+    offset = Math.max(offset, 0);
+
+    // every hit on the page is within the first offset+limit of its own blog
+    int numberOfTopHits = (int)Math.min((long)offset + limit, Integer.MAX_VALUE);
+    List<BlogSearch> tasks = new ArrayList<BlogSearch>();
+    for (Blog blog : blogs) {
+      tasks.add(new BlogSearch(blog, queryString, sortByDate, numberOfTopHits));
+    }
+
+    try {
+      List<BlogHits> results = new ArrayList<BlogHits>();
+      boolean complete = true;
+      boolean parseError = false;
+      List<Future<BlogHits>> futures = executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          BlogHits blogHits = futures.get(i).get();
+          if (blogHits != null) {
+            results.add(blogHits);
+          }
+        } catch (CancellationException ce) {
+          log.warn("Search of blog " + tasks.get(i).blog.getId() + " took longer than " + timeout + "ms");
+          complete = false;
+        } catch (ExecutionException ee) {
+          if (ee.getCause() instanceof ParseException) {
+            parseError = true;
+          } else {
+            log.error("Error searching blog " + tasks.get(i).blog.getId(), ee.getCause());
+            complete = false;
+          }
+        }
+      }
+
+      if (parseError && results.isEmpty()) {
+        searchResults.setMessage("Sorry, but there was an error. Please try another search");
+        return searchResults;
+      } else if (!complete) {
+        searchResults.setMessage("Some blogs could not be searched, so these results may be incomplete");
+      }
+
+      int numberOfHits = 0;
+      for (BlogHits blogHits : results) {
+        numberOfHits += blogHits.topDocs.totalHits;
+      }
+      if (offset >= numberOfHits && numberOfHits > 0) {
+        offset = ((numberOfHits - 1) / limit) * limit;
+      }
+      searchResults.setNumberOfHits(numberOfHits);
+      searchResults.setOffset(offset);
+
+      // merge the already ordered hits of each blog, reading just the page
+      PriorityQueue<BlogHits> queue = new PriorityQueue<BlogHits>(Math.max(results.size(), 1), sortByDate ? BY_DATE : BY_SCORE);
+      for (BlogHits blogHits : results) {
+        if (blogHits.hasNext()) {
+          queue.add(blogHits);
+        }
+      }
+      int end = (int)Math.min((long)offset + limit, numberOfHits);
+      for (int i = 0; i < end && !queue.isEmpty(); i++) {
+        BlogHits blogHits = queue.poll();
+        ScoreDoc scoreDoc = blogHits.next();
+        if (i >= offset) {
+          SearchHit hit = blogHits.searchIndex.createSearchHit(blogHits.searcher.doc(scoreDoc.doc), scoreDoc.score);
+          hit.setNumber(i + 1);
+          searchResults.add(hit);
+        }
+        if (blogHits.hasNext()) {
+          queue.add(blogHits);
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new SearchException("Search was interrupted");
+    } catch (Exception e) {
+      log.error(e.getMessage(), e);
+      throw new SearchException(e.getMessage());
+    } finally {
+      for (BlogSearch task : tasks) {
+        task.close();
+      }
+    }
+
+    return searchResults;
+  }
+
+  /**
+   * Stops the threads used to search blogs.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /** orders blogs by their next hit, highest score first */
+  private static final Comparator<BlogHits> BY_SCORE = new Comparator<BlogHits>() {
+    public int compare(BlogHits b1, BlogHits b2) {
+      int result = Float.compare(b2.peek().score, b1.peek().score);
+      return (result != 0) ? result : b1.blogId.compareTo(b2.blogId);
+    }
+  };
+
+  /** orders blogs by their next hit, newest first */
+  private static final Comparator<BlogHits> BY_DATE = new Comparator<BlogHits>() {
+    public int compare(BlogHits b1, BlogHits b2) {
+      int result = b2.peekId().compareTo(b1.peekId());
+      return (result != 0) ? result : b1.blogId.compareTo(b2.blogId);
+    }
+  };
+
+  /**
+   * Finds the best hits in a single blog. The snapshot stays acquired until
+   * the federated search closes this task, so that the documents on the
+   * page can be read from the same version of the index that was ranked.
+   * If the task is closed while it's still searching, because the federated
+   * search gave up waiting, the task releases the snapshot itself when it
+   * finishes.
+   */
+  private static class BlogSearch implements Callable<BlogHits> {
+
+    private final Blog blog;
+    private final String queryString;
+    private final boolean sortByDate;
+    private final int numberOfTopHits;
+
+    private SearchIndexSnapshot snapshot;
+    private boolean searching = false;
+    private boolean closed = false;
+
+    BlogSearch(Blog blog, String queryString, boolean sortByDate, int numberOfTopHits) {
+      this.blog = blog;
+      this.queryString = queryString;
+      this.sortByDate = sortByDate;
+      this.numberOfTopHits = numberOfTopHits;
+    }
+
+    public BlogHits call() throws Exception {
+      SearchIndex searchIndex = blog.getSearchIndex();
+      if (searchIndex == null) {
+        return null;
+      }
+
+      Query query = searchIndex.parseQuery(queryString);
+      SearchIndexSnapshot acquired = searchIndex.acquireSnapshot();
+      synchronized (this) {
+        if (closed) {
+          // the federated search gave up waiting for this blog
+          acquired.release();
+          return null;
+        }
+        snapshot = acquired;
+        searching = true;
+      }
+
+      try {
+        IndexSearcher searcher = acquired.getSearcher();
+        int n = Math.max(1, Math.min(numberOfTopHits, acquired.getReader().maxDoc()));
+        TopDocs topDocs;
+        if (sortByDate) {
+          topDocs = searcher.search(query, null, n, SearchIndex.DATE_SORT);
+        } else {
+          topDocs = searcher.search(query, null, n);
+        }
+
+        return new BlogHits(blog.getId(), searchIndex, searcher, topDocs);
+      } finally {
+        synchronized (this) {
+          searching = false;
+          if (closed) {
+            release();
+          }
+        }
+      }
+    }
+
+    synchronized void close() {
+      closed = true;
+      if (!searching) {
+        release();
+      }
+    }
+
+    private void release() {
+      if (snapshot != null) {
+        snapshot.release();
+        snapshot = null;
+      }
+    }
+
+  }
+
+  /**
+   * The ordered top hits of a single blog, consumed during the merge.
+   */
+  private static class BlogHits {
+
+    private final String blogId;
+    private final SearchIndex searchIndex;
+    private final IndexSearcher searcher;
+    private final TopDocs topDocs;
+    private int position = 0;
+
+    BlogHits(String blogId, SearchIndex searchIndex, IndexSearcher searcher, TopDocs topDocs) {
+      this.blogId = blogId;
+      this.searchIndex = searchIndex;
+      this.searcher = searcher;
+      this.topDocs = topDocs;
+    }
+
+    boolean hasNext() {
+      return position < topDocs.scoreDocs.length;
+    }
+
+    ScoreDoc peek() {
+      return topDocs.scoreDocs[position];
+    }
+
+    String peekId() {
+      return (String)((FieldDoc)peek()).fields[0];
+    }
+
+    ScoreDoc next() {
+      return topDocs.scoreDocs[position++];
+    }
+
+  }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.BlogEntry;
+
+/**
+ * Implemented by indexes that can be rebuilt from a stream of blog entries.
+ * Blog entries are added one at a time without keeping the index sorted or
+ * writing it to disk, which happens once when the index is finished.
+ *
+ * @author    Simon Brown
+ */
+public interface ReindexableIndex {
+
+  /**
+   * Clears the index, ready for blog entries to be added.
+   */
+  public void clear();
+
+  /**
+   * Adds a blog entry to the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public void add(BlogEntry blogEntry);
+
+  /**
+   * Removes a blog entry from the index, given only its ID, so that entries
+   * that have since changed or been deleted on disk can be removed.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public void remove(String blogEntryId);
+
+  /**
+   * Called once all blog entries have been added or removed.
+   */
+  public void finish();
+
+}
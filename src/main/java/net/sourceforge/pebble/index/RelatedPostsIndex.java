@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.domain.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the blog entries related to each published blog entry,
+ * where blog entries are related by sharing tags. Tags used by fewer blog
+ * entries count for more, and ties go to the most recent blog entry.
+ * Related blog entries are worked out from the tag index the first time
+ * they are asked for, and forgotten when a blog entry sharing a tag
+ * is changed.
+ *
+ * @author    Simon Brown
+ */
+public class RelatedPostsIndex {
+
+  /** the number of related blog entries remembered for each blog entry */
+  static final int MAX_RELATED_POSTS = 20;
+
+  /** the owning blog */
+  private final Blog blog;
+
+  /** the related blog entry IDs, keyed on blog entry ID */
+  private final Map<String,List<String>> relatedBlogEntries = new HashMap<String,List<String>>();
+
+  /** the tags of each published blog entry, keyed on blog entry ID */
+  private Map<String,Set<String>> tagsByBlogEntry;
+
+  public RelatedPostsIndex(Blog blog) {
+    this.blog = blog;
+  }
+
+  /**
+   * Clears the index, causing it to be rebuilt from the tag index when
+   * next used.
+   */
+  public synchronized void clear() {
+    relatedBlogEntries.clear();
+    tagsByBlogEntry = null;
+  }
+
+  /**
+   * Indexes a single blog entry. This must be called after the tag index
+   * has been updated.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void index(BlogEntry blogEntry) {
+    Set<String> tags = getTags(blogEntry);
+    Set<String> oldTags = getTagsByBlogEntry().remove(blogEntry.getId());
+    if (blogEntry.isPublished()) {
+      tagsByBlogEntry.put(blogEntry.getId(), tags);
+    }
+
+    if (oldTags != null) {
+      tags.addAll(oldTags);
+    }
+    invalidate(blogEntry.getId(), tags);
+  }
+
+  /**
+   * Removes a blog entry from the index. This must be called after the tag
+   * index has been updated.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void unindex(BlogEntry blogEntry) {
+    Set<String> tags = getTags(blogEntry);
+    Set<String> oldTags = getTagsByBlogEntry().remove(blogEntry.getId());
+    if (oldTags != null) {
+      tags.addAll(oldTags);
+    }
+    invalidate(blogEntry.getId(), tags);
+  }
+
+  /**
+   * Gets the IDs of the blog entries related to the given blog entry,
+   * most related first.
+   *
+   * @param blogEntry   a BlogEntry instance
+   * @param max         the maximum number of IDs to return
+   * @return  a List of blog entry IDs
+   */
+  public synchronized List<String> getRelatedBlogEntries(BlogEntry blogEntry, int max) {
+    Set<String> tags = getTagsByBlogEntry().get(blogEntry.getId());
+    if (tags == null || !tags.equals(getTags(blogEntry)) || max > MAX_RELATED_POSTS) {
+      // not (yet) indexed, e.g. an entry being previewed, so don't remember the result
+      return findRelatedBlogEntries(blogEntry.getId(), getTags(blogEntry), max);
+    }
+
+    List<String> related = relatedBlogEntries.get(blogEntry.getId());
+    if (related == null) {
+      related = findRelatedBlogEntries(blogEntry.getId(), tags, MAX_RELATED_POSTS);
+      relatedBlogEntries.put(blogEntry.getId(), related);
+    }
+
+    return new ArrayList<String>(related.subList(0, Math.min(max, related.size())));
+  }
+
+  private List<String> findRelatedBlogEntries(String blogEntryId, Set<String> tags, int max) {
+    int numberOfBlogEntries = Math.max(1, getTagsByBlogEntry().size());
+    final Map<String,Double> scores = new HashMap<String,Double>();
+    for (String tag : tags) {
+      List<String> blogEntries = getBlogEntries(tag);
+      double weight = Math.log(1 + ((double)numberOfBlogEntries / Math.max(1, blogEntries.size())));
+      for (String id : blogEntries) {
+        Double score = scores.get(id);
+        scores.put(id, score == null ? weight : score + weight);
+      }
+    }
+    scores.remove(blogEntryId);
+
+    List<String> related = new ArrayList<String>(scores.keySet());
+    Collections.sort(related, new Comparator<String>() {
+      public int compare(String id1, String id2) {
+        int result = scores.get(id2).compareTo(scores.get(id1));
+        if (result == 0) {
+          // the most recent blog entry first
+          result = Long.valueOf(id2).compareTo(Long.valueOf(id1));
+        }
+        return result;
+      }
+    });
+
+    if (related.size() > max) {
+      related = new ArrayList<String>(related.subList(0, max));
+    }
+    return related;
+  }
+
+  /**
+   * Forgets the related blog entries of the given blog entry and of every
+   * blog entry that shares one of the given tags.
+   */
+  private void invalidate(String blogEntryId, Set<String> tags) {
+    relatedBlogEntries.remove(blogEntryId);
+    for (String tag : tags) {
+      for (String id : getBlogEntries(tag)) {
+        relatedBlogEntries.remove(id);
+      }
+    }
+  }
+
+  private List<String> getBlogEntries(String tag) {
+    return blog.getTagIndex().getRecentBlogEntries(new Tag(tag, blog));
+  }
+
+  private Set<String> getTags(BlogEntry blogEntry) {
+    Set<String> tags = new HashSet<String>();
+    for (Tag tag : blogEntry.getAllTags()) {
+      tags.add(tag.getName());
+    }
+    return tags;
+  }
+
+  /**
+   * Gets the tags of every published blog entry, reading them from the tag
+   * index the first time they are needed.
+   */
+  private Map<String,Set<String>> getTagsByBlogEntry() {
+    if (tagsByBlogEntry == null) {
+      tagsByBlogEntry = new HashMap<String,Set<String>>();
+      for (Tag tag : blog.getTagIndex().getTags()) {
+        for (String id : getBlogEntries(tag.getName())) {
+          Set<String> tags = tagsByBlogEntry.get(id);
+          if (tags == null) {
+            tags = new HashSet<String>();
+            tagsByBlogEntry.put(id, tags);
+          }
+          tags.add(tag.getName());
+        }
+      }
+    }
+
+    return tagsByBlogEntry;
+  }
+
+}
@@ -45,13 +45,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
  * Keeps an index of all responses.
  *
  * @author    Simon Brown
  */
-public class ResponseIndex {
+public class ResponseIndex implements ReindexableIndex {
 
   private static final Log log = LogFactory.getLog(ResponseIndex.class);
 
@@ -90,17 +91,58 @@ public class ResponseIndex {
    */
   public synchronized void index(Collection<BlogEntry> blogEntries) {
     for (BlogEntry blogEntry : blogEntries) {
-      for (Response response : blogEntry.getResponses()) {
-        if (response.isApproved()) {
-          approvedResponses.add(response.getGuid());
-        } else if (response.isPending()) {
-          pendingResponses.add(response.getGuid());
-        } else if (response.isRejected()) {
-          rejectedResponses.add(response.getGuid());
-        }
+      add(blogEntry);
+    }
+
+    finish();
+  }
+
+  /**
+   * Adds the responses of a blog entry to the index, without sorting or
+   * writing the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void add(BlogEntry blogEntry) {
+    for (Response response : blogEntry.getResponses()) {
+      if (response.isApproved()) {
+        approvedResponses.add(response.getGuid());
+      } else if (response.isPending()) {
+        pendingResponses.add(response.getGuid());
+      } else if (response.isRejected()) {
+        rejectedResponses.add(response.getGuid());
+      }
+    }
+  }
+
+  /**
+   * Removes the responses of a blog entry from the index, without writing
+   * the index.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public synchronized void remove(String blogEntryId) {
+    removeResponses(approvedResponses, blogEntryId);
+    removeResponses(pendingResponses, blogEntryId);
+    removeResponses(rejectedResponses, blogEntryId);
+  }
+
+  private void removeResponses(List<String> responses, String blogEntryId) {
+    String comments = "c/" + blogEntryId + "/";
+    String trackBacks = "t/" + blogEntryId + "/";
+    Iterator<String> it = responses.iterator();
+    while (it.hasNext()) {
+      String guid = it.next();
+      if (guid.startsWith(comments) || guid.startsWith(trackBacks)) {
+        it.remove();
       }
     }
+  }
 
+  /**
+   * Sorts and writes the index, once blog entries have been added.
+   */
+  public synchronized void finish() {
     Collections.sort(approvedResponses, new ReverseResponseIdComparator());
     Collections.sort(pendingResponses, new ReverseResponseIdComparator());
     Collections.sort(rejectedResponses, new ReverseResponseIdComparator());
@@ -152,27 +194,11 @@ public class ResponseIndex {
    * Helper method to load the index.
    */
   private List<String> readIndex(State state) {
-    String filename = null;
     List<String> responses = new ArrayList<String>();
-    if (state == State.APPROVED) {
-        filename = "responses-approved.index";
-    } else if (state == State.PENDING) {
-      filename = "responses-pending.index";
-    } else if (state == State.REJECTED) {
-      filename = "responses-rejected.index";
-    }
-
-    File indexFile = new File(blog.getIndexesDirectory(), filename);
+    IndexFile indexFile = getIndexFile(state);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String response = reader.readLine();
-        while (response != null) {
-          responses.add(response);
-          response = reader.readLine();
-        }
-
-        reader.close();
+        responses.addAll(indexFile.readValues());
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -187,35 +213,35 @@ public class ResponseIndex {
    * Helper method to write out the index to disk.
    */
   private void writeIndex(State state) {
-    String filename = null;
     List<String> responses = null;
     if (state == State.APPROVED) {
-        filename = "responses-approved.index";
-        responses = approvedResponses;
+      responses = approvedResponses;
     } else if (state == State.PENDING) {
-      filename = "responses-pending.index";
       responses = pendingResponses;
     } else if (state == State.REJECTED) {
-      filename = "responses-rejected.index";
       responses = rejectedResponses;
     }
 
     try {
-      File indexFile = new File(blog.getIndexesDirectory(), filename);
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
-      for (String response : responses) {
-        writer.write(response);
-        writer.newLine();
-      }
-
-      writer.flush();
-      writer.close();
+      getIndexFile(state).writeValues(responses, blog.isBinaryIndexesEnabled());
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
   }
 
+  private IndexFile getIndexFile(State state) {
+    String filename = null;
+    if (state == State.APPROVED) {
+      filename = "responses-approved.index";
+    } else if (state == State.PENDING) {
+      filename = "responses-pending.index";
+    } else if (state == State.REJECTED) {
+      filename = "responses-rejected.index";
+    }
+
+    return new IndexFile(new File(blog.getIndexesDirectory(), filename), false);
+  }
+
   /**
    * Gets the number of approved responses for this blog.
    *
@@ -38,6 +38,8 @@ import net.sourceforge.pebble.search.SearchResults;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.DateField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -46,16 +48,29 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.HitCollector;
 import org.apache.lucene.search.Hits;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searcher;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Wraps up the functionality to index blog entries. This is really just
@@ -63,13 +78,43 @@ import java.util.Collection;
  *
  * @author    Simon Brown
  */
-public class SearchIndex {
+public class SearchIndex implements ReindexableIndex {
 
   /** the log used by this class */
   private static final Log log = LogFactory.getLog(SearchIndex.class);
 
+  /** the names of the facets that search results can be counted and filtered by */
+  public static final String CATEGORY_FACET = "category";
+  public static final String TAG_FACET = "tag";
+  public static final String AUTHOR_FACET = "author";
+  public static final String YEAR_FACET = "year";
+  public static final String MONTH_FACET = "month";
+  public static final String[] FACETS = { CATEGORY_FACET, TAG_FACET, AUTHOR_FACET, YEAR_FACET, MONTH_FACET };
+
+  /** IDs are the creation time in milliseconds, so they sort by date */
+  static final Sort DATE_SORT = new Sort(new SortField("id", SortField.STRING, true));
+
+  /** a word in a query, followed by anything that makes it a field name, wildcard or fuzzy term */
+  private static final Pattern QUERY_WORD_PATTERN = Pattern.compile("(\\p{L}+)([:*?~]?)");
+  private static final Set<String> QUERY_OPERATORS = new HashSet<String>(java.util.Arrays.asList("AND", "OR", "NOT", "TO"));
+
+  /** the number of documents buffered in memory while the index is being rebuilt */
+  private static final int REINDEX_MIN_MERGE_DOCS = 100;
+
   private final Blog blog;
 
+  /** serialises access to the Lucene index, independently of the blog lock */
+  private final Object lock = new Object();
+
+  /** the current read-only view of the index, shared between searches */
+  private SearchIndexSnapshot snapshot;
+
+  /** the writer used while the index is being rebuilt */
+  private IndexWriter reindexWriter;
+
+  /** the words in the index, read on first use and then added to as documents are indexed */
+  private volatile SpellingDictionary spellingDictionary;
+
   public SearchIndex(Blog blog) {
     this.blog = blog;
   }
@@ -83,7 +128,7 @@ public class SearchIndex {
       searchDirectory.mkdirs();
     }
 
-    synchronized (blog) {
+    synchronized (lock) {
       try {
         Analyzer analyzer = getAnalyzer();
         IndexWriter writer = new IndexWriter(searchDirectory, analyzer, true);
@@ -91,6 +136,8 @@ public class SearchIndex {
       } catch (Exception e) {
         log.error(e.getMessage(), e);
       }
+      spellingDictionary = null;
+      invalidateSnapshot();
     }
   }
 
@@ -98,7 +145,7 @@ public class SearchIndex {
    * Allows a collection of blog entries to be indexed.
    */
   public void indexBlogEntries(Collection<BlogEntry> blogEntries) {
-    synchronized (blog) {
+    synchronized (lock) {
       try {
         Analyzer analyzer = getAnalyzer();
         IndexWriter writer = new IndexWriter(blog.getSearchIndexDirectory(), analyzer, false);
@@ -114,11 +161,78 @@ public class SearchIndex {
     }
   }
 
+  /**
+   * Adds a blog entry to the index, keeping the same writer open until
+   * the index is finished.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public void add(BlogEntry blogEntry) {
+    synchronized (lock) {
+      try {
+        if (reindexWriter == null) {
+          reindexWriter = new IndexWriter(blog.getSearchIndexDirectory(), getAnalyzer(), false);
+          reindexWriter.minMergeDocs = REINDEX_MIN_MERGE_DOCS;
+
+          // read the words again once the index has been rebuilt
+          spellingDictionary = null;
+        }
+
+        index(blogEntry, reindexWriter);
+      } catch (Exception e) {
+        log.error(e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Removes the document with the given ID (a blog entry or static page)
+   * from the index.
+   *
+   * @param id    the ID of a blog entry or static page
+   */
+  public void remove(String id) {
+    synchronized (lock) {
+      try {
+        // a reader can't delete while the writer holds the index lock
+        if (reindexWriter != null) {
+          reindexWriter.close();
+          reindexWriter = null;
+        }
+
+        IndexReader reader = IndexReader.open(blog.getSearchIndexDirectory());
+        reader.delete(new Term("id", id));
+        reader.close();
+      } catch (Exception e) {
+        log.error(e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Closes the writer used to add blog entries.
+   */
+  public void finish() {
+    synchronized (lock) {
+      try {
+        if (reindexWriter != null) {
+          reindexWriter.close();
+        }
+      } catch (Exception e) {
+        log.error(e.getMessage(), e);
+      } finally {
+        reindexWriter = null;
+      }
+      spellingDictionary = null;
+      invalidateSnapshot();
+    }
+  }
+
   /**
    * Allows a collection of static pages to be indexed.
    */
   public void indexStaticPages(Collection<StaticPage> staticPages) {
-    synchronized (blog) {
+    synchronized (lock) {
       try {
         Analyzer analyzer = getAnalyzer();
         IndexWriter writer = new IndexWriter(blog.getSearchIndexDirectory(), analyzer, false);
@@ -134,6 +248,37 @@ public class SearchIndex {
     }
   }
 
+  /**
+   * Removes the documents for the specified IDs and then (re)indexes the
+   * given blog entries, using a single reader and a single writer for the
+   * whole batch.
+   *
+   * @param blogEntryIds  the IDs of all blog entries to remove from the index
+   * @param blogEntries   the BlogEntry instances to add back to the index
+   */
+  public void update(Collection<String> blogEntryIds, Collection<BlogEntry> blogEntries) {
+    synchronized (lock) {
+      try {
+        IndexReader reader = IndexReader.open(blog.getSearchIndexDirectory());
+        for (String blogEntryId : blogEntryIds) {
+          reader.delete(new Term("id", blogEntryId));
+        }
+        reader.close();
+
+        if (!blogEntries.isEmpty()) {
+          Analyzer analyzer = getAnalyzer();
+          IndexWriter writer = new IndexWriter(blog.getSearchIndexDirectory(), analyzer, false);
+          for (BlogEntry blogEntry : blogEntries) {
+            index(blogEntry, writer);
+          }
+          writer.close();
+        }
+      } catch (Exception e) {
+        log.error(e.getMessage(), e);
+      }
+    }
+  }
+
   /**
    * Allows a single blog entry to be (re)indexed. If the entry is already
    * indexed, this method deletes the previous index before adding the new
@@ -143,7 +288,7 @@ public class SearchIndex {
    */
   public void index(BlogEntry blogEntry) {
     try {
-      synchronized (blog) {
+      synchronized (lock) {
         // first delete the blog entry from the index (if it was there)
         unindex(blogEntry);
 
@@ -166,7 +311,7 @@ public class SearchIndex {
    */
   public void index(StaticPage staticPage) {
     try {
-      synchronized (blog) {
+      synchronized (lock) {
         // first delete the static page from the index (if it was there)
         unindex(staticPage);
 
@@ -198,7 +343,7 @@ public class SearchIndex {
    */
   public void unindex(BlogEntry blogEntry) {
     try {
-      synchronized (blog) {
+      synchronized (lock) {
         log.debug("Attempting to delete index for " + blogEntry.getTitle());
         IndexReader reader = IndexReader.open(blog.getSearchIndexDirectory());
         Term term = new Term("id", blogEntry.getId());
@@ -217,7 +362,7 @@ public class SearchIndex {
    */
   public void unindex(StaticPage staticPage) {
     try {
-      synchronized (blog) {
+      synchronized (lock) {
         log.debug("Attempting to delete index for " + staticPage.getTitle());
         IndexReader reader = IndexReader.open(blog.getSearchIndexDirectory());
         Term term = new Term("id", staticPage.getId());
@@ -280,12 +425,22 @@ public class SearchIndex {
 
       for (Category category : blogEntry.getCategories()) {
         document.add(Field.Text("category", category.getId()));
+        addFacet(document, CATEGORY_FACET, category.getId());
       }
 
       for (Tag tag : blogEntry.getAllTags()) {
         document.add(Field.Text("tag", tag.getName()));
+        addFacet(document, TAG_FACET, tag.getName());
       }
 
+      addFacet(document, AUTHOR_FACET, blogEntry.getAuthor());
+      SimpleDateFormat yearFormat = new SimpleDateFormat("yyyy");
+      yearFormat.setTimeZone(blog.getTimeZone());
+      addFacet(document, YEAR_FACET, yearFormat.format(blogEntry.getDate()));
+      SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy/MM");
+      monthFormat.setTimeZone(blog.getTimeZone());
+      addFacet(document, MONTH_FACET, monthFormat.format(blogEntry.getDate()));
+
       searchableContent.append(" ");
       Iterator it = blogEntry.getComments().iterator();
       while (it.hasNext()) {
@@ -308,6 +463,7 @@ public class SearchIndex {
       document.add(Field.UnStored("blogEntry", searchableContent.toString()));
 
       writer.addDocument(document);
+      addToSpellingDictionary(writer, searchableContent.toString());
     } catch (Exception e) {
       log.error(e.getMessage(), e);
     }
@@ -356,39 +512,179 @@ public class SearchIndex {
       document.add(Field.UnStored("blogEntry", searchableContent.toString()));
 
       writer.addDocument(document);
+      addToSpellingDictionary(writer, searchableContent.toString());
     } catch (Exception e) {
       log.error(e.getMessage(), e);
     }
   }
 
+  /**
+   * Adds the words of a newly indexed document to the spelling dictionary,
+   * unless the index is being rebuilt or the dictionary hasn't been read.
+   */
+  private void addToSpellingDictionary(IndexWriter writer, String searchableContent) throws IOException {
+    SpellingDictionary dictionary = spellingDictionary;
+    if (dictionary != null && writer != reindexWriter) {
+      dictionary.add(writer.getAnalyzer(), "blogEntry", searchableContent);
+    }
+  }
+
+  /**
+   * Adds an untokenized, unstored facet field to the specified document.
+   */
+  private void addFacet(Document document, String facet, String value) {
+    if (value != null && value.length() > 0) {
+      document.add(new Field(FacetCache.FIELD_PREFIX + facet, value, false, true, false));
+    }
+  }
+
+  /**
+   * Gets a read-only view of the current index, opening a new one if the
+   * index has changed since the last search. Callers must release the
+   * snapshot when they have finished with it.
+   */
+  SearchIndexSnapshot acquireSnapshot() throws IOException {
+    String directory = blog.getSearchIndexDirectory();
+    long version = IndexReader.getCurrentVersion(directory);
+
+    synchronized (this) {
+      if (snapshot != null && snapshot.getVersion() != version) {
+        invalidateSnapshot();
+      }
+      if (snapshot == null) {
+        snapshot = new SearchIndexSnapshot(directory, FACETS);
+      }
+
+      snapshot.acquire();
+      return snapshot;
+    }
+  }
+
+  /**
+   * Stops the current snapshot being used by new searches.
+   */
+  private synchronized void invalidateSnapshot() {
+    if (snapshot != null) {
+      snapshot.release();
+      snapshot = null;
+    }
+  }
+
+  /**
+   * Performs a search, returning all hits ordered by score.
+   *
+   * @param queryString   the Lucene query
+   * @return  a SearchResults instance
+   * @throws SearchException  if something goes wrong
+   */
   public SearchResults search(String queryString) throws SearchException {
+    return search(queryString, false, 0, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Performs a search, returning only a single page of hits. The hits
+   * outside of the page are counted, but their documents are never read
+   * from the index. If the offset is beyond the last hit, the last page is
+   * returned instead.
+   *
+   * @param queryString   the Lucene query
+   * @param sortByDate    true to order hits by date (newest first), false to
+   *                      order them by score
+   * @param offset        the index of the first hit to return
+   * @param limit         the maximum number of hits to return
+   * @return  a SearchResults instance
+   * @throws SearchException  if something goes wrong
+   */
+  public SearchResults search(String queryString, boolean sortByDate, int offset, int limit) throws SearchException {
+    return search(queryString, null, false, sortByDate, offset, limit);
+  }
+
+  /**
+   * Performs a search restricted to the given facet values, returning a
+   * single page of hits along with the facet counts over all of the hits.
+   *
+   * @param queryString   the Lucene query, which may be empty if there are
+   *                      facet filters
+   * @param facetFilters  a Map of facet name (e.g. CATEGORY_FACET) to the
+   *                      value that hits must have, or null
+   * @param sortByDate    true to order hits by date (newest first), false to
+   *                      order them by score
+   * @param offset        the index of the first hit to return
+   * @param limit         the maximum number of hits to return
+   * @return  a SearchResults instance
+   * @throws SearchException  if something goes wrong
+   */
+  public SearchResults search(String queryString, Map<String,String> facetFilters, boolean sortByDate, int offset, int limit) throws SearchException {
+    return search(queryString, facetFilters, true, sortByDate, offset, limit);
+  }
+
+  private SearchResults search(String queryString, Map<String,String> facetFilters, boolean countFacets, boolean sortByDate, int offset, int limit) throws SearchException {
 
     log.debug("Performing search : " + queryString);
 
     SearchResults searchResults = new SearchResults();
     searchResults.setQuery(queryString);
 
-    if (queryString != null && queryString.length() > 0) {
-      Searcher searcher = null;
+    boolean hasQuery = (queryString != null && queryString.length() > 0);
+    boolean hasFacetFilters = (facetFilters != null && !facetFilters.isEmpty());
+    if (hasQuery || hasFacetFilters) {
+      SearchIndexSnapshot snapshot = null;
 
       try {
-        searcher = new IndexSearcher(blog.getSearchIndexDirectory());
-        Query query = QueryParser.parse(queryString, "blogEntry", getAnalyzer());
-        Hits hits = searcher.search(query);
-
-        for (int i = 0; i < hits.length(); i++) {
-          Document doc = hits.doc(i);
-          SearchHit result = new SearchHit(
-              blog,
-              doc.get("id"),
-              doc.get("permalink"),
-              doc.get("title"),
-              doc.get("subtitle"),
-              doc.get("truncatedBody"),
-              DateField.stringToDate(doc.get("date")),
-              hits.score(i));
+        snapshot = acquireSnapshot();
+        Searcher searcher = snapshot.getSearcher();
+        Query query;
+        if (hasQuery) {
+          query = parseQuery(queryString);
+        } else {
+          // browsing by facet alone, so match everything with the first value
+          String facet = facetFilters.keySet().iterator().next();
+          query = new TermQuery(new Term(FacetCache.FIELD_PREFIX + facet, facetFilters.get(facet)));
+        }
+
+        Filter filter = null;
+        if (hasFacetFilters) {
+          filter = createFacetFilter(snapshot.getFacetCache(), facetFilters);
+          searchResults.setFacetFilters(facetFilters);
+        }
+
+        Hits hits;
+        if (sortByDate) {
+          hits = searcher.search(query, filter, DATE_SORT);
+        } else {
+          hits = searcher.search(query, filter);
+        }
+
+        int numberOfHits = hits.length();
+        if (numberOfHits == 0 && hasQuery) {
+          searchResults.setSpellingSuggestion(getSpellingSuggestion(queryString));
+        }
+        limit = Math.max(limit, 1);
+        offset = Math.max(offset, 0);
+        if (offset >= numberOfHits && numberOfHits > 0) {
+          offset = ((numberOfHits - 1) / limit) * limit;
+        }
+        int end = (int)Math.min((long)offset + limit, numberOfHits);
+
+        searchResults.setNumberOfHits(numberOfHits);
+        searchResults.setOffset(offset);
+        for (int i = offset; i < end; i++) {
+          SearchHit result = createSearchHit(hits.doc(i), hits.score(i));
+          result.setNumber(i + 1);
           searchResults.add(result);
         }
+
+        if (countFacets) {
+          // collect the matching documents without reading any of them
+          FacetCache facetCache = snapshot.getFacetCache();
+          final long[] documents = facetCache.newBitSet();
+          searcher.search(query, filter, new HitCollector() {
+            public void collect(int doc, float score) {
+              documents[doc >> 6] |= (1L << doc);
+            }
+          });
+          searchResults.setFacets(facetCache.count(documents));
+        }
       } catch (ParseException pe) {
         pe.printStackTrace();
         searchResults.setMessage("Sorry, but there was an error. Please try another search");
@@ -396,17 +692,217 @@ public class SearchIndex {
         e.printStackTrace();
         throw new SearchException(e.getMessage());
       } finally {
-        if (searcher != null) {
+        if (snapshot != null) {
+          snapshot.release();
+        }
+      }
+    }
+
+    return searchResults;
+  }
+
+  /**
+   * Suggests a correction for a query that may contain misspelt words, by
+   * replacing each word that isn't in the index with the closest word that
+   * is. Field names, operators and wildcard terms are left alone.
+   *
+   * @param queryString   the Lucene query
+   * @return  the corrected query, or null if there is nothing to correct
+   */
+  public String getSpellingSuggestion(String queryString) {
+    if (queryString == null || queryString.trim().length() == 0) {
+      return null;
+    }
+
+    SearchIndexSnapshot snapshot = null;
+    try {
+      SpellingDictionary dictionary = getSpellingDictionary();
+      snapshot = acquireSnapshot();
+      IndexReader reader = snapshot.getReader();
+      Analyzer analyzer = getAnalyzer();
+
+      boolean corrected = false;
+      StringBuffer buf = new StringBuffer();
+      Matcher m = QUERY_WORD_PATTERN.matcher(queryString);
+      while (m.find()) {
+        String word = m.group(1);
+        String suggestion = null;
+        if (m.group(2).length() == 0 && !QUERY_OPERATORS.contains(word)) {
+          String term = analyze(analyzer, word);
+          if (term != null && !dictionary.contains(term)) {
+            // words may have been removed from the index since they were read
+            for (String candidate : dictionary.suggest(term, 5)) {
+              if (reader.docFreq(new Term("blogEntry", candidate)) > 0) {
+                suggestion = candidate;
+                break;
+              }
+            }
+          }
+        }
+
+        if (suggestion != null) {
+          m.appendReplacement(buf, Matcher.quoteReplacement(suggestion + m.group(2)));
+          corrected = true;
+        } else {
+          m.appendReplacement(buf, Matcher.quoteReplacement(m.group()));
+        }
+      }
+      m.appendTail(buf);
+
+      return corrected ? buf.toString() : null;
+    } catch (Exception e) {
+      log.error(e.getMessage(), e);
+      return null;
+    } finally {
+      if (snapshot != null) {
+        snapshot.release();
+      }
+    }
+  }
+
+  /**
+   * Gets the spelling dictionary, reading it from the index on first use.
+   */
+  private SpellingDictionary getSpellingDictionary() throws IOException {
+    SpellingDictionary dictionary = spellingDictionary;
+    if (dictionary == null) {
+      // read while holding the lock, so that no newly indexed words are missed
+      synchronized (lock) {
+        if (spellingDictionary == null) {
+          SearchIndexSnapshot snapshot = acquireSnapshot();
           try {
-            searcher.close();
-          } catch (IOException e) {
-            // can't do much now! ;-)
+            spellingDictionary = SpellingDictionary.read(snapshot.getReader(), "blogEntry");
+          } finally {
+            snapshot.release();
           }
         }
+        dictionary = spellingDictionary;
       }
     }
 
-    return searchResults;
+    return dictionary;
+  }
+
+  /**
+   * Gets the term that the analyzer indexes a single word as, or null if
+   * the word isn't indexed (e.g. a stop word).
+   */
+  private String analyze(Analyzer analyzer, String word) throws IOException {
+    TokenStream tokens = analyzer.tokenStream("blogEntry", new StringReader(word));
+    try {
+      Token token = tokens.next();
+      return (token != null) ? token.termText() : null;
+    } finally {
+      tokens.close();
+    }
+  }
+
+  /**
+   * Parses the specified query using the analyzer configured for this blog.
+   *
+   * @param queryString   the Lucene query
+   * @return  a Query instance
+   * @throws Exception  if the query can't be parsed or the analyzer created
+   */
+  Query parseQuery(String queryString) throws Exception {
+    return QueryParser.parse(queryString, "blogEntry", getAnalyzer());
+  }
+
+  /**
+   * Creates a search hit from the stored fields of a matching document.
+   */
+  SearchHit createSearchHit(Document doc, float score) {
+    return new SearchHit(
+        blog,
+        doc.get("id"),
+        doc.get("permalink"),
+        doc.get("title"),
+        doc.get("subtitle"),
+        doc.get("truncatedBody"),
+        DateField.stringToDate(doc.get("date")),
+        score);
+  }
+
+  /**
+   * Gets the facet counts over every document in the index, e.g. to offer
+   * the choice of facet values before searching.
+   *
+   * @return  a Map of facet name to a Map of value to count
+   */
+  public Map<String,Map<String,Integer>> getFacetCounts() {
+    SearchIndexSnapshot snapshot = null;
+    try {
+      snapshot = acquireSnapshot();
+      FacetCache facetCache = snapshot.getFacetCache();
+      long[] documents = facetCache.newBitSet();
+      java.util.Arrays.fill(documents, -1L);
+      return facetCache.count(documents);
+    } catch (IOException e) {
+      log.error(e.getMessage(), e);
+      return new java.util.HashMap<String,Map<String,Integer>>();
+    } finally {
+      if (snapshot != null) {
+        snapshot.release();
+      }
+    }
+  }
+
+  /**
+   * Gets the id, title and permalink of every document in the index.
+   *
+   * @return  a List of String[3] instances
+   */
+  List<String[]> getTitles() {
+    List<String[]> titles = new ArrayList<String[]>();
+    SearchIndexSnapshot snapshot = null;
+    try {
+      snapshot = acquireSnapshot();
+      IndexReader reader = snapshot.getReader();
+      for (int i = 0; i < reader.maxDoc(); i++) {
+        if (!reader.isDeleted(i)) {
+          Document document = reader.document(i);
+          titles.add(new String[] { document.get("id"), document.get("title"), document.get("permalink") });
+        }
+      }
+    } catch (IOException e) {
+      log.error(e.getMessage(), e);
+    } finally {
+      if (snapshot != null) {
+        snapshot.release();
+      }
+    }
+
+    return titles;
+  }
+
+  /**
+   * Creates a filter that only lets through documents having all of the
+   * given facet values.
+   */
+  private Filter createFacetFilter(FacetCache facetCache, Map<String,String> facetFilters) {
+    long[] bits = null;
+    for (String facet : facetFilters.keySet()) {
+      long[] documents = facetCache.getDocuments(facet, facetFilters.get(facet));
+      if (documents == null) {
+        bits = facetCache.newBitSet();
+        break;
+      } else if (bits == null) {
+        bits = documents.clone();
+      } else {
+        for (int i = 0; i < bits.length; i++) {
+          bits[i] &= documents[i];
+        }
+      }
+    }
+
+    final BitSet bitSet = FacetCache.toBitSet(bits);
+    return new Filter() {
+      private static final long serialVersionUID = -186882576786325521L;
+
+      public BitSet bits(IndexReader reader) {
+        return bitSet;
+      }
+    };
   }
 
 }
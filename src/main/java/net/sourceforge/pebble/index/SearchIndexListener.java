@@ -36,7 +36,8 @@ import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
 import net.sourceforge.pebble.api.event.blogentry.BlogEntryListener;
 
 /**
- * Listens to blog entry events and keeps the search index up to date.
+ * Listens to blog entry events and keeps the search index up to date, by
+ * queueing the affected blog entries on the blog's SearchIndexQueue.
  *
  * @author    Simon Brown
  */
@@ -62,8 +63,7 @@ public class SearchIndexListener implements BlogEntryListener {
    */
   public void blogEntryRemoved(BlogEntryEvent event) {
     BlogEntry blogEntry = event.getBlogEntry();
-
-    blogEntry.getBlog().getSearchIndex().unindex(blogEntry);
+    updateSearchIndex(blogEntry);
   }
 
   /**
@@ -96,15 +96,15 @@ public class SearchIndexListener implements BlogEntryListener {
    */
   public void blogEntryUnpublished(BlogEntryEvent event) {
     BlogEntry blogEntry = event.getBlogEntry();
-
-    blogEntry.getBlog().getSearchIndex().unindex(blogEntry);
+    updateSearchIndex(blogEntry);
   }
 
   /**
-   * Updates the search index to reflect the new/changed/removed blog entry.
+   * Queues an update of the search index to reflect the new/changed/removed
+   * blog entry.
    */
   private void updateSearchIndex(BlogEntry blogEntry) {
-    blogEntry.getBlog().getSearchIndex().index(blogEntry);
+    blogEntry.getBlog().getSearchIndexQueue().enqueue(blogEntry.getId());
   }
 
 }
\ No newline at end of file
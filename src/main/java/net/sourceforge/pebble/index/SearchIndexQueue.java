@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.domain.BlogService;
+import net.sourceforge.pebble.domain.BlogServiceException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A per-blog queue of pending search index updates, drained in batches by a
+ * background thread so that saving a blog entry doesn't have to wait for
+ * Lucene. Repeated updates of the same blog entry are coalesced, and the
+ * pending IDs are written to disk so that, after a crash, only those blog
+ * entries need to be reindexed.
+ *
+ * @author    Simon Brown
+ */
+public class SearchIndexQueue {
+
+  private static final Log log = LogFactory.getLog(SearchIndexQueue.class);
+
+  /** the name of the file holding pending updates */
+  private static final String QUEUE_FILE = "search-queue.index";
+
+  /** how long to wait for further updates before draining, in milliseconds */
+  private static final long DEFAULT_DRAIN_DELAY = 500;
+
+  /** the maximum number of blog entries indexed in one batch */
+  private static final int BATCH_SIZE = 50;
+
+  private final Blog blog;
+  private final long drainDelay;
+
+  /** pending blog entry IDs, mapped to the time they were first queued */
+  private final Map<String,Long> pending = new LinkedHashMap<String,Long>();
+
+  /** blog entry IDs currently being indexed */
+  private final Map<String,Long> inProgress = new LinkedHashMap<String,Long>();
+
+  private ScheduledExecutorService executor;
+  private boolean drainScheduled = false;
+
+  public SearchIndexQueue(Blog blog) {
+    this(blog, DEFAULT_DRAIN_DELAY);
+  }
+
+  SearchIndexQueue(Blog blog, long drainDelay) {
+    this.blog = blog;
+    this.drainDelay = drainDelay;
+  }
+
+  /**
+   * Starts the background thread, picking up any updates that were still
+   * pending when the blog was last stopped.
+   */
+  public synchronized void start() {
+    readQueue();
+
+    ScheduledThreadPoolExecutor service = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "pebble-search-index-" + blog.getId());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // anything still pending is flushed by stop() instead
+    service.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    executor = service;
+
+    if (!pending.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Stops the background thread and indexes anything that is still pending.
+   */
+  public void stop() {
+    ScheduledExecutorService service;
+    synchronized (this) {
+      service = executor;
+      executor = null;
+      drainScheduled = false;
+    }
+
+    if (service != null) {
+      service.shutdown();
+      try {
+        service.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    flush();
+  }
+
+  /**
+   * Queues the specified blog entry to be (re)indexed, or unindexed if it
+   * no longer exists or isn't published when the queue is drained.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public void enqueue(String blogEntryId) {
+    boolean started;
+    synchronized (this) {
+      if (!pending.containsKey(blogEntryId)) {
+        pending.put(blogEntryId, System.currentTimeMillis());
+        writeQueue();
+      }
+
+      started = (executor != null);
+      if (started) {
+        scheduleDrain();
+      }
+    }
+
+    if (!started) {
+      flush();
+    }
+  }
+
+  /**
+   * Indexes all pending updates on the calling thread.
+   */
+  public void flush() {
+    while (drain()) {
+      // keep going until the queue is empty
+    }
+  }
+
+  /**
+   * Discards all pending updates, typically because the whole blog is
+   * about to be reindexed.
+   */
+  public synchronized void clear() {
+    pending.clear();
+    writeQueue();
+  }
+
+  /**
+   * Gets the number of blog entries waiting to be indexed.
+   *
+   * @return  an int
+   */
+  public synchronized int getNumberOfPendingUpdates() {
+    return pending.size() + inProgress.size();
+  }
+
+  /**
+   * Gets the IDs of blog entries waiting to be indexed.
+   *
+   * @return  a List of blog entry IDs, oldest first
+   */
+  public synchronized List<String> getPendingBlogEntryIds() {
+    List<String> blogEntryIds = new ArrayList<String>(inProgress.keySet());
+    blogEntryIds.addAll(pending.keySet());
+    return blogEntryIds;
+  }
+
+  /**
+   * Gets how far the search index is behind, as the age of the oldest
+   * pending update.
+   *
+   * @return  the lag in milliseconds, or 0 if nothing is pending
+   */
+  public synchronized long getLag() {
+    long oldest = Long.MAX_VALUE;
+    for (Long queued : inProgress.values()) {
+      oldest = Math.min(oldest, queued);
+    }
+    for (Long queued : pending.values()) {
+      oldest = Math.min(oldest, queued);
+    }
+
+    if (oldest == Long.MAX_VALUE) {
+      return 0;
+    } else {
+      return Math.max(0, System.currentTimeMillis() - oldest);
+    }
+  }
+
+  private void scheduleDrain() {
+    if (!drainScheduled && executor != null) {
+      drainScheduled = true;
+      executor.schedule(new Runnable() {
+        public void run() {
+          drainInBackground();
+        }
+      }, drainDelay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void drainInBackground() {
+    while (drain()) {
+      synchronized (this) {
+        if (executor == null) {
+          // stopping, the remainder will be flushed on stop()
+          return;
+        }
+      }
+    }
+
+    synchronized (this) {
+      drainScheduled = false;
+      if (!pending.isEmpty()) {
+        scheduleDrain();
+      }
+    }
+  }
+
+  /**
+   * Indexes a single batch of pending updates.
+   *
+   * @return  true if a batch was indexed, false if the queue was empty
+   */
+  private boolean drain() {
+    List<String> batch = new ArrayList<String>();
+    synchronized (this) {
+      Iterator<Map.Entry<String,Long>> it = pending.entrySet().iterator();
+      while (it.hasNext() && batch.size() < BATCH_SIZE) {
+        Map.Entry<String,Long> entry = it.next();
+        batch.add(entry.getKey());
+        inProgress.put(entry.getKey(), entry.getValue());
+        it.remove();
+      }
+    }
+
+    if (batch.isEmpty()) {
+      return false;
+    }
+
+    try {
+      List<BlogEntry> blogEntries = new ArrayList<BlogEntry>();
+      BlogService service = new BlogService();
+
+      // wait for any in-flight save to complete before reading entries back
+      synchronized (blog) {
+        for (String blogEntryId : batch) {
+          try {
+            BlogEntry blogEntry = service.getBlogEntry(blog, blogEntryId);
+            if (blogEntry != null && blogEntry.isPublished()) {
+              blogEntries.add(blogEntry);
+            }
+          } catch (BlogServiceException e) {
+            log.error("Error loading blog entry " + blogEntryId + " for indexing", e);
+          }
+        }
+      }
+
+      blog.getSearchIndex().update(batch, blogEntries);
+    } finally {
+      synchronized (this) {
+        for (String blogEntryId : batch) {
+          inProgress.remove(blogEntryId);
+        }
+        writeQueue();
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Helper method to load pending updates from disk.
+   */
+  private void readQueue() {
+    File queueFile = new File(blog.getIndexesDirectory(), QUEUE_FILE);
+    if (queueFile.exists()) {
+      try {
+        long now = System.currentTimeMillis();
+        BufferedReader reader = new BufferedReader(new FileReader(queueFile));
+        String blogEntryId = reader.readLine();
+        while (blogEntryId != null) {
+          if (blogEntryId.length() > 0 && !pending.containsKey(blogEntryId)) {
+            pending.put(blogEntryId, now);
+          }
+          blogEntryId = reader.readLine();
+        }
+
+        reader.close();
+      } catch (Exception e) {
+        log.error("Error while reading search index queue", e);
+      }
+    }
+  }
+
+  /**
+   * Helper method to write pending updates to disk.
+   */
+  private void writeQueue() {
+    File indexesDirectory = new File(blog.getIndexesDirectory());
+    if (!indexesDirectory.exists()) {
+      return;
+    }
+
+    try {
+      File queueFile = new File(indexesDirectory, QUEUE_FILE);
+      BufferedWriter writer = new BufferedWriter(new FileWriter(queueFile));
+      for (String blogEntryId : inProgress.keySet()) {
+        writer.write(blogEntryId);
+        writer.newLine();
+      }
+      for (String blogEntryId : pending.keySet()) {
+        if (!inProgress.containsKey(blogEntryId)) {
+          writer.write(blogEntryId);
+          writer.newLine();
+        }
+      }
+
+      writer.flush();
+      writer.close();
+    } catch (Exception e) {
+      log.error("Error while writing search index queue", e);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+
+/**
+ * An open, read-only view of a search index at a given version, shared by
+ * all searches until the index changes. The reader is reference counted so
+ * that it is only closed once the last search using it has finished.
+ *
+ * @author    Simon Brown
+ */
+class SearchIndexSnapshot {
+
+  private static final Log log = LogFactory.getLog(SearchIndexSnapshot.class);
+
+  private final long version;
+  private final IndexReader reader;
+  private final IndexSearcher searcher;
+  private final String[] facetNames;
+  private FacetCache facetCache;
+
+  /** the number of users, including the owning SearchIndex */
+  private int references = 1;
+
+  SearchIndexSnapshot(String directory, String[] facetNames) throws IOException {
+    // read the version first, so a concurrent change makes this look stale
+    this.version = IndexReader.getCurrentVersion(directory);
+    this.reader = IndexReader.open(directory);
+    this.searcher = new IndexSearcher(reader);
+    this.facetNames = facetNames;
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  IndexReader getReader() {
+    return reader;
+  }
+
+  IndexSearcher getSearcher() {
+    return searcher;
+  }
+
+  /**
+   * Gets the facet bitsets for this snapshot, reading them on first use.
+   *
+   * @return  a FacetCache instance
+   * @throws IOException  if the index can't be read
+   */
+  synchronized FacetCache getFacetCache() throws IOException {
+    if (facetCache == null) {
+      facetCache = new FacetCache(reader, facetNames);
+    }
+    return facetCache;
+  }
+
+  /**
+   * Registers another user of this snapshot.
+   *
+   * @return  true if successful, false if the snapshot has been closed
+   */
+  synchronized boolean acquire() {
+    if (references == 0) {
+      return false;
+    }
+
+    references++;
+    return true;
+  }
+
+  /**
+   * Releases a use of this snapshot, closing it if it was the last.
+   */
+  synchronized void release() {
+    references--;
+    if (references == 0) {
+      try {
+        searcher.close();
+        reader.close();
+      } catch (IOException e) {
+        log.warn("Error closing search index reader", e);
+      }
+    }
+  }
+
+}
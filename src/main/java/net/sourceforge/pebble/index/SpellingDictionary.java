@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Token;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+
+/**
+ * An in-memory dictionary of the words in a search index, used to suggest
+ * corrections for misspelt search terms. Each word is indexed by its
+ * character bigrams (including the start and end of the word), so the
+ * candidates for a correction are only those words sharing enough bigrams
+ * with it, and only those are compared by edit distance.
+ *
+ * @author    Simon Brown
+ */
+class SpellingDictionary {
+
+  /** the length of the character n-grams that words are indexed by */
+  private static final int GRAM_LENGTH = 2;
+
+  /** words shorter or longer than this aren't worth correcting */
+  private static final int MIN_WORD_LENGTH = 3;
+  private static final int MAX_WORD_LENGTH = 30;
+
+  private final Map<String,Integer> ids = new HashMap<String,Integer>();
+  private String[] words = new String[256];
+  private int[] frequencies = new int[256];
+  private int numberOfWords = 0;
+
+  /** bigram -> the IDs of the words containing it */
+  private final Map<String,Postings> grams = new HashMap<String,Postings>();
+
+  /**
+   * Reads all of the words in a field of the search index, using the number
+   * of documents containing each as its frequency.
+   *
+   * @param reader    the IndexReader to read from
+   * @param field     the name of the field
+   * @return  a SpellingDictionary instance
+   * @throws IOException  if the index can't be read
+   */
+  static SpellingDictionary read(IndexReader reader, String field) throws IOException {
+    SpellingDictionary dictionary = new SpellingDictionary();
+    TermEnum terms = reader.terms(new Term(field, ""));
+    try {
+      do {
+        Term term = terms.term();
+        if (term == null || !term.field().equals(field)) {
+          break;
+        }
+        dictionary.add(term.text(), terms.docFreq());
+      } while (terms.next());
+    } finally {
+      terms.close();
+    }
+
+    return dictionary;
+  }
+
+  /**
+   * Adds the words in a newly indexed document, analyzed in the same way
+   * as the index.
+   *
+   * @param analyzer    the Analyzer used by the index
+   * @param field       the name of the field
+   * @param text        the text of the document
+   * @throws IOException  if the text can't be analyzed
+   */
+  void add(Analyzer analyzer, String field, String text) throws IOException {
+    // as when read from the index, the frequency is the number of documents
+    Set<String> words = new HashSet<String>();
+    TokenStream tokens = analyzer.tokenStream(field, new StringReader(text));
+    try {
+      Token token = tokens.next();
+      while (token != null) {
+        words.add(token.termText());
+        token = tokens.next();
+      }
+    } finally {
+      tokens.close();
+    }
+
+    for (String word : words) {
+      add(word, 1);
+    }
+  }
+
+  /**
+   * Adds a word to the dictionary, or increases its frequency if it's
+   * already there.
+   *
+   * @param word        the word
+   * @param frequency   the number of documents the word occurs in
+   */
+  synchronized void add(String word, int frequency) {
+    if (!isWord(word)) {
+      return;
+    }
+
+    Integer id = ids.get(word);
+    if (id != null) {
+      frequencies[id] += frequency;
+      return;
+    }
+
+    if (numberOfWords == words.length) {
+      words = Arrays.copyOf(words, numberOfWords * 2);
+      frequencies = Arrays.copyOf(frequencies, numberOfWords * 2);
+    }
+    id = numberOfWords++;
+    words[id] = word;
+    frequencies[id] = frequency;
+    ids.put(word, id);
+
+    for (String gram : grams(word)) {
+      Postings postings = grams.get(gram);
+      if (postings == null) {
+        postings = new Postings();
+        grams.put(gram, postings);
+      }
+      postings.add(id);
+    }
+  }
+
+  /**
+   * Determines whether the dictionary contains the specified word.
+   *
+   * @param word    the word, as analyzed by the index
+   * @return  true if the word is in the dictionary, false otherwise
+   */
+  synchronized boolean contains(String word) {
+    return ids.containsKey(word);
+  }
+
+  /**
+   * Gets the number of words in the dictionary.
+   */
+  synchronized int size() {
+    return numberOfWords;
+  }
+
+  /**
+   * Suggests the closest words in the dictionary to a misspelt one, closest
+   * and then most frequent first. Words of four letters or less may differ
+   * by a single edit (an insertion, deletion, substitution or transposition
+   * of adjacent letters), longer words by two.
+   *
+   * @param word    the misspelt word, as analyzed by the index
+   * @param max     the maximum number of suggestions
+   * @return  a List of words, which may be empty
+   */
+  synchronized List<String> suggest(String word, int max) {
+    List<String> suggestions = new ArrayList<String>();
+    if (!isWord(word) || max <= 0) {
+      return suggestions;
+    }
+
+    int maxDistance = (word.length() <= 4) ? 1 : 2;
+    String[] wordGrams = grams(word);
+
+    // count the bigrams shared with each word, remembering which were seen
+    int[] shared = new int[numberOfWords];
+    Postings candidates = new Postings();
+    for (String gram : wordGrams) {
+      Postings postings = grams.get(gram);
+      if (postings != null) {
+        for (int i = 0; i < postings.size; i++) {
+          int id = postings.ids[i];
+          if (shared[id]++ == 0) {
+            candidates.add(id);
+          }
+        }
+      }
+    }
+
+    // each edit changes at most GRAM_LENGTH + 1 bigrams (a transposition)
+    int minShared = Math.max(1, wordGrams.length - (maxDistance * (GRAM_LENGTH + 1)));
+    final int[] distances = new int[numberOfWords];
+    List<Integer> matches = new ArrayList<Integer>();
+    for (int i = 0; i < candidates.size; i++) {
+      int id = candidates.ids[i];
+      String candidate = words[id];
+      if (shared[id] >= minShared && Math.abs(candidate.length() - word.length()) <= maxDistance && !candidate.equals(word)) {
+        int distance = distance(word, candidate, maxDistance);
+        if (distance <= maxDistance) {
+          distances[id] = distance;
+          matches.add(id);
+        }
+      }
+    }
+
+    Collections.sort(matches, new Comparator<Integer>() {
+      public int compare(Integer id1, Integer id2) {
+        if (distances[id1] != distances[id2]) {
+          return distances[id1] - distances[id2];
+        } else if (frequencies[id1] != frequencies[id2]) {
+          return frequencies[id2] - frequencies[id1];
+        } else {
+          return words[id1].compareTo(words[id2]);
+        }
+      }
+    });
+
+    for (int i = 0; i < matches.size() && i < max; i++) {
+      suggestions.add(words[matches.get(i)]);
+    }
+
+    return suggestions;
+  }
+
+  private static boolean isWord(String word) {
+    if (word.length() < MIN_WORD_LENGTH || word.length() > MAX_WORD_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (!Character.isLetter(word.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String[] grams(String word) {
+    String padded = "^" + word + "$";
+    String[] grams = new String[padded.length() - GRAM_LENGTH + 1];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = padded.substring(i, i + GRAM_LENGTH);
+    }
+    return grams;
+  }
+
+  /**
+   * Gets the edit distance between two words, counting the transposition of
+   * adjacent letters as a single edit, or a value greater than max as soon
+   * as it's known to exceed it.
+   */
+  static int distance(String s, String t, int max) {
+    int[] previous = new int[t.length() + 1];
+    int[] current = new int[t.length() + 1];
+    int[] beforePrevious = new int[t.length() + 1];
+    for (int j = 0; j <= t.length(); j++) {
+      previous[j] = j;
+    }
+
+    for (int i = 1; i <= s.length(); i++) {
+      current[0] = i;
+      int rowMinimum = i;
+      for (int j = 1; j <= t.length(); j++) {
+        int cost = (s.charAt(i - 1) == t.charAt(j - 1)) ? 0 : 1;
+        int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+        if (i > 1 && j > 1 && s.charAt(i - 1) == t.charAt(j - 2) && s.charAt(i - 2) == t.charAt(j - 1)) {
+          value = Math.min(value, beforePrevious[j - 2] + 1);
+        }
+        current[j] = value;
+        rowMinimum = Math.min(rowMinimum, value);
+      }
+      if (rowMinimum > max) {
+        return max + 1;
+      }
+
+      int[] rows = beforePrevious;
+      beforePrevious = previous;
+      previous = current;
+      current = rows;
+    }
+
+    return previous[t.length()];
+  }
+
+  /**
+   * A growable list of word IDs.
+   */
+  private static class Postings {
+
+    private int[] ids = new int[4];
+    private int size = 0;
+
+    void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+
+  }
+
+}
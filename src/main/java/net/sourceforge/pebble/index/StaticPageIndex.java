@@ -158,19 +158,14 @@ public class StaticPageIndex {
    */
   private void readIndex() {
     log.info("Reading index from disk");
-    File indexFile = getIndexFile();
+    IndexFile indexFile = new IndexFile(getIndexFile(), true);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String indexEntry = reader.readLine();
-        while (indexEntry != null) {
-          String[] parts = indexEntry.split("=");
-          index.put(parts[0], parts[1]);
-
-          indexEntry = reader.readLine();
-        }
-
-        reader.close();
+        indexFile.read(new IndexFile.RecordHandler() {
+          public void record(String key, List<String> values) {
+            index.put(key, values.get(0));
+          }
+        });
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -182,16 +177,13 @@ public class StaticPageIndex {
    */
   private void writeIndex() {
     try {
-      File indexFile = getIndexFile();
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
+      Map<String,List<String>> records = new LinkedHashMap<String,List<String>>();
       for (String name : index.keySet()) {
-        writer.write(name + "=" + index.get(name));
-        writer.newLine();
+        records.put(name, Collections.singletonList(index.get(name)));
       }
 
-      writer.flush();
-      writer.close();
+      IndexFile indexFile = new IndexFile(getIndexFile(), true);
+      indexFile.write(records, blog.isBinaryIndexesEnabled());
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
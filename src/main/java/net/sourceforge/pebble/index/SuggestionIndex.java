@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.domain.Category;
+import net.sourceforge.pebble.domain.Tag;
+import net.sourceforge.pebble.search.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory prefix index of published blog entry titles, tags and
+ * categories, used to offer suggestions while a search query is being typed.
+ * Each kind of suggestion is held as a sorted array of lowercase keys that is
+ * binary searched for the typed prefix. When blog entries change, only the
+ * keys that have changed are removed from, and merged into, a copy of the
+ * arrays, which is then swapped in so that lookups never block.
+ *
+ * @author    Simon Brown
+ */
+public class SuggestionIndex {
+
+  /** the number of words within a title that a suggestion can start at */
+  private static final int MAX_WORDS_PER_TITLE = 8;
+
+  /** orders keys alphabetically */
+  private static final Comparator<Key> KEY_ORDER = new Comparator<Key>() {
+    public int compare(Key k1, Key k2) {
+      return k1.key.compareTo(k2.key);
+    }
+  };
+
+  /** the owning blog */
+  private final Blog blog;
+
+  /** the published blog entry titles, keyed on blog entry id */
+  private final Map<String,Suggestion> titles = new HashMap<String,Suggestion>();
+
+  /** the suggested tags, keyed on name, and categories, keyed on id */
+  private final Map<String,Suggestion> tags = new HashMap<String,Suggestion>();
+  private final Map<String,Suggestion> categories = new HashMap<String,Suggestion>();
+
+  /** the ids of blog entries removed before the titles were first loaded */
+  private final Set<String> removedBeforeLoad = new HashSet<String>();
+
+  /** whether the titles have been loaded from the search index */
+  private volatile boolean loaded = false;
+
+  private volatile PrefixArray titleArray = PrefixArray.EMPTY;
+  private volatile PrefixArray tagArray = PrefixArray.EMPTY;
+  private volatile PrefixArray categoryArray = PrefixArray.EMPTY;
+
+  public SuggestionIndex(Blog blog) {
+    this.blog = blog;
+  }
+
+  /**
+   * Clears the index, causing it to be reloaded when next used.
+   */
+  public synchronized void clear() {
+    titles.clear();
+    tags.clear();
+    categories.clear();
+    removedBeforeLoad.clear();
+    titleArray = PrefixArray.EMPTY;
+    tagArray = PrefixArray.EMPTY;
+    categoryArray = PrefixArray.EMPTY;
+    loaded = false;
+  }
+
+  /**
+   * Indexes a single published blog entry.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void index(BlogEntry blogEntry) {
+    Suggestion oldTitle = titles.remove(blogEntry.getId());
+    Suggestion newTitle = null;
+    if (blogEntry.isPublished()) {
+      newTitle = addTitle(blogEntry.getId(), blogEntry.getTitle(), blogEntry.getPermalink());
+    }
+    removedBeforeLoad.remove(blogEntry.getId());
+
+    if (loaded) {
+      updateTitle(oldTitle, newTitle);
+      updateTagsAndCategories();
+    }
+  }
+
+  /**
+   * Removes a blog entry from the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void unindex(BlogEntry blogEntry) {
+    Suggestion oldTitle = titles.remove(blogEntry.getId());
+
+    if (loaded) {
+      updateTitle(oldTitle, null);
+      updateTagsAndCategories();
+    } else {
+      removedBeforeLoad.add(blogEntry.getId());
+    }
+  }
+
+  /**
+   * Gets suggestions for the given prefix; tags first, then categories,
+   * then blog entry titles, each in alphabetical order. Titles match on the
+   * start of any of their words.
+   *
+   * @param prefix    the text typed so far
+   * @param max       the maximum number of suggestions to return
+   * @return  a List of Suggestion instances
+   */
+  public List<Suggestion> suggest(String prefix, int max) {
+    List<Suggestion> suggestions = new ArrayList<Suggestion>();
+    String key = prefix != null ? normalize(prefix) : "";
+    if (key.length() == 0 || max <= 0) {
+      return suggestions;
+    }
+
+    load();
+    tagArray.find(key, suggestions, max);
+    categoryArray.find(key, suggestions, max);
+    titleArray.find(key, suggestions, max);
+
+    return suggestions;
+  }
+
+  /**
+   * Gets an estimate of the heap used by this index.
+   *
+   * @return  the number of bytes
+   */
+  public long getMemoryFootprint() {
+    return titleArray.getMemoryFootprint() + tagArray.getMemoryFootprint() + categoryArray.getMemoryFootprint();
+  }
+
+  /**
+   * Gets the number of keys held by this index.
+   *
+   * @return  the number of keys across titles, tags and categories
+   */
+  public int getNumberOfKeys() {
+    return titleArray.size() + tagArray.size() + categoryArray.size();
+  }
+
+  /**
+   * Loads the titles from the search index the first time they are needed,
+   * rather than loading every blog entry when the blog starts.
+   */
+  private void load() {
+    if (loaded) {
+      return;
+    }
+
+    synchronized (this) {
+      if (loaded) {
+        return;
+      }
+
+      Set<String> published = new HashSet<String>(blog.getBlogEntryIndex().getPublishedBlogEntries());
+      for (String[] title : blog.getSearchIndex().getTitles()) {
+        String id = title[0];
+        if (published.contains(id) && !titles.containsKey(id) && !removedBeforeLoad.contains(id)) {
+          addTitle(id, title[1], title[2]);
+        }
+      }
+      removedBeforeLoad.clear();
+      loaded = true;
+
+      List<Key> keys = new ArrayList<Key>();
+      for (Suggestion suggestion : titles.values()) {
+        addTitleKeys(suggestion, keys);
+      }
+      titleArray = new PrefixArray(keys);
+      updateTagsAndCategories();
+    }
+  }
+
+  private Suggestion addTitle(String id, String title, String permalink) {
+    if (title != null && title.trim().length() > 0) {
+      Suggestion suggestion = new Suggestion(Suggestion.TITLE, title, permalink);
+      titles.put(id, suggestion);
+      return suggestion;
+    }
+
+    return null;
+  }
+
+  /**
+   * Adds the keys for a title; the whole title, and the title from the
+   * start of each of its words.
+   */
+  private void addTitleKeys(Suggestion suggestion, List<Key> keys) {
+    String title = normalize(suggestion.getText());
+    keys.add(new Key(title, suggestion));
+
+    int words = 1;
+    for (int i = 1; i < title.length() && words < MAX_WORDS_PER_TITLE; i++) {
+      if (Character.isLetterOrDigit(title.charAt(i)) && !Character.isLetterOrDigit(title.charAt(i-1))) {
+        keys.add(new Key(title.substring(i), suggestion));
+        words++;
+      }
+    }
+  }
+
+  private void updateTitle(Suggestion oldTitle, Suggestion newTitle) {
+    Map<Suggestion,Suggestion> removed = new IdentityHashMap<Suggestion,Suggestion>();
+    if (oldTitle != null) {
+      removed.put(oldTitle, oldTitle);
+    }
+    List<Key> added = new ArrayList<Key>();
+    if (newTitle != null) {
+      addTitleKeys(newTitle, added);
+    }
+
+    titleArray = titleArray.update(removed, added);
+  }
+
+  /**
+   * Brings the tag and category suggestions into line with the tag and
+   * category indexes, which have already been updated for the blog entry.
+   * There are relatively few of these, so they are compared in full, but
+   * only those that have been added, changed or removed are updated.
+   */
+  private void updateTagsAndCategories() {
+    Map<String,Suggestion> current = new HashMap<String,Suggestion>();
+    for (Tag tag : blog.getTagIndex().getTags()) {
+      current.put(tag.getName(), new Suggestion(Suggestion.TAG, tag.getName(), tag.getPermalink()));
+    }
+    tagArray = update(tagArray, tags, current);
+
+    current = new HashMap<String,Suggestion>();
+    for (Category category : blog.getCategories()) {
+      if (!category.isRootCategory() && category.getNumberOfBlogEntries() > 0) {
+        current.put(category.getId(), new Suggestion(Suggestion.CATEGORY, category.getName(), category.getPermalink()));
+      }
+    }
+    categoryArray = update(categoryArray, categories, current);
+  }
+
+  /**
+   * Updates an array with the differences between the suggestions it holds
+   * and the current suggestions, keeping the instances that are unchanged.
+   *
+   * @param array       the array to update
+   * @param indexed     the suggestions held by the array, which are updated
+   * @param current     the current suggestions
+   * @return  the updated array, or the same array if nothing has changed
+   */
+  private PrefixArray update(PrefixArray array, Map<String,Suggestion> indexed, Map<String,Suggestion> current) {
+    Map<Suggestion,Suggestion> removed = new IdentityHashMap<Suggestion,Suggestion>();
+    List<Key> added = new ArrayList<Key>();
+
+    for (Map.Entry<String,Suggestion> entry : indexed.entrySet()) {
+      Suggestion suggestion = current.get(entry.getKey());
+      if (suggestion == null || !isSame(suggestion, entry.getValue())) {
+        removed.put(entry.getValue(), entry.getValue());
+      }
+    }
+    for (Map.Entry<String,Suggestion> entry : current.entrySet()) {
+      Suggestion suggestion = indexed.get(entry.getKey());
+      if (suggestion == null || !isSame(suggestion, entry.getValue())) {
+        added.add(new Key(normalize(entry.getValue().getText()), entry.getValue()));
+        indexed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    indexed.keySet().retainAll(current.keySet());
+
+    return array.update(removed, added);
+  }
+
+  private static boolean isSame(Suggestion s1, Suggestion s2) {
+    return s1.getText().equals(s2.getText()) &&
+        (s1.getUrl() == null ? s2.getUrl() == null : s1.getUrl().equals(s2.getUrl()));
+  }
+
+  private String normalize(String s) {
+    int start = 0;
+    while (start < s.length() && Character.isWhitespace(s.charAt(start))) {
+      start++;
+    }
+
+    return s.substring(start).toLowerCase(blog.getLocale());
+  }
+
+  /**
+   * A lowercase key and the suggestion it leads to.
+   */
+  private static class Key {
+
+    private final String key;
+    private final Suggestion suggestion;
+
+    Key(String key, Suggestion suggestion) {
+      this.key = key;
+      this.suggestion = suggestion;
+    }
+
+  }
+
+  /**
+   * An immutable, sorted array of keys and their suggestions.
+   */
+  private static class PrefixArray {
+
+    static final PrefixArray EMPTY = new PrefixArray(new ArrayList<Key>());
+
+    /** rough sizes, in bytes, of an object header, a reference and a String */
+    private static final int OBJECT_SIZE = 16;
+    private static final int REFERENCE_SIZE = 8;
+    private static final int STRING_SIZE = OBJECT_SIZE + 24;
+
+    private final String[] keys;
+    private final Suggestion[] suggestions;
+    private final long memoryFootprint;
+
+    PrefixArray(List<Key> list) {
+      Key[] sorted = list.toArray(new Key[list.size()]);
+      Arrays.sort(sorted, KEY_ORDER);
+
+      keys = new String[sorted.length];
+      suggestions = new Suggestion[sorted.length];
+      long bytes = 2 * (OBJECT_SIZE + 4);
+      Map<Suggestion,Suggestion> counted = new IdentityHashMap<Suggestion,Suggestion>();
+      for (int i = 0; i < sorted.length; i++) {
+        keys[i] = sorted[i].key;
+        suggestions[i] = sorted[i].suggestion;
+        bytes += slotSize(keys[i]);
+        if (counted.put(suggestions[i], suggestions[i]) == null) {
+          bytes += sizeOf(suggestions[i]);
+        }
+      }
+      memoryFootprint = bytes;
+    }
+
+    private PrefixArray(String[] keys, Suggestion[] suggestions, long memoryFootprint) {
+      this.keys = keys;
+      this.suggestions = suggestions;
+      this.memoryFootprint = memoryFootprint;
+    }
+
+    /** the size of the array slots holding the given key */
+    private static long slotSize(String key) {
+      return 2 * REFERENCE_SIZE + sizeOf(key);
+    }
+
+    private static long sizeOf(Suggestion suggestion) {
+      return OBJECT_SIZE + 3 * REFERENCE_SIZE + sizeOf(suggestion.getText()) + sizeOf(suggestion.getUrl());
+    }
+
+    private static long sizeOf(String s) {
+      return s != null ? STRING_SIZE + 2 * s.length() : 0;
+    }
+
+    /**
+     * Creates a copy of this array with every key for the removed
+     * suggestions taken out, and the added keys merged in, in order, in a
+     * single pass rather than sorting the whole array again.
+     *
+     * @param removed   the suggestions to remove, compared by identity
+     * @param added     the keys to add
+     * @return  the new array, or this array if there are no changes
+     */
+    PrefixArray update(Map<Suggestion,Suggestion> removed, List<Key> added) {
+      if (removed.isEmpty() && added.isEmpty()) {
+        return this;
+      }
+
+      Key[] sorted = added.toArray(new Key[added.size()]);
+      Arrays.sort(sorted, KEY_ORDER);
+
+      long bytes = memoryFootprint;
+      for (Suggestion suggestion : removed.keySet()) {
+        bytes -= sizeOf(suggestion);
+      }
+      Map<Suggestion,Suggestion> counted = new IdentityHashMap<Suggestion,Suggestion>();
+      for (Key key : sorted) {
+        bytes += slotSize(key.key);
+        if (counted.put(key.suggestion, key.suggestion) == null) {
+          bytes += sizeOf(key.suggestion);
+        }
+      }
+
+      String[] newKeys = new String[keys.length + sorted.length];
+      Suggestion[] newSuggestions = new Suggestion[newKeys.length];
+      int i = 0, j = 0, n = 0;
+      while (i < keys.length || j < sorted.length) {
+        if (i < keys.length && removed.containsKey(suggestions[i])) {
+          bytes -= slotSize(keys[i]);
+          i++;
+        } else if (j == sorted.length || (i < keys.length && keys[i].compareTo(sorted[j].key) <= 0)) {
+          newKeys[n] = keys[i];
+          newSuggestions[n++] = suggestions[i++];
+        } else {
+          newKeys[n] = sorted[j].key;
+          newSuggestions[n++] = sorted[j++].suggestion;
+        }
+      }
+
+      if (n < newKeys.length) {
+        newKeys = Arrays.copyOf(newKeys, n);
+        newSuggestions = Arrays.copyOf(newSuggestions, n);
+      }
+      return new PrefixArray(newKeys, newSuggestions, bytes);
+    }
+
+    /**
+     * Adds the suggestions whose keys start with the given prefix, until
+     * the list holds max suggestions.
+     */
+    void find(String prefix, List<Suggestion> results, int max) {
+      int i = Arrays.binarySearch(keys, prefix);
+      if (i < 0) {
+        i = -(i + 1);
+      }
+
+      for (; i < keys.length && results.size() < max && keys[i].startsWith(prefix); i++) {
+        if (!results.contains(suggestions[i])) {
+          results.add(suggestions[i]);
+        }
+      }
+    }
+
+    int size() {
+      return keys.length;
+    }
+
+    long getMemoryFootprint() {
+      return memoryFootprint;
+    }
+
+  }
+
+}
@@ -45,7 +45,7 @@ import java.util.*;
  *
  * @author    Simon Brown
  */
-public class TagIndex {
+public class TagIndex implements ReindexableIndex {
 
   private static final Log log = LogFactory.getLog(TagIndex.class);
 
@@ -57,6 +57,9 @@ public class TagIndex {
   /** a view onto the map, ordered by tag name */
   private List<Tag> orderedTags = new ArrayList<Tag>();
 
+  /** the blog entries added but not yet indexed, keyed on tag name */
+  private Map<String,List<String>> addedBlogEntries = new HashMap<String,List<String>>();
+
   public TagIndex(Blog blog) {
     this.blog = blog;
 
@@ -79,13 +82,49 @@ public class TagIndex {
    */
   public synchronized void index(Collection<BlogEntry> blogEntries) {
     for (BlogEntry blogEntry : blogEntries) {
-      if (blogEntry.isPublished()) {
-        for (Tag tag : blogEntry.getAllTags()) {
-          IndexedTag t = getTag(tag.getName());
-          t.addBlogEntry(blogEntry.getId());
+      add(blogEntry);
+    }
+
+    finish();
+  }
+
+  /**
+   * Adds a blog entry to the index, without sorting or writing the index.
+   *
+   * @param blogEntry   a BlogEntry instance
+   */
+  public synchronized void add(BlogEntry blogEntry) {
+    if (blogEntry.isPublished()) {
+      for (Tag tag : blogEntry.getAllTags()) {
+        List<String> blogEntryIds = addedBlogEntries.get(tag.getName());
+        if (blogEntryIds == null) {
+          blogEntryIds = new ArrayList<String>();
+          addedBlogEntries.put(tag.getName(), blogEntryIds);
         }
+        blogEntryIds.add(blogEntry.getId());
       }
     }
+  }
+
+  /**
+   * Removes a blog entry from the index, without writing the index.
+   *
+   * @param blogEntryId   the ID of a blog entry
+   */
+  public synchronized void remove(String blogEntryId) {
+    for (IndexedTag tag : tags.values()) {
+      tag.removeBlogEntry(blogEntryId);
+    }
+  }
+
+  /**
+   * Indexes the blog entries that have been added, and writes the index.
+   */
+  public synchronized void finish() {
+    for (String name : addedBlogEntries.keySet()) {
+      getTag(name).addBlogEntries(addedBlogEntries.get(name));
+    }
+    addedBlogEntries = new HashMap<String,List<String>>();
 
     writeIndex();
     recalculateTagRankings();
@@ -127,26 +166,14 @@ public class TagIndex {
    * Helper method to load the index.
    */
   private void readIndex() {
-    File indexFile = new File(blog.getIndexesDirectory(), "tags.index");
+    IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "tags.index"), true);
     if (indexFile.exists()) {
       try {
-        BufferedReader reader = new BufferedReader(new FileReader(indexFile));
-        String indexEntry = reader.readLine();
-        while (indexEntry != null) {
-          String[] tuple = indexEntry.split("=");
-          IndexedTag tag = getTag(tuple[0]);
-
-          if (tuple.length > 1 && tuple[1] != null) {
-            String[] blogEntries = tuple[1].split(",");
-            for (String blogEntry : blogEntries) {
-              tag.addBlogEntry(blogEntry);
-            }
+        indexFile.read(new IndexFile.RecordHandler() {
+          public void record(String key, List<String> values) {
+            getTag(key).addBlogEntries(values);
           }
-
-          indexEntry = reader.readLine();
-        }
-
-        reader.close();
+        });
       } catch (Exception e) {
         log.error("Error while reading index", e);
       }
@@ -158,21 +185,13 @@ public class TagIndex {
    */
   private void writeIndex() {
     try {
-      File indexFile = new File(blog.getIndexesDirectory(), "tags.index");
-      BufferedWriter writer = new BufferedWriter(new FileWriter(indexFile));
-
+      Map<String,List<String>> records = new LinkedHashMap<String,List<String>>();
       for (IndexedTag tag : tags.values()) {
-        writer.write(tag.getName());
-        writer.write("=");
-        for (String blogEntry : tag.getBlogEntries()) {
-          writer.write(blogEntry);
-          writer.write(",");
-        }
-        writer.newLine();
+        records.put(tag.getName(), tag.getBlogEntries());
       }
 
-      writer.flush();
-      writer.close();
+      IndexFile indexFile = new IndexFile(new File(blog.getIndexesDirectory(), "tags.index"), true);
+      indexFile.write(records, blog.isBinaryIndexesEnabled());
     } catch (Exception e) {
       log.error("Error while writing index", e);
     }
@@ -46,6 +46,9 @@ public abstract class AbstractLogger {
   /** the blog that this instance is associated with, and logging for */
   protected Blog blog;
 
+  /** live statistics for the requests that have been logged */
+  private final TrafficMonitor trafficMonitor = new TrafficMonitor();
+
   /**
    * Creates a new log associated with the given blog.
    *
@@ -55,6 +58,15 @@ public abstract class AbstractLogger {
     this.blog = blog;
   }
 
+  /**
+   * Gets the live traffic statistics for the requests logged by this logger.
+   *
+   * @return  a TrafficMonitor instance
+   */
+  public TrafficMonitor getTrafficMonitor() {
+    return trafficMonitor;
+  }
+
   /**
    * Logs a HTTP request.
    *
@@ -139,7 +151,7 @@ public abstract class AbstractLogger {
    * @return    a Log object
    */
   public Log getLog(int year, int month) {
-    Collection logEntries = new HashSet();
+    Collection logEntries = new ArrayList();
     Calendar cal = blog.getCalendar();
     cal.set(Calendar.YEAR, year);
     cal.set(Calendar.MONTH, month-1);
@@ -150,6 +162,182 @@ public abstract class AbstractLogger {
     return new Log(blog, logEntries);
   }
 
+  /**
+   * Gets the traffic rollup for a given year, month and day.
+   *
+   * @param year    the year to get the rollup for
+   * @param month   the month to get the rollup for
+   * @param day     the day to get the rollup for
+   * @return    a LogRollup object
+   */
+  public LogRollup getRollup(int year, int month, int day) {
+    return createRollup(year, month, day);
+  }
+
+  /**
+   * Gets the traffic rollup for today.
+   *
+   * @return    a LogRollup object
+   */
+  public LogRollup getRollup() {
+    Calendar cal = blog.getCalendar();
+    return getRollup(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH));
+  }
+
+  /**
+   * Gets the traffic rollup for a given year and month, by merging the
+   * rollups for each day.
+   *
+   * @param year    the year to get the rollup for
+   * @param month   the month to get the rollup for
+   * @return    a LogRollup object
+   */
+  public LogRollup getRollup(int year, int month) {
+    LogRollup rollup = new LogRollup();
+    Calendar cal = blog.getCalendar();
+    cal.set(Calendar.YEAR, year);
+    cal.set(Calendar.DAY_OF_MONTH, 1);
+    cal.set(Calendar.MONTH, month-1);
+    for (int day = 1; day <= cal.getActualMaximum(Calendar.DAY_OF_MONTH); day++) {
+      rollup.add(getRollup(year, month, day));
+    }
+
+    return rollup;
+  }
+
+  /**
+   * Gets the approximate counts of requests, referers and user agents for a
+   * given year, month and day.
+   *
+   * @param year    the year to get the sketch for
+   * @param month   the month to get the sketch for
+   * @param day     the day to get the sketch for
+   * @return    a LogSketch object
+   */
+  public LogSketch getSketch(int year, int month, int day) {
+    LogSketch sketch = new LogSketch();
+    sketch.add(getRollup(year, month, day));
+    return sketch;
+  }
+
+  /**
+   * Gets the approximate counts of requests, referers and user agents for a
+   * range of days, by merging the sketches for each day. Unlike a rollup,
+   * the memory needed doesn't depend on the length of the range.
+   *
+   * @param from    a date in the first day of the range
+   * @param to      a date in the last day of the range
+   * @return    a LogSketch object
+   */
+  public LogSketch getSketch(Date from, Date to) {
+    LogSketch sketch = new LogSketch();
+    for (int[] day : getDays(from, to)) {
+      sketch.add(getSketch(day[0], day[1], day[2]));
+    }
+
+    return sketch;
+  }
+
+  /**
+   * Gets the approximate counts of requests, referers and user agents for a
+   * given year.
+   *
+   * @param year    the year to get the sketch for
+   * @return    a LogSketch object
+   */
+  public LogSketch getSketch(int year) {
+    Calendar cal = blog.getCalendar();
+    cal.set(year, Calendar.JANUARY, 1);
+    Date from = cal.getTime();
+    cal.set(year, Calendar.DECEMBER, 31);
+    return getSketch(from, cal.getTime());
+  }
+
+  /**
+   * Gets the days in a range, in the blog's time zone.
+   *
+   * @param from    a date in the first day of the range
+   * @param to      a date in the last day of the range
+   * @return    a List of the year, month and day of each day
+   */
+  protected List<int[]> getDays(Date from, Date to) {
+    List<int[]> days = new ArrayList<int[]>();
+    Calendar cal = blog.getCalendar();
+    cal.setTime(from);
+    cal.set(Calendar.HOUR_OF_DAY, 0);
+    cal.set(Calendar.MINUTE, 0);
+    cal.set(Calendar.SECOND, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    while (!cal.getTime().after(to)) {
+      days.add(new int[] { cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH) });
+      cal.add(Calendar.DAY_OF_MONTH, 1);
+    }
+
+    return days;
+  }
+
+  /**
+   * Aggregates the log entries for a given year, month and day into a
+   * rollup.
+   *
+   * @param year    the year to get the rollup for
+   * @param month   the month to get the rollup for
+   * @param day     the day to get the rollup for
+   * @return    a LogRollup object
+   */
+  protected LogRollup createRollup(int year, int month, int day) {
+    RollupBuilder builder = new RollupBuilder();
+    visitLog(year, month, day, builder);
+    return builder.rollup;
+  }
+
+  /**
+   * Hands each log entry for a given year, month and day to a visitor.
+   *
+   * @param year      the year to get entries for
+   * @param month     the month to get entries for
+   * @param day       the day to get entries for
+   * @param visitor   the LogEntryVisitor to call for each entry
+   */
+  public void visitLog(int year, int month, int day, LogEntryVisitor visitor) {
+    for (LogEntry logEntry : getLog(year, month, day).getLogEntries()) {
+      visitor.visit(logEntry);
+    }
+  }
+
+  /**
+   * Hands each log entry for a given year and month to a visitor, a day at
+   * a time.
+   *
+   * @param year      the year to get entries for
+   * @param month     the month to get entries for
+   * @param visitor   the LogEntryVisitor to call for each entry
+   */
+  public void visitLog(int year, int month, LogEntryVisitor visitor) {
+    Calendar cal = blog.getCalendar();
+    cal.set(Calendar.YEAR, year);
+    cal.set(Calendar.DAY_OF_MONTH, 1);
+    cal.set(Calendar.MONTH, month-1);
+    for (int day = 1; day <= cal.getActualMaximum(Calendar.DAY_OF_MONTH); day++) {
+      visitLog(year, month, day, visitor);
+    }
+  }
+
+  /**
+   * Adds log entries to a rollup as they are visited.
+   */
+  private class RollupBuilder implements LogEntryVisitor {
+
+    private final LogRollup rollup = new LogRollup();
+    private final Calendar cal = blog.getCalendar();
+
+    public void visit(LogEntry logEntry) {
+      cal.setTime(logEntry.getDate());
+      rollup.add(logEntry, cal.get(Calendar.HOUR_OF_DAY), logEntry.getCountry(), new Request(logEntry.getRequestUri(), blog));
+    }
+
+  }
+
   /**
    * Gets the log summary information for the given year, month and day.
    *
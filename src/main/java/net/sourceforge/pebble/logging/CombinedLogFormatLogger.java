@@ -33,14 +33,27 @@ package net.sourceforge.pebble.logging;
 
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.Constants;
+import org.apache.commons.logging.LogFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Iterator;
+import java.util.Date;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Supports the <a href="http://httpd.apache.org/docs/logs.html#combined">Combined Log Format</a>.
@@ -49,30 +62,153 @@ import java.util.List;
  */
 public class CombinedLogFormatLogger extends AbstractLogger {
 
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  private static final org.apache.commons.logging.Log log = LogFactory.getLog(CombinedLogFormatLogger.class);
+
   private static final String REFERER_HEADER = "Referer";
   private static final String USER_AGENT_HEADER = "User-Agent";
-  private static final int FLUSH_SIZE = 0;
+
+  /** the plugin property holding the number of requests that can be waiting to be written */
+  public static final String CAPACITY_KEY = "CombinedLogFormatLogger.capacity";
+
+  /** the plugin property saying what to do when the writer falls behind, "block" or "drop" */
+  public static final String WHEN_FULL_KEY = "CombinedLogFormatLogger.whenFull";
+
+  static final int DEFAULT_CAPACITY = 8192;
+
+  /** how long the writer sleeps when there is nothing to write, in milliseconds */
+  private static final long IDLE_WAIT = 1000;
+
+  /** how long a request waits between attempts to queue when blocking, in nanoseconds */
+  private static final long FULL_WAIT = 100000;
+
+  /** the plugin property saying whether to compress the logs of past days, "true" (the default) or "false" */
+  public static final String COMPRESS_KEY = "CombinedLogFormatLogger.compress";
+
+  /** the plugin property holding the number of past days to keep logs for; they are kept forever if not set */
+  public static final String RETENTION_DAYS_KEY = "CombinedLogFormatLogger.retentionDays";
+
+  private static final String LOG_EXTENSION = ".log";
+  private static final String ROLLUP_EXTENSION = ".rollup";
+  private static final String SKETCH_EXTENSION = ".sketch";
+
+  /** the files (plain and compressed logs, and rollups) that belong to a day */
+  private static final Pattern DAY_FILE = Pattern.compile("blog-\\d{8}\\.(log|log\\.gz|log\\.gz\\.old|rollup|sketch)");
+
+  /** reads log files in parallel, shared by all blogs */
+  private static final ThreadPoolExecutor READERS;
+
+  static {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+    READERS = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      private int count = 0;
+      public synchronized Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "pebble-log-reader-" + (++count));
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // don't hold on to threads when nobody is looking at the logs
+    READERS.allowCoreThreadTimeOut(true);
+  }
 
   /** the format of the log filenames */
   private SimpleDateFormat filenameFormat = new SimpleDateFormat("'blog-'yyyyMMdd'.log'");
 
-  private List entries = new ArrayList();
+  /** requests waiting to be written by the writer thread */
+  private final RingBuffer<LogEntry> entries;
+  private final boolean blockWhenFull;
+  private final AtomicLong dropped = new AtomicLong();
+
+  /** held while building and storing rollups, striped by day so that days can be built in parallel */
+  private final Object[] rollupLocks = new Object[16];
+
+  /** whether the logs of past days are compressed, and how many days of logs are kept (0 is forever) */
+  private final boolean compress;
+  private final int retentionDays;
+
+  /** held while compressing and deleting old logs, by every logger in case a blog is being reloaded */
+  private static final Object HOUSEKEEPING_LOCK = new Object();
+  private volatile Thread housekeepingThread;
+
+  /**
+   * held while starting the housekeeping thread, which the writer thread
+   * does when the day changes; this can't be the logger's own lock, because
+   * stop() holds that while waiting for the writer thread to finish
+   */
+  private final Object housekeepingThreadLock = new Object();
+
+  /** the writer state below is only touched while holding writeLock */
+  private final Object writeLock = new Object();
+  private CombinedFormatLogEntryFormat writerFormat;
+  private SimpleDateFormat writerFilenameFormat;
+  private String currentFilename;
+  private Writer writer;
+  private long droppedReported;
+
+  /** the number of requests that have been written and flushed to disk */
+  private volatile long written;
+
+  private volatile Thread writerThread;
+  private volatile boolean waiting;
+  private volatile boolean stopped;
 
   public CombinedLogFormatLogger(Blog blog) {
+    this(blog, getCapacity(blog), !"drop".equalsIgnoreCase(blog.getPluginProperties().getProperty(WHEN_FULL_KEY)));
+  }
+
+  CombinedLogFormatLogger(Blog blog, int capacity, boolean blockWhenFull) {
     super(blog);
     filenameFormat.setTimeZone(blog.getTimeZone());
+    for (int i = 0; i < rollupLocks.length; i++) {
+      rollupLocks[i] = new Object();
+    }
+    this.entries = new RingBuffer<LogEntry>(capacity);
+    this.blockWhenFull = blockWhenFull;
+    this.compress = !"false".equalsIgnoreCase(blog.getPluginProperties().getProperty(COMPRESS_KEY));
+    this.retentionDays = getRetentionDays(blog);
+  }
+
+  private static int getCapacity(Blog blog) {
+    String capacity = blog.getPluginProperties().getProperty(CAPACITY_KEY);
+    if (capacity != null && capacity.trim().length() > 0) {
+      try {
+        return Integer.parseInt(capacity.trim());
+      } catch (NumberFormatException nfe) {
+        log.warn(CAPACITY_KEY + " is not a number : " + capacity);
+      }
+    }
+
+    return DEFAULT_CAPACITY;
+  }
+
+  private static int getRetentionDays(Blog blog) {
+    String days = blog.getPluginProperties().getProperty(RETENTION_DAYS_KEY);
+    if (days != null && days.trim().length() > 0) {
+      try {
+        return Math.max(0, Integer.parseInt(days.trim()));
+      } catch (NumberFormatException nfe) {
+        log.warn(RETENTION_DAYS_KEY + " is not a number : " + days);
+      }
+    }
+
+    return 0;
   }
 
   /**
-   * Logs a HTTP request.
+   * Logs a HTTP request, counting it in the live traffic statistics. The
+   * entry is handed to the writer thread, so this never waits for disk
+   * I/O; if the writer has fallen behind, the request either waits for
+   * space or the entry is dropped, depending on the configured policy.
    *
    * @param request   a HttpServletRequest
    */
-  public synchronized void log(HttpServletRequest request, int status) {
+  public void log(HttpServletRequest request, int status) {
     String externalUri = (String)request.getAttribute(Constants.EXTERNAL_URI);
     LogEntry entry = new LogEntry();
     entry.setHost(request.getRemoteAddr());
-    entry.setDate(blog.getCalendar().getTime());
+    entry.setDate(new Date());
     entry.setStatusCode(status);
     StringBuffer buf = new StringBuffer();
     buf.append(request.getMethod());
@@ -81,33 +217,156 @@ public class CombinedLogFormatLogger extends AbstractLogger {
     entry.setRequest(buf.toString());
     entry.setReferer(request.getHeader(REFERER_HEADER));
     entry.setAgent(request.getHeader(USER_AGENT_HEADER));
-    entries.add(entry);
+    getTrafficMonitor().record(entry);
 
-    if (entries.size() >= FLUSH_SIZE) {
-      flush();
+    while (!entries.offer(entry)) {
+      if (!blockWhenFull || stopped || writerThread == null) {
+        dropped.incrementAndGet();
+        return;
+      }
+      LockSupport.unpark(writerThread);
+      LockSupport.parkNanos(FULL_WAIT);
     }
-  }
 
-  private void flush() {
-    try {
-      write(entries);
-      entries.clear();
-    } catch (IOException ioe) {
-      ioe.printStackTrace();
+    if (waiting) {
+      LockSupport.unpark(writerThread);
     }
   }
 
   /**
    * Called to start this logger.
    */
-  public void start() {
+  public synchronized void start() {
+    if (writerThread != null) {
+      return;
+    }
+
+    stopped = false;
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        writeEntries();
+      }
+    }, "pebble-log-" + blog.getId());
+    thread.setDaemon(true);
+    writerThread = thread;
+    thread.start();
+
+    // catch up with days that finished while Pebble wasn't running
+    startHousekeeping();
   }
 
   /**
-   * Called to stop this logger.
+   * Called to stop this logger, writing any requests that are still queued.
    */
   public synchronized void stop() {
-    flush();
+    stopped = true;
+    Thread thread = writerThread;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      writerThread = null;
+    }
+
+    // the writer thread has finished, so can't start housekeeping again
+    synchronized (housekeepingThreadLock) {
+      thread = housekeepingThread;
+      housekeepingThread = null;
+    }
+    if (thread != null) {
+      thread.interrupt();
+      try {
+        thread.join();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // anything queued without a writer thread running is written here
+    drain();
+    closeWriter();
+  }
+
+  /**
+   * Waits until every request logged before this call has been written.
+   */
+  void flush() {
+    long target = entries.getTail();
+    while (written < target) {
+      Thread thread = writerThread;
+      if (thread == null) {
+        drain();
+      } else {
+        LockSupport.unpark(thread);
+        LockSupport.parkNanos(FULL_WAIT);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of requests dropped because the writer had fallen behind.
+   */
+  long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * The body of the writer thread, which writes queued requests until the
+   * logger is stopped and the queue is empty.
+   */
+  private void writeEntries() {
+    while (true) {
+      if (!drain()) {
+        if (stopped) {
+          break;
+        }
+        waiting = true;
+        if (entries.isEmpty() && !stopped) {
+          LockSupport.parkNanos(this, IDLE_WAIT * 1000000);
+        }
+        waiting = false;
+      }
+    }
+  }
+
+  /**
+   * Writes everything currently queued, keeping the day's log file open
+   * for the next batch.
+   *
+   * @return  true if anything was written, false otherwise
+   */
+  private boolean drain() {
+    synchronized (writeLock) {
+      LogEntry entry = entries.poll();
+      if (entry == null) {
+        return false;
+      }
+
+      try {
+        while (entry != null) {
+          write(entry);
+          entry = entries.poll();
+        }
+        if (writer != null) {
+          writer.flush();
+        }
+      } catch (IOException ioe) {
+        log.error("Could not write request log for blog " + blog.getId(), ioe);
+        closeWriter();
+      }
+      written = entries.getHead();
+
+      long droppedNow = dropped.get();
+      if (droppedNow > droppedReported) {
+        log.warn((droppedNow - droppedReported) + " requests were not logged for blog " + blog.getId() + " because the log writer was behind");
+        droppedReported = droppedNow;
+      }
+
+      return true;
+    }
   }
 
   /**
@@ -121,10 +380,9 @@ public class CombinedLogFormatLogger extends AbstractLogger {
   public String getLogFile(int year, int month, int day) {
     StringBuffer buf = new StringBuffer();
     try {
-      // read the file a line at a time, creating a String as we go
-      File file = new File(blog.getLogsDirectory(), getFilename(year, month, day));
-      if (file.exists()) {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
+      // read the files a line at a time, creating a String as we go
+      for (File file : getLogFiles(getFilename(year, month, day))) {
+        BufferedReader reader = LogFileReader.openReader(file);
         String line = reader.readLine();
         while (line != null) {
           buf.append(line);
@@ -149,25 +407,33 @@ public class CombinedLogFormatLogger extends AbstractLogger {
    * @return    a Log object
    */
   public Log getLog(int year, int month, int day) {
-    List logEntries = new ArrayList();
-    CombinedFormatLogEntryFormat format = new CombinedFormatLogEntryFormat(blog);
+    final List<LogEntry> logEntries = new ArrayList<LogEntry>();
+    visitLog(year, month, day, new LogEntryVisitor() {
+      public void visit(LogEntry logEntry) {
+        logEntries.add(logEntry);
+      }
+    });
 
-    try {
-      // read the file a line at a time, parsing into LogEntry objects
-      File file = new File(blog.getLogsDirectory(), getFilename(year, month, day));
-      if (file.exists()) {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line = reader.readLine();
-        while (line != null) {
-          logEntries.add(format.parse(line));
-          line = reader.readLine();
-        }
-        reader.close();
+    return new Log(blog, logEntries);
+  }
+
+  /**
+   * Hands each log entry for a given year, month and day to a visitor,
+   * parsing the memory mapped (or decompressed) log file a line at a time.
+   *
+   * @param year      the year to get entries for
+   * @param month     the month to get entries for
+   * @param day       the day to get entries for
+   * @param visitor   the LogEntryVisitor to call for each entry
+   */
+  public void visitLog(int year, int month, int day, LogEntryVisitor visitor) {
+    CombinedFormatLogEntryFormat format = new CombinedFormatLogEntryFormat(blog);
+    for (File file : getLogFiles(getFilename(year, month, day))) {
+      try {
+        LogFileReader.visit(file, format, visitor);
+      } catch (IOException ioe) {
+        log.warn("Could not read log file " + file, ioe);
       }
-    } catch (Exception e) {
-      e.printStackTrace();
-    } finally {
-      return new Log(blog, logEntries);
     }
   }
 
@@ -187,16 +453,17 @@ public class CombinedLogFormatLogger extends AbstractLogger {
     int totalRequests = 0;
 
     try {
-      // read the file a line at a time
-      File file = new File(blog.getLogsDirectory(), getFilename(year, month, day));
-      if (file.exists()) {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line = reader.readLine();
-        while (line != null) {
-          totalRequests++;
-          line = reader.readLine();
+      // use the day's rollup if there is an up to date one, otherwise
+      // count the lines in the files
+      String filename = getFilename(year, month, day);
+      List<File> files = getLogFiles(filename);
+      LogRollup rollup = readRollupHeader(filename, getSourceLength(files));
+      if (rollup != null) {
+        totalRequests = rollup.getTotalRequests();
+      } else {
+        for (File file : files) {
+          totalRequests += LogFileReader.countLines(file);
         }
-        reader.close();
       }
     } catch (Exception e) {
       e.printStackTrace();
@@ -205,6 +472,537 @@ public class CombinedLogFormatLogger extends AbstractLogger {
     return new LogSummaryItem(blog, cal.getTime(), totalRequests);
   }
 
+  /**
+   * Gets the log summary information for the given year and month, reading
+   * the days in parallel.
+   *
+   * @param year  the year to get entries for
+   * @param month the month to get entries for
+   * @return a LogSummary object
+   */
+  public LogSummary getLogSummary(int year, int month) {
+    Calendar cal = getFirstDayOfMonth(year, month);
+    List<Future<LogSummary>> days = submitLogSummaries(year, month);
+    return new LogSummaryContainer(blog, cal.getTime(), getAll(days));
+  }
+
+  /**
+   * Gets the log summary information for the given year, reading all of
+   * the days in parallel.
+   *
+   * @param year  the year to get entries for
+   * @return a LogSummary object
+   */
+  public LogSummary getLogSummary(int year) {
+    Calendar cal = blog.getCalendar();
+    cal.set(Calendar.YEAR, year);
+
+    // submit every day of the year before waiting for any of them
+    List<List<Future<LogSummary>>> months = new ArrayList<List<Future<LogSummary>>>();
+    for (int month = 1; month <= 12; month++) {
+      months.add(submitLogSummaries(year, month));
+    }
+
+    List<LogSummary> logSummaries = new ArrayList<LogSummary>();
+    for (int month = 1; month <= 12; month++) {
+      logSummaries.add(new LogSummaryContainer(blog, getFirstDayOfMonth(year, month).getTime(), getAll(months.get(month-1))));
+    }
+
+    return new LogSummaryContainer(blog, cal.getTime(), logSummaries);
+  }
+
+  private List<Future<LogSummary>> submitLogSummaries(final int year, final int month) {
+    List<Future<LogSummary>> days = new ArrayList<Future<LogSummary>>();
+    int daysInMonth = getFirstDayOfMonth(year, month).getActualMaximum(Calendar.DAY_OF_MONTH);
+    for (int day = 1; day <= daysInMonth; day++) {
+      final int d = day;
+      days.add(READERS.submit(new Callable<LogSummary>() {
+        public LogSummary call() {
+          return getLogSummary(year, month, d);
+        }
+      }));
+    }
+
+    return days;
+  }
+
+  /**
+   * Gets the traffic rollup for a given year and month, building or reading
+   * the rollups for each day in parallel.
+   *
+   * @param year    the year to get the rollup for
+   * @param month   the month to get the rollup for
+   * @return    a LogRollup object
+   */
+  public LogRollup getRollup(final int year, final int month) {
+    List<Future<LogRollup>> days = new ArrayList<Future<LogRollup>>();
+    int daysInMonth = getFirstDayOfMonth(year, month).getActualMaximum(Calendar.DAY_OF_MONTH);
+    for (int day = 1; day <= daysInMonth; day++) {
+      final int d = day;
+      days.add(READERS.submit(new Callable<LogRollup>() {
+        public LogRollup call() {
+          return getRollup(year, month, d);
+        }
+      }));
+    }
+
+    LogRollup rollup = new LogRollup();
+    for (LogRollup day : getAll(days)) {
+      rollup.add(day);
+    }
+
+    return rollup;
+  }
+
+  private Calendar getFirstDayOfMonth(int year, int month) {
+    Calendar cal = blog.getCalendar();
+    cal.set(Calendar.YEAR, year);
+    cal.set(Calendar.DAY_OF_MONTH, 1);
+    cal.set(Calendar.MONTH, month-1);
+    return cal;
+  }
+
+  private static <T> List<T> getAll(List<Future<T>> futures) {
+    List<T> results = new ArrayList<T>(futures.size());
+    for (Future<T> future : futures) {
+      results.add(get(future));
+    }
+
+    return results;
+  }
+
+  /**
+   * Waits for the result of a read, putting back the interrupted status
+   * afterwards if the calling thread is interrupted while waiting.
+   */
+  private static <T> T get(Future<T> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        } catch (ExecutionException ee) {
+          if (ee.getCause() instanceof RuntimeException) {
+            throw (RuntimeException)ee.getCause();
+          }
+          throw new RuntimeException(ee.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Gets the traffic rollup for a given year, month and day. Rollups for
+   * days before today are stored next to the log file and only rebuilt
+   * when the log file changes.
+   *
+   * @param year    the year to get the rollup for
+   * @param month   the month to get the rollup for
+   * @param day     the day to get the rollup for
+   * @return    a LogRollup object
+   */
+  public LogRollup getRollup(int year, int month, int day) {
+    String filename = getFilename(year, month, day);
+    List<File> files = getLogFiles(filename);
+    if (files.isEmpty()) {
+      return new LogRollup();
+    }
+
+    LogRollup rollup = readRollup(filename, getSourceLength(files));
+    if (rollup != null) {
+      return rollup;
+    }
+
+    synchronized (getRollupLock(filename)) {
+      // another thread may have just built it, or the day may have been compressed
+      files = getLogFiles(filename);
+      long length = getSourceLength(files);
+      rollup = readRollup(filename, length);
+      if (rollup == null) {
+        rollup = createRollup(year, month, day);
+        rollup.setSourceLength(length);
+
+        if (filename.compareTo(getFilename(0)) < 0) {
+          try {
+            rollup.write(getRollupFile(filename));
+          } catch (IOException ioe) {
+            log.warn("Could not write log rollup for " + filename, ioe);
+          }
+        }
+      }
+    }
+
+    return rollup;
+  }
+
+  /**
+   * Gets the approximate counts for a given year, month and day. Like
+   * rollups, sketches for days before today are stored next to the log
+   * file; they are built from the day's rollup.
+   *
+   * @param year    the year to get the sketch for
+   * @param month   the month to get the sketch for
+   * @param day     the day to get the sketch for
+   * @return    a LogSketch object
+   */
+  public LogSketch getSketch(int year, int month, int day) {
+    String filename = getFilename(year, month, day);
+    List<File> files = getLogFiles(filename);
+    if (files.isEmpty()) {
+      return new LogSketch();
+    }
+
+    LogSketch sketch = readSketch(filename, getSourceLength(files));
+    if (sketch != null) {
+      return sketch;
+    }
+
+    LogRollup rollup = getRollup(year, month, day);
+    sketch = new LogSketch();
+    sketch.add(rollup);
+    sketch.setSourceLength(rollup.getSourceLength());
+    if (filename.compareTo(getFilename(0)) < 0) {
+      writeSketch(filename, sketch);
+    }
+
+    return sketch;
+  }
+
+  /**
+   * Gets the approximate counts for a range of days, reading the sketches
+   * for a few days at a time in parallel. Each is merged and discarded as
+   * soon as it has been read, so only a few are held at once.
+   *
+   * @param from    a date in the first day of the range
+   * @param to      a date in the last day of the range
+   * @return    a LogSketch object
+   */
+  public LogSketch getSketch(Date from, Date to) {
+    LogSketch sketch = new LogSketch();
+    LinkedList<Future<LogSketch>> pending = new LinkedList<Future<LogSketch>>();
+    for (final int[] day : getDays(from, to)) {
+      pending.add(READERS.submit(new Callable<LogSketch>() {
+        public LogSketch call() {
+          return getSketch(day[0], day[1], day[2]);
+        }
+      }));
+      if (pending.size() > READERS.getMaximumPoolSize()) {
+        sketch.add(get(pending.removeFirst()));
+      }
+    }
+    for (Future<LogSketch> day : pending) {
+      sketch.add(get(day));
+    }
+
+    return sketch;
+  }
+
+  private LogSketch readSketch(String filename, long sourceLength) {
+    File sketchFile = getSketchFile(filename);
+    if (sketchFile.exists()) {
+      try {
+        LogSketch sketch = LogSketch.read(sketchFile);
+        if (sketch.getSourceLength() == sourceLength) {
+          return sketch;
+        }
+      } catch (IOException ioe) {
+        log.warn("Could not read log sketch " + sketchFile, ioe);
+      }
+    }
+
+    return null;
+  }
+
+  private void writeSketch(String filename, LogSketch sketch) {
+    synchronized (getRollupLock(filename)) {
+      try {
+        sketch.write(getSketchFile(filename));
+      } catch (IOException ioe) {
+        log.warn("Could not write log sketch for " + filename, ioe);
+      }
+    }
+  }
+
+  private File getSketchFile(String filename) {
+    return new File(blog.getLogsDirectory(), filename.substring(0, filename.length() - LOG_EXTENSION.length()) + SKETCH_EXTENSION);
+  }
+
+  private LogRollup getRollup(String filename) {
+    return getRollup(Integer.parseInt(filename.substring(5, 9)), Integer.parseInt(filename.substring(9, 11)), Integer.parseInt(filename.substring(11, 13)));
+  }
+
+  private LogSketch getSketch(String filename) {
+    return getSketch(Integer.parseInt(filename.substring(5, 9)), Integer.parseInt(filename.substring(9, 11)), Integer.parseInt(filename.substring(11, 13)));
+  }
+
+  private Object getRollupLock(String filename) {
+    return rollupLocks[(filename.hashCode() & 0x7fffffff) % rollupLocks.length];
+  }
+
+  /**
+   * Gets the files that hold a day's log: the compressed log (if the day
+   * has been compressed), followed by the plain log (if it has been
+   * written to since).
+   *
+   * @param filename    the name of the plain log file
+   * @return  a List of the Files that exist
+   */
+  private List<File> getLogFiles(String filename) {
+    List<File> files = new ArrayList<File>(2);
+    File compressed = new File(blog.getLogsDirectory(), filename + LogFileReader.COMPRESSED_EXTENSION);
+    if (compressed.exists()) {
+      files.add(compressed);
+    }
+    File plain = new File(blog.getLogsDirectory(), filename);
+    if (plain.exists()) {
+      files.add(plain);
+    }
+
+    return files;
+  }
+
+  private static long getSourceLength(List<File> files) {
+    long length = 0;
+    for (File file : files) {
+      length += file.length();
+    }
+
+    return length;
+  }
+
+  /**
+   * Reads the stored rollup for a day.
+   *
+   * @param filename        the name of the log file
+   * @param sourceLength    the current length of the day's log files
+   * @return  the LogRollup, or null if there isn't one or it is out of date
+   */
+  private LogRollup readRollup(String filename, long sourceLength) {
+    File rollupFile = getRollupFile(filename);
+    if (rollupFile.exists()) {
+      try {
+        LogRollup rollup = LogRollup.read(rollupFile);
+        if (rollup.getSourceLength() == sourceLength) {
+          return rollup;
+        }
+      } catch (IOException ioe) {
+        log.warn("Could not read log rollup " + rollupFile, ioe);
+      }
+    }
+
+    return null;
+  }
+
+  private LogRollup readRollupHeader(String filename, long sourceLength) {
+    File rollupFile = getRollupFile(filename);
+    if (rollupFile.exists()) {
+      try {
+        LogRollup rollup = LogRollup.readHeader(rollupFile);
+        if (rollup.getSourceLength() == sourceLength) {
+          return rollup;
+        }
+      } catch (IOException ioe) {
+        log.warn("Could not read log rollup " + rollupFile, ioe);
+      }
+    }
+
+    return null;
+  }
+
+  private File getRollupFile(String filename) {
+    return new File(blog.getLogsDirectory(), filename.substring(0, filename.length() - LOG_EXTENSION.length()) + ROLLUP_EXTENSION);
+  }
+
+  /**
+   * Tidies up the logs in the background, so that the writer can carry on
+   * with the next day. Nothing happens if this is already going on.
+   */
+  private void startHousekeeping() {
+    synchronized (housekeepingThreadLock) {
+      if (housekeepingThread != null && housekeepingThread.isAlive()) {
+        return;
+      }
+
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          try {
+            housekeep();
+          } catch (RuntimeException e) {
+            log.warn("Could not tidy up the logs for blog " + blog.getId(), e);
+          }
+        }
+      }, "pebble-log-housekeeping-" + blog.getId());
+      thread.setDaemon(true);
+      housekeepingThread = thread;
+      thread.start();
+    }
+  }
+
+  /**
+   * Builds the rollup and sketch for yesterday, compresses the logs for days before
+   * yesterday (late requests for yesterday may still be being written) and
+   * deletes the logs for days older than the retention period. This stops
+   * early if the calling thread is interrupted.
+   */
+  void housekeep() {
+    String yesterday = getFilename(-1);
+    if (new File(blog.getLogsDirectory(), yesterday).exists()) {
+      getRollup(yesterday);
+      getSketch(yesterday);
+    }
+
+    File[] files = new File(blog.getLogsDirectory()).listFiles();
+    if (files == null) {
+      return;
+    }
+
+    String oldest = retentionDays > 0 ? getFilename(-retentionDays) : null;
+    synchronized (HOUSEKEEPING_LOCK) {
+      for (File file : files) {
+        if (Thread.currentThread().isInterrupted()) {
+          return;
+        }
+
+        String name = file.getName();
+        if (!DAY_FILE.matcher(name).matches()) {
+          continue;
+        }
+
+        String filename = name.substring(0, name.indexOf('.')) + LOG_EXTENSION;
+        if (oldest != null && filename.compareTo(oldest) < 0) {
+          synchronized (getRollupLock(filename)) {
+            if (file.delete()) {
+              log.debug("Deleted " + name + " for blog " + blog.getId());
+            } else if (file.exists()) {
+              log.warn("Could not delete old log file " + file);
+            }
+          }
+        } else if (compress && name.equals(filename) && filename.compareTo(yesterday) < 0) {
+          compress(filename);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compresses the plain log for a day, appending it to the day's
+   * compressed log if there already is one. The day's rollup is built
+   * first and kept, rather than being rebuilt from the compressed log.
+   * The plain log is only deleted once the new compressed log is in place,
+   * and if anything fails the original files are left as they were.
+   *
+   * @param filename    the name of the plain log file
+   */
+  private void compress(String filename) {
+    File plain = new File(blog.getLogsDirectory(), filename);
+    File compressed = new File(blog.getLogsDirectory(), filename + LogFileReader.COMPRESSED_EXTENSION);
+    File temp = new File(blog.getLogsDirectory(), filename + LogFileReader.COMPRESSED_EXTENSION + ".tmp");
+    File backup = new File(blog.getLogsDirectory(), filename + LogFileReader.COMPRESSED_EXTENSION + ".old");
+
+    synchronized (getRollupLock(filename)) {
+      if (backup.exists()) {
+        // an earlier attempt was interrupted before the plain log was deleted
+        compressed.delete();
+        if (!backup.renameTo(compressed)) {
+          log.error("Could not restore " + backup + " to " + compressed);
+          return;
+        }
+      }
+
+      LogRollup rollup = getRollup(filename);
+      try {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+        try {
+          // gzip files can be concatenated, so earlier compressed entries are copied as they are
+          if (compressed.exists()) {
+            copy(compressed, out);
+          }
+          GZIPOutputStream gzip = new GZIPOutputStream(out);
+          copy(plain, gzip);
+          gzip.finish();
+        } finally {
+          out.close();
+        }
+      } catch (IOException ioe) {
+        log.warn("Could not compress log file " + plain, ioe);
+        temp.delete();
+        return;
+      }
+
+      // move the existing compressed log aside, so that it can be put back
+      if (compressed.exists() && !compressed.renameTo(backup)) {
+        log.error("Could not rename " + compressed + " to " + backup);
+        temp.delete();
+        return;
+      }
+      if (!temp.renameTo(compressed)) {
+        log.error("Could not rename " + temp + " to " + compressed);
+        temp.delete();
+        restore(backup, compressed);
+        return;
+      }
+      if (!plain.delete()) {
+        // probably open for reading, so try again next time
+        log.warn("Could not delete log file " + plain + " after compressing it");
+        compressed.delete();
+        restore(backup, compressed);
+        return;
+      }
+      backup.delete();
+
+      rollup.setSourceLength(compressed.length());
+      try {
+        rollup.write(getRollupFile(filename));
+      } catch (IOException ioe) {
+        log.warn("Could not write log rollup for " + filename, ioe);
+      }
+
+      // the sketch is rebuilt from the rollup, so that it matches the compressed log
+      LogSketch sketch = new LogSketch();
+      sketch.add(rollup);
+      sketch.setSourceLength(rollup.getSourceLength());
+      writeSketch(filename, sketch);
+    }
+  }
+
+  private static void restore(File backup, File file) {
+    if (backup.exists() && !backup.renameTo(file)) {
+      log.error("Could not restore " + backup + " to " + file);
+    }
+  }
+
+  private static void copy(File file, OutputStream out) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int read = in.read(buffer);
+      while (read != -1) {
+        out.write(buffer, 0, read);
+        read = in.read(buffer);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Determines the name of the log file for a day relative to today.
+   *
+   * @param days    the number of days from today (e.g. -1 for yesterday)
+   * @return    the name of the log file
+   */
+  private String getFilename(int days) {
+    Calendar cal = blog.getCalendar();
+    cal.add(Calendar.DAY_OF_MONTH, days);
+    return getFilename(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH));
+  }
+
   /**
    * Determines the name of the log file.
    *
@@ -219,45 +1017,51 @@ public class CombinedLogFormatLogger extends AbstractLogger {
     cal.set(Calendar.MONTH, month-1);
     cal.set(Calendar.DAY_OF_MONTH, day);
 
-    return filenameFormat.format(cal.getTime());
+    synchronized (filenameFormat) {
+      return filenameFormat.format(cal.getTime());
+    }
   }
 
   /**
-   * Writes the given list of entries to the log file, creating it if
-   * necessary.
+   * Writes an entry to the log file for its day, rolling over to a new
+   * file when the day changes. Must be called while holding writeLock.
    *
-   * @param entries   the list of entries to write
+   * @param entry   the entry to write
    */
-  private void write(List entries) throws IOException {
-    CombinedFormatLogEntryFormat format = new CombinedFormatLogEntryFormat(blog);
-    File file;
-    BufferedWriter writer = null;
-    String currentFilename = "";
-    String filename;
-    Iterator it = entries.iterator();
-    while (it.hasNext()) {
-      LogEntry entry = (LogEntry)it.next();
-        filename = filenameFormat.format(entry.getDate());
-        if (!filename.equals(currentFilename)) {
-          // close the old file (if there is one)
-          if (writer != null) {
-            writer.flush();
-            writer.close();
-          }
-
-          // and open a new file
-          currentFilename = filename;
-          file = new File(blog.getLogsDirectory(), currentFilename);
-          writer = new BufferedWriter(new FileWriter(file, true));
-        }
+  private void write(LogEntry entry) throws IOException {
+    if (writerFormat == null) {
+      writerFormat = new CombinedFormatLogEntryFormat(blog);
+      writerFilenameFormat = new SimpleDateFormat("'blog-'yyyyMMdd'.log'");
+      writerFilenameFormat.setTimeZone(blog.getTimeZone());
+    }
 
-      writer.write(format.format(entry));
-      writer.newLine();
+    String filename = writerFilenameFormat.format(entry.getDate());
+    if (writer == null || !filename.equals(currentFilename)) {
+      String previousFilename = currentFilename;
+      closeWriter();
+      if (previousFilename != null && !previousFilename.equals(filename)) {
+        startHousekeeping();
+      }
+      currentFilename = filename;
+      File file = new File(blog.getLogsDirectory(), currentFilename);
+      writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true)));
     }
 
-    if (writer != null) {
-      writer.flush();
-      writer.close();
+    writer.write(writerFormat.format(entry));
+    writer.write(LINE_SEPARATOR);
+  }
+
+  private void closeWriter() {
+    synchronized (writeLock) {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException ioe) {
+          log.error("Could not close request log for blog " + blog.getId(), ioe);
+        }
+        writer = null;
+        currentFilename = null;
+      }
     }
   }
 
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Estimates how often items occur using a fixed amount of memory (a
+ * count-min sketch). Each item is counted in one cell of each of depth rows
+ * of width counters, and its estimate is the smallest of those cells. The
+ * estimate is never lower than the true count and, with probability
+ * 1 - e^-depth, is no more than e/width of the total count too high.
+ * Sketches of the same size can be merged by adding their cells, so the
+ * sketches for separate periods can be combined.
+ *
+ * @author    Simon Brown
+ */
+public class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+
+  /** the rows of counters, one after the other */
+  private final long[] cells;
+
+  private long total;
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param width   the number of counters in each row
+   * @param depth   the number of rows
+   */
+  public CountMinSketch(int width, int depth) {
+    if (width < 1 || depth < 1) {
+      throw new IllegalArgumentException("Width and depth must be positive");
+    }
+    this.width = width;
+    this.depth = depth;
+    this.cells = new long[width * depth];
+  }
+
+  /**
+   * Counts occurrences of the given item.
+   *
+   * @param key     the item
+   * @param count   the number of occurrences
+   */
+  public void add(String key, long count) {
+    int h1 = hash(key.hashCode());
+    int h2 = hash(h1 ^ 0x5bd1e995);
+    for (int row = 0; row < depth; row++) {
+      cells[row * width + index(h1 + row * h2)] += count;
+    }
+    total += count;
+  }
+
+  /**
+   * Estimates the number of occurrences of the given item.
+   *
+   * @param key   the item
+   * @return  a count that is at least the true count
+   */
+  public long estimate(String key) {
+    int h1 = hash(key.hashCode());
+    int h2 = hash(h1 ^ 0x5bd1e995);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, cells[row * width + index(h1 + row * h2)]);
+    }
+
+    return estimate;
+  }
+
+  /**
+   * Adds the counts from another sketch of the same size to this one.
+   *
+   * @param sketch    a CountMinSketch instance
+   */
+  public void merge(CountMinSketch sketch) {
+    if (sketch.width != width || sketch.depth != depth) {
+      throw new IllegalArgumentException("Sketches are different sizes : " +
+          width + "x" + depth + " and " + sketch.width + "x" + sketch.depth);
+    }
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] += sketch.cells[i];
+    }
+    total += sketch.total;
+  }
+
+  /**
+   * Gets the total of all of the counts.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Gets the amount by which an estimate is likely (see getConfidence())
+   * to exceed the true count, at most.
+   */
+  public long getErrorBound() {
+    return (long)Math.ceil(Math.E / width * total);
+  }
+
+  /**
+   * Gets the probability that an estimate is within the error bound.
+   */
+  public double getConfidence() {
+    return 1 - Math.exp(-depth);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  private int index(int hash) {
+    return (hash & 0x7fffffff) % width;
+  }
+
+  /**
+   * Spreads the bits of a hash code (the MurmurHash3 finalizer), because
+   * String.hashCode() clusters similar strings together.
+   */
+  private static int hash(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /**
+   * Writes this sketch. Most cells are empty for a quiet day, so only the
+   * non-empty cells are written, each as the gap since the last one and the
+   * count, in a variable number of bytes.
+   *
+   * @param out   the DataOutput to write to
+   */
+  void write(DataOutput out) throws IOException {
+    out.writeInt(width);
+    out.writeInt(depth);
+    writeNumber(out, total);
+    int last = -1;
+    for (int i = 0; i < cells.length; i++) {
+      if (cells[i] != 0) {
+        writeNumber(out, i - last);
+        writeNumber(out, cells[i]);
+        last = i;
+      }
+    }
+    writeNumber(out, 0);
+  }
+
+  /**
+   * Reads a sketch previously written with write().
+   *
+   * @param in    the DataInput to read from
+   * @return  a CountMinSketch instance
+   */
+  static CountMinSketch read(DataInput in) throws IOException {
+    int width = in.readInt();
+    int depth = in.readInt();
+    if (width < 1 || depth < 1 || (long)width * depth > Integer.MAX_VALUE) {
+      throw new IOException("Malformed sketch : " + width + "x" + depth);
+    }
+    CountMinSketch sketch = new CountMinSketch(width, depth);
+    sketch.total = readNumber(in);
+    int i = -1;
+    long gap = readNumber(in);
+    while (gap != 0) {
+      if (gap < 0 || gap >= sketch.cells.length - i) {
+        throw new IOException("Malformed sketch : cell " + (i + gap) + " is out of range");
+      }
+      i += gap;
+      sketch.cells[i] = readNumber(in);
+      gap = readNumber(in);
+    }
+
+    return sketch;
+  }
+
+  /**
+   * Writes a non-negative number, seven bits at a time, with the top bit of
+   * each byte set when there are more to come.
+   */
+  static void writeNumber(DataOutput out, long number) throws IOException {
+    while ((number & ~0x7fL) != 0) {
+      out.writeByte((int)(number & 0x7f) | 0x80);
+      number >>>= 7;
+    }
+    out.writeByte((int)number);
+  }
+
+  static long readNumber(DataInput in) throws IOException {
+    long number = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      number |= (long)(b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return number;
+      }
+    }
+
+    throw new IOException("Malformed sketch : number is too long");
+  }
+
+}
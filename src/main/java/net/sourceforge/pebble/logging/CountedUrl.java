@@ -57,6 +57,9 @@ public abstract class CountedUrl {
   /** the collection of log entries that relate to this url */
   private List<LogEntry> logEntries = new LinkedList<LogEntry>();
 
+  /** the number of requests for this url, which may come from a rollup rather than log entries */
+  private int count;
+
   private boolean newsFeed = false;
   private boolean pageView = false;
   private boolean fileDownload = false;
@@ -141,6 +144,16 @@ public abstract class CountedUrl {
    */
   public void addLogEntry(LogEntry logEntry) {
     logEntries.add(logEntry);
+    count++;
+  }
+
+  /**
+   * Adds to the count of requests, without the underlying log entries.
+   *
+   * @param count   the number of requests to add
+   */
+  void addCount(int count) {
+    this.count += count;
   }
 
   /**
@@ -158,7 +171,7 @@ public abstract class CountedUrl {
    * @return    the count as an int
    */
   public int getCount() {
-    return logEntries.size();
+    return count;
   }
 
   /**
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent items over a period using a bounded amount of
+ * memory, in a way that lets the sketches for separate periods (e.g. days)
+ * be merged into one for a longer period.
+ * <p />
+ * Candidates are kept in Misra-Gries counters. Whenever there are more than
+ * twice the capacity, the (capacity+1)th largest count is taken off all of
+ * them and those that reach zero are dropped. A counter is therefore never
+ * higher than the true count, and never lower by more than the total taken
+ * off so far, which is at most total/(capacity+1); any item occurring more
+ * often than that is guaranteed to have a counter. Alongside, a count-min
+ * sketch gives an estimate that is never lower than the true count, so each
+ * item's true count is known to lie between the two.
+ *
+ * @author    Simon Brown
+ */
+public class FrequencySketch {
+
+  private static final String UTF8 = "UTF-8";
+
+  static final int DEFAULT_CAPACITY = 1000;
+  static final int DEFAULT_WIDTH = 2048;
+  static final int DEFAULT_DEPTH = 4;
+
+  private final int capacity;
+  private final Map<String,Long> counters = new HashMap<String,Long>();
+
+  /** the most by which any counter may be lower than the true count */
+  private long error;
+
+  private final CountMinSketch estimates;
+
+  /**
+   * Creates a new sketch with the default capacity and size.
+   */
+  public FrequencySketch() {
+    this(DEFAULT_CAPACITY, DEFAULT_WIDTH, DEFAULT_DEPTH);
+  }
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param capacity    the number of items to keep counters for
+   * @param width       the width of the count-min sketch
+   * @param depth       the depth of the count-min sketch
+   */
+  public FrequencySketch(int capacity, int width, int depth) {
+    this(capacity, new CountMinSketch(width, depth));
+  }
+
+  private FrequencySketch(int capacity, CountMinSketch estimates) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.estimates = estimates;
+  }
+
+  /**
+   * Counts occurrences of the given item.
+   *
+   * @param key     the item
+   * @param count   the number of occurrences
+   */
+  public void add(String key, long count) {
+    if (count <= 0) {
+      return;
+    }
+    estimates.add(key, count);
+    Long counter = counters.get(key);
+    counters.put(key, counter != null ? counter + count : count);
+    if (counters.size() > capacity * 2) {
+      reduce();
+    }
+  }
+
+  /**
+   * Adds the counts from another sketch of the same size to this one.
+   *
+   * @param sketch    a FrequencySketch instance
+   */
+  public void merge(FrequencySketch sketch) {
+    estimates.merge(sketch.estimates);
+    for (Map.Entry<String,Long> entry : sketch.counters.entrySet()) {
+      Long counter = counters.get(entry.getKey());
+      counters.put(entry.getKey(), counter != null ? counter + entry.getValue() : entry.getValue());
+    }
+    error += sketch.error;
+    if (counters.size() > capacity * 2) {
+      reduce();
+    }
+  }
+
+  /**
+   * Takes the (capacity+1)th largest count off every counter, leaving at
+   * most capacity of them.
+   */
+  private void reduce() {
+    long[] counts = new long[counters.size()];
+    int i = 0;
+    for (Long count : counters.values()) {
+      counts[i++] = count;
+    }
+    Arrays.sort(counts);
+    long threshold = counts[counts.length - capacity - 1];
+
+    Iterator<Map.Entry<String,Long>> it = counters.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String,Long> entry = it.next();
+      if (entry.getValue() <= threshold) {
+        it.remove();
+      } else {
+        entry.setValue(entry.getValue() - threshold);
+      }
+    }
+    error += threshold;
+  }
+
+  /**
+   * Gets the total number of occurrences of all items.
+   */
+  public long getTotal() {
+    return estimates.getTotal();
+  }
+
+  /**
+   * Gets the most by which the count of any item may be overestimated.
+   * This is at most total/(capacity+1).
+   */
+  public long getMaximumError() {
+    return error;
+  }
+
+  /**
+   * Gets a count that the true count of an item is no higher than.
+   *
+   * @param key   the item
+   */
+  public long getUpperBound(String key) {
+    return Math.min(estimates.estimate(key), getLowerBound(key) + error);
+  }
+
+  /**
+   * Gets a count that the true count of an item is no lower than.
+   *
+   * @param key   the item
+   */
+  public long getLowerBound(String key) {
+    Long counter = counters.get(key);
+    return counter != null ? counter : 0;
+  }
+
+  /**
+   * Gets the most frequent items. The count of each is its upper bound and
+   * the error is the difference between that and its lower bound.
+   *
+   * @param n   the maximum number of items to return
+   * @return  a List of SpaceSavingSketch.Item instances, most frequent first
+   */
+  public List<SpaceSavingSketch.Item> getTop(int n) {
+    Map<String,SpaceSavingSketch.Item> items = new HashMap<String,SpaceSavingSketch.Item>(counters.size() * 2);
+    for (Map.Entry<String,Long> entry : counters.entrySet()) {
+      long upperBound = Math.min(estimates.estimate(entry.getKey()), entry.getValue() + error);
+      items.put(entry.getKey(), new SpaceSavingSketch.Item(entry.getKey(), upperBound, upperBound - entry.getValue()));
+    }
+
+    return SpaceSavingSketch.getTop(items, n);
+  }
+
+  /**
+   * Gets the number of items being counted.
+   */
+  public int size() {
+    return counters.size();
+  }
+
+  /**
+   * Writes this sketch.
+   *
+   * @param out   the DataOutput to write to
+   */
+  void write(DataOutput out) throws IOException {
+    out.writeInt(capacity);
+    CountMinSketch.writeNumber(out, error);
+    estimates.write(out);
+    CountMinSketch.writeNumber(out, counters.size());
+    for (Map.Entry<String,Long> entry : counters.entrySet()) {
+      // written as UTF-8 bytes, because writeUTF() can't cope with very long referers
+      byte[] key = entry.getKey().getBytes(UTF8);
+      CountMinSketch.writeNumber(out, key.length);
+      out.write(key);
+      CountMinSketch.writeNumber(out, entry.getValue());
+    }
+  }
+
+  /**
+   * Reads a sketch previously written with write().
+   *
+   * @param in    the DataInput to read from
+   * @return  a FrequencySketch instance
+   */
+  static FrequencySketch read(DataInput in) throws IOException {
+    int capacity = in.readInt();
+    if (capacity < 1) {
+      throw new IOException("Malformed sketch : capacity is " + capacity);
+    }
+    long error = CountMinSketch.readNumber(in);
+    FrequencySketch sketch = new FrequencySketch(capacity, CountMinSketch.read(in));
+    sketch.error = error;
+    long size = CountMinSketch.readNumber(in);
+    for (long i = 0; i < size; i++) {
+      long length = CountMinSketch.readNumber(in);
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Malformed sketch : item is " + length + " bytes long");
+      }
+      byte[] key = new byte[(int)length];
+      in.readFully(key);
+      sketch.counters.put(new String(key, UTF8), CountMinSketch.readNumber(in));
+    }
+
+    return sketch;
+  }
+
+}
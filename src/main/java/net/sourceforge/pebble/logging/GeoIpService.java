@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import com.maxmind.geoip.LookupService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Looks up the country that a host is in, using the GeoIP database shipped
+ * with Pebble. The database is loaded into memory once and shared, and the
+ * country for each host is cached so that repeat visitors cost a map lookup.
+ *
+ * @author    Simon Brown
+ */
+public class GeoIpService {
+
+  private static final Log log = LogFactory.getLog(GeoIpService.class);
+
+  /** the default maximum number of hosts whose country is cached */
+  static final int DEFAULT_CACHE_SIZE = 50000;
+
+  /** returned when the GeoIP database isn't available */
+  private static final String UNKNOWN = "";
+
+  /** the service is created on first use, so that the database is only loaded if needed */
+  private static class Holder {
+    static final GeoIpService instance = new GeoIpService(openLookupService(), DEFAULT_CACHE_SIZE);
+  }
+
+  private final LookupService lookupService;
+  private final int maximumSize;
+  private final ConcurrentMap<String,String> countries = new ConcurrentHashMap<String,String>();
+
+  GeoIpService(LookupService lookupService, int maximumSize) {
+    this.lookupService = lookupService;
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Gets the shared instance.
+   *
+   * @return  a GeoIpService instance
+   */
+  public static GeoIpService getInstance() {
+    return Holder.instance;
+  }
+
+  private static LookupService openLookupService() {
+    try {
+      URL url = GeoIpService.class.getResource("/geo-ip.dat");
+      if (url == null) {
+        log.warn("The GeoIP database could not be found, countries won't be available");
+        return null;
+      }
+      return new LookupService(url.toExternalForm().substring(5), LookupService.GEOIP_MEMORY_CACHE);
+    } catch (IOException ioe) {
+      log.warn("Could not open the GeoIP database, countries won't be available", ioe);
+      return null;
+    }
+  }
+
+  /**
+   * Determines whether countries can be looked up.
+   *
+   * @return  true if the GeoIP database was loaded, false otherwise
+   */
+  public boolean isAvailable() {
+    return lookupService != null;
+  }
+
+  /**
+   * Gets the name of the country that a host is in.
+   *
+   * @param host    an IP address
+   * @return  the country name, or null if the GeoIP database isn't available
+   */
+  public String getCountry(String host) {
+    if (lookupService == null) {
+      return null;
+    }
+
+    String key = host != null ? host : "";
+    String country = countries.get(key);
+    if (country == null) {
+      country = lookupService.getCountry(host).getName();
+      if (country == null) {
+        country = UNKNOWN;
+      }
+      if (countries.size() >= maximumSize) {
+        evict();
+      }
+      countries.put(key, country);
+    }
+
+    return country;
+  }
+
+  /**
+   * Makes room in the cache by dropping an eighth of the entries. The
+   * iteration order of the map is unrelated to when hosts were added, so
+   * this approximates random eviction without any locking.
+   */
+  private void evict() {
+    int toRemove = Math.max(1, maximumSize / 8);
+    Iterator<String> it = countries.keySet().iterator();
+    while (toRemove > 0 && it.hasNext()) {
+      it.next();
+      it.remove();
+      toRemove--;
+    }
+  }
+
+  /**
+   * Gets the number of hosts whose country is currently cached.
+   */
+  int getCacheSize() {
+    return countries.size();
+  }
+
+}
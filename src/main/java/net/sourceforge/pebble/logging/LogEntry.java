@@ -61,6 +61,9 @@ public class LogEntry {
   /** the user-agent (if applicable) */
   private String agent;
 
+  /** the country the host is in, looked up when first needed */
+  private String country;
+
   /**
    * Gets the host (an IP address or DNS name).
    *
@@ -77,6 +80,20 @@ public class LogEntry {
    */
   public void setHost(String host) {
     this.host = host;
+    this.country = null;
+  }
+
+  /**
+   * Gets the name of the country the host is in.
+   *
+   * @return  the country name, or null if it can't be looked up
+   */
+  public String getCountry() {
+    if (country == null) {
+      country = GeoIpService.getInstance().getCountry(host);
+    }
+
+    return country;
   }
 
   /**
@@ -205,4 +222,13 @@ public class LogEntry {
     this.agent = agent;
   }
 
+  /**
+   * Determines whether the user agent is a robot (crawler, feed fetcher, etc).
+   *
+   * @return  true if the user agent is classified as a bot, false otherwise
+   */
+  public boolean isBot() {
+    return UserAgentClassifier.getInstance().isBot(agent);
+  }
+
 }
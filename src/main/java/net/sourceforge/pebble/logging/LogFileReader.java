@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads log files by memory mapping them, either counting their lines or
+ * parsing them a line at a time. Log files are written in the platform's
+ * default encoding, which is assumed to encode a newline as a single '\n'
+ * byte, as all ASCII compatible encodings do.
+ *
+ * @author    Simon Brown
+ */
+class LogFileReader {
+
+  private static final Log log = LogFactory.getLog(LogFileReader.class);
+
+  private static final byte NEWLINE = '\n';
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte CARRIAGE_RETURN = '\r';
+
+  /** the extension of compressed log files */
+  static final String COMPRESSED_EXTENSION = ".gz";
+
+  private LogFileReader() {
+  }
+
+  /**
+   * Counts the lines in a file, including a last line without a newline.
+   *
+   * @param file    the File to read
+   * @return  the number of lines, or 0 if the file doesn't exist
+   */
+  static int countLines(File file) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+    if (isCompressed(file)) {
+      return countCompressedLines(file);
+    }
+
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size == 0) {
+        return 0;
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int lines = 0;
+      int limit = buffer.limit();
+      for (int i = 0; i < limit; i++) {
+        if (buffer.get(i) == NEWLINE) {
+          lines++;
+        }
+      }
+      if (buffer.get(limit - 1) != NEWLINE) {
+        lines++;
+      }
+
+      return lines;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static int countCompressedLines(File file) throws IOException {
+    InputStream in = new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int lines = 0;
+      byte last = NEWLINE;
+      int read = in.read(buffer);
+      while (read != -1) {
+        for (int i = 0; i < read; i++) {
+          if (buffer[i] == NEWLINE) {
+            lines++;
+          }
+        }
+        if (read > 0) {
+          last = buffer[read - 1];
+        }
+        read = in.read(buffer);
+      }
+      if (last != NEWLINE) {
+        lines++;
+      }
+
+      return lines;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Determines whether a log file is compressed.
+   *
+   * @param file    the File
+   * @return  true if the file is gzip compressed, false otherwise
+   */
+  static boolean isCompressed(File file) {
+    return file.getName().endsWith(COMPRESSED_EXTENSION);
+  }
+
+  /**
+   * Opens a log file for reading a line at a time, decompressing it if
+   * necessary.
+   *
+   * @param file    the File to read
+   * @return  a BufferedReader
+   */
+  static BufferedReader openReader(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    if (isCompressed(file)) {
+      try {
+        in = new GZIPInputStream(in, BUFFER_SIZE);
+      } catch (IOException ioe) {
+        in.close();
+        throw ioe;
+      }
+    }
+
+    return new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()), BUFFER_SIZE);
+  }
+
+  /**
+   * Parses each line of a log file, handing the entries to a visitor.
+   * Lines that can't be parsed are skipped.
+   *
+   * @param file      the File to read
+   * @param format    the format used to parse each line
+   * @param visitor   the LogEntryVisitor to call for each entry
+   */
+  static void visit(File file, CombinedFormatLogEntryFormat format, LogEntryVisitor visitor) throws IOException {
+    if (!file.exists()) {
+      return;
+    }
+    if (isCompressed(file)) {
+      visitCompressed(file, format, visitor);
+      return;
+    }
+
+    FileInputStream in = new FileInputStream(file);
+    try {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size == 0) {
+        return;
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      Charset charset = Charset.defaultCharset();
+      byte[] line = new byte[1024];
+      int limit = buffer.limit();
+      int start = 0;
+      while (start < limit) {
+        int end = start;
+        while (end < limit && buffer.get(end) != NEWLINE) {
+          end++;
+        }
+
+        int length = end - start;
+        if (length > 0 && buffer.get(end - 1) == CARRIAGE_RETURN) {
+          length--;
+        }
+        if (length > line.length) {
+          line = new byte[Math.max(length, line.length * 2)];
+        }
+        buffer.position(start);
+        buffer.get(line, 0, length);
+
+        visit(file, new String(line, 0, length, charset), format, visitor);
+        start = end + 1;
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void visitCompressed(File file, CombinedFormatLogEntryFormat format, LogEntryVisitor visitor) throws IOException {
+    BufferedReader reader = openReader(file);
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        visit(file, line, format, visitor);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void visit(File file, String line, CombinedFormatLogEntryFormat format, LogEntryVisitor visitor) {
+    LogEntry logEntry = null;
+    try {
+      logEntry = format.parse(line);
+    } catch (RuntimeException e) {
+      log.debug("Skipping malformed log line in " + file.getName() + " : " + line, e);
+    }
+    if (logEntry != null) {
+      visitor.visit(logEntry);
+    }
+  }
+
+}
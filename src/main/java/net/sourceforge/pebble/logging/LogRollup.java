@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import net.sourceforge.pebble.domain.Blog;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Pre-aggregated traffic counts for a period, built from the log entries of
+ * one day and merged to cover longer periods. Day rollups are stored next to
+ * the raw log files so that the log views don't have to parse the raw logs
+ * each time they are displayed.
+ *
+ * @author    Simon Brown
+ */
+public class LogRollup {
+
+  private static final String UTF8 = "UTF-8";
+
+  private static final String TOTAL = "total";
+  private static final String SOURCE = "source";
+  private static final String HOUR = "hour";
+  private static final String REQUEST = "request";
+  private static final String REFERER = "referer";
+  private static final String AGENT = "agent";
+  private static final String STATUS = "status";
+  private static final String COUNTRY = "country";
+
+  /** indexes into the per-country counts */
+  static final int NEWS_FEEDS = 0;
+  static final int PAGE_VIEWS = 1;
+  static final int FILE_DOWNLOADS = 2;
+
+  private int totalRequests;
+
+  /** the length of the raw log file this rollup was built from */
+  private long sourceLength;
+
+  private final Map<String,Integer> requests = new HashMap<String,Integer>();
+  private final Map<String,Integer> referers = new HashMap<String,Integer>();
+  private final Map<String,Integer> userAgents = new HashMap<String,Integer>();
+  private final Map<Integer,Integer> statusCodes = new TreeMap<Integer,Integer>();
+  private final Map<String,int[]> countries = new HashMap<String,int[]>();
+
+  private final int[] requestsPerHour = new int[24];
+
+  /** hash codes of the hosts seen in each hour, so that they can be merged */
+  private final Set<Integer>[] hostsPerHour;
+
+  @SuppressWarnings("unchecked")
+  LogRollup() {
+    hostsPerHour = (Set<Integer>[])new Set<?>[24];
+    for (int hour = 0; hour < 24; hour++) {
+      hostsPerHour[hour] = new HashSet<Integer>();
+    }
+  }
+
+  /**
+   * Adds a log entry.
+   *
+   * @param logEntry    the LogEntry to add
+   * @param hour        the hour of the day the request was made, in the blog's time zone
+   * @param country     the country the request came from, or null if unknown
+   * @param request     the Request for the entry's URI, used to classify it
+   */
+  void add(LogEntry logEntry, int hour, String country, Request request) {
+    totalRequests++;
+    increment(requests, logEntry.getRequestUri(), 1);
+    increment(referers, logEntry.getReferer(), 1);
+    increment(userAgents, logEntry.getAgent() != null ? logEntry.getAgent() : "", 1);
+    increment(statusCodes, logEntry.getStatusCode(), 1);
+
+    requestsPerHour[hour]++;
+    hostsPerHour[hour].add(logEntry.getHost() != null ? logEntry.getHost().hashCode() : 0);
+
+    if (country != null) {
+      int[] counts = getCountryCounts(country);
+      if (request.isNewsFeed()) {
+        counts[NEWS_FEEDS]++;
+      } else if (request.isPageView()) {
+        counts[PAGE_VIEWS]++;
+      } else if (request.isFileDownload()) {
+        counts[FILE_DOWNLOADS]++;
+      }
+    }
+  }
+
+  /**
+   * Merges the counts from another rollup into this one.
+   *
+   * @param rollup    a LogRollup instance
+   */
+  void add(LogRollup rollup) {
+    totalRequests += rollup.totalRequests;
+    merge(requests, rollup.requests);
+    merge(referers, rollup.referers);
+    merge(userAgents, rollup.userAgents);
+    merge(statusCodes, rollup.statusCodes);
+
+    for (int hour = 0; hour < 24; hour++) {
+      requestsPerHour[hour] += rollup.requestsPerHour[hour];
+      hostsPerHour[hour].addAll(rollup.hostsPerHour[hour]);
+    }
+
+    for (Map.Entry<String,int[]> entry : rollup.countries.entrySet()) {
+      int[] counts = getCountryCounts(entry.getKey());
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += entry.getValue()[i];
+      }
+    }
+  }
+
+  /**
+   * Gets the total number of requests.
+   */
+  public int getTotalRequests() {
+    return totalRequests;
+  }
+
+  /**
+   * Gets the requests, with their counts.
+   *
+   * @param blog    the blog the requests were made to
+   * @return  a Collection of Request instances
+   */
+  public Collection<Request> getRequests(Blog blog) {
+    List<Request> list = new ArrayList<Request>(requests.size());
+    for (Map.Entry<String,Integer> entry : requests.entrySet()) {
+      Request request = new Request(entry.getKey(), blog);
+      request.addCount(entry.getValue());
+      list.add(request);
+    }
+
+    return list;
+  }
+
+  /**
+   * Gets the referers, with their counts. Referers with the same name (for
+   * example, searches for the same thing) are grouped together.
+   *
+   * @return  a Collection of Referer instances
+   */
+  public Collection<Referer> getReferers() {
+    Map<String,Referer> refererMap = new HashMap<String,Referer>();
+    for (Map.Entry<String,Integer> entry : referers.entrySet()) {
+      Referer referer = new Referer(entry.getKey());
+      Referer existing = refererMap.get(referer.getName());
+      if (existing == null) {
+        refererMap.put(referer.getName(), referer);
+      } else {
+        referer = existing;
+      }
+      referer.addCount(entry.getValue());
+    }
+
+    return refererMap.values();
+  }
+
+  /**
+   * Gets the number of requests made by each user agent.
+   *
+   * @return  a Map of user agent to count; requests without a user agent
+   *          are counted against the empty string
+   */
+  public Map<String,Integer> getUserAgents() {
+    return Collections.unmodifiableMap(userAgents);
+  }
+
+  /**
+   * Gets the number of requests made by robots.
+   *
+   * @return  the number of requests whose user agent is classified as a bot
+   */
+  public int getBotRequests() {
+    UserAgentClassifier classifier = UserAgentClassifier.getInstance();
+    int count = 0;
+    for (Map.Entry<String,Integer> userAgent : userAgents.entrySet()) {
+      if (classifier.isBot(userAgent.getKey())) {
+        count += userAgent.getValue();
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the number of requests with each HTTP status code.
+   */
+  public Map<Integer,Integer> getStatusCodes() {
+    return Collections.unmodifiableMap(statusCodes);
+  }
+
+  /**
+   * Gets the number of requests in each hour of the day.
+   */
+  public int[] getRequestsPerHour() {
+    return requestsPerHour.clone();
+  }
+
+  /**
+   * Gets the number of distinct hosts that made requests in each hour of the day.
+   */
+  public int[] getUniqueHostsPerHour() {
+    int[] uniqueHosts = new int[24];
+    for (int hour = 0; hour < 24; hour++) {
+      uniqueHosts[hour] = hostsPerHour[hour].size();
+    }
+
+    return uniqueHosts;
+  }
+
+  /**
+   * Gets the names of the countries that requests came from.
+   */
+  public Set<String> getCountries() {
+    return Collections.unmodifiableSet(countries.keySet());
+  }
+
+  /**
+   * Gets the number of news feed requests from a country.
+   */
+  public int getNewsFeeds(String country) {
+    return getCount(country, NEWS_FEEDS);
+  }
+
+  /**
+   * Gets the number of page views from a country.
+   */
+  public int getPageViews(String country) {
+    return getCount(country, PAGE_VIEWS);
+  }
+
+  /**
+   * Gets the number of file downloads from a country.
+   */
+  public int getFileDownloads(String country) {
+    return getCount(country, FILE_DOWNLOADS);
+  }
+
+  /**
+   * Gets the number of times each URI was requested.
+   */
+  Map<String,Integer> getRequestCounts() {
+    return Collections.unmodifiableMap(requests);
+  }
+
+  /**
+   * Gets the number of requests from each referer, without grouping them.
+   */
+  Map<String,Integer> getRefererCounts() {
+    return Collections.unmodifiableMap(referers);
+  }
+
+  long getSourceLength() {
+    return sourceLength;
+  }
+
+  void setSourceLength(long sourceLength) {
+    this.sourceLength = sourceLength;
+  }
+
+  private int getCount(String country, int type) {
+    int[] counts = countries.get(country);
+    return counts != null ? counts[type] : 0;
+  }
+
+  private int[] getCountryCounts(String country) {
+    int[] counts = countries.get(country);
+    if (counts == null) {
+      counts = new int[3];
+      countries.put(country, counts);
+    }
+
+    return counts;
+  }
+
+  private static <K> void increment(Map<K,Integer> map, K key, int count) {
+    Integer existing = map.get(key);
+    map.put(key, existing != null ? existing + count : count);
+  }
+
+  private static <K> void merge(Map<K,Integer> map, Map<K,Integer> counts) {
+    for (Map.Entry<K,Integer> entry : counts.entrySet()) {
+      increment(map, entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Writes this rollup to a file, one tab separated record per line, with
+   * any free text last so that it can't be confused with the separators.
+   *
+   * @param file    the File to write to
+   */
+  void write(File file) throws IOException {
+    File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), UTF8));
+    try {
+      writeLine(writer, SOURCE, "" + sourceLength);
+      writeLine(writer, TOTAL, "" + totalRequests);
+      for (int hour = 0; hour < 24; hour++) {
+        StringBuilder hosts = new StringBuilder();
+        for (Integer host : hostsPerHour[hour]) {
+          if (hosts.length() > 0) {
+            hosts.append(',');
+          }
+          hosts.append(Integer.toHexString(host));
+        }
+        writeLine(writer, HOUR, hour + "\t" + requestsPerHour[hour] + "\t" + hosts);
+      }
+      for (Map.Entry<Integer,Integer> entry : statusCodes.entrySet()) {
+        writeLine(writer, STATUS, entry.getKey() + "\t" + entry.getValue());
+      }
+      for (Map.Entry<String,int[]> entry : countries.entrySet()) {
+        int[] counts = entry.getValue();
+        writeLine(writer, COUNTRY, counts[NEWS_FEEDS] + "\t" + counts[PAGE_VIEWS] + "\t" + counts[FILE_DOWNLOADS] + "\t" + entry.getKey());
+      }
+      writeCounts(writer, REQUEST, requests);
+      writeCounts(writer, REFERER, referers);
+      writeCounts(writer, AGENT, userAgents);
+    } finally {
+      writer.close();
+    }
+
+    if (file.exists()) {
+      file.delete();
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Could not rename " + tmp + " to " + file);
+    }
+  }
+
+  private static void writeCounts(BufferedWriter writer, String type, Map<String,Integer> counts) throws IOException {
+    for (Map.Entry<String,Integer> entry : counts.entrySet()) {
+      // a null key is written without the trailing text field
+      writeLine(writer, type, entry.getKey() != null ? entry.getValue() + "\t" + entry.getKey() : "" + entry.getValue());
+    }
+  }
+
+  private static void writeLine(BufferedWriter writer, String type, String value) throws IOException {
+    writer.write(type);
+    writer.write('\t');
+    writer.write(value);
+    writer.write('\n');
+  }
+
+  /**
+   * Reads a rollup previously written to a file.
+   *
+   * @param file    the File to read
+   * @return  a LogRollup instance
+   */
+  static LogRollup read(File file) throws IOException {
+    LogRollup rollup = new LogRollup();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        rollup.readLine(line);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+
+    return rollup;
+  }
+
+  /**
+   * Reads only the header of a rollup file.
+   *
+   * @param file    the File to read
+   * @return  a LogRollup holding the total number of requests and source length only
+   */
+  static LogRollup readHeader(File file) throws IOException {
+    LogRollup rollup = new LogRollup();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+    try {
+      rollup.readLine(reader.readLine());
+      rollup.readLine(reader.readLine());
+    } finally {
+      reader.close();
+    }
+
+    return rollup;
+  }
+
+  private void readLine(String line) throws IOException {
+    if (line == null) {
+      throw new EOFException("Rollup file is truncated");
+    }
+
+    int tab = line.indexOf('\t');
+    String type = line.substring(0, tab);
+    String value = line.substring(tab + 1);
+    try {
+      if (type.equals(SOURCE)) {
+        sourceLength = Long.parseLong(value);
+      } else if (type.equals(TOTAL)) {
+        totalRequests = Integer.parseInt(value);
+      } else if (type.equals(HOUR)) {
+        String[] fields = value.split("\t", 3);
+        int hour = Integer.parseInt(fields[0]);
+        requestsPerHour[hour] = Integer.parseInt(fields[1]);
+        if (fields.length > 2 && fields[2].length() > 0) {
+          for (String host : fields[2].split(",")) {
+            hostsPerHour[hour].add((int)Long.parseLong(host, 16));
+          }
+        }
+      } else if (type.equals(STATUS)) {
+        String[] fields = value.split("\t", 2);
+        statusCodes.put(Integer.valueOf(fields[0]), Integer.valueOf(fields[1]));
+      } else if (type.equals(COUNTRY)) {
+        String[] fields = value.split("\t", 4);
+        countries.put(fields[3], new int[] {
+            Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2])});
+      } else if (type.equals(REQUEST)) {
+        readCount(requests, value);
+      } else if (type.equals(REFERER)) {
+        readCount(referers, value);
+      } else if (type.equals(AGENT)) {
+        readCount(userAgents, value);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Malformed rollup line : " + line);
+    }
+  }
+
+  private static void readCount(Map<String,Integer> counts, String value) {
+    int tab = value.indexOf('\t');
+    if (tab == -1) {
+      counts.put(null, Integer.valueOf(value));
+    } else {
+      counts.put(value.substring(tab + 1), Integer.valueOf(value.substring(0, tab)));
+    }
+  }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import net.sourceforge.pebble.domain.Blog;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Approximate counts of the requests, referers and user agents for a
+ * period, held in FrequencySketch instances so that the memory needed
+ * doesn't grow with the number of distinct URLs. Day sketches are built
+ * from the day's rollup, stored next to the raw log files and merged to
+ * cover longer periods, such as a year.
+ *
+ * @author    Simon Brown
+ */
+public class LogSketch {
+
+  /** identifies the file format */
+  private static final int VERSION = 1;
+
+  private long totalRequests;
+
+  /** the length of the raw log file this sketch was built from */
+  private long sourceLength;
+
+  private final FrequencySketch requests;
+  private final FrequencySketch referers;
+  private final FrequencySketch userAgents;
+
+  LogSketch() {
+    this(new FrequencySketch(), new FrequencySketch(), new FrequencySketch());
+  }
+
+  private LogSketch(FrequencySketch requests, FrequencySketch referers, FrequencySketch userAgents) {
+    this.requests = requests;
+    this.referers = referers;
+    this.userAgents = userAgents;
+  }
+
+  /**
+   * Adds the counts from a rollup.
+   *
+   * @param rollup    a LogRollup instance
+   */
+  void add(LogRollup rollup) {
+    totalRequests += rollup.getTotalRequests();
+    add(requests, rollup.getRequestCounts());
+    add(referers, rollup.getRefererCounts());
+    add(userAgents, rollup.getUserAgents());
+  }
+
+  private static void add(FrequencySketch sketch, Map<String,Integer> counts) {
+    for (Map.Entry<String,Integer> entry : counts.entrySet()) {
+      // requests without a referer are counted against null, and aren't wanted
+      if (entry.getKey() != null) {
+        sketch.add(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Merges the counts from another sketch into this one.
+   *
+   * @param sketch    a LogSketch instance
+   */
+  void add(LogSketch sketch) {
+    totalRequests += sketch.totalRequests;
+    requests.merge(sketch.requests);
+    referers.merge(sketch.referers);
+    userAgents.merge(sketch.userAgents);
+  }
+
+  /**
+   * Gets the total number of requests.
+   */
+  public long getTotalRequests() {
+    return totalRequests;
+  }
+
+  /**
+   * Gets the sketch of the URIs requested.
+   */
+  public FrequencySketch getRequests() {
+    return requests;
+  }
+
+  /**
+   * Gets the sketch of the referers, as full URLs.
+   */
+  public FrequencySketch getReferers() {
+    return referers;
+  }
+
+  /**
+   * Gets the sketch of the user agents; requests without a user agent are
+   * counted against the empty string.
+   */
+  public FrequencySketch getUserAgents() {
+    return userAgents;
+  }
+
+  /**
+   * Gets the most frequently requested URIs, with their estimated counts.
+   *
+   * @param blog    the blog the requests were made to
+   * @param n       the maximum number of requests to return
+   * @return  a List of Request instances, most frequent first
+   */
+  public List<Request> getTopRequests(Blog blog, int n) {
+    List<Request> list = new ArrayList<Request>();
+    for (SpaceSavingSketch.Item item : requests.getTop(n)) {
+      Request request = new Request(item.getKey(), blog);
+      request.addCount((int)item.getCount());
+      list.add(request);
+    }
+
+    return list;
+  }
+
+  /**
+   * Gets the most frequent referers, with their estimated counts. As with
+   * LogRollup, referers with the same name are grouped together, so there
+   * may be fewer than n of them.
+   *
+   * @param n   the maximum number of referer URLs to look at
+   * @return  a List of Referer instances
+   */
+  public List<Referer> getTopReferers(int n) {
+    Map<String,Referer> refererMap = new HashMap<String,Referer>();
+    List<Referer> list = new ArrayList<Referer>();
+    for (SpaceSavingSketch.Item item : referers.getTop(n)) {
+      Referer referer = new Referer(item.getKey());
+      Referer existing = refererMap.get(referer.getName());
+      if (existing == null) {
+        refererMap.put(referer.getName(), referer);
+        list.add(referer);
+      } else {
+        referer = existing;
+      }
+      referer.addCount((int)item.getCount());
+    }
+
+    return list;
+  }
+
+  /**
+   * Gets the most frequent user agents, with their estimated counts.
+   *
+   * @param n   the maximum number of user agents to return
+   * @return  a Map of user agent to count, most frequent first
+   */
+  public Map<String,Integer> getTopUserAgents(int n) {
+    Map<String,Integer> map = new LinkedHashMap<String,Integer>();
+    for (SpaceSavingSketch.Item item : userAgents.getTop(n)) {
+      map.put(item.getKey(), (int)item.getCount());
+    }
+
+    return map;
+  }
+
+  /**
+   * Gets the most by which any of the estimated counts may be too high.
+   */
+  public long getMaximumError() {
+    return Math.max(requests.getMaximumError(), Math.max(referers.getMaximumError(), userAgents.getMaximumError()));
+  }
+
+  long getSourceLength() {
+    return sourceLength;
+  }
+
+  void setSourceLength(long sourceLength) {
+    this.sourceLength = sourceLength;
+  }
+
+  /**
+   * Writes this sketch to a file, compressed because most of the count-min
+   * cells are small numbers.
+   *
+   * @param file    the File to write to
+   */
+  void write(File file) throws IOException {
+    File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+    try {
+      out.writeInt(VERSION);
+      out.writeLong(sourceLength);
+      out.writeLong(totalRequests);
+      requests.write(out);
+      referers.write(out);
+      userAgents.write(out);
+    } finally {
+      out.close();
+    }
+
+    if (file.exists()) {
+      file.delete();
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Could not rename " + tmp + " to " + file);
+    }
+  }
+
+  /**
+   * Reads a sketch previously written to a file.
+   *
+   * @param file    the File to read
+   * @return  a LogSketch instance
+   */
+  static LogSketch read(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+    try {
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unknown sketch version : " + version);
+      }
+      long sourceLength = in.readLong();
+      long totalRequests = in.readLong();
+      LogSketch sketch = new LogSketch(FrequencySketch.read(in), FrequencySketch.read(in), FrequencySketch.read(in));
+      sketch.sourceLength = sourceLength;
+      sketch.totalRequests = totalRequests;
+      return sketch;
+    } finally {
+      in.close();
+    }
+  }
+
+}
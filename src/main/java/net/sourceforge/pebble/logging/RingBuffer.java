@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ * Producers claim a slot by advancing the tail with a compare-and-set and
+ * then publish the element by moving the slot's sequence number on; the
+ * consumer only ever reads slots whose sequence number says they have been
+ * published.
+ *
+ * @author    Simon Brown
+ */
+class RingBuffer<E> {
+
+  private final Object[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+
+  /** the position of the next slot to be claimed by a producer */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** the position of the next slot to be read, only written by the consumer */
+  private volatile long head;
+
+  /**
+   * Creates a new ring buffer, rounding the capacity up to a power of two.
+   *
+   * @param capacity    the minimum number of elements that can be held
+   */
+  RingBuffer(int capacity) {
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+
+    this.slots = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element, without waiting.
+   *
+   * @param element   the element to add
+   * @return  true if the element was added, false if the buffer is full
+   */
+  boolean offer(E element) {
+    long position = tail.get();
+    while (true) {
+      int index = (int)(position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          slots[index] = element;
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest element. Must only be called by the consumer.
+   *
+   * @return  the element, or null if there is nothing to read yet
+   */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    long position = head;
+    int index = (int)(position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+
+    E element = (E)slots[index];
+    slots[index] = null;
+    sequences.set(index, position + slots.length);
+    head = position + 1;
+    return element;
+  }
+
+  /**
+   * Determines whether there is anything for the consumer to read.
+   */
+  boolean isEmpty() {
+    long position = head;
+    return sequences.get((int)(position & mask)) != position + 1;
+  }
+
+  /**
+   * Gets the number of elements ever claimed by producers.
+   */
+  long getTail() {
+    return tail.get();
+  }
+
+  /**
+   * Gets the number of elements ever read by the consumer.
+   */
+  long getHead() {
+    return head;
+  }
+
+  /**
+   * Gets the number of slots in this buffer.
+   */
+  int getCapacity() {
+    return slots.length;
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over a sliding window of seconds, without locking. There
+ * is one slot per second of the window; each slot packs the second it is
+ * counting for (high 32 bits) with the count (low 32 bits) into a single
+ * long, so that a slot can be claimed for a new second and incremented
+ * with one compare-and-set.
+ *
+ * @author    Simon Brown
+ */
+public class SlidingWindowCounter {
+
+  private static final long COUNT_MASK = 0xffffffffL;
+
+  /** the length of the window, in seconds */
+  private final int windowSeconds;
+
+  private final AtomicLongArray slots;
+
+  /**
+   * Creates a new counter.
+   *
+   * @param windowSeconds   the length of the window, in seconds
+   */
+  public SlidingWindowCounter(int windowSeconds) {
+    if (windowSeconds < 1) {
+      throw new IllegalArgumentException("The window must be at least a second long");
+    }
+    this.windowSeconds = windowSeconds;
+    this.slots = new AtomicLongArray(windowSeconds);
+  }
+
+  /**
+   * Counts an event.
+   *
+   * @param time    the time of the event, in milliseconds
+   */
+  public void increment(long time) {
+    long second = time / 1000;
+    int index = (int)(second % windowSeconds);
+    while (true) {
+      long slot = slots.get(index);
+      long update;
+      if ((slot >>> 32) == (second & COUNT_MASK)) {
+        if ((slot & COUNT_MASK) == COUNT_MASK) {
+          // saturated
+          return;
+        }
+        update = slot + 1;
+      } else {
+        update = ((second & COUNT_MASK) << 32) | 1;
+      }
+
+      if (slots.compareAndSet(index, slot, update)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of events in the whole window.
+   *
+   * @param time    the current time, in milliseconds
+   * @return  the number of events in the window ending at the given time
+   */
+  public long getCount(long time) {
+    return getCount(time, windowSeconds);
+  }
+
+  /**
+   * Gets the number of events in the most recent seconds of the window.
+   *
+   * @param time      the current time, in milliseconds
+   * @param seconds   the number of seconds to count, including the current one
+   * @return  the number of events
+   */
+  public long getCount(long time, int seconds) {
+    long count = 0;
+    for (long value : getCounts(time, seconds)) {
+      count += value;
+    }
+
+    return count;
+  }
+
+  /**
+   * Gets the number of events in each of the most recent seconds.
+   *
+   * @param time      the current time, in milliseconds
+   * @param seconds   the number of seconds, including the current one
+   * @return  the counts, oldest first
+   */
+  public long[] getCounts(long time, int seconds) {
+    seconds = Math.min(seconds, windowSeconds);
+    long now = time / 1000;
+    long[] counts = new long[seconds];
+    for (int i = 0; i < seconds; i++) {
+      long second = now - (seconds - 1 - i);
+      long slot = slots.get((int)(second % windowSeconds));
+      if ((slot >>> 32) == (second & COUNT_MASK)) {
+        counts[i] = slot & COUNT_MASK;
+      }
+    }
+
+    return counts;
+  }
+
+  /**
+   * Gets the length of the window.
+   *
+   * @return  the number of seconds
+   */
+  public int getWindowSeconds() {
+    return windowSeconds;
+  }
+
+}
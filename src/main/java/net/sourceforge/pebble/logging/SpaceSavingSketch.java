@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the most frequent items in a stream using a fixed amount
+ * of memory (the Space-Saving algorithm). Up to capacity items are counted;
+ * when a new item arrives and there is no room, it takes over the counter of
+ * the least frequent item, inheriting its count as the possible error. Any
+ * item that occurs more than 1/capacity of the time is guaranteed to be kept.
+ * The counters are held in a min-heap, so each item costs O(log capacity).
+ *
+ * @author    Simon Brown
+ */
+public class SpaceSavingSketch {
+
+  /** sorts items by count, most frequent first */
+  private static final Comparator<Item> BY_COUNT = new Comparator<Item>() {
+    public int compare(Item i1, Item i2) {
+      if (i1.getCount() != i2.getCount()) {
+        return i1.getCount() > i2.getCount() ? -1 : 1;
+      }
+      return i1.getKey().compareTo(i2.getKey());
+    }
+  };
+
+  private final int capacity;
+
+  /** the counters, as a min-heap on count */
+  private final Counter[] heap;
+  private final Map<String,Counter> counters;
+  private int size;
+
+  /**
+   * Creates a new sketch.
+   *
+   * @param capacity    the number of items to keep
+   */
+  public SpaceSavingSketch(int capacity) {
+    this.capacity = capacity;
+    this.heap = new Counter[capacity];
+    this.counters = new HashMap<String,Counter>(capacity * 2);
+  }
+
+  /**
+   * Counts an occurrence of the given item.
+   *
+   * @param key   the item
+   */
+  public synchronized void offer(String key) {
+    Counter counter = counters.get(key);
+    if (counter != null) {
+      counter.count++;
+      siftDown(counter.index);
+    } else if (size < capacity) {
+      counter = new Counter();
+      counter.key = key;
+      counter.count = 1;
+      counter.index = size;
+      heap[size] = counter;
+      counters.put(key, counter);
+      siftUp(size++);
+    } else {
+      // take over the counter of the least frequent item, at the top of the heap
+      counter = heap[0];
+      counters.remove(counter.key);
+      counter.key = key;
+      counter.error = counter.count;
+      counter.count++;
+      counters.put(key, counter);
+      siftDown(0);
+    }
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (heap[parent].count <= heap[i].count) {
+        break;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i) {
+    while (true) {
+      int smallest = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < size && heap[left].count < heap[smallest].count) {
+        smallest = left;
+      }
+      if (right < size && heap[right].count < heap[smallest].count) {
+        smallest = right;
+      }
+      if (smallest == i) {
+        break;
+      }
+      swap(i, smallest);
+      i = smallest;
+    }
+  }
+
+  private void swap(int i, int j) {
+    Counter counter = heap[i];
+    heap[i] = heap[j];
+    heap[j] = counter;
+    heap[i].index = i;
+    heap[j].index = j;
+  }
+
+  /**
+   * Adds the counts in this sketch to those in the given map, so that
+   * sketches for different periods can be combined.
+   *
+   * @param items   a Map of key to Item
+   */
+  synchronized void addTo(Map<String,Item> items) {
+    for (int i = 0; i < size; i++) {
+      Counter counter = heap[i];
+      Item item = items.get(counter.key);
+      if (item == null) {
+        items.put(counter.key, new Item(counter.key, counter.count, counter.error));
+      } else {
+        items.put(counter.key, new Item(counter.key, item.getCount() + counter.count, item.getError() + counter.error));
+      }
+    }
+  }
+
+  /**
+   * Gets the most frequent items.
+   *
+   * @param n   the maximum number of items to return
+   * @return  a List of Item instances, most frequent first
+   */
+  public List<Item> getTop(int n) {
+    Map<String,Item> items = new HashMap<String,Item>();
+    addTo(items);
+    return getTop(items, n);
+  }
+
+  static List<Item> getTop(Map<String,Item> items, int n) {
+    List<Item> top = new ArrayList<Item>(items.values());
+    Collections.sort(top, BY_COUNT);
+    return top.size() > n ? new ArrayList<Item>(top.subList(0, n)) : top;
+  }
+
+  /**
+   * Gets the number of items being counted.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  private static class Counter {
+    private String key;
+    private long count;
+    private long error;
+    private int index;
+  }
+
+  /**
+   * An item and its (estimated) count.
+   */
+  public static class Item {
+
+    private final String key;
+    private final long count;
+    private final long error;
+
+    Item(String key, long count, long error) {
+      this.key = key;
+      this.count = count;
+      this.error = error;
+    }
+
+    /**
+     * Gets the item.
+     */
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * Gets the estimated count, which may be higher than the true count
+     * by up to the error.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the maximum amount by which the count may be overestimated.
+     */
+    public long getError() {
+      return error;
+    }
+
+  }
+
+}
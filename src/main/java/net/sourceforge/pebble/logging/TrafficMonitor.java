@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps live traffic statistics for a blog, fed by the request logger:
+ * requests per second, status codes, and the most requested URLs, most
+ * frequent referers and busiest hosts over the last few minutes. Memory
+ * use is fixed, however much traffic there is.
+ *
+ * @author    Simon Brown
+ */
+public class TrafficMonitor {
+
+  /** the length of the window that statistics are kept for, in seconds */
+  public static final int WINDOW_SECONDS = 300;
+
+  /** the number of items counted per minute by each top-K sketch */
+  static final int SKETCH_CAPACITY = 100;
+
+  /** the maximum number of different status codes that are counted */
+  private static final int MAXIMUM_STATUS_CODES = 64;
+
+  private static final int SLOT_SECONDS = 60;
+
+  private final SlidingWindowCounter requests = new SlidingWindowCounter(WINDOW_SECONDS);
+  private final ConcurrentMap<Integer,SlidingWindowCounter> statusCodes = new ConcurrentHashMap<Integer,SlidingWindowCounter>();
+  private final WindowedSketch urls = new WindowedSketch();
+  private final WindowedSketch referers = new WindowedSketch();
+  private final WindowedSketch hosts = new WindowedSketch();
+
+  /**
+   * Records a request.
+   *
+   * @param logEntry    the LogEntry for the request
+   */
+  public void record(LogEntry logEntry) {
+    long time = logEntry.getDate().getTime();
+    requests.increment(time);
+
+    SlidingWindowCounter counter = statusCodes.get(logEntry.getStatusCode());
+    if (counter == null && statusCodes.size() < MAXIMUM_STATUS_CODES) {
+      counter = new SlidingWindowCounter(WINDOW_SECONDS);
+      SlidingWindowCounter existing = statusCodes.putIfAbsent(logEntry.getStatusCode(), counter);
+      if (existing != null) {
+        counter = existing;
+      }
+    }
+    if (counter != null) {
+      counter.increment(time);
+    }
+
+    String request = logEntry.getRequest();
+    if (request != null && request.indexOf('/') != -1) {
+      String uri = logEntry.getRequestUri();
+      int query = uri.indexOf('?');
+      urls.offer(time, query == -1 ? uri : uri.substring(0, query));
+    }
+    if (logEntry.getReferer() != null && logEntry.getReferer().length() > 0) {
+      referers.offer(time, logEntry.getReferer());
+    }
+    if (logEntry.getHost() != null) {
+      hosts.offer(time, logEntry.getHost());
+    }
+  }
+
+  /**
+   * Gets the average number of requests per second.
+   *
+   * @param time      the current time, in milliseconds
+   * @param seconds   the number of seconds to average over
+   * @return  the average rate
+   */
+  public double getRequestsPerSecond(long time, int seconds) {
+    seconds = Math.min(seconds, WINDOW_SECONDS);
+    return (double)requests.getCount(time, seconds) / seconds;
+  }
+
+  /**
+   * Gets the number of requests in each recent second.
+   *
+   * @param time      the current time, in milliseconds
+   * @param seconds   the number of seconds
+   * @return  the counts, oldest first
+   */
+  public long[] getRequestsBySecond(long time, int seconds) {
+    return requests.getCounts(time, seconds);
+  }
+
+  /**
+   * Gets the number of requests in the window.
+   *
+   * @param time      the current time, in milliseconds
+   */
+  public long getTotalRequests(long time) {
+    return requests.getCount(time);
+  }
+
+  /**
+   * Gets the number of responses with each status code in the window.
+   *
+   * @param time      the current time, in milliseconds
+   * @return  a Map of status code to count, in status code order
+   */
+  public Map<Integer,Long> getStatusCodes(long time) {
+    Map<Integer,Long> counts = new TreeMap<Integer,Long>();
+    for (Map.Entry<Integer,SlidingWindowCounter> statusCode : statusCodes.entrySet()) {
+      long count = statusCode.getValue().getCount(time);
+      if (count > 0) {
+        counts.put(statusCode.getKey(), count);
+      }
+    }
+
+    return counts;
+  }
+
+  /**
+   * Gets the most requested URLs (without query strings) in the window.
+   */
+  public List<SpaceSavingSketch.Item> getTopUrls(long time, int n) {
+    return urls.getTop(time, n);
+  }
+
+  /**
+   * Gets the most frequent referers in the window.
+   */
+  public List<SpaceSavingSketch.Item> getTopReferers(long time, int n) {
+    return referers.getTop(time, n);
+  }
+
+  /**
+   * Gets the hosts that made the most requests in the window.
+   */
+  public List<SpaceSavingSketch.Item> getTopHosts(long time, int n) {
+    return hosts.getTop(time, n);
+  }
+
+  /**
+   * A top-K sketch per minute of the window, replaced as the window moves on.
+   */
+  private static class WindowedSketch {
+
+    private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<Slot>(WINDOW_SECONDS / SLOT_SECONDS);
+
+    void offer(long time, String key) {
+      long minute = time / 1000 / SLOT_SECONDS;
+      int index = (int)(minute % slots.length());
+      Slot slot = slots.get(index);
+      while (slot == null || slot.minute != minute) {
+        if (slot != null && slot.minute > minute) {
+          // too old to count
+          return;
+        }
+        Slot fresh = new Slot(minute);
+        if (slots.compareAndSet(index, slot, fresh)) {
+          slot = fresh;
+        } else {
+          slot = slots.get(index);
+        }
+      }
+
+      slot.sketch.offer(key);
+    }
+
+    List<SpaceSavingSketch.Item> getTop(long time, int n) {
+      long minute = time / 1000 / SLOT_SECONDS;
+      Map<String,SpaceSavingSketch.Item> items = new HashMap<String,SpaceSavingSketch.Item>();
+      for (int i = 0; i < slots.length(); i++) {
+        Slot slot = slots.get(i);
+        if (slot != null && minute - slot.minute < slots.length() && slot.minute <= minute) {
+          slot.sketch.addTo(items);
+        }
+      }
+
+      return SpaceSavingSketch.getTop(items, n);
+    }
+
+  }
+
+  private static class Slot {
+
+    private final long minute;
+    private final SpaceSavingSketch sketch = new SpaceSavingSketch(SKETCH_CAPACITY);
+
+    Slot(long minute) {
+      this.minute = minute;
+    }
+
+  }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import net.sourceforge.pebble.util.MultiPatternMatcher;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classifies user agent strings into families (browsers, feed readers,
+ * search engine robots, etc) using the rules in the user-agents.txt file
+ * on the classpath. Each rule is a line of the form
+ * <code>browser|bot pattern [= family]</code>; the first rule whose pattern
+ * occurs anywhere in the user agent (ignoring case) wins, and the family
+ * defaults to the pattern itself. All of the patterns are compiled into a
+ * single automaton so that each user agent is scanned once, and the results
+ * for recently seen user agents are cached.
+ *
+ * @author    Simon Brown
+ */
+public class UserAgentClassifier {
+
+  private static final Log log = LogFactory.getLog(UserAgentClassifier.class);
+
+  /** the name of the rules file on the classpath */
+  static final String RULES = "/user-agents.txt";
+
+  /** the default number of user agents whose classification is cached */
+  static final int DEFAULT_CACHE_SIZE = 1000;
+
+  private static final String BOT = "bot";
+  private static final String BROWSER = "browser";
+
+  /** the classifier is created on first use */
+  private static class Holder {
+    static final UserAgentClassifier instance = new UserAgentClassifier(loadRules(), DEFAULT_CACHE_SIZE);
+  }
+
+  private final MultiPatternMatcher matcher;
+  private final UserAgentFamily[] families;
+  private final Map<String,UserAgentFamily> cache;
+
+  /**
+   * Creates a new classifier.
+   *
+   * @param rules         the rules, one per line
+   * @param maximumSize   the maximum number of user agents to cache
+   */
+  UserAgentClassifier(List<String> rules, final int maximumSize) {
+    List<String> patterns = new ArrayList<String>();
+    List<UserAgentFamily> families = new ArrayList<UserAgentFamily>();
+    for (String rule : rules) {
+      rule = rule.trim();
+      if (rule.length() == 0 || rule.startsWith("#")) {
+        continue;
+      }
+
+      int space = rule.indexOf(' ');
+      String type = space == -1 ? rule : rule.substring(0, space);
+      if (space == -1 || !(type.equals(BOT) || type.equals(BROWSER))) {
+        log.warn("Ignoring user agent rule \"" + rule + "\"");
+        continue;
+      }
+
+      String pattern = rule.substring(space+1).trim();
+      String name = pattern;
+      int equals = pattern.indexOf('=');
+      if (equals != -1) {
+        name = pattern.substring(equals+1).trim();
+        pattern = pattern.substring(0, equals).trim();
+      }
+      if (pattern.length() == 0) {
+        log.warn("Ignoring user agent rule \"" + rule + "\"");
+        continue;
+      }
+      patterns.add(pattern);
+      families.add(new UserAgentFamily(name, type.equals(BOT)));
+    }
+
+    this.matcher = new MultiPatternMatcher(patterns.toArray(new String[patterns.size()]), true);
+    this.families = families.toArray(new UserAgentFamily[families.size()]);
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<String,UserAgentFamily>(16, 0.75f, true) {
+      private static final long serialVersionUID = 7226556619997107587L;
+
+      protected boolean removeEldestEntry(Map.Entry<String,UserAgentFamily> eldest) {
+        return size() > maximumSize;
+      }
+    });
+  }
+
+  /**
+   * Gets the shared instance, loading the rules if necessary.
+   *
+   * @return  a UserAgentClassifier instance
+   */
+  public static UserAgentClassifier getInstance() {
+    return Holder.instance;
+  }
+
+  private static List<String> loadRules() {
+    List<String> rules = new ArrayList<String>();
+    InputStream in = UserAgentClassifier.class.getResourceAsStream(RULES);
+    if (in == null) {
+      log.warn("The user agent rules could not be found, all user agents will be classified as " + UserAgentFamily.OTHER);
+      return rules;
+    }
+
+    try {
+      rules = readRules(new InputStreamReader(in, "UTF-8"));
+    } catch (IOException ioe) {
+      log.warn("Could not read the user agent rules", ioe);
+    }
+
+    return rules;
+  }
+
+  static List<String> readRules(Reader source) throws IOException {
+    List<String> rules = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(source);
+    try {
+      String line = reader.readLine();
+      while (line != null) {
+        rules.add(line);
+        line = reader.readLine();
+      }
+    } finally {
+      reader.close();
+    }
+
+    return rules;
+  }
+
+  /**
+   * Classifies the given user agent.
+   *
+   * @param userAgent   the user agent string, may be null
+   * @return  the UserAgentFamily that the first matching rule gives,
+   *          or UserAgentFamily.OTHER if no rules match
+   */
+  public UserAgentFamily classify(String userAgent) {
+    if (userAgent == null || userAgent.length() == 0) {
+      return UserAgentFamily.OTHER;
+    }
+
+    UserAgentFamily family = cache.get(userAgent);
+    if (family == null) {
+      int rule = matcher.match(userAgent);
+      family = rule != -1 ? families[rule] : UserAgentFamily.OTHER;
+      cache.put(userAgent, family);
+    }
+
+    return family;
+  }
+
+  /**
+   * Determines whether the given user agent is a robot.
+   *
+   * @param userAgent   the user agent string, may be null
+   * @return  true if the user agent matches a bot rule, false otherwise
+   */
+  public boolean isBot(String userAgent) {
+    return classify(userAgent).isBot();
+  }
+
+  /**
+   * Gets the number of rules.
+   */
+  int getNumberOfRules() {
+    return families.length;
+  }
+
+  /**
+   * Gets the number of user agents currently cached.
+   */
+  int getCacheSize() {
+    return cache.size();
+  }
+
+}
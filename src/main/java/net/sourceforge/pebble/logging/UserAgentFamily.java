@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+/**
+ * The family of user agent (browser, feed reader, search engine robot, etc)
+ * that a user agent string has been classified as.
+ *
+ * @author    Simon Brown
+ */
+public class UserAgentFamily {
+
+  /** the family of any user agent that isn't recognised */
+  public static final UserAgentFamily OTHER = new UserAgentFamily("Other", false);
+
+  /** the short name of the family */
+  private final String name;
+
+  /** whether user agents in this family are robots */
+  private final boolean bot;
+
+  /**
+   * Creates a new family.
+   *
+   * @param name    the short name
+   * @param bot     true if this is a robot, false otherwise
+   */
+  public UserAgentFamily(String name, boolean bot) {
+    this.name = name;
+    this.bot = bot;
+  }
+
+  /**
+   * Gets the short name of this family.
+   *
+   * @return  a String
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Determines whether user agents in this family are robots (crawlers,
+   * feed fetchers, etc) rather than people.
+   *
+   * @return  true if this is a robot, false otherwise
+   */
+  public boolean isBot() {
+    return bot;
+  }
+
+  public String toString() {
+    return name;
+  }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.notification;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.util.StringUtils;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Delivers PubSubHubBub publish requests and weblogUpdates.ping XML-RPC
+ * calls over HTTP. All blogs share one pool of keep-alive connections, so
+ * repeated notifications to the same hub or ping site don't each pay for a
+ * new TCP (and TLS) handshake.
+ *
+ * @author    Simon Brown
+ */
+public class HttpNotificationSender implements NotificationSender {
+
+  private static final Log log = LogFactory.getLog(HttpNotificationSender.class);
+
+  /** the name of the method to call via XML-RPC */
+  private static final String WEBLOGS_METHOD_NAME = "weblogUpdates.ping";
+
+  /** the most response body that is read, just to allow the connection to be reused */
+  private static final int MAX_RESPONSE_LENGTH = 64 * 1024;
+
+  private static final Pattern FLERROR = Pattern.compile(
+      "<name>\\s*flerror\\s*</name>\\s*<value>\\s*<boolean>\\s*(\\S+?)\\s*</boolean>");
+  private static final Pattern MESSAGE = Pattern.compile(
+      "<name>\\s*message\\s*</name>\\s*<value>\\s*(?:<string>)?([^<]*)");
+
+  private static final HttpClient httpClient;
+
+  static {
+    MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams params = connectionManager.getParams();
+    params.setDefaultMaxConnectionsPerHost(NotificationQueue.MAX_PER_ENDPOINT);
+    params.setMaxTotalConnections(20);
+    params.setConnectionTimeout(10 * 1000);
+    params.setSoTimeout(30 * 1000);
+    params.setStaleCheckingEnabled(true);
+    httpClient = new HttpClient(connectionManager);
+  }
+
+  public void send(Blog blog, Notification notification) throws NotificationException {
+    if (Notification.HUB.equals(notification.getType())) {
+      publishToHub(notification);
+    } else if (Notification.PING.equals(notification.getType())) {
+      ping(blog, notification);
+    } else {
+      throw new NotificationException("Can't send " + notification.getType() + " notifications over HTTP", true);
+    }
+  }
+
+  private void publishToHub(Notification notification) throws NotificationException {
+    PostMethod method = new PostMethod(notification.getEndpoint());
+    for (String name : notification.getParameterNames()) {
+      for (String value : notification.getParameters(name)) {
+        method.addParameter(name, value);
+      }
+    }
+
+    try {
+      execute(method, notification);
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  private void ping(Blog blog, Notification notification) throws NotificationException {
+    PostMethod method = new PostMethod(notification.getEndpoint());
+    StringBuffer xml = new StringBuffer();
+    xml.append("<?xml version=\"1.0\"?>");
+    xml.append("<methodCall><methodName>");
+    xml.append(WEBLOGS_METHOD_NAME);
+    xml.append("</methodName><params>");
+    for (String name : notification.getParameterNames()) {
+      xml.append("<param><value><string>");
+      xml.append(escape(notification.getParameter(name)));
+      xml.append("</string></value></param>");
+    }
+    xml.append("</params></methodCall>");
+
+    try {
+      method.setRequestEntity(new StringRequestEntity(xml.toString(), "text/xml", "UTF-8"));
+      String response = execute(method, notification);
+
+      if (response.indexOf("<fault>") > -1) {
+        throw new NotificationException("XML-RPC fault from " + notification.getEndpoint() + " : " + getMessage(response), true);
+      }
+
+      String flerror = null;
+      Matcher matcher = FLERROR.matcher(response);
+      if (matcher.find()) {
+        flerror = matcher.group(1);
+      }
+      String message = getMessage(response);
+
+      log.info("Result of XML-RPC ping to " + WEBLOGS_METHOD_NAME + " at " + notification.getEndpoint() + " was " + flerror + ", " + message);
+      if ("1".equals(flerror) || "true".equalsIgnoreCase(flerror)) {
+        throw new NotificationException("Ping rejected by " + notification.getEndpoint() + " : " + message, true);
+      }
+      blog.info("Result of XML-RPC ping to " + WEBLOGS_METHOD_NAME + " at " + StringUtils.transformHTML(notification.getEndpoint()) +
+          " was " + StringUtils.transformHTML(flerror) + ", " + StringUtils.transformHTML(message));
+    } catch (UnsupportedEncodingException e) {
+      throw new NotificationException(e.getMessage(), true);
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  /**
+   * Executes the request, reading the response so that the connection can
+   * be returned to the pool.
+   *
+   * @return  the response body
+   */
+  private String execute(PostMethod method, Notification notification) throws NotificationException {
+    int rc;
+    String response;
+    try {
+      rc = httpClient.executeMethod(method);
+      response = readResponse(method);
+    } catch (IllegalArgumentException e) {
+      // a malformed endpoint URL
+      throw new NotificationException("Invalid URL " + notification.getEndpoint() + " : " + e.getMessage(), true);
+    } catch (IllegalStateException e) {
+      // an unsupported protocol
+      throw new NotificationException("Invalid URL " + notification.getEndpoint() + " : " + e.getMessage(), true);
+    } catch (IOException e) {
+      throw new NotificationException("Error sending to " + notification.getEndpoint() + " : " + e.getMessage(), e);
+    }
+
+    if (rc < 200 || rc > 299) {
+      String message = "Unexpected response code received from " + notification.getEndpoint() + " - " + rc + " " + method.getStatusText();
+      // client errors won't go away by trying again, apart from "too many requests"
+      boolean permanent = (rc >= 400 && rc < 500 && rc != 408 && rc != 429);
+      throw new NotificationException(message, permanent);
+    }
+
+    return response;
+  }
+
+  private String readResponse(PostMethod method) throws IOException {
+    InputStream in = method.getResponseBodyAsStream();
+    if (in == null) {
+      return "";
+    }
+
+    StringBuffer buf = new StringBuffer();
+    byte[] bytes = new byte[4096];
+    int read = in.read(bytes);
+    while (read != -1 && buf.length() < MAX_RESPONSE_LENGTH) {
+      buf.append(new String(bytes, 0, read, "UTF-8"));
+      read = in.read(bytes);
+    }
+    in.close();
+
+    return buf.toString();
+  }
+
+  private String getMessage(String response) {
+    Matcher matcher = MESSAGE.matcher(response);
+    if (matcher.find()) {
+      return matcher.group(1).trim();
+    } else {
+      return null;
+    }
+  }
+
+  private static String escape(String s) {
+    if (s == null) {
+      return "";
+    }
+    return s.replaceAll("&", "&amp;").replaceAll("<", "&lt;").replaceAll(">", "&gt;");
+  }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.notification;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A single outbound notification (a hub publish request, an XML-RPC ping or
+ * a tweet) waiting to be delivered by the {@link NotificationQueue}.
+ *
+ * @author    Simon Brown
+ */
+public class Notification {
+
+  /** a PubSubHubBub publish request */
+  public static final String HUB = "hub";
+
+  /** a weblogUpdates.ping XML-RPC call */
+  public static final String PING = "ping";
+
+  /** a status update posted to Twitter */
+  public static final String TWITTER = "twitter";
+
+  private static final String TYPE = "type";
+  private static final String ENDPOINT = "endpoint";
+  private static final String KEY = "key";
+  private static final String CREATED = "created";
+  private static final String ATTEMPTS = "attempts";
+  private static final String NEXT_ATTEMPT = "nextAttempt";
+  private static final String LAST_ERROR = "lastError";
+  private static final String PARAMETER = "parameter.";
+
+  private String id;
+  private final String type;
+  private final String endpoint;
+  private final String key;
+
+  /** request parameters, in the order they were added */
+  private final Map<String,List<String>> parameters = new LinkedHashMap<String,List<String>>();
+
+  private long created;
+  private int attempts;
+  private long nextAttempt;
+  private String lastError;
+
+  /**
+   * Creates a new notification.
+   *
+   * @param type        the type of notification (HUB, PING or TWITTER)
+   * @param endpoint    the URL the notification is sent to
+   * @param key         notifications queued with the same key are coalesced
+   *                    into one, or null if they shouldn't be
+   */
+  public Notification(String type, String endpoint, String key) {
+    this.type = type;
+    this.endpoint = endpoint;
+    this.key = key;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  void setId(String id) {
+    this.id = id;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /**
+   * Adds a request parameter, ignoring a value that the parameter
+   * already has.
+   *
+   * @param name    the parameter name
+   * @param value   the value
+   */
+  public synchronized void addParameter(String name, String value) {
+    List<String> values = parameters.get(name);
+    if (values == null) {
+      values = new ArrayList<String>();
+      parameters.put(name, values);
+    }
+    if (value != null && !values.contains(value)) {
+      values.add(value);
+    }
+  }
+
+  /**
+   * Gets the first value of a request parameter.
+   *
+   * @param name    the parameter name
+   * @return  the value, or null if there isn't one
+   */
+  public synchronized String getParameter(String name) {
+    List<String> values = parameters.get(name);
+    if (values == null || values.isEmpty()) {
+      return null;
+    } else {
+      return values.get(0);
+    }
+  }
+
+  /**
+   * Gets all values of a request parameter.
+   *
+   * @param name    the parameter name
+   * @return  a List of values, possibly empty
+   */
+  public synchronized List<String> getParameters(String name) {
+    List<String> values = parameters.get(name);
+    if (values == null) {
+      return new ArrayList<String>();
+    } else {
+      return new ArrayList<String>(values);
+    }
+  }
+
+  /**
+   * Gets the names of all request parameters.
+   *
+   * @return  a List of names, in the order they were added
+   */
+  public synchronized List<String> getParameterNames() {
+    return new ArrayList<String>(parameters.keySet());
+  }
+
+  /**
+   * Adds the parameters of another notification to this one, so that a
+   * single request covers both.
+   *
+   * @param notification    the Notification to merge
+   */
+  synchronized void merge(Notification notification) {
+    for (String name : notification.getParameterNames()) {
+      for (String value : notification.getParameters(name)) {
+        addParameter(name, value);
+      }
+    }
+  }
+
+  public Date getCreated() {
+    return new Date(created);
+  }
+
+  void setCreated(long created) {
+    this.created = created;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  public Date getNextAttempt() {
+    return new Date(nextAttempt);
+  }
+
+  long getNextAttemptTime() {
+    return nextAttempt;
+  }
+
+  void setNextAttempt(long nextAttempt) {
+    this.nextAttempt = nextAttempt;
+  }
+
+  public String getLastError() {
+    return lastError;
+  }
+
+  void setLastError(String lastError) {
+    this.lastError = lastError;
+  }
+
+  /**
+   * Writes this notification to the specified file, replacing it atomically.
+   *
+   * @param file    the File to write to
+   * @throws IOException    if the file can't be written
+   */
+  synchronized void write(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(TYPE, type);
+    properties.setProperty(ENDPOINT, endpoint);
+    if (key != null) {
+      properties.setProperty(KEY, key);
+    }
+    properties.setProperty(CREATED, Long.toString(created));
+    properties.setProperty(ATTEMPTS, Integer.toString(attempts));
+    properties.setProperty(NEXT_ATTEMPT, Long.toString(nextAttempt));
+    if (lastError != null) {
+      properties.setProperty(LAST_ERROR, lastError);
+    }
+
+    int index = 0;
+    for (String name : parameters.keySet()) {
+      for (String value : parameters.get(name)) {
+        properties.setProperty(PARAMETER + index + ".name", name);
+        properties.setProperty(PARAMETER + index + ".value", value);
+        index++;
+      }
+    }
+
+    File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    OutputStream out = new FileOutputStream(tmp);
+    try {
+      properties.store(out, null);
+    } finally {
+      out.close();
+    }
+
+    if (!tmp.renameTo(file)) {
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        throw new IOException("Couldn't rename " + tmp + " to " + file);
+      }
+    }
+  }
+
+  /**
+   * Reads a notification from the specified file.
+   *
+   * @param id      the ID of the notification
+   * @param file    the File to read from
+   * @return  a Notification instance
+   * @throws IOException    if the file can't be read or isn't valid
+   */
+  static Notification read(String id, File file) throws IOException {
+    Properties properties = new Properties();
+    InputStream in = new FileInputStream(file);
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+
+    String type = properties.getProperty(TYPE);
+    String endpoint = properties.getProperty(ENDPOINT);
+    if (type == null || endpoint == null) {
+      throw new IOException(file + " is not a valid notification");
+    }
+
+    Notification notification = new Notification(type, endpoint, properties.getProperty(KEY));
+    notification.setId(id);
+    try {
+      notification.setCreated(Long.parseLong(properties.getProperty(CREATED, "0")));
+      notification.setAttempts(Integer.parseInt(properties.getProperty(ATTEMPTS, "0")));
+      notification.setNextAttempt(Long.parseLong(properties.getProperty(NEXT_ATTEMPT, "0")));
+    } catch (NumberFormatException e) {
+      throw new IOException(file + " is not a valid notification");
+    }
+    notification.setLastError(properties.getProperty(LAST_ERROR));
+
+    int index = 0;
+    String name = properties.getProperty(PARAMETER + index + ".name");
+    while (name != null) {
+      notification.addParameter(name, properties.getProperty(PARAMETER + index + ".value"));
+      index++;
+      name = properties.getProperty(PARAMETER + index + ".name");
+    }
+
+    return notification;
+  }
+
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.notification;
+
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.util.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A per-blog queue of outbound notifications (hub publish requests, XML-RPC
+ * pings and tweets), delivered by background threads so that publishing a
+ * blog entry doesn't have to wait for remote servers. Each notification is
+ * written to disk until it has been delivered, failed deliveries are retried
+ * with exponential backoff, and notifications with the same key that are
+ * queued within a short window are coalesced into a single request.
+ *
+ * @author    Simon Brown
+ */
+public class NotificationQueue {
+
+  private static final Log log = LogFactory.getLog(NotificationQueue.class);
+
+  /** the plugin property holding the coalescing window, in seconds */
+  public static final String WINDOW_PROPERTY = "NotificationQueue.window";
+
+  /** the default coalescing window, in milliseconds */
+  private static final long DEFAULT_WINDOW = 30 * 1000;
+
+  /** the number of background threads delivering notifications */
+  private static final int WORKERS = 4;
+
+  /** the maximum number of concurrent deliveries to the same host */
+  static final int MAX_PER_ENDPOINT = 2;
+
+  /** the number of attempts before a notification is given up on */
+  static final int MAX_ATTEMPTS = 8;
+
+  /** how long to wait before the first retry, in milliseconds */
+  private static final long DEFAULT_FIRST_RETRY = 60 * 1000;
+
+  /** the longest wait between retries, in milliseconds */
+  private static final long MAX_RETRY = 6 * 60 * 60 * 1000;
+
+  /** how long to wait when a host already has the maximum number of deliveries in progress */
+  private static final long BUSY_DELAY = 1000;
+
+  /** the number of recent deliveries remembered for the admin pages */
+  private static final int HISTORY_SIZE = 20;
+
+  private static final String EXTENSION = ".notification";
+
+  private final Blog blog;
+  private final long firstRetry;
+  private final Map<String,NotificationSender> senders = new HashMap<String,NotificationSender>();
+
+  /** notifications waiting to be delivered, keyed on ID */
+  private final Map<String,Notification> pending = new LinkedHashMap<String,Notification>();
+
+  /** notifications that haven't been sent yet and can be coalesced with, keyed on coalescing key */
+  private final Map<String,Notification> coalescing = new HashMap<String,Notification>();
+
+  /** the number of deliveries in progress, keyed on host */
+  private final Map<String,Integer> inProgress = new HashMap<String,Integer>();
+
+  private final LinkedList<Delivery> recentDeliveries = new LinkedList<Delivery>();
+  private int numberOfDeliveries;
+  private int numberOfFailures;
+  private long lastId;
+
+  private ScheduledExecutorService executor;
+
+  public NotificationQueue(Blog blog) {
+    this(blog, DEFAULT_FIRST_RETRY);
+  }
+
+  NotificationQueue(Blog blog, long firstRetry) {
+    this.blog = blog;
+    this.firstRetry = firstRetry;
+
+    HttpNotificationSender httpSender = new HttpNotificationSender();
+    senders.put(Notification.HUB, httpSender);
+    senders.put(Notification.PING, httpSender);
+    senders.put(Notification.TWITTER, new TwitterNotificationSender());
+  }
+
+  /**
+   * Overrides the sender used for a type of notification.
+   *
+   * @param type      the type of notification
+   * @param sender    a NotificationSender instance
+   */
+  synchronized void setSender(String type, NotificationSender sender) {
+    senders.put(type, sender);
+  }
+
+  /**
+   * Starts the background threads, picking up any notifications that were
+   * still pending when the blog was last stopped.
+   */
+  public synchronized void start() {
+    readQueue();
+
+    ScheduledThreadPoolExecutor service = new ScheduledThreadPoolExecutor(WORKERS, new ThreadFactory() {
+      private int count = 0;
+
+      public synchronized Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "pebble-notifications-" + blog.getId() + "-" + (++count));
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // anything still pending is left on disk for the next start
+    service.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    service.setKeepAliveTime(60, TimeUnit.SECONDS);
+    service.allowCoreThreadTimeOut(true);
+    executor = service;
+
+    for (Notification notification : pending.values()) {
+      schedule(notification);
+    }
+  }
+
+  /**
+   * Stops the background threads, waiting for any deliveries in progress.
+   * Undelivered notifications remain on disk.
+   */
+  public void stop() {
+    ScheduledExecutorService service;
+    synchronized (this) {
+      service = executor;
+      executor = null;
+    }
+
+    if (service != null) {
+      service.shutdown();
+      try {
+        service.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Queues a notification for delivery. If a notification with the same key
+   * is already waiting to be sent, the parameters of this one are merged
+   * into it instead.
+   *
+   * @param notification    the Notification to deliver
+   */
+  public synchronized void enqueue(Notification notification) {
+    String key = notification.getKey();
+    if (key != null) {
+      Notification existing = coalescing.get(key);
+      if (existing != null) {
+        existing.merge(notification);
+        write(existing);
+        return;
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    lastId = Math.max(now, lastId + 1);
+    notification.setId(Long.toString(lastId));
+    notification.setCreated(now);
+    notification.setNextAttempt(key != null ? now + getWindow() : now);
+
+    pending.put(notification.getId(), notification);
+    if (key != null) {
+      coalescing.put(key, notification);
+    }
+    write(notification);
+    schedule(notification);
+  }
+
+  /**
+   * Gets the number of notifications waiting to be delivered.
+   *
+   * @return  an int
+   */
+  public synchronized int getNumberOfPendingNotifications() {
+    return pending.size();
+  }
+
+  /**
+   * Gets the notifications waiting to be delivered.
+   *
+   * @return  a List of Notification instances, oldest first
+   */
+  public synchronized List<Notification> getPendingNotifications() {
+    return new ArrayList<Notification>(pending.values());
+  }
+
+  /**
+   * Gets the outcome of the most recent deliveries.
+   *
+   * @return  a List of Delivery instances, newest first
+   */
+  public synchronized List<Delivery> getRecentDeliveries() {
+    return new ArrayList<Delivery>(recentDeliveries);
+  }
+
+  /**
+   * Gets the number of notifications delivered since the blog was started.
+   *
+   * @return  an int
+   */
+  public synchronized int getNumberOfDeliveries() {
+    return numberOfDeliveries;
+  }
+
+  /**
+   * Gets the number of notifications given up on since the blog was started.
+   *
+   * @return  an int
+   */
+  public synchronized int getNumberOfFailures() {
+    return numberOfFailures;
+  }
+
+  private long getWindow() {
+    String window = blog.getPluginProperties().getProperty(WINDOW_PROPERTY);
+    if (window != null && window.trim().length() > 0) {
+      try {
+        return Math.max(0, (long)(Double.parseDouble(window.trim()) * 1000));
+      } catch (NumberFormatException e) {
+        log.warn(WINDOW_PROPERTY + " should be a number of seconds, not " + window);
+      }
+    }
+
+    return DEFAULT_WINDOW;
+  }
+
+  /**
+   * Gets the delay before the specified attempt, doubling each time.
+   */
+  private long getRetryDelay(int attempts) {
+    long delay = firstRetry;
+    for (int i = 1; i < attempts && delay < MAX_RETRY; i++) {
+      delay *= 2;
+    }
+    return Math.min(delay, MAX_RETRY);
+  }
+
+  private void schedule(Notification notification) {
+    schedule(notification, notification.getNextAttemptTime() - System.currentTimeMillis());
+  }
+
+  private void schedule(final Notification notification, long delay) {
+    if (executor != null) {
+      executor.schedule(new Runnable() {
+        public void run() {
+          deliver(notification);
+        }
+      }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void deliver(Notification notification) {
+    String host = getHost(notification);
+    NotificationSender sender;
+    synchronized (this) {
+      if (executor == null || pending.get(notification.getId()) != notification) {
+        return;
+      }
+
+      Integer count = inProgress.get(host);
+      if (count == null) {
+        count = 0;
+      }
+      if (count >= MAX_PER_ENDPOINT) {
+        schedule(notification, BUSY_DELAY);
+        return;
+      }
+      inProgress.put(host, count + 1);
+
+      // anything queued from now on goes into a new notification
+      if (notification.getKey() != null && coalescing.get(notification.getKey()) == notification) {
+        coalescing.remove(notification.getKey());
+      }
+      sender = senders.get(notification.getType());
+    }
+
+    NotificationException failure = null;
+    try {
+      if (sender == null) {
+        failure = new NotificationException("Unknown notification type " + notification.getType(), true);
+      } else {
+        sender.send(blog, notification);
+      }
+    } catch (NotificationException e) {
+      failure = e;
+    } catch (RuntimeException e) {
+      log.error("Error sending " + notification.getType() + " notification to " + notification.getEndpoint(), e);
+      failure = new NotificationException(e.toString(), e);
+    } finally {
+      synchronized (this) {
+        int count = inProgress.get(host) - 1;
+        if (count == 0) {
+          inProgress.remove(host);
+        } else {
+          inProgress.put(host, count);
+        }
+      }
+    }
+
+    // the blog is told about failures once the queue's lock has been released,
+    // because notifications can be queued by threads holding the blog's lock
+    String warning = null;
+    synchronized (this) {
+      notification.setAttempts(notification.getAttempts() + 1);
+      if (failure == null) {
+        log.debug("Delivered " + notification.getType() + " notification to " + notification.getEndpoint());
+        numberOfDeliveries++;
+        remove(notification, null);
+      } else if (failure.isPermanent() || notification.getAttempts() >= MAX_ATTEMPTS) {
+        String message = "Giving up on " + notification.getType() + " notification to " + notification.getEndpoint() +
+            " after " + notification.getAttempts() + " attempt(s) : " + failure.getMessage();
+        log.warn(message);
+        warning = message;
+        numberOfFailures++;
+        remove(notification, failure.getMessage());
+      } else {
+        long delay = getRetryDelay(notification.getAttempts());
+        log.info("Couldn't send " + notification.getType() + " notification to " + notification.getEndpoint() +
+            ", retrying in " + (delay / 1000) + "s : " + failure.getMessage());
+        notification.setLastError(failure.getMessage());
+        notification.setNextAttempt(System.currentTimeMillis() + delay);
+        write(notification);
+        schedule(notification);
+      }
+    }
+
+    if (warning != null) {
+      blog.warn(StringUtils.transformHTML(warning));
+    }
+  }
+
+  private void remove(Notification notification, String error) {
+    pending.remove(notification.getId());
+    getFile(notification.getId()).delete();
+
+    recentDeliveries.addFirst(new Delivery(notification, error));
+    if (recentDeliveries.size() > HISTORY_SIZE) {
+      recentDeliveries.removeLast();
+    }
+  }
+
+  private String getHost(Notification notification) {
+    try {
+      URL url = new URL(notification.getEndpoint());
+      return url.getHost().toLowerCase() + ":" + url.getPort();
+    } catch (MalformedURLException e) {
+      return notification.getEndpoint();
+    }
+  }
+
+  private File getFile(String id) {
+    return new File(blog.getNotificationsDirectory(), id + EXTENSION);
+  }
+
+  /**
+   * Helper method to write a notification to disk.
+   */
+  private void write(Notification notification) {
+    File directory = new File(blog.getNotificationsDirectory());
+    if (!directory.exists()) {
+      directory.mkdirs();
+    }
+
+    try {
+      notification.write(getFile(notification.getId()));
+    } catch (IOException e) {
+      log.error("Error while writing notification " + notification.getId(), e);
+    }
+  }
+
+  /**
+   * Helper method to load pending notifications from disk.
+   */
+  private void readQueue() {
+    File[] files = new File(blog.getNotificationsDirectory()).listFiles();
+    if (files == null) {
+      return;
+    }
+
+    SortedMap<Long,File> ids = new TreeMap<Long,File>();
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(EXTENSION)) {
+        try {
+          ids.put(Long.parseLong(name.substring(0, name.length() - EXTENSION.length())), file);
+        } catch (NumberFormatException e) {
+          log.warn("Ignoring " + file);
+        }
+      } else if (name.endsWith(EXTENSION + ".tmp")) {
+        file.delete();
+      }
+    }
+
+    for (Long id : ids.keySet()) {
+      String notificationId = Long.toString(id);
+      if (pending.containsKey(notificationId)) {
+        continue;
+      }
+
+      try {
+        Notification notification = Notification.read(notificationId, ids.get(id));
+        pending.put(notificationId, notification);
+        if (notification.getKey() != null && notification.getAttempts() == 0 && !coalescing.containsKey(notification.getKey())) {
+          coalescing.put(notification.getKey(), notification);
+        }
+        lastId = Math.max(lastId, id);
+      } catch (IOException e) {
+        log.error("Error while reading notification " + ids.get(id), e);
+      }
+    }
+  }
+
+  /**
+   * The outcome of delivering a notification.
+   */
+  public static class Delivery {
+
+    private final String type;
+    private final String endpoint;
+    private final int attempts;
+    private final Date date;
+    private final String error;
+
+    Delivery(Notification notification, String error) {
+      this.type = notification.getType();
+      this.endpoint = notification.getEndpoint();
+      this.attempts = notification.getAttempts();
+      this.date = new Date();
+      this.error = error;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public String getEndpoint() {
+      return endpoint;
+    }
+
+    public int getAttempts() {
+      return attempts;
+    }
+
+    public Date getDate() {
+      return date;
+    }
+
+    public String getError() {
+      return error;
+    }
+
+    public boolean isSuccessful() {
+      return error == null;
+    }
+
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.notification;
+
+import net.sourceforge.pebble.PluginProperties;
+import net.sourceforge.pebble.domain.Blog;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+
+/**
+ * Posts status updates to Twitter. The credentials are looked up when the
+ * notification is sent, rather than being written to the queue on disk.
+ *
+ * @author    Simon Brown
+ */
+public class TwitterNotificationSender implements NotificationSender {
+
+  private static final Log log = LogFactory.getLog(TwitterNotificationSender.class);
+
+  /** the parameter holding the status message */
+  public static final String STATUS = "status";
+
+  public void send(Blog blog, Notification notification) throws NotificationException {
+    String username = getProperty(blog, "username");
+    String password = getProperty(blog, "password");
+    if (username == null || password == null) {
+      throw new NotificationException("Please configure twitter credentials in order to post to twitter", true);
+    }
+
+    String status = notification.getParameter(STATUS);
+    log.info("Posting to Twitter: " + status);
+    try {
+      Twitter twitter = new Twitter(username, password, notification.getEndpoint());
+      twitter.updateStatus(status);
+    } catch (TwitterException e) {
+      int rc = e.getStatusCode();
+      // bad credentials or a rejected (e.g. duplicate) status
+      boolean permanent = (rc == 400 || rc == 401 || rc == 403 || rc == 404);
+      throw new NotificationException("Error posting to twitter : " + e.getMessage(), permanent);
+    }
+  }
+
+  private String getProperty(Blog blog, String property) {
+    PluginProperties pluginProperties = blog.getPluginProperties();
+    String result = pluginProperties.getProperty("twitter." + blog.getName() + "." + property);
+    if (result == null) {
+      result = pluginProperties.getProperty("twitter." + property);
+    }
+    return result;
+  }
+
+}
@@ -36,9 +36,7 @@ import net.sourceforge.pebble.domain.BlogEntry;
 import net.sourceforge.pebble.domain.BlogService;
 import net.sourceforge.pebble.domain.BlogServiceException;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.regex.Pattern;
 
 /**
  * Generates permalinks using the pattern /YYYY/MM/DD/<time-in-millis>.
@@ -48,7 +46,7 @@ import java.util.Date;
 public class DefaultPermalinkProvider extends PermalinkProviderSupport {
 
   /** the regex used to check for a blog entry permalink : /yyyy/mm/dd/blogentryid.html */
-  private static final String BLOG_ENTRY_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d/\\d\\d/\\d*.html";
+  private static final Pattern BLOG_ENTRY_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d/\\d\\d/\\d*.html");
 
   /**
    * Gets the permalink for a blog entry.
@@ -56,22 +54,8 @@ public class DefaultPermalinkProvider extends PermalinkProviderSupport {
    * @return  a URI as a String
    */
   public String getPermalink(BlogEntry blogEntry) {
-    Blog blog = blogEntry.getBlog();
-    Date date = blogEntry.getDate();
-    DateFormat year = new SimpleDateFormat("yyyy");
-    year.setTimeZone(blog.getTimeZone());
-    DateFormat month = new SimpleDateFormat("MM");
-    month.setTimeZone(blog.getTimeZone());
-    DateFormat day = new SimpleDateFormat("dd");
-    day.setTimeZone(blog.getTimeZone());
-
-    StringBuffer buf = new StringBuffer();
-    buf.append("/");
-    buf.append(year.format(date));
-    buf.append("/");
-    buf.append(month.format(date));
-    buf.append("/");
-    buf.append(day.format(date));
+    StringBuffer buf = new StringBuffer(32);
+    appendDate(buf, blogEntry.getBlog(), blogEntry.getDate(), true);
     buf.append("/");
     buf.append(blogEntry.getId());
     buf.append(".html");
@@ -88,7 +72,7 @@ public class DefaultPermalinkProvider extends PermalinkProviderSupport {
    */
   public boolean isBlogEntryPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(BLOG_ENTRY_PERMALINK_REGEX);
+      return BLOG_ENTRY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
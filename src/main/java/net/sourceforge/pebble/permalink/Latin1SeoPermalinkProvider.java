@@ -32,9 +32,9 @@
 
 package net.sourceforge.pebble.permalink;
 
-import java.text.SimpleDateFormat;
 import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
@@ -61,17 +61,17 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
   /**
    * the regex used to check for a day request
    */
-  private static final String DAY_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d/\\d\\d";
+  private static final Pattern DAY_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d/\\d\\d");
 
   /**
    * the regex used to check for a monthly blog request
    */
-  private static final String MONTH_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d";
+  private static final Pattern MONTH_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d");
 
   /**
    * the regex used to check for a blog entry permalink
    */
-  private static final String BLOG_ENTRY_PERMALINK_REGEX = "/[\\w-]*";
+  private static final Pattern BLOG_ENTRY_PERMALINK_PATTERN = Pattern.compile("/[\\w-]*");
 
   /**
    * the Blog associated with this provider instance
@@ -101,7 +101,17 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
    *
    * @return a URI as a String
    */
-  public synchronized String getPermalink(BlogEntry blogEntry) {
+  public String getPermalink(BlogEntry blogEntry) {
+    String permalink = getMemoizedPermalink(blogEntry);
+    if (permalink == null) {
+      int generation = getGeneration();
+      permalink = memoizePermalink(blogEntry, generation, generatePermalink(blogEntry));
+    }
+
+    return permalink;
+  }
+
+  private synchronized String generatePermalink(BlogEntry blogEntry) {
     if (blogEntry.getTitle() == null || blogEntry.getTitle().length() == 0) {
       return buildPermalink(blogEntry);
     } else {
@@ -130,7 +140,7 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
 
   public boolean isBlogEntryPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(BLOG_ENTRY_PERMALINK_REGEX);
+      return BLOG_ENTRY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
@@ -162,9 +172,9 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
    * @return a URI as a String
    */
   public String getPermalink(Month month) {
-    SimpleDateFormat format = new SimpleDateFormat("'/'yyyy'/'MM");
-    format.setTimeZone(blog.getTimeZone());
-    return format.format(month.getDate());
+    StringBuffer buf = new StringBuffer(8);
+    appendDate(buf, blog, month.getDate(), false);
+    return buf.toString();
   }
 
   /**
@@ -176,7 +186,7 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
    */
   public boolean isMonthPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(MONTH_PERMALINK_REGEX);
+      return MONTH_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
@@ -202,9 +212,9 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
    * @return a URI as a String
    */
   public String getPermalink(Day day) {
-    SimpleDateFormat format = new SimpleDateFormat("'/'yyyy'/'MM'/'dd");
-    format.setTimeZone(blog.getTimeZone());
-    return format.format(day.getDate());
+    StringBuffer buf = new StringBuffer(11);
+    appendDate(buf, blog, day.getDate(), true);
+    return buf.toString();
   }
 
   /**
@@ -216,7 +226,7 @@ public class Latin1SeoPermalinkProvider extends PermalinkProviderSupport {
    */
   public boolean isDayPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(DAY_PERMALINK_REGEX);
+      return DAY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
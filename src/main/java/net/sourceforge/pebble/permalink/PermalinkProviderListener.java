@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.permalink;
+
+import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
+import net.sourceforge.pebble.api.event.blogentry.BlogEntryListener;
+import net.sourceforge.pebble.api.permalink.PermalinkProvider;
+import net.sourceforge.pebble.domain.BlogEntry;
+
+/**
+ * Listens to blog entry events and discards the permalinks memoized by the
+ * blog's permalink provider, since title based permalinks depend on the
+ * titles of the other blog entries too.
+ *
+ * @author    Simon Brown
+ */
+public class PermalinkProviderListener implements BlogEntryListener {
+
+  /**
+   * Called when a blog entry has been added.
+   *
+   * @param event a BlogEntryEvent instance
+   */
+  public void blogEntryAdded(BlogEntryEvent event) {
+    clearMemoizedPermalinks(event.getBlogEntry());
+  }
+
+  /**
+   * Called when a blog entry has been removed.
+   *
+   * @param event a BlogEntryEvent instance
+   */
+  public void blogEntryRemoved(BlogEntryEvent event) {
+    clearMemoizedPermalinks(event.getBlogEntry());
+  }
+
+  /**
+   * Called when a blog entry has been changed.
+   *
+   * @param event a BlogEntryEvent instance
+   */
+  public void blogEntryChanged(BlogEntryEvent event) {
+    clearMemoizedPermalinks(event.getBlogEntry());
+  }
+
+  /**
+   * Called when a blog entry has been published.
+   *
+   * @param event a BlogEntryEvent instance
+   */
+  public void blogEntryPublished(BlogEntryEvent event) {
+    clearMemoizedPermalinks(event.getBlogEntry());
+  }
+
+  /**
+   * Called when a blog entry has been unpublished.
+   *
+   * @param event a BlogEntryEvent instance
+   */
+  public void blogEntryUnpublished(BlogEntryEvent event) {
+    clearMemoizedPermalinks(event.getBlogEntry());
+  }
+
+  private void clearMemoizedPermalinks(BlogEntry blogEntry) {
+    PermalinkProvider permalinkProvider = blogEntry.getBlog().getPermalinkProvider();
+    if (permalinkProvider instanceof PermalinkProviderSupport) {
+      ((PermalinkProviderSupport)permalinkProvider).clearMemoizedPermalinks();
+    }
+  }
+
+}
@@ -37,8 +37,14 @@ import net.sourceforge.pebble.domain.Month;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.api.permalink.PermalinkProvider;
 
-import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Support class that can be used as a basis for PermalinkProvider
@@ -49,14 +55,27 @@ import java.util.HashMap;
 public abstract class PermalinkProviderSupport implements PermalinkProvider {
 
   /** the regex used to check for a day request */
-  private static final String DAY_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d/\\d\\d.html";
+  private static final Pattern DAY_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d/\\d\\d.html");
 
   /** the regex used to check for a monthly blog request */
-  private static final String MONTH_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d.html";
+  private static final Pattern MONTH_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d.html");
+
+  /** a calendar per thread, used to format dates without creating formatters */
+  private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+    protected Calendar initialValue() {
+      return Calendar.getInstance();
+    }
+  };
 
   /** the Blog associated with this provider instance */
   private Blog blog;
 
+  /** blog entry ID -> the permalink last generated for it */
+  private final Map<String,MemoizedPermalink> permalinks = new ConcurrentHashMap<String,MemoizedPermalink>();
+
+  /** incremented whenever the memoized permalinks are cleared */
+  private final AtomicInteger generation = new AtomicInteger();
+
   /**
    * Gets the blog associated with this provider instance.
    *
@@ -82,9 +101,10 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
    * @return a URI as a String
    */
   public String getPermalink(Month month) {
-    SimpleDateFormat format = new SimpleDateFormat("'/'yyyy'/'MM'.html'");
-    format.setTimeZone(blog.getTimeZone());
-    return format.format(month.getDate());
+    StringBuffer buf = new StringBuffer(16);
+    appendDate(buf, getBlog(), month.getDate(), false);
+    buf.append(".html");
+    return buf.toString();
   }
 
   /**
@@ -96,7 +116,7 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
    */
   public boolean isMonthPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(MONTH_PERMALINK_REGEX);
+      return MONTH_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
@@ -122,9 +142,10 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
    * @return a URI as a String
    */
   public String getPermalink(Day day) {
-    SimpleDateFormat format = new SimpleDateFormat("'/'yyyy'/'MM'/'dd'.html'");
-    format.setTimeZone(blog.getTimeZone());
-    return format.format(day.getDate());
+    StringBuffer buf = new StringBuffer(16);
+    appendDate(buf, getBlog(), day.getDate(), true);
+    buf.append(".html");
+    return buf.toString();
   }
 
   /**
@@ -136,7 +157,7 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
    */
   public boolean isDayPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(DAY_PERMALINK_REGEX);
+      return DAY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
@@ -157,7 +178,93 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
        Integer.parseInt(month), Integer.parseInt(day));
   }
 
-  
+  /**
+   * Appends a date of the form /yyyy/MM or /yyyy/MM/dd, in the blog's time
+   * zone, to the given buffer.
+   *
+   * @param buf         the StringBuffer to append to
+   * @param blog        the Blog whose time zone is used
+   * @param date        the Date to append
+   * @param includeDay  true to include the day of the month
+   */
+  void appendDate(StringBuffer buf, Blog blog, Date date, boolean includeDay) {
+    Calendar cal = CALENDAR.get();
+    String timeZoneId = blog.getTimeZoneId();
+    if (!cal.getTimeZone().getID().equals(timeZoneId)) {
+      cal.setTimeZone(TimeZone.getTimeZone(timeZoneId));
+    }
+    cal.setTime(date);
+
+    buf.append('/');
+    appendNumber(buf, cal.get(Calendar.YEAR), 4);
+    buf.append('/');
+    appendNumber(buf, cal.get(Calendar.MONTH) + 1, 2);
+    if (includeDay) {
+      buf.append('/');
+      appendNumber(buf, cal.get(Calendar.DAY_OF_MONTH), 2);
+    }
+  }
+
+  private static void appendNumber(StringBuffer buf, int number, int digits) {
+    String s = Integer.toString(number);
+    for (int i = s.length(); i < digits; i++) {
+      buf.append('0');
+    }
+    buf.append(s);
+  }
+
+  /**
+   * Gets the permalink memoized for a blog entry, as long as the entry's
+   * title and date and the blog's time zone are the same as when it was
+   * generated, and no blog entries have changed since.
+   *
+   * @param blogEntry   a BlogEntry instance
+   * @return  the permalink, or null if it needs to be generated
+   */
+  String getMemoizedPermalink(BlogEntry blogEntry) {
+    MemoizedPermalink memoized = permalinks.get(blogEntry.getId());
+    if (memoized != null && memoized.isFor(blogEntry, getBlog().getTimeZoneId(), generation.get())) {
+      return memoized.permalink;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Memoizes the permalink generated for a blog entry.
+   *
+   * @param blogEntry     a BlogEntry instance
+   * @param generation    the value of getGeneration() before the permalink
+   *                      was generated
+   * @param permalink     the permalink
+   * @return  the permalink
+   */
+  String memoizePermalink(BlogEntry blogEntry, int generation, String permalink) {
+    if (permalink != null) {
+      permalinks.put(blogEntry.getId(), new MemoizedPermalink(blogEntry, getBlog().getTimeZoneId(), generation, permalink));
+    }
+    return permalink;
+  }
+
+  /**
+   * Gets the current generation of memoized permalinks, to be passed to
+   * memoizePermalink() so that permalinks generated while blog entries
+   * were changing aren't kept.
+   */
+  int getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Clears all memoized permalinks, e.g. because a blog entry has been
+   * added, removed or changed, which may change the permalinks of other
+   * entries with the same title.
+   */
+  public void clearMemoizedPermalinks() {
+    generation.incrementAndGet();
+    permalinks.clear();
+  }
+
   /**
    * Curate the title of a blog entry for use in a URL. In particular, 
    * remove diacritics. If no title is available, or if the curation 
@@ -170,28 +277,80 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
   String getCuratedPermalinkTitle(BlogEntry blogEntry, String separator) {
     String title = blogEntry.getTitle();
     if (title == null || title.length() == 0) {
-      title = "" + blogEntry.getId();
-    } else {
-      title = title.toLowerCase();
-      title = title.replaceAll("[\\. ,;/\\\\_-]", separator); // Change whitespace and punctuation marks to dashes
-      for (String search : characterSubstitutions.keySet()) {
-        title = title.replaceAll(search, characterSubstitutions.get(search));
+      return "" + blogEntry.getId();
+    }
+
+    // in a single pass, change whitespace and punctuation marks to a single
+    // separator, transliterate Latin-1 characters and remove anything else
+    title = title.toLowerCase();
+    StringBuffer buf = new StringBuffer(title.length());
+    boolean separate = false;
+    for (int i = 0; i < title.length(); i++) {
+      char c = title.charAt(i);
+      String s = null;
+      if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+        s = null;
+      } else if (SEPARATORS.indexOf(c) > -1 || separator.indexOf(c) > -1) {
+        separate = true;
+        continue;
+      } else if (c < TRANSLITERATIONS.length && TRANSLITERATIONS[c] != null) {
+        s = TRANSLITERATIONS[c];
+      } else {
+        continue;
+      }
+
+      if (s == null || s.length() > 0) {
+        // separators are only kept between words
+        if (separate && buf.length() > 0) {
+          buf.append(separator);
+        }
+        separate = false;
+        if (s == null) {
+          buf.append(c);
+        } else {
+          buf.append(s);
+        }
       }
-      title = title.replaceAll("[^a-z0-9"+separator+"]", "");
-      title = title.replaceAll(separator+"+", separator);
-      title = title.replaceAll("^"+separator+"*", "");
-      title = title.replaceAll(separator+"*$", "");
     }
 
     // if the title has been blanked out, use the blog entry instead
-    if (title == null || title.length() == 0) {
-      title = "" + blogEntry.getId();
+    if (buf.length() == 0) {
+      return "" + blogEntry.getId();
     }
     
-    return title;
+    return buf.toString();
   }
 
+  /**
+   * A permalink along with what it was generated from.
+   */
+  private static class MemoizedPermalink {
+
+    private final String title;
+    private final long date;
+    private final String timeZoneId;
+    private final int generation;
+    private final String permalink;
+
+    MemoizedPermalink(BlogEntry blogEntry, String timeZoneId, int generation, String permalink) {
+      this.title = blogEntry.getTitle();
+      this.date = blogEntry.getDate().getTime();
+      this.timeZoneId = timeZoneId;
+      this.generation = generation;
+      this.permalink = permalink;
+    }
+
+    boolean isFor(BlogEntry blogEntry, String timeZoneId, int generation) {
+      return this.generation == generation &&
+          this.date == blogEntry.getDate().getTime() &&
+          this.timeZoneId.equals(timeZoneId) &&
+          (title == null ? blogEntry.getTitle() == null : title.equals(blogEntry.getTitle()));
+    }
+
+  }
 
+  /** whitespace and punctuation marks, changed to separators */
+  private static final String SEPARATORS = ". ,;/\\_-";
 
   /**
    * the List of characters that will be substituted
@@ -273,4 +432,15 @@ public abstract class PermalinkProviderSupport implements PermalinkProvider {
     characterSubstitutions.put("\u00FE", "p");
     characterSubstitutions.put("\u00FF", "y");
   }
+
+  /** the characterSubstitutions, indexed by character and without anything that would then be removed */
+  private static final String[] TRANSLITERATIONS = new String[256];
+
+  static {
+    for (String search : characterSubstitutions.keySet()) {
+      String replacement = characterSubstitutions.get(search).replaceAll("[^a-z0-9]", "");
+      TRANSLITERATIONS[search.charAt(0)] = replacement;
+    }
+  }
+
 }
@@ -36,6 +36,7 @@ import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogService;
 import net.sourceforge.pebble.domain.BlogServiceException;
 
+import java.util.regex.Pattern;
 
 /**
  * Generates permalinks using the pattern <time-in-millis>.
@@ -45,7 +46,7 @@ import net.sourceforge.pebble.domain.BlogServiceException;
 public class ShortPermalinkProvider extends PermalinkProviderSupport {
 
   /** the regex used to check for a blog entry permalink */
-  private static final String BLOG_ENTRY_PERMALINK_REGEX = "/\\d*.html";
+  private static final Pattern BLOG_ENTRY_PERMALINK_PATTERN = Pattern.compile("/\\d*.html");
 
   /**
    * Gets the permalink for a blog entry.
@@ -65,7 +66,7 @@ public class ShortPermalinkProvider extends PermalinkProviderSupport {
    */
   public boolean isBlogEntryPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(BLOG_ENTRY_PERMALINK_REGEX);
+      return BLOG_ENTRY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
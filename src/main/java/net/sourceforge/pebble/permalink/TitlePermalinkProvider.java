@@ -31,11 +31,9 @@
  */
 package net.sourceforge.pebble.permalink;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
@@ -60,14 +58,24 @@ import net.sourceforge.pebble.domain.Day;
 public class TitlePermalinkProvider extends PermalinkProviderSupport {
 
   /** the regex used to check for a blog entry permalink */
-  private static final String BLOG_ENTRY_PERMALINK_REGEX = "/\\d\\d\\d\\d/\\d\\d/\\d\\d/[\\w]*.html";
+  private static final Pattern BLOG_ENTRY_PERMALINK_PATTERN = Pattern.compile("/\\d\\d\\d\\d/\\d\\d/\\d\\d/[\\w]*.html");
 
   /**
    * Gets the permalink for a blog entry.
    *
    * @return  a URI as a String
    */
-  public synchronized String getPermalink(BlogEntry blogEntry) {
+  public String getPermalink(BlogEntry blogEntry) {
+    String permalink = getMemoizedPermalink(blogEntry);
+    if (permalink == null) {
+      int generation = getGeneration();
+      permalink = memoizePermalink(blogEntry, generation, generatePermalink(blogEntry));
+    }
+
+    return permalink;
+  }
+
+  private synchronized String generatePermalink(BlogEntry blogEntry) {
     if (blogEntry.getTitle() == null || blogEntry.getTitle().length() == 0) {
       return buildPermalink(blogEntry) + ".html";
     } else {
@@ -97,22 +105,8 @@ public class TitlePermalinkProvider extends PermalinkProviderSupport {
   private String buildPermalink(BlogEntry blogEntry) {
     String title = getCuratedPermalinkTitle(blogEntry, "_");
 
-    Blog blog = blogEntry.getBlog();
-    Date date = blogEntry.getDate();
-    DateFormat year = new SimpleDateFormat("yyyy");
-    year.setTimeZone(blog.getTimeZone());
-    DateFormat month = new SimpleDateFormat("MM");
-    month.setTimeZone(blog.getTimeZone());
-    DateFormat day = new SimpleDateFormat("dd");
-    day.setTimeZone(blog.getTimeZone());
-
-    StringBuffer buf = new StringBuffer();
-    buf.append("/");
-    buf.append(year.format(date));
-    buf.append("/");
-    buf.append(month.format(date));
-    buf.append("/");
-    buf.append(day.format(date));
+    StringBuffer buf = new StringBuffer(64);
+    appendDate(buf, blogEntry.getBlog(), blogEntry.getDate(), true);
     buf.append("/");
     buf.append(title);
 
@@ -128,7 +122,7 @@ public class TitlePermalinkProvider extends PermalinkProviderSupport {
    */
   public boolean isBlogEntryPermalink(String uri) {
     if (uri != null) {
-      return uri.matches(BLOG_ENTRY_PERMALINK_REGEX);
+      return BLOG_ENTRY_PERMALINK_PATTERN.matcher(uri).matches();
     } else {
       return false;
     }
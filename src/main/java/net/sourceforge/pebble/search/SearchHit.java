@@ -32,6 +32,9 @@
 package net.sourceforge.pebble.search;
 
 import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.domain.BlogService;
+import net.sourceforge.pebble.domain.BlogServiceException;
 
 import java.util.Date;
 
@@ -69,6 +72,9 @@ public class SearchHit {
   /** the number of this result */
   private int number;
 
+  /** the matching blog entry, loaded on demand */
+  private BlogEntry blogEntry;
+
   /**
    * Creates a new instance with the specified message.
    */
@@ -173,4 +179,20 @@ public class SearchHit {
     return subtitle;
   }
 
+  /**
+   * Gets the matching blog entry. Search hits are built from the fields
+   * stored in the search index, so the full blog entry is only loaded
+   * when this method is first called.
+   *
+   * @return  a BlogEntry instance, or null if the hit isn't a blog entry
+   * @throws BlogServiceException   if the blog entry can't be loaded
+   */
+  public BlogEntry getBlogEntry() throws BlogServiceException {
+    if (blogEntry == null) {
+      blogEntry = new BlogService().getBlogEntry(blog, id);
+    }
+
+    return blogEntry;
+  }
+
 }
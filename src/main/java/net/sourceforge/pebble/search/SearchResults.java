@@ -37,8 +37,10 @@ import net.sourceforge.pebble.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A container for the results (hits) of a search.
@@ -56,6 +58,21 @@ public class SearchResults {
   /** the collection of search results */
   private List hits = new ArrayList();
 
+  /** the total number of hits, if only a page of them is held */
+  private int numberOfHits = -1;
+
+  /** the index of the first hit held, within all hits */
+  private int offset = 0;
+
+  /** facet name -> facet value -> number of hits with that value */
+  private Map<String,Map<String,Integer>> facets = new HashMap<String,Map<String,Integer>>();
+
+  /** the facet values that hits were restricted to */
+  private Map<String,String> facetFilters = new HashMap<String,String>();
+
+  /** a corrected query, if the original may have been misspelt */
+  private String spellingSuggestion;
+
   /**
    * Gets the query that was used to generate these results.
    *
@@ -104,16 +121,50 @@ public class SearchResults {
   }
 
   /**
-   * Gets the number of hits that the query returned.
+   * Gets the number of hits that the query returned. This may be more than
+   * the number of hits held, if only a page of the results was requested.
    *
    * @return  the number of hits as an int
    */
   public int getNumberOfHits() {
-    return hits.size();
+    if (numberOfHits >= 0) {
+      return numberOfHits;
+    } else {
+      return hits.size();
+    }
+  }
+
+  /**
+   * Sets the total number of hits that the query returned.
+   *
+   * @param numberOfHits    the number of hits as an int
+   */
+  public void setNumberOfHits(int numberOfHits) {
+    this.numberOfHits = numberOfHits;
+  }
+
+  /**
+   * Gets the index of the first hit held, within all of the hits that the
+   * query returned.
+   *
+   * @return  the offset as an int
+   */
+  public int getOffset() {
+    return this.offset;
   }
 
   /**
-   * Gets a collection containing all of the hits.
+   * Sets the index of the first hit held, within all of the hits that the
+   * query returned.
+   *
+   * @param offset    the offset as an int
+   */
+  public void setOffset(int offset) {
+    this.offset = offset;
+  }
+
+  /**
+   * Gets a collection containing all of the hits held.
    *
    * @return  a Collection of SearchHit instances
    */
@@ -121,13 +172,69 @@ public class SearchResults {
     return this.hits;
   }
 
+  /**
+   * Gets the facet counts over all of the hits, keyed on facet name and
+   * then facet value, with the most common values first.
+   *
+   * @return  a Map of facet name to a Map of value to count
+   */
+  public Map<String,Map<String,Integer>> getFacets() {
+    return this.facets;
+  }
+
+  /**
+   * Sets the facet counts over all of the hits.
+   *
+   * @param facets    a Map of facet name to a Map of value to count
+   */
+  public void setFacets(Map<String,Map<String,Integer>> facets) {
+    this.facets = facets;
+  }
+
+  /**
+   * Gets the facet values that the hits were restricted to.
+   *
+   * @return  a Map of facet name to value
+   */
+  public Map<String,String> getFacetFilters() {
+    return this.facetFilters;
+  }
+
+  /**
+   * Sets the facet values that the hits were restricted to.
+   *
+   * @param facetFilters    a Map of facet name to value
+   */
+  public void setFacetFilters(Map<String,String> facetFilters) {
+    this.facetFilters = facetFilters;
+  }
+
+  /**
+   * Gets a corrected version of the query, suggested because the query
+   * found nothing and may have been misspelt.
+   *
+   * @return  the corrected query, or null if there is no suggestion
+   */
+  public String getSpellingSuggestion() {
+    return this.spellingSuggestion;
+  }
+
+  /**
+   * Sets a corrected version of the query.
+   *
+   * @param spellingSuggestion    the corrected query, or null
+   */
+  public void setSpellingSuggestion(String spellingSuggestion) {
+    this.spellingSuggestion = spellingSuggestion;
+  }
+
   /**
    * Sorts the search results by score, in reverse order.
    */
   public void sortByScoreDescending() {
     Collections.sort(hits, new SearchHitByScoreComparator());
 
-    int number = 1;
+    int number = offset + 1;
     Iterator it = hits.iterator();
     while (it.hasNext()) {
       SearchHit hit = (SearchHit)it.next();
@@ -142,7 +249,7 @@ public class SearchResults {
   public void sortByDateDescending() {
     Collections.sort(hits, new SearchHitByDateComparator());
 
-    int number = 1;
+    int number = offset + 1;
     Iterator it = hits.iterator();
     while (it.hasNext()) {
       SearchHit hit = (SearchHit)it.next();
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.search;
+
+/**
+ * A single search-as-you-type suggestion; the title of a blog entry, a tag
+ * or a category.
+ *
+ * @author    Simon Brown
+ */
+public class Suggestion {
+
+  /** the type representing a blog entry title */
+  public static final String TITLE = "title";
+
+  /** the type representing a tag */
+  public static final String TAG = "tag";
+
+  /** the type representing a category */
+  public static final String CATEGORY = "category";
+
+  /** the type of this suggestion */
+  private String type;
+
+  /** the text shown to the user */
+  private String text;
+
+  /** the URL the suggestion links to */
+  private String url;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param type    the type (title, tag or category)
+   * @param text    the text of the suggestion
+   * @param url     the URL of the suggestion
+   */
+  public Suggestion(String type, String text, String url) {
+    this.type = type;
+    this.text = text;
+    this.url = url;
+  }
+
+  /**
+   * Gets the type of this suggestion.
+   *
+   * @return  one of TITLE, TAG or CATEGORY
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Gets the text of this suggestion.
+   *
+   * @return  the text as a String
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the URL of this suggestion.
+   *
+   * @return  an absolute URL as a String
+   */
+  public String getUrl() {
+    return url;
+  }
+
+}
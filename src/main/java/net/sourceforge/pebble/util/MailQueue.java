@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of outgoing e-mails, delivered by a small pool of worker threads.
+ * Each worker keeps its SMTP connection open while there are messages to
+ * send, so a burst of e-mails doesn't pay for a new connection (and
+ * handshake) per message. Sending is paced to a maximum rate, and each
+ * message is written to an outbox directory until it has been sent so that
+ * nothing is lost if the server is restarted.
+ *
+ * @author    Simon Brown
+ */
+public class MailQueue {
+
+  private static final Log log = LogFactory.getLog(MailQueue.class);
+
+  private static final String EXTENSION = ".eml";
+
+  /** the number of attempts before a message is given up on */
+  static final int MAX_ATTEMPTS = 5;
+
+  /** how long to wait before the first retry, in milliseconds */
+  private static final long DEFAULT_FIRST_RETRY = 30 * 1000;
+
+  /** how long a worker keeps an idle connection open, in milliseconds */
+  private static final long IDLE_TIMEOUT = 5 * 1000;
+
+  private final File outbox;
+  private final int workers;
+  private final long interval;
+  private final long firstRetry;
+
+  private final DelayQueue<OutgoingMessage> queue = new DelayQueue<OutgoingMessage>();
+  private final List<Thread> threads = new ArrayList<Thread>();
+  private volatile boolean running = false;
+
+  /** the earliest time the next message may be sent */
+  private long nextSend = 0;
+  private long lastId = 0;
+  private int numberOfMessagesSent = 0;
+
+  /**
+   * Creates a new queue.
+   *
+   * @param outbox      the directory in which unsent messages are kept,
+   *                    or null if they shouldn't be
+   * @param workers     the number of worker threads (and SMTP connections)
+   * @param rate        the maximum number of messages sent per minute,
+   *                    or 0 for no limit
+   */
+  public MailQueue(File outbox, int workers, int rate) {
+    this(outbox, workers, rate, DEFAULT_FIRST_RETRY);
+  }
+
+  MailQueue(File outbox, int workers, int rate, long firstRetry) {
+    this.outbox = outbox;
+    this.workers = Math.max(1, workers);
+    this.interval = rate > 0 ? (60 * 1000) / rate : 0;
+    this.firstRetry = firstRetry;
+  }
+
+  /**
+   * Starts the worker threads, sending any messages left in the outbox
+   * with the specified session.
+   *
+   * @param session   the JavaMail Session used to send messages found in
+   *                  the outbox
+   */
+  public synchronized void start(Session session) {
+    if (running) {
+      return;
+    }
+    running = true;
+
+    readOutbox(session);
+
+    for (int i = 1; i <= workers; i++) {
+      Thread thread = new Thread(new Worker(), "pebble-mail-" + i);
+      thread.setDaemon(true);
+      thread.start();
+      threads.add(thread);
+    }
+  }
+
+  /**
+   * Stops the worker threads. Unsent messages remain in the outbox.
+   */
+  public void stop() {
+    List<Thread> stopping;
+    synchronized (this) {
+      running = false;
+      stopping = new ArrayList<Thread>(threads);
+      threads.clear();
+    }
+
+    for (Thread thread : stopping) {
+      thread.interrupt();
+    }
+    for (Thread thread : stopping) {
+      try {
+        thread.join(30 * 1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Queues a message to be sent.
+   *
+   * @param session   the JavaMail Session to send the message with
+   * @param message   the message
+   * @throws MessagingException   if the message can't be written to the outbox
+   */
+  public void enqueue(Session session, MimeMessage message) throws MessagingException {
+    message.saveChanges();
+
+    long id = nextId();
+    File file = null;
+    if (outbox != null) {
+      file = new File(outbox, id + EXTENSION);
+      try {
+        write(message, file);
+      } catch (IOException e) {
+        log.error("Error while writing " + file, e);
+        file = null;
+      }
+    }
+
+    queue.add(new OutgoingMessage(session, message, file, id));
+  }
+
+  /**
+   * Gets the number of messages waiting to be sent.
+   *
+   * @return  an int
+   */
+  public int getNumberOfPendingMessages() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the number of messages sent since the queue was started.
+   *
+   * @return  an int
+   */
+  public synchronized int getNumberOfMessagesSent() {
+    return numberOfMessagesSent;
+  }
+
+  private synchronized long nextId() {
+    lastId = Math.max(System.currentTimeMillis(), lastId + 1);
+    return lastId;
+  }
+
+  /**
+   * Waits until the rate limit allows another message to be sent.
+   */
+  private void acquire() throws InterruptedException {
+    if (interval == 0) {
+      return;
+    }
+
+    long wait;
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      wait = nextSend - now;
+      nextSend = Math.max(now, nextSend) + interval;
+    }
+
+    if (wait > 0) {
+      Thread.sleep(wait);
+    }
+  }
+
+  private synchronized void sent(OutgoingMessage outgoing) {
+    numberOfMessagesSent++;
+    if (outgoing.file != null) {
+      outgoing.file.delete();
+    }
+  }
+
+  private void failed(OutgoingMessage outgoing, MessagingException e) {
+    outgoing.attempts++;
+    if (outgoing.attempts >= MAX_ATTEMPTS) {
+      log.error("Giving up on e-mail \"" + getSubject(outgoing.message) + "\" after " + outgoing.attempts + " attempts", e);
+      if (outgoing.file != null) {
+        outgoing.file.delete();
+      }
+    } else {
+      long delay = firstRetry << (2 * (outgoing.attempts - 1));
+      log.warn("E-mail \"" + getSubject(outgoing.message) + "\" could not be sent, retrying in " + (delay / 1000) + "s : " + e.getMessage());
+      outgoing.nextAttempt = System.currentTimeMillis() + delay;
+      queue.add(outgoing);
+    }
+  }
+
+  private String getSubject(MimeMessage message) {
+    try {
+      return message.getSubject();
+    } catch (MessagingException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the addresses a message should be delivered to, expanding groups
+   * such as "undisclosed-recipients:;" into their (possibly no) members.
+   */
+  private Address[] getRecipients(MimeMessage message) throws MessagingException {
+    List<Address> recipients = new ArrayList<Address>();
+    Address[] addresses = message.getAllRecipients();
+    if (addresses != null) {
+      for (Address address : addresses) {
+        if (address instanceof InternetAddress && ((InternetAddress)address).isGroup()) {
+          InternetAddress[] members = ((InternetAddress)address).getGroup(false);
+          if (members != null) {
+            recipients.addAll(Arrays.asList(members));
+          }
+        } else {
+          recipients.add(address);
+        }
+      }
+    }
+
+    return recipients.toArray(new Address[recipients.size()]);
+  }
+
+  /**
+   * Helper method to write a message to disk, replacing any existing file
+   * atomically.
+   */
+  private void write(MimeMessage message, File file) throws IOException, MessagingException {
+    if (!outbox.exists()) {
+      outbox.mkdirs();
+    }
+
+    File tmp = new File(outbox, file.getName() + ".tmp");
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+    try {
+      message.writeTo(out);
+    } finally {
+      out.close();
+    }
+
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("Couldn't rename " + tmp + " to " + file);
+    }
+  }
+
+  /**
+   * Helper method to load unsent messages from disk.
+   */
+  private void readOutbox(Session session) {
+    File[] files = outbox != null ? outbox.listFiles() : null;
+    if (files == null) {
+      return;
+    }
+
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(EXTENSION + ".tmp")) {
+        file.delete();
+      } else if (name.endsWith(EXTENSION)) {
+        try {
+          long id = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+          InputStream in = new BufferedInputStream(new FileInputStream(file));
+          try {
+            queue.add(new OutgoingMessage(session, new MimeMessage(session, in), file, id));
+          } finally {
+            in.close();
+          }
+          lastId = Math.max(lastId, id);
+        } catch (NumberFormatException e) {
+          log.warn("Ignoring " + file);
+        } catch (Exception e) {
+          log.error("Error while reading " + file, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends messages until the queue is stopped, keeping a connection open
+   * while there's work to do.
+   */
+  class Worker implements Runnable {
+
+    private Session session;
+    private Transport transport;
+
+    public void run() {
+      try {
+        while (running) {
+          OutgoingMessage outgoing = queue.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+          if (outgoing == null) {
+            close();
+          } else {
+            acquire();
+            send(outgoing);
+          }
+        }
+      } catch (InterruptedException e) {
+        // stopping
+      } finally {
+        close();
+      }
+    }
+
+    private void send(OutgoingMessage outgoing) {
+      try {
+        Address[] recipients = getRecipients(outgoing.message);
+        if (recipients.length == 0) {
+          sent(outgoing);
+          return;
+        }
+
+        try {
+          connect(outgoing.session, recipients[0]);
+          transport.sendMessage(outgoing.message, recipients);
+        } catch (MessagingException e) {
+          if (transport != null && transport.isConnected()) {
+            throw e;
+          }
+
+          // the server may have dropped an idle connection, so try once more
+          close();
+          connect(outgoing.session, recipients[0]);
+          transport.sendMessage(outgoing.message, recipients);
+        }
+        sent(outgoing);
+      } catch (MessagingException e) {
+        close();
+        failed(outgoing, e);
+      }
+    }
+
+    private void connect(Session session, Address recipient) throws MessagingException {
+      if (this.session != session) {
+        close();
+      }
+
+      if (transport == null || !transport.isConnected()) {
+        this.session = session;
+        // as Transport.send does, so the session's choice of protocol (e.g. smtps) is used
+        transport = session.getTransport(recipient);
+        transport.connect();
+      }
+    }
+
+    private void close() {
+      if (transport != null) {
+        try {
+          transport.close();
+        } catch (MessagingException e) {
+          log.debug("Error closing SMTP connection", e);
+        }
+        transport = null;
+      }
+      session = null;
+    }
+
+  }
+
+  /**
+   * A message waiting to be sent.
+   */
+  static class OutgoingMessage implements Delayed {
+
+    private final Session session;
+    private final MimeMessage message;
+    private final File file;
+    private final long id;
+    private int attempts = 0;
+    private long nextAttempt = 0;
+
+    OutgoingMessage(Session session, MimeMessage message, File file, long id) {
+      this.session = session;
+      this.message = message;
+      this.file = file;
+      this.id = id;
+    }
+
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(nextAttempt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int compareTo(Delayed delayed) {
+      // oldest first, among those that are due
+      OutgoingMessage outgoing = (OutgoingMessage)delayed;
+      if (nextAttempt != outgoing.nextAttempt) {
+        return nextAttempt < outgoing.nextAttempt ? -1 : 1;
+      } else {
+        return id < outgoing.id ? -1 : (id > outgoing.id ? 1 : 0);
+      }
+    }
+
+  }
+
+}
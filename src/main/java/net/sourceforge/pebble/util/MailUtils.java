@@ -36,20 +36,21 @@ import net.sourceforge.pebble.domain.State;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import net.sourceforge.pebble.web.validation.ValidationContext;
+import net.sourceforge.pebble.Configuration;
 import net.sourceforge.pebble.PebbleContext;
 
 import javax.mail.Message;
+import javax.mail.MessagingException;
 import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeUtility;
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import java.io.File;
+import java.io.UnsupportedEncodingException;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Utilities for e-mail related functions.
@@ -62,8 +63,8 @@ public class MailUtils {
   private static Log log = LogFactory.getLog(MailUtils.class);
   private static String ENCODING = "UTF-8";
 
-  /** thread pool used to send e-mail */
-  private static ExecutorService pool = Executors.newFixedThreadPool(1);
+  /** the queue through which e-mail is sent */
+  private static MailQueue queue;
 
   /**
    * Get the prefix to be used for blog entry emails
@@ -184,101 +185,116 @@ public class MailUtils {
    * @param message       the body of the e-mail
    */
   public static void sendMail(Session session, Blog blog, Collection to, Collection cc, Collection bcc, String subject, String message) {
-    Runnable r = new SendMailRunnable(session, blog, to, cc, bcc, subject, message);
-    pool.execute(r);
+    try {
+      getQueue(session).enqueue(session, createMessage(session, blog, to, cc, bcc, subject, message));
+    } catch (Exception e) {
+      log.error("Notification e-mail could not be sent", e);
+    }
   }
 
   /**
-   * A thread allowing the e-mail to be sent asynchronously, so the requesting
-   * thread (and therefore the user) isn't held up.
+   * Sends the same e-mail to many recipients, in batches using the BCC
+   * field so that recipients can't see each other's addresses. The first
+   * batch is addressed to the blog itself, the rest to undisclosed
+   * recipients.
+   *
+   * @param blog    the notifying blog
+   * @param recipients     the e-mail addresses of the recipients
+   * @param subject       the subject of the e-mail
+   * @param message       the body of the e-mail
    */
-  static class SendMailRunnable implements Runnable {
-
-    /** the JavaMail session */
-    private Session session;
-
-    /** the notifying blog */
-    private Blog blog;
+  public static void sendBulkMail(Session session, Blog blog, Collection<String> recipients, String subject, String message) {
+    int batchSize = Math.max(1, PebbleContext.getInstance().getConfiguration().getMailBatchSize());
+    // only the first batch goes to the blog, so it receives a single copy
+    Collection<String> to = Collections.singleton(blog.getFirstEmailAddress());
+    List<String> batch = new ArrayList<String>();
+    for (String recipient : recipients) {
+      batch.add(recipient);
+      if (batch.size() == batchSize) {
+        sendMail(session, blog, to, new HashSet<String>(), batch, subject, message);
+        to = new HashSet<String>();
+        batch = new ArrayList<String>();
+      }
+    }
 
-    /** the e-mail addresses of the recipients in the TO field */
-    private Collection to;
+    if (!batch.isEmpty()) {
+      sendMail(session, blog, to, new HashSet<String>(), batch, subject, message);
+    }
+  }
 
-    /** the e-mail addresses of the recipients in the CC field */
-    private Collection cc;
+  /**
+   * Creates an e-mail message.
+   *
+   * @param session   a JavaMail Session instance
+   * @param blog    the notifying blog
+   * @param to     the e-mail addresses of the recipients in the TO field
+   * @param cc     the e-mail addresses of the recipients in the CC field
+   * @param bcc     the e-mail addresses of the recipients in the BCC field
+   * @param subject       the subject of the e-mail
+   * @param message       the body of the e-mail
+   * @return  a MimeMessage instance
+   */
+  static MimeMessage createMessage(Session session, Blog blog, Collection to, Collection cc, Collection bcc, String subject, String message)
+      throws MessagingException, UnsupportedEncodingException {
+    MimeMessage msg = new MimeMessage(session);
+    msg.setFrom(new InternetAddress(blog.getFirstEmailAddress(), MimeUtility.encodeText(blog.getName(), ENCODING, "B")));
+    msg.addRecipients(Message.RecipientType.TO, toInternetAddresses(to));
+    msg.addRecipients(Message.RecipientType.CC, toInternetAddresses(cc));
+    msg.addRecipients(Message.RecipientType.BCC, toInternetAddresses(bcc));
+    if (to.isEmpty() && cc.isEmpty()) {
+      msg.setHeader("To", "undisclosed-recipients:;");
+    }
 
-    /** the e-mail addresses of the recipients in the BCC field */
-    private Collection bcc;
+    msg.setSubject(MimeUtility.encodeText(subject, ENCODING, "B"));
+    msg.setSentDate(new Date());
+    msg.setContent(message, "text/html; charset=" + ENCODING);
 
-    /** the subject of the e-mail */
-    private String subject;
+    log.debug("From : " + blog.getName() + " (" + blog.getFirstEmailAddress() + ")");
+    log.debug("Subject : " + subject);
+    log.debug("Message : " + message);
 
-    /** the body of the e-mail */
-    private String message;
+    return msg;
+  }
 
-    /**
-     * Creates a new thread to send a new e-mail.
-     *
-     * @param session   a JavaMail Session instance
-     * @param blog    the notifying blog
-     * @param to     the e-mail addresses of the recipients in the TO field
-     * @param cc     the e-mail addresses of the recipients in the CC field
-     * @param bcc     the e-mail addresses of the recipients in the BCC field
-     * @param subject       the subject of the e-mail
-     * @param message       the body of the e-mail
-     */
-    public SendMailRunnable(Session session, Blog blog, Collection to, Collection cc, Collection bcc, String subject, String message) {
-      this.session = session;
-      this.blog = blog;
-      this.to = to;
-      this.cc = cc;
-      this.bcc = bcc;
-      this.subject = subject;
-      this.message = message;
+  private static InternetAddress[] toInternetAddresses(Collection addresses) throws AddressException {
+    Collection internetAddresses = new HashSet();
+    Iterator it = addresses.iterator();
+    while (it.hasNext()) {
+      internetAddresses.add(new InternetAddress(it.next().toString()));
     }
+    return (InternetAddress[])internetAddresses.toArray(new InternetAddress[]{});
+  }
 
-    /**
-     * Performs the processing associated with this thread.
-     */
-    public void run() {
-      try {
-        // create a message and try to send it
-        Message msg = new MimeMessage(session);
-        msg.setFrom(new InternetAddress(blog.getFirstEmailAddress(), MimeUtility.encodeText(blog.getName(), ENCODING, "B")));
-        Collection internetAddresses = new HashSet();
-        Iterator it = to.iterator();
-        while (it.hasNext()) {
-          internetAddresses.add(new InternetAddress(it.next().toString()));
-        }
-        msg.addRecipients(Message.RecipientType.TO, (InternetAddress[])internetAddresses.toArray(new InternetAddress[]{}));
-
-        internetAddresses = new HashSet();
-        it = cc.iterator();
-        while (it.hasNext()) {
-          internetAddresses.add(new InternetAddress(it.next().toString()));
-        }
-        msg.addRecipients(Message.RecipientType.CC, (InternetAddress[])internetAddresses.toArray(new InternetAddress[]{}));
-
-        internetAddresses = new HashSet();
-        it = bcc.iterator();
-        while (it.hasNext()) {
-          internetAddresses.add(new InternetAddress(it.next().toString()));
-        }
-        msg.addRecipients(Message.RecipientType.BCC, (InternetAddress[])internetAddresses.toArray(new InternetAddress[]{}));
-
-        msg.setSubject(MimeUtility.encodeText(subject, ENCODING, "B"));
-        msg.setSentDate(new Date());
-        msg.setContent(message, "text/html; charset=" + ENCODING);
+  /**
+   * Gets the queue through which e-mail is sent, starting it the first
+   * time it's needed.
+   *
+   * @param session   the session used to send any e-mails left over from
+   *                  a previous run
+   */
+  private static synchronized MailQueue getQueue(Session session) {
+    if (queue == null) {
+      Configuration configuration = PebbleContext.getInstance().getConfiguration();
+      queue = new MailQueue(
+          new File(configuration.getDataDirectory(), "outbox"),
+          configuration.getMailWorkers(),
+          configuration.getMailRate());
+      queue.start(session);
+    }
 
-        log.debug("From : " + blog.getName() + " (" + blog.getFirstEmailAddress() + ")");
-        log.debug("Subject : " + subject);
-        log.debug("Message : " + message);
+    return queue;
+  }
 
-        Transport.send(msg);
-      } catch (Exception e) {
-        log.error("Notification e-mail could not be sent", e);
-      }
+  /**
+   * Replaces the queue through which e-mail is sent.
+   *
+   * @param mailQueue   a MailQueue instance
+   */
+  static synchronized void setQueue(MailQueue mailQueue) {
+    if (queue != null) {
+      queue.stop();
     }
-
+    queue = mailQueue;
   }
 
   /**
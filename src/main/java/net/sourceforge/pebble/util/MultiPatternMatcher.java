@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds which of a fixed set of substrings occur in a piece of text, in a
+ * single pass over the text (the Aho-Corasick algorithm). The automaton is
+ * compiled into a transition table when constructed, so matching costs one
+ * array lookup per character regardless of how many patterns there are.
+ *
+ * @author    Simon Brown
+ */
+public class MultiPatternMatcher {
+
+  /**
+   * the transitions, as one row of character classes per state; each entry
+   * is the offset of the next state's row, complemented if a pattern ends
+   * in that state
+   */
+  private final int[] transitions;
+
+  /** the number of character classes, which is the length of each row */
+  private final int numberOfClasses;
+
+  /** the lowest index of any pattern that ends in each state, or -1 */
+  private final int[] matches;
+
+  /** the index of the pattern that is spelt out by each state, or -1 */
+  private final int[] ends;
+
+  /** the nearest state on each state's failure path that spells out a pattern, or -1 */
+  private final int[] outputs;
+
+  /** whether matching ignores case */
+  private final boolean ignoreCase;
+
+  /** maps characters to character classes; 0 is any character not in a pattern */
+  private final int[] characterClasses;
+
+  /** character classes for characters outside of the table above */
+  private final Map<Character,Integer> otherCharacterClasses = new HashMap<Character,Integer>();
+
+  /**
+   * Creates a new matcher for the given patterns.
+   *
+   * @param patterns      the (non-empty) patterns, in priority order
+   * @param ignoreCase    true if matching should ignore case, false otherwise
+   */
+  public MultiPatternMatcher(String[] patterns, boolean ignoreCase) {
+    this.ignoreCase = ignoreCase;
+
+    // assign a class to each distinct character used in the patterns
+    int[] classes = new int[128];
+    int numberOfClasses = 1;
+    for (String pattern : patterns) {
+      if (pattern.length() == 0) {
+        throw new IllegalArgumentException("Patterns can't be empty");
+      }
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = ignoreCase ? Character.toLowerCase(pattern.charAt(i)) : pattern.charAt(i);
+        if (c < classes.length) {
+          if (classes[c] == 0) {
+            classes[c] = numberOfClasses++;
+          }
+        } else if (!otherCharacterClasses.containsKey(c)) {
+          otherCharacterClasses.put(c, numberOfClasses++);
+        }
+      }
+    }
+    if (ignoreCase) {
+      for (char c = 'A'; c <= 'Z'; c++) {
+        classes[c] = classes[Character.toLowerCase(c)];
+      }
+    }
+    this.characterClasses = classes;
+
+    // build the trie of patterns
+    List<int[]> trie = new ArrayList<int[]>();
+    List<Integer> ends = new ArrayList<Integer>();
+    trie.add(new int[numberOfClasses]);
+    ends.add(-1);
+    for (int index = 0; index < patterns.length; index++) {
+      int state = 0;
+      for (int i = 0; i < patterns[index].length(); i++) {
+        int c = getCharacterClass(patterns[index].charAt(i));
+        if (trie.get(state)[c] == 0) {
+          trie.get(state)[c] = trie.size();
+          trie.add(new int[numberOfClasses]);
+          ends.add(-1);
+        }
+        state = trie.get(state)[c];
+      }
+      if (ends.get(state) == -1) {
+        ends.set(state, index);
+      }
+    }
+
+    // turn the trie into a deterministic automaton, breadth first, following failure links
+    int[][] next = trie.toArray(new int[trie.size()][]);
+    int[] failures = new int[next.length];
+    int[] found = new int[next.length];
+    int[] outputs = new int[next.length];
+    for (int state = 0; state < found.length; state++) {
+      found[state] = ends.get(state);
+      outputs[state] = -1;
+    }
+
+    LinkedList<Integer> queue = new LinkedList<Integer>();
+    for (int c = 0; c < numberOfClasses; c++) {
+      if (next[0][c] != 0) {
+        queue.add(next[0][c]);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.removeFirst();
+      int failure = failures[state];
+      if (found[failure] != -1 && (found[state] == -1 || found[failure] < found[state])) {
+        found[state] = found[failure];
+      }
+      outputs[state] = ends.get(failure) != -1 ? failure : outputs[failure];
+
+      for (int c = 0; c < numberOfClasses; c++) {
+        int child = next[state][c];
+        if (child != 0) {
+          failures[child] = next[failure][c];
+          queue.add(child);
+        } else {
+          next[state][c] = next[failure][c];
+        }
+      }
+    }
+
+    this.numberOfClasses = numberOfClasses;
+    this.transitions = new int[next.length * numberOfClasses];
+    for (int state = 0; state < next.length; state++) {
+      for (int c = 0; c < numberOfClasses; c++) {
+        int target = next[state][c];
+        int offset = target * numberOfClasses;
+        transitions[state * numberOfClasses + c] = found[target] == -1 ? offset : ~offset;
+      }
+    }
+    this.matches = found;
+    this.outputs = outputs;
+    this.ends = new int[next.length];
+    for (int state = 0; state < next.length; state++) {
+      this.ends[state] = ends.get(state);
+    }
+  }
+
+  private int getCharacterClass(char c) {
+    if (c < characterClasses.length) {
+      return characterClasses[c];
+    }
+
+    Integer characterClass = otherCharacterClasses.get(ignoreCase ? Character.toLowerCase(c) : c);
+    return characterClass != null ? characterClass : 0;
+  }
+
+  /**
+   * Finds the highest priority pattern that occurs in the given text.
+   *
+   * @param text    the text to search
+   * @return  the index of the first pattern (in the order given to the
+   *          constructor) that occurs in the text, or -1 if none do
+   */
+  public int match(String text) {
+    int best = -1;
+    int offset = 0;
+    int[] classes = characterClasses;
+    for (int i = 0, length = text.length(); i < length; i++) {
+      char c = text.charAt(i);
+      offset = transitions[offset + (c < classes.length ? classes[c] : getCharacterClass(c))];
+      if (offset < 0) {
+        offset = ~offset;
+        int found = matches[offset / numberOfClasses];
+        if (best == -1 || found < best) {
+          best = found;
+          if (best == 0) {
+            break;
+          }
+        }
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Finds all of the patterns that occur in the given text.
+   *
+   * @param text    the text to search
+   * @return  a BitSet containing the indexes of the patterns that occur in
+   *          the text (a duplicated pattern is only reported by its first index)
+   */
+  public BitSet matchAll(String text) {
+    BitSet found = new BitSet();
+    int offset = 0;
+    int[] classes = characterClasses;
+    for (int i = 0, length = text.length(); i < length; i++) {
+      char c = text.charAt(i);
+      offset = transitions[offset + (c < classes.length ? classes[c] : getCharacterClass(c))];
+      if (offset < 0) {
+        offset = ~offset;
+        int state = offset / numberOfClasses;
+        if (ends[state] == -1) {
+          state = outputs[state];
+        }
+        while (state != -1) {
+          found.set(ends[state]);
+          state = outputs[state];
+        }
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Gets the number of states in the compiled automaton.
+   */
+  public int getNumberOfStates() {
+    return matches.length;
+  }
+
+}
@@ -48,6 +48,12 @@ public class Pageable<T> {
   /** the list over which this class is paging */
   private List<T> list;
 
+  /** the total number of items being paged over */
+  private int size;
+
+  /** the index of the first item in the list, within all items */
+  private int offset;
+
   /** the page size */
   private int pageSize = DEFAULT_PAGE_SIZE;
 
@@ -69,7 +75,22 @@ public class Pageable<T> {
    * @param list    a List
    */
   public Pageable(List<T> list) {
+    this(list, list.size(), 0);
+  }
+
+  /**
+   * Creates a new instance over a list that holds only some of the items
+   * being paged over (typically a single page that has been fetched
+   * already), starting at the given offset.
+   *
+   * @param list    a List holding items from offset onwards
+   * @param size    the total number of items
+   * @param offset  the index of the first item in the list
+   */
+  public Pageable(List<T> list, int size, int offset) {
     this.list = list;
+    this.size = size;
+    this.offset = offset;
     this.page = 1;
     this.maxPages = 1;
 
@@ -79,10 +100,10 @@ public class Pageable<T> {
   private void calculatePages() {
     if (pageSize > 0) {
       // calculate how many pages there are
-      if (list.size() % pageSize == 0) {
-        maxPages = list.size() / pageSize;
+      if (size % pageSize == 0) {
+        maxPages = size / pageSize;
       } else {
-        maxPages = (list.size() / pageSize) + 1;
+        maxPages = (size / pageSize) + 1;
       }
     }
   }
@@ -102,7 +123,9 @@ public class Pageable<T> {
    * @return  a List
    */
   public List<T> getListForPage() {
-    return list.subList(startingIndex, endingIndex);
+    int from = Math.min(Math.max(startingIndex - offset, 0), list.size());
+    int to = Math.min(Math.max(endingIndex - offset, from), list.size());
+    return list.subList(from, to);
   }
 
   /**
@@ -153,8 +176,8 @@ public class Pageable<T> {
       startingIndex = 0;
     }
     endingIndex = startingIndex + pageSize;
-    if (endingIndex > list.size()) {
-      endingIndex = list.size();
+    if (endingIndex > size) {
+      endingIndex = size;
     }
   }
 
@@ -36,6 +36,8 @@ import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.Month;
 import net.sourceforge.pebble.domain.Day;
 import net.sourceforge.pebble.logging.Log;
+import net.sourceforge.pebble.logging.LogRollup;
+import net.sourceforge.pebble.logging.LogSketch;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -50,65 +52,83 @@ import java.util.Calendar;
  */
 public abstract class AbstractLogAction extends SecureAction {
 
+  /** the number of requests, referers and user agents shown for a year */
+  protected static final int TOP_FOR_YEAR = 1000;
+
   protected Log getLog(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    int[] period = getLogPeriod(request, blog);
+    if (period[2] > 0) {
+      return blog.getLogger().getLog(period[0], period[1], period[2]);
+    } else {
+      return blog.getLogger().getLog(period[0], period[1]);
+    }
+  }
 
-    String yearAsString = request.getParameter("year");
-    String monthAsString = request.getParameter("month");
-    String dayAsString = request.getParameter("day");
-
-    Calendar cal = blog.getCalendar();
-    Log log = null;
-    String logPeriod = "";
-
-    if (yearAsString != null && yearAsString.length() > 0 &&
-        monthAsString != null && monthAsString.length() > 0 &&
-        dayAsString != null && dayAsString.length() > 0) {
-      int year = Integer.parseInt(yearAsString);
-      int month = Integer.parseInt(monthAsString);
-      int day = Integer.parseInt(dayAsString);
-      cal.set(Calendar.YEAR, year);
-      cal.set(Calendar.MONTH, month-1);
-      cal.set(Calendar.DAY_OF_MONTH, day);
-      log = blog.getLogger().getLog(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH));
-      SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMMM yyyy", blog.getLocale());
-      dateFormat.setTimeZone(blog.getTimeZone());
-      registerObjectsForNavigation(blog, blog.getBlogForDay(year, month, day));
-      logPeriod = dateFormat.format(cal.getTime());
-    } else if (yearAsString != null && yearAsString.length() > 0 &&
-          monthAsString != null && monthAsString.length() > 0) {
-      int year = Integer.parseInt(yearAsString);
-      int month = Integer.parseInt(monthAsString);
-      cal.set(Calendar.YEAR, year);
-      cal.set(Calendar.MONTH, month-1);
-      log = blog.getLogger().getLog(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1);
-      SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM yyyy", blog.getLocale());
-      dateFormat.setTimeZone(blog.getTimeZone());
-      registerObjectsForNavigation(blog, blog.getBlogForMonth(year, month));
-      logPeriod = dateFormat.format(cal.getTime());
+  protected String getLogFile(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+    Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    int[] period = getLogPeriod(request, blog);
+    if (period[2] > 0) {
+      return blog.getLogger().getLogFile(period[0], period[1], period[2]);
     } else {
-      // get the log for today
-      log = blog.getLogger().getLog();
-      SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMMM yyyy", blog.getLocale());
-      dateFormat.setTimeZone(blog.getTimeZone());
-      registerObjectsForNavigation(blog, blog.getBlogForToday());
-      logPeriod = dateFormat.format(cal.getTime());
+      return blog.getLogger().getLogFile(period[0], period[1]);
     }
+  }
 
-    getModel().put("logPeriod", logPeriod);
+  /**
+   * Gets the pre-aggregated traffic counts for the requested period, for
+   * views that only need counts rather than the individual log entries.
+   */
+  protected LogRollup getRollup(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+    Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    int[] period = getLogPeriod(request, blog);
+    if (period[2] > 0) {
+      return blog.getLogger().getRollup(period[0], period[1], period[2]);
+    } else {
+      return blog.getLogger().getRollup(period[0], period[1]);
+    }
+  }
 
-    return log;
+  /**
+   * Determines whether a whole year (and no month) is being requested.
+   * Years are reported from sketches rather than rollups, because a year's
+   * worth of distinct URLs can be too many to hold in memory.
+   */
+  protected boolean isYearRequested(HttpServletRequest request) {
+    String yearAsString = request.getParameter("year");
+    String monthAsString = request.getParameter("month");
+    return yearAsString != null && yearAsString.length() > 0 &&
+        (monthAsString == null || monthAsString.length() == 0);
   }
 
-  protected String getLogFile(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+  /**
+   * Gets the approximate traffic counts for the requested year, and
+   * registers the period in the model.
+   */
+  protected LogSketch getSketch(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    int year = Integer.parseInt(request.getParameter("year"));
+    LogSketch sketch = blog.getLogger().getSketch(year);
+
+    getModel().put("logPeriod", "" + year);
+    getModel().put("maximumError", sketch.getMaximumError());
+
+    return sketch;
+  }
 
+  /**
+   * Works out the period (a day, a month or today) being requested and
+   * registers it, along with the navigation, in the model.
+   *
+   * @return  the year, month and day; the day is 0 when a whole month is requested
+   */
+  private int[] getLogPeriod(HttpServletRequest request, Blog blog) {
     String yearAsString = request.getParameter("year");
     String monthAsString = request.getParameter("month");
     String dayAsString = request.getParameter("day");
 
     Calendar cal = blog.getCalendar();
-    String log = null;
+    int[] period;
     String logPeriod = "";
 
     if (yearAsString != null && yearAsString.length() > 0 &&
@@ -120,7 +140,7 @@ public abstract class AbstractLogAction extends SecureAction {
       cal.set(Calendar.YEAR, year);
       cal.set(Calendar.MONTH, month-1);
       cal.set(Calendar.DAY_OF_MONTH, day);
-      log = blog.getLogger().getLogFile(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH));
+      period = new int[] { cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH) };
       SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMMM yyyy", blog.getLocale());
       dateFormat.setTimeZone(blog.getTimeZone());
       registerObjectsForNavigation(blog, blog.getBlogForDay(year, month, day));
@@ -131,14 +151,14 @@ public abstract class AbstractLogAction extends SecureAction {
       int month = Integer.parseInt(monthAsString);
       cal.set(Calendar.YEAR, year);
       cal.set(Calendar.MONTH, month-1);
-      log = blog.getLogger().getLogFile(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1);
+      period = new int[] { cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, 0 };
       SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM yyyy", blog.getLocale());
       dateFormat.setTimeZone(blog.getTimeZone());
       registerObjectsForNavigation(blog, blog.getBlogForMonth(year, month));
       logPeriod = dateFormat.format(cal.getTime());
     } else {
       // get the log for today
-      log = blog.getLogger().getLogFile();
+      period = new int[] { cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH) };
       SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMMM yyyy", blog.getLocale());
       dateFormat.setTimeZone(blog.getTimeZone());
       registerObjectsForNavigation(blog, blog.getBlogForToday());
@@ -147,7 +167,7 @@ public abstract class AbstractLogAction extends SecureAction {
 
     getModel().put("logPeriod", logPeriod);
 
-    return log;
+    return period;
   }
 
   private void registerObjectsForNavigation(Blog blog, Month month) {
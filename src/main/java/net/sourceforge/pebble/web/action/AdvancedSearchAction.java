@@ -34,6 +34,7 @@ package net.sourceforge.pebble.web.action;
 import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.Tag;
+import net.sourceforge.pebble.index.SearchIndex;
 import net.sourceforge.pebble.web.view.ForwardView;
 import net.sourceforge.pebble.web.view.View;
 
@@ -77,7 +78,18 @@ public class AdvancedSearchAction extends Action {
 
     try {
       String encodedQuery = URLEncoder.encode(query.toString(), blog.getCharacterEncoding());
-      return new ForwardView("/search.action?query=" + encodedQuery);
+
+      // and pass on any facet values that the search should be restricted to
+      StringBuffer facets = new StringBuffer();
+      for (String facet : SearchIndex.FACETS) {
+        String value = request.getParameter(SearchAction.FACET_PARAMETER_PREFIX + facet);
+        if (value != null && value.trim().length() > 0) {
+          facets.append("&" + SearchAction.FACET_PARAMETER_PREFIX + facet + "=");
+          facets.append(URLEncoder.encode(value.trim(), blog.getCharacterEncoding()));
+        }
+      }
+
+      return new ForwardView("/search.action?query=" + encodedQuery + facets);
     } catch (UnsupportedEncodingException uee) {
       throw new ServletException(uee);
     }
@@ -34,7 +34,6 @@ package net.sourceforge.pebble.web.action;
 
 import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.Blog;
-import net.sourceforge.pebble.util.Utilities;
 import net.sourceforge.pebble.web.security.RequireSecurityToken;
 import net.sourceforge.pebble.web.view.ForwardView;
 import net.sourceforge.pebble.web.view.View;
@@ -44,7 +43,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 /**
- * Rebuilds the indexes associated with a blog.
+ * Brings the indexes associated with a blog up to date, rebuilding them in
+ * full only if necessary (e.g. the time zone has changed).
  *
  * @author    Simon Brown
  */
@@ -60,7 +60,7 @@ public class ReindexBlogAction extends SecureAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Utilities.buildIndexes(blog);
+    blog.reindexChanges();
 
     return new ForwardView("/reloadBlog.secureaction");
   }
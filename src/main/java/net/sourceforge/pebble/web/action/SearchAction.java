@@ -32,7 +32,10 @@
 package net.sourceforge.pebble.web.action;
 
 import net.sourceforge.pebble.Constants;
+import net.sourceforge.pebble.domain.AbstractBlog;
 import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.MultiBlog;
+import net.sourceforge.pebble.index.SearchIndex;
 import net.sourceforge.pebble.search.SearchException;
 import net.sourceforge.pebble.search.SearchHit;
 import net.sourceforge.pebble.search.SearchResults;
@@ -48,6 +51,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Performs a search on the current blog.
@@ -62,6 +67,9 @@ public class SearchAction extends Action {
   /** the number of results to show per page */
   static final int PAGE_SIZE = 20;
 
+  /** the prefix of request parameters that restrict the search to a facet value */
+  static final String FACET_PARAMETER_PREFIX = "facet.";
+
 
   /**
    * Peforms the processing associated with this action.
@@ -72,13 +80,18 @@ public class SearchAction extends Action {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
 
-    Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    AbstractBlog blog = (AbstractBlog)getModel().get(Constants.BLOG_KEY);
     String query = request.getParameter("query");
 
+    Map<String,String> facetFilters = getFacetFilters(request);
     if (query == null || query.trim().length() == 0) {
-      if (blog instanceof Blog) {
+      if (blog instanceof MultiBlog) {
+        // there is no advanced search across blogs, as facets are per blog
+        return new RedirectView(blog.getUrl());
+      } else if (facetFilters.isEmpty()) {
         return new AdvancedSearchView();
       }
+      query = "";
     }
 
     String pageAsString = request.getParameter("page");
@@ -93,7 +106,16 @@ public class SearchAction extends Action {
     }
 
     try {
-      SearchResults results = blog.getSearchIndex().search(query);
+      // only the hits for the requested page are read from the index
+      String sort = request.getParameter("sort");
+      boolean sortByDate = (sort != null && sort.equalsIgnoreCase("date"));
+      int offset = (Math.max(page, 1) - 1) * PAGE_SIZE;
+      SearchResults results;
+      if (blog instanceof MultiBlog) {
+        results = ((MultiBlog)blog).search(query, sortByDate, offset, PAGE_SIZE);
+      } else {
+        results = ((Blog)blog).getSearchIndex().search(query, facetFilters, sortByDate, offset, PAGE_SIZE);
+      }
 
       if (results.getNumberOfHits() == 1) {
         // if there is only one hit, redirect the user to it without the
@@ -101,22 +123,16 @@ public class SearchAction extends Action {
         SearchHit hit = (SearchHit)results.getHits().get(0);
         return new RedirectView(hit.getPermalink());
       } else {
-        // show all results on the search results page
-        String sort = request.getParameter("sort");
-        if (sort != null && sort.equalsIgnoreCase("date")) {
-          results.sortByDateDescending();
-        } else {
-          results.sortByScoreDescending();
-        }
-
-        Pageable pageable = new Pageable(results.getHits());
+        // show the page of results on the search results page
+        Pageable pageable = new Pageable(results.getHits(), results.getNumberOfHits(), results.getOffset());
         pageable.setPageSize(PAGE_SIZE);
-        pageable.setPage(page);
+        pageable.setPage((results.getOffset() / PAGE_SIZE) + 1);
 
         try {
           getModel().put("searchResults", results);
           getModel().put("pageable", pageable);
           getModel().put("query", java.net.URLEncoder.encode(query, blog.getCharacterEncoding()));
+          getModel().put("facetQuery", getFacetQuery(facetFilters, blog.getCharacterEncoding()));
         } catch (UnsupportedEncodingException uee) {
           log.error(uee);
         }
@@ -128,4 +144,37 @@ public class SearchAction extends Action {
     }
   }
 
-}
\ No newline at end of file
+  /**
+   * Gets the facet values that the search should be restricted to, from
+   * request parameters of the form facet.name=value.
+   */
+  private Map<String,String> getFacetFilters(HttpServletRequest request) {
+    Map<String,String> facetFilters = new LinkedHashMap<String,String>();
+    for (String facet : SearchIndex.FACETS) {
+      String value = request.getParameter(FACET_PARAMETER_PREFIX + facet);
+      if (value != null && value.trim().length() > 0) {
+        facetFilters.put(facet, value.trim());
+      }
+    }
+
+    return facetFilters;
+  }
+
+  /**
+   * Gets the query string fragment that restricts a search to the given
+   * facet values, for use in links from the search results page.
+   */
+  private String getFacetQuery(Map<String,String> facetFilters, String characterEncoding) throws UnsupportedEncodingException {
+    StringBuffer buf = new StringBuffer();
+    for (String facet : facetFilters.keySet()) {
+      buf.append("&amp;");
+      buf.append(FACET_PARAMETER_PREFIX);
+      buf.append(facet);
+      buf.append("=");
+      buf.append(java.net.URLEncoder.encode(facetFilters.get(facet), characterEncoding));
+    }
+
+    return buf.toString();
+  }
+
+}
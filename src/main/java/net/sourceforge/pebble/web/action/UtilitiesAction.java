@@ -34,10 +34,12 @@ package net.sourceforge.pebble.web.action;
 import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.Category;
 import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogManager;
 import net.sourceforge.pebble.util.Utilities;
 import net.sourceforge.pebble.web.security.RequireSecurityToken;
 import net.sourceforge.pebble.web.security.SecurityTokenValidatorCondition;
 import net.sourceforge.pebble.web.view.ForwardView;
+import net.sourceforge.pebble.web.view.RedirectView;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.UtilitiesView;
 
@@ -73,8 +75,15 @@ public class UtilitiesAction extends SecureAction {
       Utilities.fixHtmlInResponses(blog);
       return new ForwardView("/reloadBlog.secureaction");
     } else if (action.equalsIgnoreCase("buildIndexes")) {
-      Utilities.buildIndexes(blog);
-      return new ForwardView("/reloadBlog.secureaction");
+      // reload first so that nothing cached from the old files survives, and
+      // then rebuild the indexes of the reloaded blog in the background
+      BlogManager.getInstance().reloadBlog(blog);
+      blog = BlogManager.getInstance().getBlog(blog.getId());
+      blog.reindexInBackground();
+      return new RedirectView(blog.getUrl() + "utilities.secureaction");
+    } else if (action.equalsIgnoreCase("cancelReindex")) {
+      blog.cancelReindex();
+      return new RedirectView(blog.getUrl() + "utilities.secureaction");
     } else if (action.equalsIgnoreCase("convertCategories")) {
       Utilities.convertCategories(blog);
       return new ForwardView("/reloadBlog.secureaction");
@@ -31,10 +31,7 @@
  */
 package net.sourceforge.pebble.web.action;
 
-import com.maxmind.geoip.LookupService;
-import net.sourceforge.pebble.logging.Log;
-import net.sourceforge.pebble.logging.LogEntry;
-import net.sourceforge.pebble.logging.Request;
+import net.sourceforge.pebble.logging.LogRollup;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.CountriesView;
 import net.sourceforge.pebble.domain.Blog;
@@ -43,7 +40,6 @@ import net.sourceforge.pebble.Constants;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
 import java.util.*;
 
 /**
@@ -62,7 +58,7 @@ public class ViewCountriesAction extends AbstractLogAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Log log = getLog(request, response);
+    LogRollup rollup = getRollup(request, response);
 
     Set<String> countries = new TreeSet<String>(new Comparator<String>() {
       public int compare(String s1, String s2) {
@@ -74,38 +70,16 @@ public class ViewCountriesAction extends AbstractLogAction {
     Map<String,Integer> countriesForPageViews = new HashMap<String,Integer>();
     Map<String,Integer> countriesForFileDownloads = new HashMap<String,Integer>();
 
-    LookupService lookupService = null;
+    for (String country : rollup.getCountries()) {
+      int newsFeeds = rollup.getNewsFeeds(country);
+      int pageViews = rollup.getPageViews(country);
+      int fileDownloads = rollup.getFileDownloads(country);
 
-    try {
-      String filename = getClass().getResource("/geo-ip.dat").toExternalForm().substring(5);
-      lookupService = new LookupService(filename, LookupService.GEOIP_MEMORY_CACHE);
-
-      for (LogEntry logEntry : log.getLogEntries()) {
-        String country = lookupService.getCountry(logEntry.getHost()).getName();
-        countries.add(country);
-        register(country, countriesForNewsFeeds);
-        register(country, countriesForPageViews);
-        register(country, countriesForFileDownloads);
-        register(country, consolidatedCountries);
-
-        Request req = new Request(logEntry.getRequestUri(), blog);
-        if (req.isNewsFeed()) {
-          increment(country, countriesForNewsFeeds);
-          increment(country, consolidatedCountries);
-        } else if (req.isPageView()) {
-          increment(country, countriesForPageViews);
-          increment(country, consolidatedCountries);
-        } else if (req.isFileDownload()) {
-          increment(country, countriesForFileDownloads);
-          increment(country, consolidatedCountries);
-        }
-      }
-    } catch (IOException ioe) {
-      throw new ServletException(ioe);
-    } finally {
-      if (lookupService != null) {
-        lookupService.close();
-      }
+      countries.add(country);
+      countriesForNewsFeeds.put(country, newsFeeds);
+      countriesForPageViews.put(country, pageViews);
+      countriesForFileDownloads.put(country, fileDownloads);
+      consolidatedCountries.put(country, newsFeeds + pageViews + fileDownloads);
     }
 
     getModel().put("logAction", "viewCountries");
@@ -118,18 +92,4 @@ public class ViewCountriesAction extends AbstractLogAction {
     return new CountriesView();
   }
 
-  private void register(String country, Map<String,Integer> map) {
-    Integer count = map.get(country);
-    if (count == null) {
-      count = 0;
-    }
-    map.put(country, count);
-  }
-
-  private void increment(String country, Map<String,Integer> map) {
-    Integer count = map.get(country);
-    count = count + 1;
-    map.put(country, count);
-  }
-
 }
\ No newline at end of file
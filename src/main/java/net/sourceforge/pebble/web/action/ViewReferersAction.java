@@ -35,7 +35,6 @@ import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.comparator.CountedUrlByCountComparator;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.logging.CountedUrl;
-import net.sourceforge.pebble.logging.Log;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.ReferersView;
 
@@ -65,10 +64,14 @@ public class ViewReferersAction extends AbstractLogAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Log log = getLog(request, response);
+    List referers;
+    if (isYearRequested(request)) {
+      referers = new ArrayList(getSketch(request, response).getTopReferers(TOP_FOR_YEAR));
+    } else {
+      referers = new ArrayList(getRollup(request, response).getReferers());
+    }
 
     String filter = request.getParameter("filter");
-    List referers = new ArrayList(log.getReferers());
     if (filter == null || filter.equalsIgnoreCase("true")) {
       referers = blog.getRefererFilterManager().filter(referers);
     }
@@ -36,7 +36,6 @@ import net.sourceforge.pebble.comparator.CountedUrlByCountComparator;
 import net.sourceforge.pebble.comparator.CountedUrlByNameComparator;
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.logging.CountedUrl;
-import net.sourceforge.pebble.logging.Log;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.RequestsView;
 
@@ -64,9 +63,12 @@ public class ViewRequestsAction extends AbstractLogAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Log log = getLog(request, response);
-
-    List requests = new ArrayList(log.getRequests());
+    List requests;
+    if (isYearRequested(request)) {
+      requests = new ArrayList(getSketch(request, response).getTopRequests(blog, TOP_FOR_YEAR));
+    } else {
+      requests = new ArrayList(getRollup(request, response).getRequests(blog));
+    }
 
     String sort = request.getParameter("sort");
     if (sort == null || sort.trim().equals("")) {
@@ -33,17 +33,13 @@ package net.sourceforge.pebble.web.action;
 
 import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.Blog;
-import net.sourceforge.pebble.logging.Log;
-import net.sourceforge.pebble.logging.LogEntry;
+import net.sourceforge.pebble.logging.LogRollup;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.RequestsByHourView;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Calendar;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Gets the a breakdown of the requests for each hour of the day.
@@ -52,10 +48,6 @@ import java.util.Set;
  */
 public class ViewRequestsByHourAction extends AbstractLogAction {
 
-  protected Log getLog(HttpServletRequest request, HttpServletResponse response) throws ServletException {
-    return super.getLog(request, response);    //To change body of overridden methods use File | Settings | File Templates.
-  }
-
   /**
    * Peforms the processing associated with this action.
    *
@@ -65,40 +57,12 @@ public class ViewRequestsByHourAction extends AbstractLogAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Log log = getLog(request, response);
-
-    // work out requests per hour
-    int[] requestsPerHour = new int[24];
-    Set<String>[] uniqueIpsPerHourAsSet = new Set[24];
-    for (int hour = 0; hour < 24; hour++) {
-      requestsPerHour[hour] = 0;
-      uniqueIpsPerHourAsSet[hour] = new HashSet<String>();
-    }
-    for (LogEntry logEntry : log.getLogEntries()) {
-      Calendar logTime = blog.getCalendar();
-      logTime.setTime(logEntry.getDate());
-      int hour = logTime.get(Calendar.HOUR_OF_DAY);
-      requestsPerHour[hour] = requestsPerHour[hour]+1;
-      uniqueIpsPerHourAsSet[hour].add(logEntry.getHost());
-
-      if (logEntry.getRequestUri() != null &&
-          logEntry.getRequestUri().indexOf("rss.xml") > -1 ||
-          logEntry.getRequestUri().indexOf("feed.xml") > -1 ||
-          logEntry.getRequestUri().indexOf("feed.action") > -1 ||
-          logEntry.getRequestUri().indexOf("rdf.xml") > -1 ||
-          logEntry.getRequestUri().indexOf("atom.xml") > -1) {
-      }
-    }
-
-    int[] uniqueIpsPerHour = new int[24];
-    for (int hour = 0; hour < 24; hour++) {
-      uniqueIpsPerHour[hour] = uniqueIpsPerHourAsSet[hour].size();
-    }
+    LogRollup rollup = getRollup(request, response);
 
     getModel().put("logAction", "viewRequestsByHour");
-    getModel().put("totalRequests", log.getTotalLogEntries());
-    getModel().put("requestsPerHour", requestsPerHour);
-    getModel().put("uniqueIpsPerHour", uniqueIpsPerHour);
+    getModel().put("totalRequests", rollup.getTotalRequests());
+    getModel().put("requestsPerHour", rollup.getRequestsPerHour());
+    getModel().put("uniqueIpsPerHour", rollup.getUniqueHostsPerHour());
 
     return new RequestsByHourView();
   }
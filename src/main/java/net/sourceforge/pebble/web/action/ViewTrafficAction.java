@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.web.action;
+
+import net.sourceforge.pebble.Constants;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.logging.TrafficMonitor;
+import net.sourceforge.pebble.web.view.View;
+import net.sourceforge.pebble.web.view.impl.TrafficView;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Shows the live traffic statistics for the last few minutes.
+ *
+ * @author    Simon Brown
+ */
+public class ViewTrafficAction extends SecureAction {
+
+  /** the number of URLs, referers and hosts to show */
+  private static final int TOP = 20;
+
+  /** the number of seconds shown individually */
+  private static final int SECONDS = 60;
+
+  /**
+   * Peforms the processing associated with this action.
+   *
+   * @param request  the HttpServletRequest instance
+   * @param response the HttpServletResponse instance
+   * @return the name of the next view
+   */
+  public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+    Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    TrafficMonitor monitor = blog.getLogger().getTrafficMonitor();
+    long now = System.currentTimeMillis();
+
+    getModel().put("windowMinutes", TrafficMonitor.WINDOW_SECONDS / 60);
+    getModel().put("totalRequests", monitor.getTotalRequests(now));
+    getModel().put("requestsPerSecondLast10Seconds", monitor.getRequestsPerSecond(now, 10));
+    getModel().put("requestsPerSecondLastMinute", monitor.getRequestsPerSecond(now, 60));
+    getModel().put("requestsPerSecond", monitor.getRequestsPerSecond(now, TrafficMonitor.WINDOW_SECONDS));
+    getModel().put("requestsBySecond", monitor.getRequestsBySecond(now, SECONDS));
+    getModel().put("statusCodes", monitor.getStatusCodes(now));
+    getModel().put("topUrls", monitor.getTopUrls(now, TOP));
+    getModel().put("topReferers", monitor.getTopReferers(now, TOP));
+    getModel().put("topHosts", monitor.getTopHosts(now, TOP));
+
+    return new TrafficView();
+  }
+
+  /**
+   * Gets a list of all roles that are allowed to access this action.
+   *
+   * @return  an array of Strings representing role names
+   * @param request
+   */
+  public String[] getRoles(HttpServletRequest request) {
+    return new String[]{Constants.BLOG_ADMIN_ROLE, Constants.BLOG_OWNER_ROLE, Constants.BLOG_PUBLISHER_ROLE, Constants.BLOG_CONTRIBUTOR_ROLE};
+  }
+
+}
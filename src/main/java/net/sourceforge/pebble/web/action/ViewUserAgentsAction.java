@@ -33,9 +33,10 @@ package net.sourceforge.pebble.web.action;
 
 import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.Blog;
-import net.sourceforge.pebble.logging.Log;
-import net.sourceforge.pebble.logging.LogEntry;
-import net.sourceforge.pebble.logging.UserAgentConsolidator;
+import net.sourceforge.pebble.logging.LogRollup;
+import net.sourceforge.pebble.logging.LogSketch;
+import net.sourceforge.pebble.logging.UserAgentClassifier;
+import net.sourceforge.pebble.logging.UserAgentFamily;
 import net.sourceforge.pebble.web.view.View;
 import net.sourceforge.pebble.web.view.impl.UserAgentsView;
 
@@ -43,6 +44,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -62,7 +64,17 @@ public class ViewUserAgentsAction extends AbstractLogAction {
    */
   public View process(HttpServletRequest request, HttpServletResponse response) throws ServletException {
     Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
-    Log log = getLog(request, response);
+    Map<String, Integer> counts;
+    long totalRequests;
+    if (isYearRequested(request)) {
+      LogSketch sketch = getSketch(request, response);
+      counts = sketch.getTopUserAgents(TOP_FOR_YEAR);
+      totalRequests = sketch.getTotalRequests();
+    } else {
+      LogRollup rollup = getRollup(request, response);
+      counts = rollup.getUserAgents();
+      totalRequests = rollup.getTotalRequests();
+    }
 
     Map<String, Integer> userAgents = new TreeMap<String, Integer>(new Comparator<String>() {
       public int compare(String s1, String s2) {
@@ -76,31 +88,39 @@ public class ViewUserAgentsAction extends AbstractLogAction {
       }
     });
 
-    for (LogEntry logEntry : log.getLogEntries()) {
-      String userAgent = logEntry.getAgent();
-      if (userAgent == null) {
-        userAgent = "";
-      }
+    Map<String, Boolean> bots = new HashMap<String, Boolean>();
+    int botRequests = 0;
 
-      Integer count = userAgents.get(userAgent);
+    for (Map.Entry<String, Integer> userAgent : counts.entrySet()) {
+      // agents differing only in case are counted together
+      Integer count = userAgents.get(userAgent.getKey());
       if (count == null) {
         count = 0;
       }
-      count = count+1;
-      userAgents.put(userAgent, count);
+      count = count+userAgent.getValue();
+      userAgents.put(userAgent.getKey(), count);
 
-      String consolidatedUserAgent = UserAgentConsolidator.consolidate(userAgent);
+      UserAgentFamily family = UserAgentClassifier.getInstance().classify(userAgent.getKey());
+      String consolidatedUserAgent = family.getName();
+      // a consolidated agent (e.g. "Other") is only shown as a robot if all of its agents are
+      bots.put(consolidatedUserAgent, family.isBot() && !Boolean.FALSE.equals(bots.get(consolidatedUserAgent)));
+      if (family.isBot()) {
+        botRequests += userAgent.getValue();
+      }
       Integer consolidatedCount = consolidatedUserAgents.get(consolidatedUserAgent);
       if (consolidatedCount == null) {
         consolidatedCount = 0;
       }
-      consolidatedCount = consolidatedCount+1;
+      consolidatedCount = consolidatedCount+userAgent.getValue();
       consolidatedUserAgents.put(consolidatedUserAgent, consolidatedCount);
     }
 
     getModel().put("logAction", "viewUserAgents");
     getModel().put("userAgents", userAgents);
     getModel().put("consolidatedUserAgents", consolidatedUserAgents);
+    getModel().put("bots", bots);
+    getModel().put("botRequests", botRequests);
+    getModel().put("totalRequests", totalRequests);
 
     return new UserAgentsView();
   }
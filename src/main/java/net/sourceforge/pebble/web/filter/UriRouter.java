@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.web.filter;
+
+import java.util.Arrays;
+
+/**
+ * A table of routes from external URIs to internal URIs. Each route is
+ * keyed on a literal prefix held in a character trie, so finding the routes
+ * that might apply to a URI is a single pass over its characters, after
+ * which only those routes are tried, in the order they were added. The
+ * first to give a result wins, as with a chain of if/else statements.
+ *
+ * @author    Simon Brown
+ */
+class UriRouter {
+
+  private final Node root = new Node();
+  private int numberOfRoutes = 0;
+
+  /**
+   * Adds a route, tried after all of the routes already added.
+   *
+   * @param prefix    the literal prefix that URIs must start with
+   * @param route     the Route instance
+   */
+  void add(String prefix, Route route) {
+    Node node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      node = node.getOrCreateChild(prefix.charAt(i));
+    }
+
+    route.prefix = prefix;
+    route.order = numberOfRoutes++;
+    node.routes = Arrays.copyOf(node.routes, node.routes.length + 1);
+    node.routes[node.routes.length - 1] = route;
+  }
+
+  /**
+   * Adds a route for a single URI.
+   *
+   * @param uri       the external URI
+   * @param result    the internal URI
+   */
+  void add(String uri, final String result) {
+    add(uri, new Route() {
+      String getUri(String uri) {
+        return (uri.length() == prefix.length()) ? result : null;
+      }
+    });
+  }
+
+  /**
+   * Gets the internal URI for an external URI.
+   *
+   * @param uri   the external URI
+   * @return  the internal URI, or null if no route applies
+   */
+  String route(String uri) {
+    // gather the routes with a prefix of the URI, from the shortest prefix
+    Route[] candidates = null;
+    int numberOfCandidates = 0;
+    Node node = root;
+    for (int i = 0; node != null; i++) {
+      for (Route route : node.routes) {
+        if (candidates == null) {
+          candidates = new Route[numberOfRoutes];
+        }
+        // keep them in the order they were added
+        int j = numberOfCandidates++;
+        while (j > 0 && candidates[j - 1].order > route.order) {
+          candidates[j] = candidates[j - 1];
+          j--;
+        }
+        candidates[j] = route;
+      }
+      node = (i < uri.length()) ? node.getChild(uri.charAt(i)) : null;
+    }
+
+    for (int i = 0; i < numberOfCandidates; i++) {
+      String result = candidates[i].getUri(uri);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Maps URIs starting with a given prefix to internal URIs.
+   */
+  abstract static class Route {
+
+    /** the prefix that the URI is known to start with */
+    String prefix;
+
+    private int order;
+
+    /**
+     * Gets the internal URI for an external URI starting with the prefix.
+     *
+     * @param uri   the external URI
+     * @return  the internal URI, or null if this route doesn't apply
+     */
+    abstract String getUri(String uri);
+
+  }
+
+  private static class Node {
+
+    private char[] keys = new char[0];
+    private Node[] children = new Node[0];
+    private Route[] routes = new Route[0];
+
+    Node getChild(char c) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == c) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrCreateChild(char c) {
+      Node child = getChild(c);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        keys[keys.length - 1] = c;
+        children = Arrays.copyOf(children, children.length + 1);
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+
+  }
+
+}
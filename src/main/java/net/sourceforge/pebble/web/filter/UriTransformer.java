@@ -37,6 +37,8 @@ import net.sourceforge.pebble.api.permalink.PermalinkProvider;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.regex.Pattern;
+
 /**
  * Responsible for converting an incoming URI to a real URI used by Pebble.
  *
@@ -62,9 +64,109 @@ public class UriTransformer {
   /** literal used at the start of tag URIs, in regex form */
   private static final String AUTHORS_REGEX = "\\/authors\\/";
 
+  /** the regex used to check for help pages */
+  private static final Pattern HELP_PATTERN = Pattern.compile("\\/help\\/\\w*\\.html");
+
   /** the log used by this class */
   private static Log log = LogFactory.getLog(UriTransformer.class);
 
+  /** the routes for URIs that aren't permalinks, in the order they are tried */
+  private static final UriRouter BLOG_ROUTES = new UriRouter();
+
+  /** the routes for the URIs of a multi-blog */
+  private static final UriRouter MULTI_BLOG_ROUTES = new UriRouter();
+
+  static {
+    // URI of the form /categories/
+    BLOG_ROUTES.add("/categories", "/viewCategories.action");
+    BLOG_ROUTES.add("/categories/", "/viewCategories.action");
+    // URI of the form /category[/subcategories]/[rss|rdf|atom].xml
+    BLOG_ROUTES.add("/categories/", new FeedRoute(CATEGORIES_REGEX, CATEGORIES.length(), "category"));
+    BLOG_ROUTES.add(CATEGORIES, new UriRouter.Route() {
+      String getUri(String uri) {
+        // URI of the form /categories/category/
+        String category = uri.substring(CATEGORIES.length(), uri.length());
+        if (category.endsWith("/")) {
+          category = category.substring(0, category.length()-1);
+        }
+        return "/viewCategory.action?category=" + category;
+      }
+    });
+    // URI of the form /tags/
+    BLOG_ROUTES.add("/tags", "/viewTags.action");
+    BLOG_ROUTES.add("/tags/", "/viewTags.action");
+    // URI of the form /tags/tag/[rss|rdf|atom].xml
+    BLOG_ROUTES.add(TAGS, new FeedRoute(TAGS_REGEX, TAGS.length(), "tag"));
+    // URI of the form /authors/username/[rss|rdf|atom].xml
+    BLOG_ROUTES.add(AUTHORS, new FeedRoute(AUTHORS_REGEX, AUTHORS.length(), "author"));
+    BLOG_ROUTES.add(TAGS, new UriRouter.Route() {
+      String getUri(String uri) {
+        // URI of the form /tags/tag/
+        String tag = uri.substring(TAGS.length(), uri.length());
+        if (tag.endsWith("/")) {
+          tag = tag.substring(0, tag.length()-1);
+        }
+        return "/viewTag.action?tag=" + Tag.encode(tag);
+      }
+    });
+    BLOG_ROUTES.add(AUTHORS, new UriRouter.Route() {
+      String getUri(String uri) {
+        // URI of the form /authors/usename/
+        String author = uri.substring(AUTHORS.length(), uri.length());
+        if (author.endsWith("/")) {
+          author = author.substring(0, author.length()-1);
+        }
+        return "/aboutAuthor.action?user=" + author;
+      }
+    });
+    BLOG_ROUTES.add("/pages/", "/viewStaticPage.action?name=index");
+    BLOG_ROUTES.add("/pages", "/viewStaticPage.action?name=index");
+    BLOG_ROUTES.add("/pages/", new UriRouter.Route() {
+      String getUri(String uri) {
+        // url matches /pages/xyz.html
+        return "/viewStaticPage.action?name=" + uri.substring(7, uri.length()-5);
+      }
+    });
+    BLOG_ROUTES.add("/images/", new FileRoute(FileMetaData.BLOG_IMAGE));
+    BLOG_ROUTES.add("/files/", new FileRoute(FileMetaData.BLOG_FILE));
+    BLOG_ROUTES.add("/theme/", new FileRoute(FileMetaData.THEME_FILE));
+    BLOG_ROUTES.add("/help/", new HelpRoute());
+    BLOG_ROUTES.add("/help", "/viewHelp.secureaction?name=index");
+    BLOG_ROUTES.add("/help/", "/viewHelp.secureaction?name=index");
+    // url is for a response feed
+    BLOG_ROUTES.add("/responses/rss.xml", "/responseFeed.action?flavor=rss20");
+    BLOG_ROUTES.add("/responses/rss.xml?entry=", new UriRouter.Route() {
+      String getUri(String uri) {
+        return "/responseFeed.action?flavor=rss20&" + uri.substring("/responses/rss.xml?".length());
+      }
+    });
+    BLOG_ROUTES.add("/rss.xml", new FixedRoute("/feed.action?flavor=rss20"));
+    BLOG_ROUTES.add("/feed.xml", new FixedRoute("/feed.action?flavor=rss20"));
+    BLOG_ROUTES.add("/rdf.xml", new FixedRoute("/feed.action?flavor=rdf"));
+    BLOG_ROUTES.add("/responses/atom.xml", new FixedRoute("/responseFeed.action?flavor=atom"));
+    BLOG_ROUTES.add("/atom.xml", new FixedRoute("/feed.action?flavor=atom"));
+    BLOG_ROUTES.add("/today.html", "/viewDay.action");
+    BLOG_ROUTES.add("/about.html", "/about.action");
+    BLOG_ROUTES.add("/blogentries/", new UriRouter.Route() {
+      String getUri(String uri) {
+        // view blog entries by page /blogentries/1.html
+        return "/viewBlogEntriesByPage.action?page=" + uri.substring(13, uri.length()-5);
+      }
+    });
+    BLOG_ROUTES.add("/", "/viewHomePage.action");
+    BLOG_ROUTES.add("/index.jsp", "/viewHomePage.action");
+    BLOG_ROUTES.add("/index.html", "/viewHomePage.action");
+
+    MULTI_BLOG_ROUTES.add("/rss.xml", new FixedRoute("/feed.action?flavor=rss20"));
+    MULTI_BLOG_ROUTES.add("/feed.xml", new FixedRoute("/feed.action?flavor=rss20"));
+    MULTI_BLOG_ROUTES.add("/rdf.xml", new FixedRoute("/feed.action?flavor=rdf"));
+    MULTI_BLOG_ROUTES.add("/atom.xml", new FixedRoute("/feed.action?flavor=atom"));
+    MULTI_BLOG_ROUTES.add("/", "/viewHomePage.action");
+    MULTI_BLOG_ROUTES.add("/index.jsp", "/viewHomePage.action");
+    MULTI_BLOG_ROUTES.add("/index.html", "/viewHomePage.action");
+    MULTI_BLOG_ROUTES.add("/help/", new HelpRoute());
+  }
+
   /**
    * Checks for URI patterns and converts them to the appropriate action.
    *
@@ -76,8 +178,6 @@ public class UriTransformer {
    */
   public String getUri(String uri, Blog blog) {
     PermalinkProvider permalinkProvider = blog.getPermalinkProvider();
-    DefaultPermalinkProvider defaultPermalinkProvider = new DefaultPermalinkProvider();
-    defaultPermalinkProvider.setBlog(permalinkProvider.getBlog());
 
     log.trace("URI before transformation : " + uri);
 
@@ -87,145 +187,17 @@ public class UriTransformer {
 
     // try to transform the URI with the permalink provider in use
     String result = getUri(uri, permalinkProvider);
-    if (result == null) {
+    if (result == null && permalinkProvider.getClass() != DefaultPermalinkProvider.class) {
       // for backwards compatibility, try the default permalink provider
+      DefaultPermalinkProvider defaultPermalinkProvider = new DefaultPermalinkProvider();
+      defaultPermalinkProvider.setBlog(permalinkProvider.getBlog());
       result = getUri(uri, defaultPermalinkProvider);
     }
 
     // if the result is still null, try the other URL patterns to transform the URI
     if (result == null) {
-      if (uri.equals("/categories") || uri.equals("/categories/")) {
-        // URI of the form /categories/
-        result = "/viewCategories.action";
-      } else if (uri.matches(CATEGORIES_REGEX + ".*\\/.*xml")) {
-          // URI of the form /category[/subcategories]/[rss|rdf|atom].xml
-          int indexOfLastSlash = uri.lastIndexOf("/");
-          String categoryId = uri.substring(CATEGORIES.length(), indexOfLastSlash);
-
-          if (uri.endsWith("rdf.xml")) {
-            result = "/feed.action?category=" + categoryId + "&flavor=rdf";
-          } else if (uri.endsWith("atom.xml")) {
-            result = "/feed.action?category=" + categoryId + "&flavor=atom";
-          } else {
-            result = "/feed.action?category=" + categoryId + "&flavor=rss20";
-          }
-      } else if (uri.startsWith(CATEGORIES)) {
-        // URI of the form /categories/category/
-        String category = uri.substring(CATEGORIES.length(), uri.length());
-        if (category.endsWith("/")) {
-          category = category.substring(0, category.length()-1);
-        }
-        result = "/viewCategory.action?category=" + category;
-      } else if (uri.equals("/tags") || uri.equals("/tags/")) {
-          // URI of the form /tags/
-          result = "/viewTags.action";
-      } else if (uri.matches(TAGS_REGEX + ".*\\/.*xml")) {
-        // URI of the form /tags/tag/[rss|rdf|atom].xml
-        int indexOfLastSlash = uri.lastIndexOf("/");
-        String tag = uri.substring(TAGS.length(), indexOfLastSlash);
-
-        if (uri.endsWith("rdf.xml")) {
-          result = "/feed.action?tag=" + tag + "&flavor=rdf";
-        } else if (uri.endsWith("atom.xml")) {
-          result = "/feed.action?tag=" + tag + "&flavor=atom";
-        } else {
-          result = "/feed.action?tag=" + tag + "&flavor=rss20";
-        }
-      } else if (uri.matches(AUTHORS_REGEX + ".*\\/.*xml")) {
-        // URI of the form /authors/username/[rss|rdf|atom].xml
-        int indexOfLastSlash = uri.lastIndexOf("/");
-        String author = uri.substring(AUTHORS.length(), indexOfLastSlash);
-
-        if (uri.endsWith("rdf.xml")) {
-          result = "/feed.action?author=" + author + "&flavor=rdf";
-        } else if (uri.endsWith("atom.xml")) {
-          result = "/feed.action?author=" + author + "&flavor=atom";
-        } else {
-          result = "/feed.action?author=" + author + "&flavor=rss20";
-        }
-      } else if (uri.startsWith(TAGS)) {
-        // URI of the form /tags/tag/
-        String tag = uri.substring(TAGS.length(), uri.length());
-        if (tag.endsWith("/")) {
-          tag = tag.substring(0, tag.length()-1);
-        }
-        result = "/viewTag.action?tag=" + Tag.encode(tag);
-      } else if (uri.startsWith(AUTHORS)) {
-        // URI of the form /authors/usename/
-        String author = uri.substring(AUTHORS.length(), uri.length());
-        if (author.endsWith("/")) {
-          author = author.substring(0, author.length()-1);
-        }
-        result = "/aboutAuthor.action?user=" + author;
-      } else if (uri.equals("/pages/") || uri.equals("/pages")) {
-        result = "/viewStaticPage.action?name=index";
-      } else if (uri.startsWith("/pages/")) {
-        // url matches /pages/xyz.html
-        String name = uri.substring(7, uri.length()-5);
-
-        result = "/viewStaticPage.action?name=";
-        result += name;
-      } else if (uri.startsWith("/images/")) {
-        // url matches /images/xyz.xyz
-        String name = uri.substring(7, uri.length());
-
-        result = "/file.action?type=" + FileMetaData.BLOG_IMAGE + "&name=";
-        result += name;
-      } else if (uri.startsWith("/files/")) {
-        // url matches /files/xyz.xyz
-        String name = uri.substring(6, uri.length());
-
-        result = "/file.action?type=" + FileMetaData.BLOG_FILE + "&name=";
-        result += name;
-      } else if (uri.startsWith("/theme/")) {
-        // url matches /files/xyz.xyz
-        String name = uri.substring(6, uri.length());
-
-        result = "/file.action?type=" + FileMetaData.THEME_FILE + "&name=";
-        result += name;
-      } else if (uri.matches("\\/help\\/\\w*\\.html")) {
-        // url matches /help/xyz.html
-        String name = uri.substring(6, uri.length());
-
-        result = "/viewHelp.secureaction?name=";
-        result += name.substring(0, name.length()-5);
-      } else if (uri.equals("/help") || uri.equals("/help/")) {
-        // url matches /help/
-        result = "/viewHelp.secureaction?name=index";
-      } else if (uri.equals("/responses/rss.xml")) {
-        // url is for a response feed
-        result = "/responseFeed.action?flavor=rss20";
-      } else if (uri.startsWith("/responses/rss.xml?entry=")) {
-        // url is for a response feed
-        result = "/responseFeed.action?flavor=rss20&" + uri.substring("/responses/rss.xml?".length());
-      } else if (uri.startsWith("/rss.xml")) {
-        // url matches rss.xml
-        result = "/feed.action?flavor=rss20";
-      } else if (uri.startsWith("/feed.xml")) {
-        // url matches feed.xml
-        result = "/feed.action?flavor=rss20";
-      } else if (uri.startsWith("/rdf.xml")) {
-        // url matches rdf.xml
-        result = "/feed.action?flavor=rdf";
-      } else if (uri.startsWith("/responses/atom.xml")) {
-        // url is for a response feed
-        result = "/responseFeed.action?flavor=atom";
-      } else if (uri.startsWith("/atom.xml")) {
-        // url matches atom.xml
-        result = "/feed.action?flavor=atom";
-      } else if (uri.equals("/today.html")) {
-        // URI of the form /today.html
-        result = "/viewDay.action";
-      } else if (uri.equals("/about.html")) {
-        // URI of the form /about.html
-        result = "/about.action";
-      } else if (uri.startsWith("/blogentries/")) {
-        // view blog entries by page /blogentries/1.html
-        String page = uri.substring(13, uri.length()-5);
-        result = "/viewBlogEntriesByPage.action?page=" + page;
-      } else if (uri.equals("/") || uri.equals("/index.jsp") || uri.equals("/index.html")) {
-          result = "/viewHomePage.action";
-      } else {
+      result = BLOG_ROUTES.route(uri);
+      if (result == null) {
         result = uri;
       }
     }
@@ -245,35 +217,14 @@ public class UriTransformer {
    *            the same)
    */
   public String getUri(String uri, MultiBlog blog) {
-    String result;
-
     log.trace("URI before transformation : " + uri);
 
     if (uri == null || uri.trim().equals("")) {
       uri = "/";
     }
 
-    if (uri.startsWith("/rss.xml")) {
-      // url matches rss.xml
-      result = "/feed.action?flavor=rss20";
-    } else if (uri.startsWith("/feed.xml")) {
-      // url matches feed.xml
-      result = "/feed.action?flavor=rss20";
-    } else if (uri.startsWith("/rdf.xml")) {
-      // url matches rdf.xml
-      result = "/feed.action?flavor=rdf";
-    } else if (uri.startsWith("/atom.xml")) {
-      // url matches atom.xml
-      result = "/feed.action?flavor=atom";
-    } else if (uri.equals("/") || uri.equals("/index.jsp") || uri.equals("/index.html")) {
-        result = "/viewHomePage.action";
-    } else if (uri.matches("\\/help\\/\\w*\\.html")) {
-      // url matches /help/xyz.html
-      String name = uri.substring(6, uri.length());
-
-      result = "/viewHelp.secureaction?name=";
-      result += name.substring(0, name.length()-5);
-    } else {
+    String result = MULTI_BLOG_ROUTES.route(uri);
+    if (result == null) {
       result = uri;
     }
 
@@ -321,4 +272,89 @@ public class UriTransformer {
     return result;
   }
 
-}
\ No newline at end of file
+  /**
+   * Maps any URI starting with the prefix to a single internal URI.
+   */
+  private static class FixedRoute extends UriRouter.Route {
+
+    private final String result;
+
+    FixedRoute(String result) {
+      this.result = result;
+    }
+
+    String getUri(String uri) {
+      return result;
+    }
+
+  }
+
+  /**
+   * Maps URIs of the form /prefix/value/[rss|rdf|atom].xml to a feed.
+   */
+  private static class FeedRoute extends UriRouter.Route {
+
+    private final Pattern pattern;
+    private final int start;
+    private final String parameter;
+
+    FeedRoute(String prefixRegex, int start, String parameter) {
+      this.pattern = Pattern.compile(prefixRegex + ".*\\/.*xml");
+      this.start = start;
+      this.parameter = parameter;
+    }
+
+    String getUri(String uri) {
+      if (!pattern.matcher(uri).matches()) {
+        return null;
+      }
+
+      int indexOfLastSlash = uri.lastIndexOf("/");
+      String value = uri.substring(start, indexOfLastSlash);
+
+      if (uri.endsWith("rdf.xml")) {
+        return "/feed.action?" + parameter + "=" + value + "&flavor=rdf";
+      } else if (uri.endsWith("atom.xml")) {
+        return "/feed.action?" + parameter + "=" + value + "&flavor=atom";
+      } else {
+        return "/feed.action?" + parameter + "=" + value + "&flavor=rss20";
+      }
+    }
+
+  }
+
+  /**
+   * Maps URIs of the form /prefix/xyz.xyz to a file of the given type.
+   */
+  private static class FileRoute extends UriRouter.Route {
+
+    private final String type;
+
+    FileRoute(String type) {
+      this.type = type;
+    }
+
+    String getUri(String uri) {
+      // keep the slash at the end of the prefix
+      return "/file.action?type=" + type + "&name=" + uri.substring(prefix.length() - 1);
+    }
+
+  }
+
+  /**
+   * Maps URIs of the form /help/xyz.html to a help page.
+   */
+  private static class HelpRoute extends UriRouter.Route {
+
+    String getUri(String uri) {
+      if (!HELP_PATTERN.matcher(uri).matches()) {
+        return null;
+      }
+
+      String name = uri.substring(6, uri.length());
+      return "/viewHelp.secureaction?name=" + name.substring(0, name.length()-5);
+    }
+
+  }
+
+}
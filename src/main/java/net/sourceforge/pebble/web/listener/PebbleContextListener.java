@@ -35,6 +35,7 @@ import net.sourceforge.pebble.Configuration;
 import net.sourceforge.pebble.PebbleContext;
 import net.sourceforge.pebble.dao.DAOFactory;
 import net.sourceforge.pebble.domain.*;
+import net.sourceforge.pebble.logging.UserAgentClassifier;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
@@ -75,6 +76,9 @@ public class PebbleContextListener implements ServletContextListener {
     BlogManager.getInstance().setMultiBlog(config.isMultiBlog());
     BlogManager.getInstance().startBlogs();
 
+    // load the user agent rules now, rather than when the first request is logged
+    UserAgentClassifier.getInstance();
+
     // find those blogs with no entries and add a welcome note
     Collection<Blog> blogs = (Collection<Blog>)BlogManager.getInstance().getBlogs();
     for (Blog blog : blogs) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.web.view.impl;
+
+import net.sourceforge.pebble.Constants;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.search.Suggestion;
+import net.sourceforge.pebble.web.view.PlainTextView;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Represents search-as-you-type suggestions as a JSON array of
+ * {type, text, url} objects.
+ *
+ * @author    Simon Brown
+ */
+public class SuggestionsView extends PlainTextView {
+
+  /**
+   * Prepares the view for presentation.
+   */
+  @SuppressWarnings("unchecked")
+  public void prepare() {
+    List<Suggestion> suggestions = (List<Suggestion>)getModel().get("suggestions");
+    StringBuffer buf = new StringBuffer();
+
+    buf.append("[");
+    for (int i = 0; i < suggestions.size(); i++) {
+      Suggestion suggestion = suggestions.get(i);
+      if (i > 0) {
+        buf.append(",");
+      }
+      buf.append("{\"type\":");
+      appendString(buf, suggestion.getType());
+      buf.append(",\"text\":");
+      appendString(buf, suggestion.getText());
+      buf.append(",\"url\":");
+      appendString(buf, suggestion.getUrl());
+      buf.append("}");
+    }
+    buf.append("]");
+
+    getModel().put("text", buf.toString());
+  }
+
+  private void appendString(StringBuffer buf, String s) {
+    buf.append('"');
+    if (s != null) {
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        switch (c) {
+          case '"':
+            buf.append("\\\"");
+            break;
+          case '\\':
+            buf.append("\\\\");
+            break;
+          case '<':
+            // stops "</script>" ending a page that embeds the response
+            buf.append("\\u003c");
+            break;
+          default:
+            if (c < ' ') {
+              String hex = Integer.toHexString(c);
+              buf.append("\\u");
+              buf.append("0000".substring(hex.length()));
+              buf.append(hex);
+            } else {
+              buf.append(c);
+            }
+        }
+      }
+    }
+    buf.append('"');
+  }
+
+  /**
+   * Gets the content type of this view.
+   *
+   * @return the content type as a String
+   */
+  public String getContentType() {
+    Blog blog = (Blog)getModel().get(Constants.BLOG_KEY);
+    return "application/json; charset=" + blog.getCharacterEncoding();
+  }
+
+  /**
+   * Dispatches this view. Suggestions are requested on every keystroke,
+   * so unlike other plain text views, they aren't logged as page views.
+   *
+   * @param request  the HttpServletRequest instance
+   * @param response the HttpServletResponse instance
+   * @param context
+   */
+  public void dispatch(HttpServletRequest request, HttpServletResponse response, ServletContext context) throws ServletException {
+    try {
+      RequestDispatcher dispatcher = context.getRequestDispatcher(getUri());
+      dispatcher.include(request, response);
+    } catch (IOException ioe) {
+      throw new ServletException(ioe);
+    }
+  }
+
+}
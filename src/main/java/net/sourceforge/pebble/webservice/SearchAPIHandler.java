@@ -33,6 +33,7 @@
 
 package net.sourceforge.pebble.webservice;
 
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -41,11 +42,9 @@ import java.util.Vector;
 
 import net.sourceforge.pebble.domain.Blog;
 import net.sourceforge.pebble.domain.BlogEntry;
-import net.sourceforge.pebble.domain.BlogService;
 import net.sourceforge.pebble.domain.Category;
 import net.sourceforge.pebble.search.SearchHit;
 import net.sourceforge.pebble.search.SearchResults;
-import net.sourceforge.pebble.util.Pageable;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -107,12 +106,12 @@ public class SearchAPIHandler extends AbstractAPIHandler {
             }
 
             List<SearchHit> hits = result.getHits();
-            BlogService service = new BlogService();
 
             for (SearchHit hit : hits) {
-                BlogEntry entry = service.getBlogEntry(hit.getBlog(), hit.getId());
-                adaptBlogEntry(entry);
-                posts.add(adaptBlogEntry(entry));
+                BlogEntry entry = hit.getBlogEntry();
+                if (entry != null) {
+                    posts.add(adaptBlogEntry(entry));
+                }
             }
             posts.add( searchResultSummary(hits, sortBy, searchString, 0, 0) );
 
@@ -141,32 +140,84 @@ public class SearchAPIHandler extends AbstractAPIHandler {
         Vector posts = new Vector();
         try {
 
+            if ( pageSize <= 0 ) 
+                pageSize = PAGE_SIZE;
+
+            // the offset is a page number, and only that page is read from the index
+            boolean sortByDate = sortBy != null && sortBy.equalsIgnoreCase("date");
             Blog blog = getBlogWithBlogId(blogid);
-            SearchResults result = blog.getSearchIndex().search( searchString );
-            
-            if ( sortBy != null && sortBy.equalsIgnoreCase("date") ) {
-                result.sortByDateDescending();
-            } else {
-                result.sortByScoreDescending();
+            SearchResults result = blog.getSearchIndex().search( searchString, sortByDate, (Math.max(offset, 1) - 1) * pageSize, pageSize );
+
+            List<SearchHit> subList = result.getHits();
+
+            for (SearchHit hit : subList ) {
+                BlogEntry entry = hit.getBlogEntry();
+                if (entry != null) {
+                    posts.add(adaptBlogEntry(entry));
+                }
             }
+            posts.add( searchResultSummary(subList, sortBy, searchString, pageSize, offset) );
 
-            if ( pageSize <= 0 ) 
+        } catch (Exception ex) {
+            log.error(ex);
+        }
+        return posts;
+    }
+
+    /**
+     * Search blog for specific string with pagable parameters, restricted to
+     * the given facet values. The summary struct at the end of the results
+     * also holds the facet counts over all hits, under "facets".
+     *
+     * @param blogid    the ID of the blog (ignored)
+     * @param username  the username used for logging in via XML-RPC
+     * @param password  the password used for logging in via XML-RPC
+     * @param facetFilters  a struct of facet name (category, tag, author,
+     *                      year or month) to the required value
+     */
+    public Vector search(String blogid, String username, String password,
+                        String searchString, String sortBy, int pageSize, int offset, Hashtable facetFilters) {
+        log.debug("search.search(" +
+            blogid + ", " +
+            username + ", xxxxxx, \"" +
+            searchString + "," +
+            sortBy + "," +
+            facetFilters + "\")");
+
+        Vector posts = new Vector();
+        try {
+
+            if ( pageSize <= 0 )
                 pageSize = PAGE_SIZE;
 
-            List<SearchHit> hits = result.getHits();
-            Pageable pageable = new Pageable(hits);
-            pageable.setPageSize(pageSize);
-            pageable.setPage(offset);
-            List<SearchHit> subList = pageable.getListForPage();
+            Map<String,String> filters = new HashMap<String,String>();
+            if ( facetFilters != null ) {
+                for (Object key : facetFilters.keySet()) {
+                    filters.put(key.toString(), facetFilters.get(key).toString());
+                }
+            }
 
-            BlogService service = new BlogService();
+            boolean sortByDate = sortBy != null && sortBy.equalsIgnoreCase("date");
+            Blog blog = getBlogWithBlogId(blogid);
+            SearchResults result = blog.getSearchIndex().search( searchString, filters, sortByDate, (Math.max(offset, 1) - 1) * pageSize, pageSize );
+
+            List<SearchHit> subList = result.getHits();
 
             for (SearchHit hit : subList ) {
-                BlogEntry entry = service.getBlogEntry(hit.getBlog(), hit.getId());
-                adaptBlogEntry(entry);
-                posts.add(adaptBlogEntry(entry));
+                BlogEntry entry = hit.getBlogEntry();
+                if (entry != null) {
+                    posts.add(adaptBlogEntry(entry));
+                }
             }
-            posts.add( searchResultSummary(subList, sortBy, searchString, pageSize, offset) );
+
+            Map summary = searchResultSummary(subList, sortBy, searchString, pageSize, offset);
+            Hashtable facets = new Hashtable();
+            for (Map.Entry<String,Map<String,Integer>> facet : result.getFacets().entrySet()) {
+                facets.put(facet.getKey(), new Hashtable<String,Integer>(facet.getValue()));
+            }
+            summary.put("facets", facets);
+            summary.put("total", result.getNumberOfHits());
+            posts.add( summary );
 
         } catch (Exception ex) {
             log.error(ex);
@@ -32,21 +32,16 @@
 package net.sourceforge.pebble.webservice;
 
 import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.notification.Notification;
 import net.sourceforge.pebble.util.StringUtils;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.xmlrpc.AsyncCallback;
-import org.apache.xmlrpc.XmlRpcClient;
-
-import java.io.IOException;
-import java.net.URL;
-import java.util.Hashtable;
-import java.util.Vector;
 
 /**
  * A simple client to ping (notify) sites like weblogs.com when this blog has
- * been updated.
+ * been updated. The pings are delivered (and retried) by the blog's
+ * notification queue.
  *
  * @author    Simon Brown
  */
@@ -55,9 +50,6 @@ public class UpdateNotificationPingsClient {
   /** the log used by this class */
   private static Log log = LogFactory.getLog(UpdateNotificationPingsClient.class);
 
-  /** the name of the method to call via XML-RPC */
-  private static final String WEBLOGS_METHOD_NAME = "weblogUpdates.ping";
-
   /**
    * Sends a weblogUpdates.ping indicating this the specified blog has
    * recently been updated. This version sends the blog's home URL.
@@ -78,62 +70,18 @@ public class UpdateNotificationPingsClient {
    * @param sites   the list of sites (URLs) to ping
    */
   public void sendUpdateNotificationPing(Blog blog, String url, String[] sites) {
-    try {
-      for (String site : sites) {
-        log.info("Sending XML-RPC ping to " + site);
-        blog.info("Sending XML-RPC ping to " + StringUtils.transformHTML(site));
-        XmlRpcClient xmlrpc = new XmlRpcClient(site);
-        Vector params = new Vector();
-        params.addElement(blog.getName());
-        params.addElement(url);
-        xmlrpc.executeAsync(WEBLOGS_METHOD_NAME, params, new UpdateNotificationPingsAsyncCallback(blog));
-      }
-    } catch (IOException ioe) {
-      log.error(ioe.getMessage(), ioe);
-    }
-  }
-
-  /**
-   * A callback class used to log the result/error message.
-   */
-  class UpdateNotificationPingsAsyncCallback implements AsyncCallback {
-
-    private Blog blog;
-
-    public UpdateNotificationPingsAsyncCallback(Blog blog) {
-      this.blog = blog;
-    }
-
-    /**
-     * Called if the XML-RPC was successful.
-     *
-     * @param o         the resulting Object
-     * @param url       the original URL
-     * @param method    the original method name
-     */
-    public void handleResult(Object o, URL url, String method) {
-      Hashtable result = (Hashtable)o;
-      if (result != null) {
-        log.info("Result of XML-RPC ping to " + method + " at " + url + " was " + result.get("flerror") + ", " + result.get("message"));
-        blog.info("Result of XML-RPC ping to " + t(method) + " at " + t(url) + " was " + t(result.get("flerror")) + ", " + t(result.get("message")));
+    for (String site : sites) {
+      site = site.trim();
+      if (site.length() == 0) {
+        continue;
       }
-    }
-
-    /**
-     * Called if the XML-RPC was not successful.
-     *
-     * @param e         the resulting Exception
-     * @param url       the original URL
-     * @param method    the original method name
-     */
-    public void handleError(Exception e, URL url, String method) {
-      log.error("Exception when calling " + method + " at " + url, e);
-    }
-
-    private String t(Object object) {
-  	  if(object == null) return null;
-  	  return StringUtils.transformHTML(object.toString());
+      log.info("Queueing XML-RPC ping to " + site);
+      blog.info("Queued XML-RPC ping to " + StringUtils.transformHTML(site));
+      Notification notification = new Notification(Notification.PING, site, Notification.PING + " " + site + " " + url);
+      notification.addParameter("name", blog.getName());
+      notification.addParameter("url", url);
+      blog.getNotificationQueue().enqueue(notification);
     }
   }
 
-}
\ No newline at end of file
+}
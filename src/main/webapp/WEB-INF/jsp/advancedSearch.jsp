@@ -50,6 +50,21 @@
       </td>
       </tr>
 
+      <c:set var="facetCounts" value="${blog.searchIndex.facetCounts}" />
+      <c:if test="${not empty facetCounts.year}">
+      <tr>
+      <td valign="top"><b><fmt:message key="search.facet.year" /></b></td>
+      <td>
+        <select name="facet.year">
+          <option value=""></option>
+          <c:forEach var="facetValue" items="${facetCounts.year}">
+          <option value="${facetValue.key}">${facetValue.key} (${facetValue.value})</option>
+          </c:forEach>
+        </select>
+      </td>
+      </tr>
+      </c:if>
+
       <tr>
       <td colspan="2" align="right">
       <input type="submit" value="<fmt:message key="common.search" />" />
@@ -7,7 +7,24 @@
     <c:choose>
       <c:when test="${searchResults.numberOfHits > 0}">
 
-        <c:set var="pageableUrl" value="search.action?query=${query}&amp;sort=${param.sort}" scope="request" />
+        <div class="searchFacets">
+          <c:forEach var="facet" items="${searchResults.facets}">
+            <c:if test="${not empty facet.value and empty searchResults.facetFilters[facet.key]}">
+            <div class="searchFacet">
+              <b><fmt:message key="search.facet.${facet.key}" /></b> :
+              <c:forEach var="facetValue" items="${facet.value}" varStatus="status" end="9">
+                <a href="search.action?query=${query}&amp;sort=${param.sort}${facetQuery}&amp;facet.${facet.key}=${url:urlEncode(facetValue.key)}"><c:out value="${facetValue.key}" escapeXml="true"/></a>&nbsp;(<fmt:formatNumber value="${facetValue.value}"/>)<c:if test="${not status.last}">, </c:if>
+              </c:forEach>
+            </div>
+            </c:if>
+          </c:forEach>
+          <c:if test="${not empty searchResults.facetFilters and not empty searchResults.query}">
+            <div class="searchFacet"><a href="search.action?query=${query}&amp;sort=${param.sort}"><fmt:message key="search.clearRefinements" /></a></div>
+          </c:if>
+        </div>
+        <br />
+
+        <c:set var="pageableUrl" value="search.action?query=${query}&amp;sort=${param.sort}${facetQuery}" scope="request" />
         <jsp:include page="/WEB-INF/fragments/pageable.jsp">
           <jsp:param name="url" value="${pageableUrl}" />
         </jsp:include>
@@ -39,6 +56,7 @@
               <div class="searchResultTitle"><a href="${url:rewrite(hit.permalink)}" title="${hit.score}">${hit.title}</a></div>
               <c:if test="${not empty hit.subtitle}"><div class="searchResultSubTitle"><a href="${url:rewrite(hit.permalink)}" title="${hit.score}">${hit.subtitle}</a></div></c:if>
               <div class="searchResultExcerpt">${hit.excerpt}</div>
+              <c:if test="${hit.blog.id ne blog.id}"><div class="searchResultBlog"><a href="${hit.blog.url}"><c:out value="${hit.blog.name}" escapeXml="true"/></a></div></c:if>
             </td>
             <td class="searchResultDatetime" align="right" valign="top" width="15%">
               <div><fmt:formatDate value="${hit.date}" type="date" dateStyle="medium" /></div>
@@ -50,7 +68,7 @@
         </table>
 
         <br />
-        <c:set var="pageableUrl" value="search.action?query=${query}&amp;sort=${param.sort}" scope="request" />
+        <c:set var="pageableUrl" value="search.action?query=${query}&amp;sort=${param.sort}${facetQuery}" scope="request" />
         <jsp:include page="/WEB-INF/fragments/pageable.jsp">
           <jsp:param name="url" value="${requestScope.pageableUrl}" />
         </jsp:include>
@@ -58,6 +76,9 @@
       </c:when>
       <c:otherwise>
           <div class="noResults"><fmt:message key="search.noResults" /></div>
+          <c:if test="${not empty searchResults.spellingSuggestion}">
+            <div class="searchSuggestion"><fmt:message key="search.didYouMean" /> <a href="search.action?query=${url:urlEncode(searchResults.spellingSuggestion)}&amp;sort=${param.sort}${facetQuery}"><c:out value="${searchResults.spellingSuggestion}" escapeXml="true"/></a>?</div>
+          </c:if>
       </c:otherwise>
     </c:choose>
   </div>
@@ -18,6 +18,14 @@
         <td><b>Total requests for <fmt:formatDate value="${logSummary.date}" pattern="yyyy" /></b></td>
         <td align="right"><b><fmt:formatNumber value="${logSummary.totalRequests}"/></b></td>
       </tr>
+      <tr class="small">
+        <td colspan="2" align="right">
+          Top for year -
+          <a href="viewRequests.secureaction?year=${year}" title="See the most frequent requests for year">Requests</a> |
+          <a href="viewReferers.secureaction?year=${year}" title="See the most frequent referers for year">Referers</a> |
+          <a href="viewUserAgents.secureaction?year=${year}" title="See the most frequent user agents for year">User Agents</a>
+        </td>
+      </tr>
       </thead>
 
       <c:forEach var="logSummaryForMonth" items="${logSummary.logSummaries}" varStatus="status">
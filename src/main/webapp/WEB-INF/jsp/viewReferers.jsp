@@ -11,6 +11,10 @@
   </h1>
   <h2>Total : <fmt:formatNumber value="${totalReferers}"/></h2>
 
+  <c:if test="${not empty maximumError}">
+    <p class="small"><fmt:message key="view.approximateCounts"><fmt:param><fmt:formatNumber value="${maximumError}"/></fmt:param></fmt:message></p>
+  </c:if>
+
   <div class="contentItemBody">
     <form name="referersForm" method="post" action="addRefererFilters.secureaction">
     <pebble:token/>
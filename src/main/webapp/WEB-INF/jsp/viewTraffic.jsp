@@ -0,0 +1,139 @@
+<div class="contentItem">
+
+  <div class="contentItemLinks">
+    <a href="./help/logs.html" target="_blank">Help</a>
+  </div>
+
+  <h1>Live Traffic</h1>
+  <h2>Last ${windowMinutes} minutes</h2>
+
+  <div class="contentItemBody">
+
+    <p>
+    <fmt:formatNumber value="${totalRequests}"/> requests :
+    <fmt:formatNumber value="${requestsPerSecondLast10Seconds}" maxFractionDigits="1"/> per second over the last 10 seconds,
+    <fmt:formatNumber value="${requestsPerSecondLastMinute}" maxFractionDigits="1"/> over the last minute and
+    <fmt:formatNumber value="${requestsPerSecond}" maxFractionDigits="1"/> over the last ${windowMinutes} minutes.
+    </p>
+
+    <p class="small">
+    Last minute, a second at a time :
+    <c:forEach var="count" items="${requestsBySecond}" varStatus="status">${count}<c:if test="${not status.last}">, </c:if></c:forEach>
+    </p>
+
+    <h3>Status Codes</h3>
+    <br />
+
+    <table width="99%" cellspacing="0" cellpadding="4">
+      <thead>
+        <tr>
+          <th>Status Code</th>
+          <th align="right">Total</th>
+        </tr>
+      </thead>
+      <tbody>
+        <c:forEach var="statusCode" items="${statusCodes}" varStatus="status">
+          <c:choose>
+            <c:when test="${status.count % 2 == 0}">
+              <tr class="even small">
+            </c:when>
+            <c:otherwise>
+                <tr class="odd small">
+            </c:otherwise>
+          </c:choose>
+          <td>${statusCode.key}</td>
+          <td align="right"><fmt:formatNumber value="${statusCode.value}"/></td>
+        </tr>
+        </c:forEach>
+    </tbody>
+    </table>
+
+    <br />
+
+    <h3>Top URLs</h3>
+    <br />
+
+    <table width="99%" cellspacing="0" cellpadding="4">
+      <thead>
+        <tr>
+          <th>URL</th>
+          <th align="right">Total</th>
+        </tr>
+      </thead>
+      <tbody>
+        <c:forEach var="item" items="${topUrls}" varStatus="status">
+          <c:choose>
+            <c:when test="${status.count % 2 == 0}">
+              <tr class="even small">
+            </c:when>
+            <c:otherwise>
+                <tr class="odd small">
+            </c:otherwise>
+          </c:choose>
+          <td><c:out value="${item.key}"/></td>
+          <td align="right"><fmt:formatNumber value="${item.count}"/><c:if test="${item.error > 0}"> (&plusmn;<fmt:formatNumber value="${item.error}"/>)</c:if></td>
+        </tr>
+        </c:forEach>
+    </tbody>
+    </table>
+
+    <br />
+
+    <h3>Top Referrers</h3>
+    <br />
+
+    <table width="99%" cellspacing="0" cellpadding="4">
+      <thead>
+        <tr>
+          <th>Referrer</th>
+          <th align="right">Total</th>
+        </tr>
+      </thead>
+      <tbody>
+        <c:forEach var="item" items="${topReferers}" varStatus="status">
+          <c:choose>
+            <c:when test="${status.count % 2 == 0}">
+              <tr class="even small">
+            </c:when>
+            <c:otherwise>
+                <tr class="odd small">
+            </c:otherwise>
+          </c:choose>
+          <td><c:out value="${item.key}"/></td>
+          <td align="right"><fmt:formatNumber value="${item.count}"/><c:if test="${item.error > 0}"> (&plusmn;<fmt:formatNumber value="${item.error}"/>)</c:if></td>
+        </tr>
+        </c:forEach>
+    </tbody>
+    </table>
+
+    <br />
+
+    <h3>Top Hosts</h3>
+    <br />
+
+    <table width="99%" cellspacing="0" cellpadding="4">
+      <thead>
+        <tr>
+          <th>Host</th>
+          <th align="right">Total</th>
+        </tr>
+      </thead>
+      <tbody>
+        <c:forEach var="item" items="${topHosts}" varStatus="status">
+          <c:choose>
+            <c:when test="${status.count % 2 == 0}">
+              <tr class="even small">
+            </c:when>
+            <c:otherwise>
+                <tr class="odd small">
+            </c:otherwise>
+          </c:choose>
+          <td><c:out value="${item.key}"/></td>
+          <td align="right"><fmt:formatNumber value="${item.count}"/><c:if test="${item.error > 0}"> (&plusmn;<fmt:formatNumber value="${item.error}"/>)</c:if></td>
+        </tr>
+        </c:forEach>
+    </tbody>
+    </table>
+  </div>
+
+</div>
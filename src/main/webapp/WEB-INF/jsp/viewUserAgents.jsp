@@ -7,6 +7,10 @@
   <h1>User Agents for <c:out value="${logPeriod}"/></h1>
   <h2>&nbsp;</h2>
 
+  <c:if test="${not empty maximumError}">
+    <p class="small"><fmt:message key="view.approximateCounts"><fmt:param><fmt:formatNumber value="${maximumError}"/></fmt:param></fmt:message></p>
+  </c:if>
+
   <div class="contentItemBody">
 
     <h3>Summary</h3>
@@ -29,14 +33,16 @@
                 <tr class="odd small">
             </c:otherwise>
           </c:choose>
-          <td>${userAgent.key}</td>
+          <td>${userAgent.key}<c:if test="${bots[userAgent.key]}"> (robot)</c:if></td>
           <td align="right"><fmt:formatNumber value="${userAgent.value}"/></td>
         </tr>
         </c:forEach>
     </tbody>
     </table>
 
-    <br />
+    <p>
+    <fmt:formatNumber value="${botRequests}"/> of <fmt:formatNumber value="${totalRequests}"/> requests were made by robots.
+    </p>
 
     <h3>Distinct User Agents</h3>
     <br />
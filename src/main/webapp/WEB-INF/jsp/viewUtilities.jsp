@@ -13,7 +13,11 @@
     <h3>General utilities</h3>
     <ul>
       <li><a href="reloadBlog.secureaction?<pebble:token query="true"/>">Restart</a> : refresh your blog configuration from disk.</li>
-      <li><a href="utilities.secureaction?action=buildIndexes&amp;<pebble:token query="true"/>">Reindex</a> : rebuild the various indexes that your blog maintains internally.</li>
+      <li><a href="utilities.secureaction?action=buildIndexes&amp;<pebble:token query="true"/>">Reindex</a> : rebuild the various indexes that your blog maintains internally.
+        <c:if test="${blog.searchIndexQueue.numberOfPendingUpdates > 0}">(${blog.searchIndexQueue.numberOfPendingUpdates} search index update(s) pending, ${blog.searchIndexQueue.lag} ms behind)</c:if>
+        <c:if test="${blog.suggestionIndex.numberOfKeys > 0}">(search suggestions use about <fmt:formatNumber value="${blog.suggestionIndex.memoryFootprint / 1024}" maxFractionDigits="0"/> KB for ${blog.suggestionIndex.numberOfKeys} keys)</c:if>
+        <c:if test="${blog.reindexing}"><br />Reindexing ${blog.blogEntryReindexer.numberOfBlogEntriesIndexed} of ${blog.blogEntryReindexer.numberOfBlogEntries} blog entries (${blog.blogEntryReindexer.percentageComplete}% complete) :
+          <a href="utilities.secureaction">refresh</a> | <a href="utilities.secureaction?action=cancelReindex&amp;<pebble:token query="true"/>">cancel</a></c:if></li>
       <li><a href="resetPlugins.secureaction?<pebble:token query="true"/>">Reset plugins</a> : reset your plugins back to their out-of-the-box default configuration.</li>
       <li><a href="utilities.secureaction?action=ipAddressListener&amp;<pebble:token query="true"/>">Build IP address whitelist and blacklist</a> : create the blacklist and whitelist from your current responses (the IP address of all approved responses
         will be placed into the whitelist, while the IP address of all rejected responses will be placed into the blacklist).</li>
@@ -44,7 +48,44 @@
         <a href="http://www.feedvalidator.org/check.cgi?url=${blogUrl}atom.xml"><img src="${pageContext.request.contextPath}/common/images/valid-atom.png" alt="[Valid Atom]" title="Validate my Atom feed" width="88" height="31" border="0" /></a>
       </li>
       <li><a href="viewEmailSubscribers.secureaction">Manage e-mail subscribers</a> : view and manage the list of e-mail subscribers.</li>
+      <li><a href="utilities.secureaction">Outbound notifications</a> : hub publish requests, update pings and tweets are delivered in the background.
+        (${blog.notificationQueue.numberOfPendingNotifications} pending, ${blog.notificationQueue.numberOfDeliveries} delivered and ${blog.notificationQueue.numberOfFailures} failed since the blog was started)</li>
     </ul>
+
+    <c:set var="pendingNotifications" value="${blog.notificationQueue.pendingNotifications}" />
+    <c:set var="recentDeliveries" value="${blog.notificationQueue.recentDeliveries}" />
+    <c:if test="${not empty pendingNotifications or not empty recentDeliveries}">
+    <table width="99%" cellspacing="0" cellpadding="4">
+      <thead>
+      <tr>
+        <th>Notification</th>
+        <th>Endpoint</th>
+        <th>Attempts</th>
+        <th>Status</th>
+      </tr>
+      </thead>
+      <tbody>
+      <c:forEach var="notification" items="${pendingNotifications}">
+        <tr class="odd small">
+          <td>${notification.type}</td>
+          <td><c:out value="${notification.endpoint}"/></td>
+          <td>${notification.attempts}</td>
+          <td>pending, next attempt <fmt:formatDate value="${notification.nextAttempt}" type="both" dateStyle="short" timeStyle="medium"/>
+            <c:if test="${not empty notification.lastError}"><br /><c:out value="${notification.lastError}"/></c:if></td>
+        </tr>
+      </c:forEach>
+      <c:forEach var="delivery" items="${recentDeliveries}">
+        <tr class="even small">
+          <td>${delivery.type}</td>
+          <td><c:out value="${delivery.endpoint}"/></td>
+          <td>${delivery.attempts}</td>
+          <td><c:choose><c:when test="${delivery.successful}">delivered</c:when><c:otherwise>failed : <c:out value="${delivery.error}"/></c:otherwise></c:choose>
+            <fmt:formatDate value="${delivery.date}" type="both" dateStyle="short" timeStyle="medium"/></td>
+        </tr>
+      </c:forEach>
+      </tbody>
+    </table>
+    </c:if>
   </div>
 
 </div>
\ No newline at end of file
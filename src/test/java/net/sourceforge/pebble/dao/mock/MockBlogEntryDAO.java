@@ -77,6 +77,22 @@ public class MockBlogEntryDAO implements BlogEntryDAO {
     return list;
   }
 
+  /**
+   * Loads the IDs of all blog entries.
+   *
+   * @param blog the Blog to load all IDs for
+   * @return a List of blog entry IDs
+   * @throws net.sourceforge.pebble.dao.PersistenceException
+   *          if the IDs cannot be loaded
+   */
+  public Collection<String> loadBlogEntryIds(Blog blog) throws PersistenceException {
+    List<String> list = new ArrayList<String>();
+    for (Object o : blogEntries.keySet()) {
+      list.add((String)o);
+    }
+    return list;
+  }
+
   /**
    * Stores the specified blog entry.
    *
@@ -91,18 +91,21 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryOne.setExcerpt("Excerpt - except one");
     blogEntryOne.setBody("Body - body one");
     blogEntryOne.setTags("one two");
+    blogEntryOne.setPublished(true);
     service.putBlogEntry(blogEntryOne);
 
     blogEntryTwo.setTitle("Title - title two");
     blogEntryTwo.setExcerpt("Excerpt - except two");
     blogEntryTwo.setBody("Body - body two");
     blogEntryTwo.setTags("one two");
+    blogEntryTwo.setPublished(true);
     service.putBlogEntry(blogEntryTwo);
 
     blogEntryThree.setTitle("Title - title three");
     blogEntryThree.setExcerpt("Excerpt - except three");
     blogEntryThree.setBody("Body - body three");
     blogEntryThree.setTags("three");
+    blogEntryThree.setPublished(true);
     service.putBlogEntry(blogEntryThree);
 
     decorator.decorate(context, blogEntryThree);
@@ -132,6 +135,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryOne.setExcerpt("Excerpt - except one");
     blogEntryOne.setBody("Body - body one");
     blogEntryOne.setTags("one, two");
+    blogEntryOne.setPublished(true);
     service.putBlogEntry(blogEntryOne);
 
     blogEntryTwo.setDate(date);
@@ -139,6 +143,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryTwo.setExcerpt("Excerpt - except two");
     blogEntryTwo.setBody("Body - body two");
     blogEntryTwo.setTags("one, two");
+    blogEntryTwo.setPublished(true);
     service.putBlogEntry(blogEntryTwo);
 
     blogEntryThree.setDate(date);
@@ -146,6 +151,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryThree.setExcerpt("Excerpt - except three");
     blogEntryThree.setBody("Body - body three");
     blogEntryThree.setTags("two, three");
+    blogEntryThree.setPublished(true);
     service.putBlogEntry(blogEntryThree);
 
     decorator.decorate(context, blogEntryThree);
@@ -183,6 +189,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryOne.setExcerpt("Excerpt - except one");
     blogEntryOne.setBody("Body - body one");
     blogEntryOne.setTags("one");
+    blogEntryOne.setPublished(true);
     service.putBlogEntry(blogEntryOne);
 
     blogEntryTwo.setDate(date);
@@ -190,6 +197,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryTwo.setExcerpt("Excerpt - except two");
     blogEntryTwo.setBody("Body - body two");
     blogEntryTwo.setTags("one, two");
+    blogEntryTwo.setPublished(true);
     service.putBlogEntry(blogEntryTwo);
 
     blogEntryThree.setDate(date);
@@ -197,6 +205,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryThree.setExcerpt("Excerpt - except three");
     blogEntryThree.setBody("Body - body three");
     blogEntryThree.setTags("one, two, three");
+    blogEntryThree.setPublished(true);
     service.putBlogEntry(blogEntryThree);
 
     blogEntryFour.setDate(date);
@@ -204,6 +213,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryFour.setExcerpt("Excerpt - except four");
     blogEntryFour.setBody("Body - body four");
     blogEntryFour.setTags("one, two, three, four");
+    blogEntryFour.setPublished(true);
     service.putBlogEntry(blogEntryFour);
 
     blogEntryFive.setDate(date);
@@ -211,6 +221,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryFive.setExcerpt("Excerpt - except five");
     blogEntryFive.setBody("Body - body five");
     blogEntryFive.setTags("one, two, three, four, five");
+    blogEntryFive.setPublished(true);
     service.putBlogEntry(blogEntryFive);
 
     blogEntrySix.setDate(date);
@@ -218,6 +229,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntrySix.setExcerpt("Excerpt - except six");
     blogEntrySix.setBody("Body - body six");
     blogEntrySix.setTags("one, two, three, four, five, six");
+    blogEntrySix.setPublished(true);
     service.putBlogEntry(blogEntrySix);
 
     blogEntrySeven.setDate(date);
@@ -225,6 +237,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntrySeven.setExcerpt("Excerpt - except seven");
     blogEntrySeven.setBody("Body - body seven");
     blogEntrySeven.setTags("one, two, three, four, five, six, seven");
+    blogEntrySeven.setPublished(true);
     service.putBlogEntry(blogEntrySeven);
 
     blogEntryEight.setDate(date);
@@ -232,6 +245,7 @@ public class RelatedPostsDecoratorTest extends SingleBlogTestCase {
     blogEntryEight.setExcerpt("Excerpt - except eight");
     blogEntryEight.setBody("Body - body eight");
     blogEntryEight.setTags("one, two, three, four, five, six, seven, eight");
+    blogEntryEight.setPublished(true);
     service.putBlogEntry(blogEntryEight);
 
     decorator.decorate(context, blogEntryOne);
@@ -170,6 +170,34 @@ public class BlogTest extends SingleBlogTestCase {
    assertEquals(cal.get(Calendar.YEAR)+1, year.getYear());
    }
 
+  /**
+   * Tests that Year instances created by concurrent requests are shared.
+   */
+  public void testGetBlogForYearFromSeveralThreads() throws Exception {
+    final int thisYear = blog.getCalendar().get(Calendar.YEAR);
+    final List<Year> years = Collections.synchronizedList(new ArrayList<Year>());
+    Thread threads[] = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int year = thisYear; year > thisYear - 50; year--) {
+            years.add(blog.getBlogForYear(year));
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(50, blog.getYears().size());
+    assertEquals(thisYear - 49, blog.getYears().get(0).getYear());
+    for (Year year : years) {
+      assertSame(year, blog.getBlogForYear(year.getYear()));
+    }
+  }
+
   /**
    * Tests that we can get the first Month instance.
    */
@@ -32,6 +32,7 @@
 package net.sourceforge.pebble.domain;
 
 import java.beans.Introspector;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -292,6 +293,46 @@ public class DayTest extends SingleBlogTestCase {
 //    assertTrue(blogEntry.areEventsEnabled());
 //  }
 
+  /**
+   * Tests that blog entries are found for the day they were posted on.
+   */
+  public void testBlogEntries() throws Exception {
+    Calendar cal = blog.getCalendar();
+    cal.set(2003, Calendar.APRIL, 7, 0, 0, 0);
+    cal.set(Calendar.MILLISECOND, 0);
+    BlogEntry blogEntry1 = createBlogEntry(cal.getTime(), true);
+    cal.set(Calendar.HOUR_OF_DAY, 12);
+    BlogEntry blogEntry2 = createBlogEntry(cal.getTime(), false);
+    cal.set(Calendar.HOUR_OF_DAY, 23);
+    BlogEntry blogEntry3 = createBlogEntry(cal.getTime(), true);
+    cal.add(Calendar.HOUR_OF_DAY, 1);
+    createBlogEntry(cal.getTime(), true);
+
+    day = blog.getBlogForDay(2003, 4, 7);
+    assertEquals(Arrays.asList(blogEntry3.getId(), blogEntry2.getId(), blogEntry1.getId()), day.getBlogEntries());
+    assertEquals(2, day.getNumberOfBlogEntries());
+    assertTrue(day.hasBlogEntries());
+    assertEquals(blogEntry1.getId(), day.getFirstBlogEntry());
+    assertEquals(blogEntry3.getId(), day.getLastBlogEntry());
+    assertEquals(blogEntry1.getId(), day.getPreviousBlogEntry(blogEntry3.getId()));
+    assertEquals(blogEntry3.getId(), day.getNextBlogEntry(blogEntry1.getId()));
+
+    assertFalse(blog.getBlogForDay(2003, 4, 6).hasBlogEntries());
+    assertEquals(1, blog.getBlogForDay(2003, 4, 8).getNumberOfBlogEntries());
+    assertEquals(3, day.getMonth().getNumberOfBlogEntries());
+    assertEquals(4, day.getMonth().getBlogEntries().size());
+  }
+
+  private BlogEntry createBlogEntry(Date date, boolean published) throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("A title");
+    blogEntry.setDate(date);
+    blogEntry.setPublished(published);
+    new BlogService().putBlogEntry(blogEntry);
+
+    return blogEntry;
+  }
+
   public void testIntrospection() throws Exception {
     Introspector.getBeanInfo(Day.class);
   }
@@ -99,6 +99,25 @@ public class RefererFilterManagerTest extends SingleBlogTestCase {
     assertEquals(3, referers.size());
   }
 
+  /**
+   * Tests that filtering reflects filters that have been added and removed.
+   */
+  public void testFilterAfterFiltersChange() {
+    List referers = new ArrayList();
+    referers.add(new Referer("http://www.google.com"));
+    referers.add(new Referer("http://www.test.com"));
+    referers.add(new Referer(null));
+    assertEquals(3, refererFilterManager.filter(referers).size());
+
+    refererFilterManager.addFilter(new RefererFilter(".*google.*"));
+    List filtered = refererFilterManager.filter(referers);
+    assertEquals(2, filtered.size());
+    assertEquals("http://www.test.com", ((Referer)filtered.get(0)).getUrl());
+
+    refererFilterManager.removeFilter(".*google.*");
+    assertEquals(3, refererFilterManager.filter(referers).size());
+  }
+
   /** todo
    * Tests that a filter can be removed.
   public void testRemoveFilterThatExists() {
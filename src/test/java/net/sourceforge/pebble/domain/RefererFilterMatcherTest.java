@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.domain;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the RefererFilterMatcher class.
+ *
+ * @author    Simon Brown
+ */
+public class RefererFilterMatcherTest extends TestCase {
+
+  public void testRequiredLiteral() {
+    assertEquals("google", RefererFilterMatcher.getRequiredLiteral(".*google.*"));
+    assertEquals("example", RefererFilterMatcher.getRequiredLiteral(".*www.example.com.*"));
+    assertEquals("www.example.com", RefererFilterMatcher.getRequiredLiteral(".*www\\.example\\.com.*"));
+    assertEquals("http://", RefererFilterMatcher.getRequiredLiteral("http://s*p*a*m.*"));
+    assertEquals("A new filter", RefererFilterMatcher.getRequiredLiteral("A new filter"));
+    assertNull(RefererFilterMatcher.getRequiredLiteral(".*"));
+    assertNull(RefererFilterMatcher.getRequiredLiteral(""));
+    assertNull(RefererFilterMatcher.getRequiredLiteral(".*(casino|poker).*"));
+    assertNull(RefererFilterMatcher.getRequiredLiteral(".*\\d+.*"));
+    assertNull(RefererFilterMatcher.getRequiredLiteral("^http://spam.*"));
+  }
+
+  public void testMatches() {
+    RefererFilterMatcher matcher = new RefererFilterMatcher(filters(
+        ".*www.spam.com.*", ".*google.*", ".*(casino|poker).*", "(?i).*VIAGRA.*", "http://([a-z]+)\\.\\1\\.com/"), 100);
+
+    assertTrue(matcher.matches("http://www.spam.com/page.html"));
+    assertTrue(matcher.matches("http://www-spam-com"));
+    assertFalse(matcher.matches("http://spam.com/page.html"));
+    assertTrue(matcher.matches("http://www.google.com/search?q=pebble"));
+    assertTrue(matcher.matches("http://www.onlinecasino.net/"));
+    assertTrue(matcher.matches("http://www.viagra.net/"));
+    assertTrue(matcher.matches("http://abc.abc.com/"));
+    assertFalse(matcher.matches("http://abc.def.com/"));
+    assertFalse(matcher.matches("http://www.example.com/"));
+    assertFalse(matcher.matches(""));
+  }
+
+  public void testMatchesWithoutFilters() {
+    RefererFilterMatcher matcher = new RefererFilterMatcher(new ArrayList(), 100);
+    assertFalse(matcher.matches("http://www.example.com/"));
+  }
+
+  public void testMatchesTheSameAsEachFilter() {
+    String[] expressions = {".*google.*", ".*www.spam.com.*", ".*spam.*", ".*am\\.c.*", "http://www.example.com/.*",
+        ".*\\.ru/.*", ".*(sex|porn).*", ".*\\d{5}.*", "http://[^/]*\\.info/.*", "h.*s.*"};
+    List filters = filters(expressions);
+    RefererFilterMatcher matcher = new RefererFilterMatcher(filters, 100);
+
+    String[] pieces = {"http://", "www.", "google", "spam", ".com", ".ru", "/", "porn", "12345", ".info", "example", "am.c", "s"};
+    Random random = new Random(1);
+    for (int i = 0; i < 10000; i++) {
+      StringBuilder url = new StringBuilder();
+      int length = random.nextInt(6);
+      for (int j = 0; j < length; j++) {
+        url.append(pieces[random.nextInt(pieces.length)]);
+      }
+
+      boolean expected = false;
+      for (Object filter : filters) {
+        expected |= ((RefererFilter)filter).getCompiledExpression().matcher(url).matches();
+      }
+      assertEquals(url.toString(), expected, matcher.matches(url.toString()));
+    }
+  }
+
+  public void testDecisionsAreRemembered() {
+    RefererFilterMatcher matcher = new RefererFilterMatcher(filters(".*spam.*"), 2);
+    assertTrue(matcher.matches("http://www.spam.com/"));
+    assertTrue(matcher.matches("http://www.spam.com/"));
+    assertEquals(1, matcher.getCacheSize());
+    assertFalse(matcher.matches("http://www.example.com/"));
+    assertFalse(matcher.matches("http://www.example.org/"));
+    assertEquals(2, matcher.getCacheSize());
+  }
+
+  private List filters(String... expressions) {
+    List filters = new ArrayList();
+    for (String expression : Arrays.asList(expressions)) {
+      filters.add(new RefererFilter(expression));
+    }
+    return filters;
+  }
+
+}
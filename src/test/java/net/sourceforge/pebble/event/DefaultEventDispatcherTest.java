@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.event;
+
+import net.sourceforge.pebble.api.event.AsynchronousListener;
+import net.sourceforge.pebble.api.event.blogentry.BlogEntryEvent;
+import net.sourceforge.pebble.api.event.comment.CommentEvent;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.domain.Comment;
+import net.sourceforge.pebble.domain.SingleBlogTestCase;
+import net.sourceforge.pebble.event.blogentry.BlogEntryListenerSupport;
+import net.sourceforge.pebble.event.comment.CommentListenerSupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the DefaultEventDispatcher class.
+ *
+ * @author Simon Brown
+ */
+public class DefaultEventDispatcherTest extends SingleBlogTestCase {
+
+  private DefaultEventDispatcher dispatcher;
+  private EventListenerList eventListenerList;
+  private BlogEntry blogEntry;
+  private List<String> calls;
+  private List<Runnable> tasks;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    eventListenerList = new EventListenerList();
+    dispatcher = new DefaultEventDispatcher();
+    dispatcher.setEventListenerList(eventListenerList);
+    blogEntry = new BlogEntry(blog);
+    calls = Collections.synchronizedList(new ArrayList<String>());
+    tasks = new ArrayList<Runnable>();
+  }
+
+  public void testAsynchronousListenersAreCalledAfterTheOthers() {
+    useQueuedExecutor();
+    eventListenerList.addBlogEntryListener(new RecordingListener("first", false));
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("second"));
+    eventListenerList.addBlogEntryListener(new RecordingListener("third", false));
+
+    dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    assertEquals(2, calls.size());
+    assertEquals("first", calls.get(0));
+    assertEquals("third", calls.get(1));
+
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    assertEquals(3, calls.size());
+    assertEquals("second", calls.get(2));
+  }
+
+  public void testAsynchronousListenersAfterAVetoAreNotCalled() {
+    useQueuedExecutor();
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("first"));
+    eventListenerList.addBlogEntryListener(new RecordingListener("second", true));
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("third"));
+
+    dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    assertEquals(1, tasks.size());
+    tasks.get(0).run();
+    assertEquals(2, calls.size());
+    assertEquals("second", calls.get(0));
+    assertEquals("first", calls.get(1));
+  }
+
+  public void testNothingIsQueuedWithoutAsynchronousListeners() {
+    useQueuedExecutor();
+    eventListenerList.addBlogEntryListener(new RecordingListener("first", false));
+
+    dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    assertEquals(1, calls.size());
+    assertTrue(tasks.isEmpty());
+  }
+
+  public void testAnErrorDoesNotStopOtherAsynchronousListeners() {
+    useQueuedExecutor();
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("first") {
+      public void blogEntryAdded(BlogEntryEvent event) {
+        throw new IllegalStateException("Could not connect");
+      }
+    });
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("second"));
+
+    dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    tasks.get(0).run();
+    assertEquals(1, calls.size());
+    assertEquals("second", calls.get(0));
+  }
+
+  public void testAsynchronousCommentListeners() {
+    useQueuedExecutor();
+    eventListenerList.addCommentListener(new AsynchronousCommentListener());
+    Comment comment = blogEntry.createComment("Title", "Body", "Author", "me@somedomain.com", "http://www.google.com", "", "127.0.0.1");
+
+    dispatcher.fireCommentEvent(new CommentEvent(comment, CommentEvent.COMMENT_ADDED));
+    assertTrue(calls.isEmpty());
+    tasks.get(0).run();
+    assertEquals(1, calls.size());
+    assertEquals("commentAdded", calls.get(0));
+  }
+
+  public void testAsynchronousListenersWaitForTheBlogToBeSaved() throws Exception {
+    final CountDownLatch called = new CountDownLatch(1);
+    final Thread[] threads = new Thread[1];
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("first") {
+      public void blogEntryAdded(BlogEntryEvent event) {
+        threads[0] = Thread.currentThread();
+        called.countDown();
+      }
+    });
+
+    // as if the blog entry was being saved
+    synchronized (blog) {
+      dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    }
+    assertFalse(called.await(200, TimeUnit.MILLISECONDS));
+
+    dispatcher.eventsCompleted(true);
+    assertTrue(called.await(5, TimeUnit.SECONDS));
+    assertNotSame(Thread.currentThread(), threads[0]);
+  }
+
+  public void testAsynchronousListenersAreNotCalledIfTheSaveFails() {
+    useQueuedExecutor();
+    eventListenerList.addBlogEntryListener(new AsynchronousRecordingListener("first"));
+
+    synchronized (blog) {
+      dispatcher.fireBlogEntryEvent(new BlogEntryEvent(blogEntry, BlogEntryEvent.BLOG_ENTRY_ADDED));
+    }
+    dispatcher.eventsCompleted(false);
+    assertTrue(tasks.isEmpty());
+
+    // and nothing is left over for the next save
+    dispatcher.eventsCompleted(true);
+    assertTrue(tasks.isEmpty());
+  }
+
+  public void testListenersAreNotCalledOnTheFiringThreadWhenTheQueueIsFull() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(1), new DefaultEventDispatcher.WaitForSpacePolicy());
+    final Runnable task = new Runnable() {
+      public void run() {
+        threads.add(Thread.currentThread());
+        try {
+          release.await();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+
+    // one task running and one queued, so the queue is full
+    executor.execute(task);
+    executor.execute(task);
+    Thread firing = new Thread() {
+      public void run() {
+        executor.execute(task);
+      }
+    };
+    firing.start();
+    firing.join(200);
+    assertTrue(firing.isAlive());
+
+    release.countDown();
+    firing.join(5000);
+    assertFalse(firing.isAlive());
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals(3, threads.size());
+    assertFalse(threads.contains(firing));
+  }
+
+  private void useQueuedExecutor() {
+    dispatcher.setExecutor(new Executor() {
+      public void execute(Runnable runnable) {
+        tasks.add(runnable);
+      }
+    });
+  }
+
+  private class RecordingListener extends BlogEntryListenerSupport {
+
+    private final String name;
+    private final boolean veto;
+
+    RecordingListener(String name, boolean veto) {
+      this.name = name;
+      this.veto = veto;
+    }
+
+    public void blogEntryAdded(BlogEntryEvent event) {
+      calls.add(name);
+      if (veto) {
+        event.veto();
+      }
+    }
+
+  }
+
+  private class AsynchronousRecordingListener extends RecordingListener implements AsynchronousListener {
+
+    AsynchronousRecordingListener(String name) {
+      super(name, false);
+    }
+
+  }
+
+  private class AsynchronousCommentListener extends CommentListenerSupport implements AsynchronousListener {
+
+    public void commentAdded(CommentEvent event) {
+      calls.add("commentAdded");
+    }
+
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests for the BlogEntryReindexer class.
+ *
+ * @author    Simon Brown
+ */
+public class BlogEntryReindexerTest extends SingleBlogTestCase {
+
+  private BlogService service;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    service = new BlogService();
+    for (int i = 0; i < 50; i++) {
+      BlogEntry blogEntry = new BlogEntry(blog);
+      blogEntry.setTitle("Blog entry " + i);
+      blogEntry.setTags(i % 2 == 0 ? "even" : "odd");
+      blogEntry.setPublished(i < 40);
+      service.putBlogEntry(blogEntry);
+    }
+  }
+
+  /**
+   * Tests that all of the indexes are rebuilt.
+   */
+  public void testReindex() throws Exception {
+    BlogEntryReindexer reindexer = new BlogEntryReindexer(blog,
+        Arrays.<ReindexableIndex>asList(blog.getBlogEntryIndex(), blog.getTagIndex(), blog.getAuthorIndex()), 4);
+    reindexer.reindex();
+
+    assertTrue(reindexer.isFinished());
+    assertFalse(reindexer.isCancelled());
+    assertEquals(50, reindexer.getNumberOfBlogEntries());
+    assertEquals(50, reindexer.getNumberOfBlogEntriesLoaded());
+    assertEquals(50, reindexer.getNumberOfBlogEntriesIndexed());
+    assertEquals(0, reindexer.getNumberOfFailures());
+    assertEquals(100, reindexer.getPercentageComplete());
+
+    assertEquals(50, blog.getBlogEntryIndex().getNumberOfBlogEntries());
+    assertEquals(40, blog.getBlogEntryIndex().getNumberOfPublishedBlogEntries());
+    assertEquals(20, blog.getTagIndex().getRecentBlogEntries(new Tag("even", blog)).size());
+    assertEquals(20, blog.getTagIndex().getRecentBlogEntries(new Tag("odd", blog)).size());
+  }
+
+  /**
+   * Tests that a cancelled reindex stops, leaving the indexes incomplete.
+   */
+  public void testCancelledReindex() throws Exception {
+    BlogEntryReindexer reindexer = new BlogEntryReindexer(blog,
+        Arrays.<ReindexableIndex>asList(blog.getBlogEntryIndex(), blog.getTagIndex()), 4);
+    reindexer.cancel();
+    reindexer.reindex();
+
+    assertTrue(reindexer.isFinished());
+    assertTrue(reindexer.isCancelled());
+    assertEquals(0, reindexer.getNumberOfBlogEntriesIndexed());
+    assertEquals(0, blog.getBlogEntryIndex().getNumberOfBlogEntries());
+  }
+
+  /**
+   * Tests that an index failing with an Error cancels the reindex, rather
+   * than leaving the loaders waiting on its full queue.
+   */
+  public void testReindexCancelledWhenIndexFails() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      BlogEntry blogEntry = new BlogEntry(blog);
+      blogEntry.setDate(new Date(blogEntry.getDate().getTime() + (i+1) * 1000));
+      blogEntry.setTitle("Another blog entry " + i);
+      service.putBlogEntry(blogEntry);
+    }
+
+    ReindexableIndex failingIndex = new ReindexableIndex() {
+      public void clear() {
+      }
+      public void add(BlogEntry blogEntry) {
+        throw new Error("Index failed");
+      }
+      public void remove(String blogEntryId) {
+      }
+      public void finish() {
+      }
+    };
+    BlogEntryReindexer reindexer = new BlogEntryReindexer(blog,
+        Arrays.<ReindexableIndex>asList(failingIndex, blog.getBlogEntryIndex()), 4);
+    reindexer.reindex();
+
+    assertTrue(reindexer.isFinished());
+    assertTrue(reindexer.isCancelled());
+  }
+
+  /**
+   * Tests that the blog reports the result of reindexing.
+   */
+  public void testReindexThroughBlog() throws Exception {
+    assertNull(blog.getBlogEntryReindexer());
+    blog.reindexBlogEntries();
+
+    assertFalse(blog.isReindexing());
+    assertEquals(50, blog.getBlogEntryReindexer().getNumberOfBlogEntriesIndexed());
+    assertEquals(40, blog.getBlogEntryIndex().getNumberOfPublishedBlogEntries());
+    assertEquals(1, blog.getSuggestionIndex().suggest("blog entry 39", 10).size());
+  }
+
+  /**
+   * Tests that blog entries saved and removed while the blog is being
+   * reindexed end up correctly indexed.
+   */
+  public void testSavesDuringReindex() throws Exception {
+    List<BlogEntry> blogEntries = new ArrayList<BlogEntry>(service.getBlogEntries(blog));
+    Thread reindex = new Thread() {
+      public void run() {
+        blog.reindexBlogEntries();
+      }
+    };
+    reindex.start();
+
+    for (int i = 0; i < 20; i++) {
+      BlogEntry blogEntry = new BlogEntry(blog);
+      blogEntry.setTitle("New blog entry " + i);
+      blogEntry.setPublished(true);
+      service.putBlogEntry(blogEntry);
+    }
+    for (int i = 0; i < 10; i++) {
+      service.removeBlogEntry(blogEntries.get(i));
+    }
+    reindex.join();
+
+    assertFalse(blog.isReindexing());
+    assertEquals(60, blog.getBlogEntryIndex().getNumberOfBlogEntries());
+    for (int i = 0; i < 10; i++) {
+      assertFalse(blog.getBlogEntryIndex().getBlogEntries().contains(blogEntries.get(i).getId()));
+    }
+  }
+
+}
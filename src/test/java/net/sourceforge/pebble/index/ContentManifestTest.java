@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Collections;
+
+/**
+ * Tests for the ContentManifest class.
+ *
+ * @author    Simon Brown
+ */
+public class ContentManifestTest extends SingleBlogTestCase {
+
+  private File blogEntryFile1, blogEntryFile2, staticPageFile;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    blogEntryFile1 = writeFile(new File(blog.getRoot(), "2011/01/01/1293840000000.xml"), "first blog entry");
+    blogEntryFile2 = writeFile(new File(blog.getRoot(), "2011/01/02/1293926400000.xml"), "second blog entry");
+    staticPageFile = writeFile(new File(blog.getRoot(), "pages/1293840000001/1293840000001.xml"), "static page");
+  }
+
+  private File writeFile(File file, String content) throws Exception {
+    file.getParentFile().mkdirs();
+    FileWriter writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+    file.setLastModified(1293840000000L);
+
+    return file;
+  }
+
+  public void testEverythingIsChangedWithoutAManifest() {
+    new File(blog.getIndexesDirectory(), "content.manifest").delete();
+    ContentManifest manifest = new ContentManifest(blog);
+    assertFalse(manifest.exists());
+
+    ContentManifest.Changes changes = manifest.scan();
+    assertTrue(changes.isTimeZoneChanged());
+    assertEquals(2, changes.getChangedBlogEntries().size());
+    assertTrue(changes.getChangedBlogEntries().contains("1293840000000"));
+    assertTrue(changes.getChangedBlogEntries().contains("1293926400000"));
+    assertEquals(Collections.singleton("1293840000001"), changes.getChangedStaticPages());
+  }
+
+  public void testNothingIsChangedAfterManifestIsWritten() {
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.write();
+
+    manifest = new ContentManifest(blog);
+    assertTrue(manifest.exists());
+    ContentManifest.Changes changes = manifest.scan();
+    assertFalse(changes.isTimeZoneChanged());
+    assertFalse(changes.hasBlogEntryChanges());
+    assertFalse(changes.hasStaticPageChanges());
+  }
+
+  public void testChangedAndRemovedFiles() throws Exception {
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.write();
+
+    writeFile(blogEntryFile1, "first blog entry, edited");
+    blogEntryFile2.delete();
+    staticPageFile.delete();
+
+    ContentManifest.Changes changes = new ContentManifest(blog).scan();
+    assertEquals(Collections.singleton("1293840000000"), changes.getChangedBlogEntries());
+    assertEquals(Collections.singleton("1293926400000"), changes.getRemovedBlogEntries());
+    assertTrue(changes.getChangedStaticPages().isEmpty());
+    assertEquals(Collections.singleton("1293840000001"), changes.getRemovedStaticPages());
+  }
+
+  public void testTouchedFilesWithTheSameContentAreUnchanged() {
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.write();
+
+    blogEntryFile1.setLastModified(1293840060000L);
+    assertFalse(new ContentManifest(blog).scan().hasBlogEntryChanges());
+  }
+
+  public void testInvalidatedManifestForcesAFullReindex() {
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.invalidate();
+
+    manifest = new ContentManifest(blog);
+    assertTrue(manifest.exists());
+    assertTrue(manifest.scan().isTimeZoneChanged());
+  }
+
+  public void testTimeZoneChange() {
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.write();
+
+    blog.setProperty(Blog.TIMEZONE_KEY, "America/New_York");
+    assertTrue(new ContentManifest(blog).scan().isTimeZoneChanged());
+  }
+
+  public void testReindexChangesRemovesDeletedBlogEntries() throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("A blog entry");
+    blogEntry.setTags("java");
+    blogEntry.setPublished(true);
+    new BlogService().putBlogEntry(blogEntry);
+    File blogEntryFile = writeFile(new File(blogEntryFile1.getParentFile(), blogEntry.getId() + ".xml"), "a blog entry");
+
+    ContentManifest manifest = new ContentManifest(blog);
+    manifest.scan();
+    manifest.write();
+    assertTrue(blog.getBlogEntryIndex().getBlogEntries().contains(blogEntry.getId()));
+
+    blogEntryFile.delete();
+    blog.reindexChanges();
+    assertFalse(blog.getBlogEntryIndex().getBlogEntries().contains(blogEntry.getId()));
+    assertTrue(blog.getTagIndex().getRecentBlogEntries(new Tag("java", blog)).isEmpty());
+    assertTrue(blog.getAuthorIndex().getAuthors().isEmpty());
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.util.Random;
+
+/**
+ * A simple benchmark showing that facet counting costs the same however
+ * many hits a search has, since it intersects cached bitsets rather than
+ * reading hits. This isn't a unit test; run it with
+ * <code>java net.sourceforge.pebble.index.FacetCountingBenchmark [documents]</code>.
+ *
+ * @author    Simon Brown
+ */
+public class FacetCountingBenchmark {
+
+  private static final int ITERATIONS = 200;
+
+  public static void main(String[] args) throws Exception {
+    int numberOfDocuments = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    Random random = new Random(42);
+
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new WhitespaceAnalyzer(), true);
+    for (int i = 0; i < numberOfDocuments; i++) {
+      Document document = new Document();
+      addFacet(document, SearchIndex.CATEGORY_FACET, "/category" + random.nextInt(50));
+      addFacet(document, SearchIndex.TAG_FACET, "tag" + random.nextInt(500));
+      addFacet(document, SearchIndex.TAG_FACET, "tag" + random.nextInt(500));
+      addFacet(document, SearchIndex.AUTHOR_FACET, "author" + random.nextInt(20));
+      int year = 1995 + random.nextInt(15);
+      addFacet(document, SearchIndex.YEAR_FACET, "" + year);
+      addFacet(document, SearchIndex.MONTH_FACET, year + "/" + (1 + random.nextInt(12)));
+      writer.addDocument(document);
+    }
+    writer.optimize();
+    writer.close();
+
+    IndexReader reader = IndexReader.open(directory);
+    long start = System.currentTimeMillis();
+    FacetCache facetCache = new FacetCache(reader, SearchIndex.FACETS);
+    System.out.println("Built facet cache for " + numberOfDocuments + " documents in " + (System.currentTimeMillis() - start) + " ms");
+
+    for (int hits = 10; hits <= numberOfDocuments; hits *= 10) {
+      long[] documents = facetCache.newBitSet();
+      for (int i = 0; i < hits; i++) {
+        int doc = random.nextInt(numberOfDocuments);
+        documents[doc >> 6] |= (1L << doc);
+      }
+
+      // warm up, then time
+      for (int i = 0; i < ITERATIONS; i++) {
+        facetCache.count(documents);
+      }
+      start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        facetCache.count(documents);
+      }
+      long average = (System.nanoTime() - start) / ITERATIONS;
+      System.out.println("Counted facets over ~" + hits + " hits in " + (average / 1000) + " us");
+    }
+
+    reader.close();
+  }
+
+  private static void addFacet(Document document, String facet, String value) {
+    document.add(new Field(FacetCache.FIELD_PREFIX + facet, value, false, true, false));
+  }
+
+}
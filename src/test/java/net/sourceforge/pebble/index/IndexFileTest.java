@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.*;
+
+/**
+ * Tests for the IndexFile class.
+ *
+ * @author    Simon Brown
+ */
+public class IndexFileTest extends SingleBlogTestCase {
+
+  private File file;
+  private Map<String,List<String>> records;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    file = new File(blog.getIndexesDirectory(), "test.index");
+    records = new LinkedHashMap<String,List<String>>();
+    records.put("java", Arrays.asList("1293926400000", "1293840000000"));
+    records.put("empty", new ArrayList<String>());
+    records.put("names", Arrays.asList("c/1293840000000/1293840000001", "spring framework", "007"));
+  }
+
+  private Map<String,List<String>> read(IndexFile indexFile) throws Exception {
+    final Map<String,List<String>> result = new LinkedHashMap<String,List<String>>();
+    indexFile.read(new IndexFile.RecordHandler() {
+      public void record(String key, List<String> values) {
+        result.put(key, values);
+      }
+    });
+
+    return result;
+  }
+
+  public void testTextRoundTrip() throws Exception {
+    IndexFile indexFile = new IndexFile(file, true);
+    indexFile.write(records, false);
+    assertFalse(indexFile.isBinary());
+    assertEquals(records, read(indexFile));
+  }
+
+  public void testBinaryRoundTrip() throws Exception {
+    IndexFile indexFile = new IndexFile(file, true);
+    indexFile.write(records, true);
+    assertTrue(indexFile.isBinary());
+    assertEquals(records, read(indexFile));
+  }
+
+  public void testValuesRoundTrip() throws Exception {
+    List<String> values = Arrays.asList("1293926400000", "1293840000000");
+    IndexFile indexFile = new IndexFile(file, false);
+    indexFile.writeValues(values, true);
+    assertEquals(values, indexFile.readValues());
+    indexFile.writeValues(values, false);
+    assertEquals(values, indexFile.readValues());
+  }
+
+  public void testReadTextWithTrailingCommas() throws Exception {
+    FileWriter writer = new FileWriter(file);
+    writer.write("java=1293926400000,1293840000000,\nempty=\n");
+    writer.close();
+
+    Map<String,List<String>> result = read(new IndexFile(file, true));
+    assertEquals(Arrays.asList("1293926400000", "1293840000000"), result.get("java"));
+    assertEquals(0, result.get("empty").size());
+  }
+
+  public void testConvert() throws Exception {
+    IndexFile indexFile = new IndexFile(file, true);
+    indexFile.write(records, false);
+
+    assertTrue(indexFile.convert(true));
+    assertTrue(indexFile.isBinary());
+    assertFalse(indexFile.convert(true));
+    assertEquals(records, read(indexFile));
+
+    assertTrue(indexFile.convert(false));
+    assertFalse(indexFile.isBinary());
+    assertEquals(records, read(indexFile));
+  }
+
+  public void testIndexesAreReloadedFromBinaryFiles() throws Exception {
+    blog.setProperty(Blog.BINARY_INDEXES_ENABLED_KEY, "true");
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("A title");
+    blogEntry.setTags("java");
+    blogEntry.setPublished(true);
+    new BlogService().putBlogEntry(blogEntry);
+
+    assertTrue(new IndexFile(new File(blog.getIndexesDirectory(), "tags.index"), true).isBinary());
+    assertTrue(new IndexFile(new File(blog.getIndexesDirectory(), "blogentries-published.index"), false).isBinary());
+    assertEquals(Collections.singletonList(blogEntry.getId()), new TagIndex(blog).getRecentBlogEntries(new Tag("java", blog)));
+    assertEquals(Collections.singletonList(blogEntry.getId()), new BlogEntryIndex(blog).getBlogEntries());
+  }
+
+}
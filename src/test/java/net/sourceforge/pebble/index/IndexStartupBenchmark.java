@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.Configuration;
+import net.sourceforge.pebble.PebbleContext;
+import net.sourceforge.pebble.dao.DAOFactory;
+import net.sourceforge.pebble.dao.mock.MockDAOFactory;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.util.FileUtils;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A simple benchmark comparing how long a blog takes to load its indexes
+ * from text and binary index files, and how much heap it then uses, for a
+ * synthetic blog with 15 years of blog entries. This isn't a unit test; run it with
+ * <code>java net.sourceforge.pebble.index.IndexStartupBenchmark [blog entries]</code>.
+ *
+ * @author    Simon Brown
+ */
+public class IndexStartupBenchmark {
+
+  private static final int ITERATIONS = 5;
+  private static final long FIFTEEN_YEARS = 15L * 365 * 24 * 60 * 60 * 1000;
+
+  public static void main(String[] args) throws Exception {
+    int numberOfBlogEntries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+    File directory = new File(System.getProperty("java.io.tmpdir"), "pebble-index-benchmark");
+    FileUtils.deleteFile(directory);
+    File indexesDirectory = new File(directory, "indexes");
+    new File(indexesDirectory, "pages").mkdirs();
+
+    Configuration config = new Configuration();
+    config.setDataDirectory(directory.getAbsolutePath());
+    config.setUrl("http://www.yourdomain.com/blog/");
+    PebbleContext.getInstance().setConfiguration(config);
+    PebbleContext.getInstance().setApplicationContext(new StaticApplicationContext());
+    DAOFactory.setConfiguredFactory(new MockDAOFactory());
+
+    writeTextIndexes(indexesDirectory, numberOfBlogEntries);
+    System.out.println("Wrote text indexes for " + numberOfBlogEntries + " blog entries");
+    time("text", directory);
+
+    IndexFileConverter.convert(indexesDirectory, true);
+    time("binary", directory);
+
+    FileUtils.deleteFile(directory);
+  }
+
+  private static void time(String format, File directory) {
+    // warm up, then time
+    new Blog(directory.getAbsolutePath());
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      new Blog(directory.getAbsolutePath());
+    }
+    long average = (System.nanoTime() - start) / ITERATIONS;
+    System.out.println("Loaded blog with " + format + " indexes in " + (average / 1000000) + " ms");
+
+    // and how much heap the loaded blog, including its archive, uses
+    long before = usedMemory();
+    Blog blog = new Blog(directory.getAbsolutePath());
+    blog.getArchives();
+    long after = usedMemory();
+    System.out.println("Loaded blog uses " + ((after - before) / 1024) + " KB of heap");
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void writeTextIndexes(File indexesDirectory, int numberOfBlogEntries) throws Exception {
+    Random random = new Random(42);
+    long end = System.currentTimeMillis();
+    long start = end - FIFTEEN_YEARS;
+
+    List<String> published = new ArrayList<String>();
+    List<String> unpublished = new ArrayList<String>();
+    List<String> approvedResponses = new ArrayList<String>();
+    Map<String,List<String>> tags = new LinkedHashMap<String,List<String>>();
+    Map<String,List<String>> authors = new LinkedHashMap<String,List<String>>();
+    Map<String,List<String>> categories = new LinkedHashMap<String,List<String>>();
+    categories.put("/", new ArrayList<String>());
+
+    for (int i = numberOfBlogEntries - 1; i >= 0; i--) {
+      String id = "" + (start + (FIFTEEN_YEARS / numberOfBlogEntries) * i);
+      if (random.nextInt(20) == 0) {
+        unpublished.add(id);
+        continue;
+      }
+
+      published.add(id);
+      categories.get("/").add(id);
+      add(authors, "author" + random.nextInt(20), id);
+      for (int j = 0; j < 3; j++) {
+        add(tags, "tag" + random.nextInt(500), id);
+      }
+      for (int j = random.nextInt(4); j > 0; j--) {
+        approvedResponses.add("c/" + id + "/" + (Long.parseLong(id) + j));
+      }
+    }
+
+    new IndexFile(new File(indexesDirectory, "blogentries-published.index"), false).writeValues(published, false);
+    new IndexFile(new File(indexesDirectory, "blogentries-unpublished.index"), false).writeValues(unpublished, false);
+    new IndexFile(new File(indexesDirectory, "responses-approved.index"), false).writeValues(approvedResponses, false);
+    new IndexFile(new File(indexesDirectory, "tags.index"), true).write(tags, false);
+    new IndexFile(new File(indexesDirectory, "authors.index"), true).write(authors, false);
+    new IndexFile(new File(indexesDirectory, "categories.index"), true).write(categories, false);
+  }
+
+  private static void add(Map<String,List<String>> index, String key, String id) {
+    List<String> ids = index.get(key);
+    if (ids == null) {
+      ids = new ArrayList<String>();
+      index.put(key, ids);
+    }
+    ids.add(id);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.Configuration;
+import net.sourceforge.pebble.PebbleContext;
+import net.sourceforge.pebble.dao.DAOFactory;
+import net.sourceforge.pebble.dao.mock.MockDAOFactory;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.BlogEntry;
+import net.sourceforge.pebble.search.SearchHit;
+import net.sourceforge.pebble.search.SearchResults;
+import net.sourceforge.pebble.util.FileUtils;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A simple benchmark comparing a search across many blogs made by searching
+ * each blog in turn and merging all of the hits, with the same search made
+ * by MultiBlogSearch. This isn't a unit test; run it with
+ * <code>java net.sourceforge.pebble.index.MultiBlogSearchBenchmark [blogs] [blog entries per blog]</code>.
+ *
+ * @author    Simon Brown
+ */
+public class MultiBlogSearchBenchmark {
+
+  private static final int ITERATIONS = 20;
+  private static final int PAGE_SIZE = 20;
+  private static final String[] WORDS = { "java", "jsp", "pebble", "blog", "lucene", "search", "index", "servlet", "tomcat", "spring" };
+
+  public static void main(String[] args) throws Exception {
+    int numberOfBlogs = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int numberOfBlogEntries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+    File directory = new File(System.getProperty("java.io.tmpdir"), "pebble-search-benchmark");
+    FileUtils.deleteFile(directory);
+
+    Configuration config = new Configuration();
+    config.setDataDirectory(directory.getAbsolutePath());
+    config.setUrl("http://www.yourdomain.com/blog/");
+    PebbleContext.getInstance().setConfiguration(config);
+    PebbleContext.getInstance().setApplicationContext(new StaticApplicationContext());
+    DAOFactory.setConfiguredFactory(new MockDAOFactory());
+
+    List<Blog> blogs = createBlogs(directory, numberOfBlogs, numberOfBlogEntries);
+    System.out.println("Indexed " + numberOfBlogEntries + " blog entries in each of " + numberOfBlogs + " blogs");
+
+    MultiBlogSearch search = new MultiBlogSearch();
+    for (int page = 0; page < 3; page += 2) {
+      int offset = page * PAGE_SIZE;
+
+      // warm up, then time
+      searchEachBlog(blogs, "java OR lucene", offset);
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        searchEachBlog(blogs, "java OR lucene", offset);
+      }
+      long average = (System.nanoTime() - start) / ITERATIONS;
+      System.out.println("Page " + (page + 1) + " searching each blog in turn : " + (average / 1000000) + " ms");
+
+      search.search(blogs, "java OR lucene", false, offset, PAGE_SIZE);
+      start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        search.search(blogs, "java OR lucene", false, offset, PAGE_SIZE);
+      }
+      average = (System.nanoTime() - start) / ITERATIONS;
+      System.out.println("Page " + (page + 1) + " with MultiBlogSearch (" + MultiBlogSearch.DEFAULT_THREADS + " threads) : " + (average / 1000000) + " ms");
+    }
+
+    search.shutdown();
+    FileUtils.deleteFile(directory);
+  }
+
+  private static List<SearchHit> searchEachBlog(List<Blog> blogs, String query, int offset) throws Exception {
+    List<SearchHit> hits = new ArrayList<SearchHit>();
+    for (Blog blog : blogs) {
+      SearchResults results = blog.getSearchIndex().search(query, false, 0, offset + PAGE_SIZE);
+      hits.addAll(results.getHits());
+    }
+
+    SearchResults merged = new SearchResults();
+    for (SearchHit hit : hits) {
+      merged.add(hit);
+    }
+    merged.sortByScoreDescending();
+    return merged.getHits().subList(Math.min(offset, hits.size()), Math.min(offset + PAGE_SIZE, hits.size()));
+  }
+
+  private static List<Blog> createBlogs(File directory, int numberOfBlogs, int numberOfBlogEntries) {
+    Random random = new Random(42);
+    List<Blog> blogs = new ArrayList<Blog>();
+    for (int i = 0; i < numberOfBlogs; i++) {
+      File blogDirectory = new File(directory, "blog" + i);
+      blogDirectory.mkdirs();
+      Blog blog = new Blog(blogDirectory.getAbsolutePath());
+      blog.setId("blog" + i);
+      blog.getSearchIndex().clear();
+
+      List<BlogEntry> blogEntries = new ArrayList<BlogEntry>();
+      for (int j = 0; j < numberOfBlogEntries; j++) {
+        BlogEntry blogEntry = new BlogEntry(blog);
+        blogEntry.setDate(new Date(1000000000000L + (j * 60000L)));
+        blogEntry.setTitle(words(random, 5));
+        blogEntry.setBody(words(random, 100));
+        blogEntry.setPublished(true);
+        blogEntries.add(blogEntry);
+      }
+      blog.getSearchIndex().indexBlogEntries(blogEntries);
+      blogs.add(blog);
+    }
+
+    return blogs;
+  }
+
+  private static String words(Random random, int count) {
+    StringBuffer buf = new StringBuffer();
+    for (int i = 0; i < count; i++) {
+      buf.append(WORDS[random.nextInt(WORDS.length)]);
+      buf.append(" ");
+    }
+    return buf.toString();
+  }
+
+}
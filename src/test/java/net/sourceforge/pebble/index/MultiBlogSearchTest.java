@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+import net.sourceforge.pebble.search.SearchHit;
+import net.sourceforge.pebble.search.SearchResults;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests for the MultiBlogSearch class.
+ *
+ * @author    Simon Brown
+ */
+public class MultiBlogSearchTest extends MultiBlogTestCase {
+
+  private MultiBlogSearch search;
+  private List<Blog> blogs;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    search = new MultiBlogSearch(2, 10000);
+    blogs = new ArrayList<Blog>();
+    blogs.add(blog1);
+    blogs.add(blog2);
+    blog1.getSearchIndex().clear();
+    blog2.getSearchIndex().clear();
+
+    // interleave the entries of both blogs by date
+    for (int i = 0; i < 6; i++) {
+      Blog blog = (i % 2 == 0) ? blog1 : blog2;
+      BlogEntry blogEntry = new BlogEntry(blog);
+      blogEntry.setDate(new Date(1000000000000L + (i * 1000)));
+      blogEntry.setTitle("Some JSP topic " + i);
+      blogEntry.setPublished(true);
+      blog.getSearchIndex().index(blogEntry);
+    }
+  }
+
+  protected void tearDown() throws Exception {
+    search.shutdown();
+
+    super.tearDown();
+  }
+
+  /**
+   * Tests that hits from all blogs are merged and paged by date.
+   */
+  public void testPagedSearchByDate() throws Exception {
+    SearchResults results = search.search(blogs, "jsp", true, 2, 2);
+    assertEquals(6, results.getNumberOfHits());
+    assertEquals(2, results.getOffset());
+    assertEquals(2, results.getHits().size());
+
+    SearchHit hit = (SearchHit)results.getHits().get(0);
+    assertEquals("1000000003000", hit.getId());
+    assertSame(blog2, hit.getBlog());
+    assertEquals(3, hit.getNumber());
+    hit = (SearchHit)results.getHits().get(1);
+    assertEquals("1000000002000", hit.getId());
+    assertSame(blog1, hit.getBlog());
+    assertEquals(4, hit.getNumber());
+
+    // an offset past the end gives the last page
+    results = search.search(blogs, "jsp", true, 10, 4);
+    assertEquals(4, results.getOffset());
+    assertEquals(2, results.getHits().size());
+    assertEquals("1000000000000", ((SearchHit)results.getHits().get(1)).getId());
+  }
+
+  /**
+   * Tests that hits from all blogs are ordered by score.
+   */
+  public void testSearchByScore() throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog2);
+    blogEntry.setDate(new Date(1000000010000L));
+    blogEntry.setTitle("Pebble");
+    blogEntry.setBody("Pebble is a lightweight blogging tool, written in Java and Pebble is simple");
+    blogEntry.setPublished(true);
+    blog2.getSearchIndex().index(blogEntry);
+
+    SearchResults results = search.search(blogs, "pebble OR jsp", false, 0, 10);
+    assertEquals(7, results.getNumberOfHits());
+    assertEquals(7, results.getHits().size());
+
+    float previousScore = Float.MAX_VALUE;
+    for (Object o : results.getHits()) {
+      SearchHit hit = (SearchHit)o;
+      assertTrue(hit.getScore() <= previousScore);
+      previousScore = hit.getScore();
+    }
+  }
+
+  /**
+   * Tests that only the blogs given are searched.
+   */
+  public void testSearchSingleBlog() throws Exception {
+    blogs.remove(blog2);
+    SearchResults results = search.search(blogs, "jsp", false, 0, 10);
+    assertEquals(3, results.getNumberOfHits());
+    for (Object o : results.getHits()) {
+      assertSame(blog1, ((SearchHit)o).getBlog());
+    }
+  }
+
+  /**
+   * Tests that an empty query or a query that can't be parsed gives no hits.
+   */
+  public void testEmptyAndInvalidQueries() throws Exception {
+    assertEquals(0, search.search(blogs, "", false, 0, 10).getNumberOfHits());
+
+    SearchResults results = search.search(blogs, "\"jsp", false, 0, 10);
+    assertEquals(0, results.getNumberOfHits());
+    assertNotNull(results.getMessage());
+  }
+
+}
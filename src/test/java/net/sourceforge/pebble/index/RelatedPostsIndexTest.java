@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+
+import java.util.Arrays;
+
+/**
+ * Tests for the RelatedPostsIndex class.
+ *
+ * @author    Simon Brown
+ */
+public class RelatedPostsIndexTest extends SingleBlogTestCase {
+
+  private RelatedPostsIndex index;
+  private BlogService service;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    index = blog.getRelatedPostsIndex();
+    service = new BlogService();
+  }
+
+  private BlogEntry createBlogEntry(String tags) throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle(tags);
+    blogEntry.setTags(tags);
+    blogEntry.setPublished(true);
+    service.putBlogEntry(blogEntry);
+
+    return blogEntry;
+  }
+
+  /**
+   * Tests that blog entries sharing rarer tags are more related.
+   */
+  public void testRelatedBlogEntriesRankedByTags() throws Exception {
+    BlogEntry java = createBlogEntry("java");
+    BlogEntry javaAndLucene = createBlogEntry("java lucene");
+    BlogEntry lucene = createBlogEntry("lucene");
+    BlogEntry javaAgain = createBlogEntry("java");
+    BlogEntry unrelated = createBlogEntry("photography");
+
+    assertEquals(Arrays.asList(lucene.getId(), javaAgain.getId(), java.getId()),
+        index.getRelatedBlogEntries(javaAndLucene, 10));
+    assertEquals(Arrays.asList(javaAgain.getId(), javaAndLucene.getId()),
+        index.getRelatedBlogEntries(java, 10));
+    assertEquals(Arrays.asList(javaAgain.getId()),
+        index.getRelatedBlogEntries(java, 1));
+    assertTrue(index.getRelatedBlogEntries(unrelated, 10).isEmpty());
+  }
+
+  /**
+   * Tests that related blog entries are updated when tags change and blog
+   * entries are unpublished.
+   */
+  public void testRelatedBlogEntriesUpdated() throws Exception {
+    BlogEntry java = createBlogEntry("java");
+    BlogEntry lucene = createBlogEntry("lucene");
+    assertTrue(index.getRelatedBlogEntries(java, 10).isEmpty());
+
+    lucene.setTags("lucene java");
+    service.putBlogEntry(lucene);
+    assertEquals(Arrays.asList(lucene.getId()), index.getRelatedBlogEntries(java, 10));
+
+    lucene.setPublished(false);
+    service.putBlogEntry(lucene);
+    assertTrue(index.getRelatedBlogEntries(java, 10).isEmpty());
+  }
+
+}
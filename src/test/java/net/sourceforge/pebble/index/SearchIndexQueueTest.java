@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+
+/**
+ * Tests for the SearchIndexQueue class.
+ *
+ * @author    Simon Brown
+ */
+public class SearchIndexQueueTest extends SingleBlogTestCase {
+
+  private SearchIndexQueue queue;
+  private BlogService service;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    blog.getSearchIndex().clear();
+    queue = blog.getSearchIndexQueue();
+    service = new BlogService();
+  }
+
+  /**
+   * Tests that saving a blog entry queues it, and that it becomes
+   * searchable once the queue has been drained.
+   */
+  public void testBlogEntryIndexedWhenQueueDrained() throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("Some JSP topic");
+    blogEntry.setPublished(true);
+    service.putBlogEntry(blogEntry);
+
+    queue.flush();
+    assertEquals(0, queue.getNumberOfPendingUpdates());
+    assertEquals(0, queue.getLag());
+    assertEquals(1, blog.getSearchIndex().search("jsp").getNumberOfHits());
+
+    service.removeBlogEntry(blogEntry);
+    queue.flush();
+    assertEquals(0, blog.getSearchIndex().search("jsp").getNumberOfHits());
+  }
+
+  /**
+   * Tests that repeated updates of the same blog entry are coalesced.
+   */
+  public void testRepeatedUpdatesAreCoalesced() {
+    SearchIndexQueue slowQueue = new SearchIndexQueue(blog, 60 * 60 * 1000);
+    slowQueue.start();
+
+    slowQueue.enqueue("1234567890123");
+    slowQueue.enqueue("1234567890124");
+    slowQueue.enqueue("1234567890123");
+
+    assertEquals(2, slowQueue.getNumberOfPendingUpdates());
+    assertEquals("1234567890123", slowQueue.getPendingBlogEntryIds().get(0));
+    assertEquals("1234567890124", slowQueue.getPendingBlogEntryIds().get(1));
+    assertTrue(slowQueue.getLag() >= 0);
+
+    slowQueue.clear();
+    slowQueue.stop();
+  }
+
+  /**
+   * Tests that pending updates are picked up again when the queue is
+   * recreated, e.g. after a crash.
+   */
+  public void testPendingUpdatesAreDurable() {
+    SearchIndexQueue crashedQueue = new SearchIndexQueue(blog, 60 * 60 * 1000);
+    crashedQueue.start();
+    crashedQueue.enqueue("1234567890123");
+    crashedQueue.enqueue("1234567890124");
+
+    SearchIndexQueue recoveredQueue = new SearchIndexQueue(blog, 60 * 60 * 1000);
+    recoveredQueue.start();
+    assertEquals(2, recoveredQueue.getNumberOfPendingUpdates());
+    assertTrue(recoveredQueue.getPendingBlogEntryIds().contains("1234567890123"));
+    assertTrue(recoveredQueue.getPendingBlogEntryIds().contains("1234567890124"));
+
+    // and draining the recovered queue empties the file
+    recoveredQueue.flush();
+    assertEquals(0, new SearchIndexQueue(blog).getNumberOfPendingUpdates());
+
+    crashedQueue.clear();
+    crashedQueue.stop();
+    recoveredQueue.stop();
+  }
+
+}
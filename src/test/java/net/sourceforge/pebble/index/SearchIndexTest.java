@@ -32,8 +32,12 @@
 package net.sourceforge.pebble.index;
 
 import net.sourceforge.pebble.domain.*;
+import net.sourceforge.pebble.search.SearchHit;
 import net.sourceforge.pebble.search.SearchResults;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Tests for the SearchResults class.
  *
@@ -184,4 +188,128 @@ public class SearchIndexTest extends SingleBlogTestCase {
      }
    }
 
+   /**
+    * Tests that only the requested page of hits is returned, along with
+    * the total number of hits.
+    */
+   public void testPagedSearch() {
+     try {
+       for (int i = 0; i < 5; i++) {
+         BlogEntry blogEntry = new BlogEntry(blog);
+         blogEntry.setDate(new java.util.Date(1000000000000L + (i * 1000)));
+         blogEntry.setTitle("Some JSP topic " + i);
+         blogEntry.setPublished(true);
+         index.index(blogEntry);
+       }
+
+       SearchResults results = index.search("jsp", true, 2, 2);
+       assertEquals(5, results.getNumberOfHits());
+       assertEquals(2, results.getOffset());
+       assertEquals(2, results.getHits().size());
+       SearchHit hit = (SearchHit)results.getHits().get(0);
+       assertEquals("1000000002000", hit.getId());
+       assertEquals(3, hit.getNumber());
+       hit = (SearchHit)results.getHits().get(1);
+       assertEquals("1000000001000", hit.getId());
+
+       // an offset past the end gives the last page
+       results = index.search("jsp", true, 10, 2);
+       assertEquals(4, results.getOffset());
+       assertEquals(1, results.getHits().size());
+       assertEquals("1000000000000", ((SearchHit)results.getHits().get(0)).getId());
+     } catch (Exception e) {
+       e.printStackTrace();
+       fail();
+     }
+   }
+
+   /**
+    * Tests that searches finding nothing suggest a correction, including for
+    * words indexed after the dictionary was read.
+    */
+   public void testSpellingSuggestion() {
+     BlogEntry blogEntry = new BlogEntry(blog);
+     blogEntry.setTitle("Searching with Lucene");
+     blogEntry.setBody("Pebble uses Lucene for searching");
+     blogEntry.setPublished(true);
+     index.index(blogEntry);
+
+     try {
+       SearchResults results = index.search("lucine");
+       assertEquals(0, results.getNumberOfHits());
+       assertEquals("lucene", results.getSpellingSuggestion());
+
+       assertNull(index.search("lucene").getSpellingSuggestion());
+       assertNull(index.getSpellingSuggestion("pebble AND lucene"));
+       assertNull(index.getSpellingSuggestion("lucin*"));
+     } catch (Exception e) {
+       e.printStackTrace();
+       fail();
+     }
+
+     blogEntry = new BlogEntry(blog);
+     blogEntry.setDate(new java.util.Date(1000000000000L));
+     blogEntry.setTitle("Servlet filters");
+     blogEntry.setPublished(true);
+     index.index(blogEntry);
+
+     assertEquals("servlet AND title:filters", index.getSpellingSuggestion("servelt AND title:filtres"));
+   }
+
+   /**
+    * Tests that facet counts are returned over all hits, and that hits can
+    * be restricted to a facet value.
+    */
+   public void testFacetedSearch() {
+     try {
+       blog.addCategory(new Category("/java", "Java"));
+       for (int i = 0; i < 3; i++) {
+         BlogEntry blogEntry = new BlogEntry(blog);
+         blogEntry.setDate(new java.util.Date(1000000000000L + (i * 1000)));
+         blogEntry.setTitle("Some JSP topic " + i);
+         blogEntry.setAuthor(i == 0 ? "simon" : "sam");
+         blogEntry.setTags(i == 2 ? "servlets" : "jsp");
+         blogEntry.addCategory(blog.getCategory("/java"));
+         blogEntry.setPublished(true);
+         index.index(blogEntry);
+       }
+
+       Map<String,String> filters = new HashMap<String,String>();
+       SearchResults results = index.search("jsp", filters, false, 0, 1);
+       assertEquals(3, results.getNumberOfHits());
+       assertEquals(1, results.getHits().size());
+       assertEquals(Integer.valueOf(3), results.getFacets().get(SearchIndex.CATEGORY_FACET).get("/java"));
+       assertEquals(Integer.valueOf(2), results.getFacets().get(SearchIndex.AUTHOR_FACET).get("sam"));
+       assertEquals(Integer.valueOf(1), results.getFacets().get(SearchIndex.AUTHOR_FACET).get("simon"));
+       assertEquals(Integer.valueOf(2), results.getFacets().get(SearchIndex.TAG_FACET).get("jsp"));
+       assertEquals(Integer.valueOf(3), results.getFacets().get(SearchIndex.YEAR_FACET).get("2001"));
+
+       // most common values come first
+       assertEquals("sam", results.getFacets().get(SearchIndex.AUTHOR_FACET).keySet().iterator().next());
+
+       filters.put(SearchIndex.AUTHOR_FACET, "sam");
+       results = index.search("jsp", filters, true, 0, 10);
+       assertEquals(2, results.getNumberOfHits());
+       assertEquals("1000000002000", ((SearchHit)results.getHits().get(0)).getId());
+       assertEquals(Integer.valueOf(1), results.getFacets().get(SearchIndex.TAG_FACET).get("servlets"));
+       assertNull(results.getFacets().get(SearchIndex.AUTHOR_FACET).get("simon"));
+
+       // facets alone can be used without a query
+       filters.put(SearchIndex.TAG_FACET, "jsp");
+       results = index.search("", filters, true, 0, 10);
+       assertEquals(1, results.getNumberOfHits());
+       assertEquals("1000000001000", ((SearchHit)results.getHits().get(0)).getId());
+
+       // and an unknown value matches nothing
+       filters.put(SearchIndex.TAG_FACET, "swing");
+       results = index.search("jsp", filters, true, 0, 10);
+       assertEquals(0, results.getNumberOfHits());
+
+       assertEquals(Integer.valueOf(3), index.getFacetCounts().get(SearchIndex.CATEGORY_FACET).get("/java"));
+     } catch (Exception e) {
+       e.printStackTrace();
+       fail();
+     }
+   }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import junit.framework.TestCase;
+import org.apache.lucene.analysis.SimpleAnalyzer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the SpellingDictionary class.
+ *
+ * @author    Simon Brown
+ */
+public class SpellingDictionaryTest extends TestCase {
+
+  private SpellingDictionary dictionary;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    dictionary = new SpellingDictionary();
+    dictionary.add("pebble", 10);
+    dictionary.add("pebbles", 2);
+    dictionary.add("people", 5);
+    dictionary.add("java", 20);
+    dictionary.add("lava", 1);
+    dictionary.add("javascript", 3);
+  }
+
+  public void testContains() {
+    assertTrue(dictionary.contains("pebble"));
+    assertFalse(dictionary.contains("pebbel"));
+    assertEquals(6, dictionary.size());
+  }
+
+  public void testShortAndNonAlphabeticWordsAreIgnored() {
+    dictionary.add("ab", 1);
+    dictionary.add("2010", 1);
+    dictionary.add("abc123", 1);
+    assertEquals(6, dictionary.size());
+  }
+
+  public void testSuggestClosestThenMostFrequent() {
+    assertEquals(Arrays.asList("pebble", "pebbles"), dictionary.suggest("pebbel", 5));
+    assertEquals(Arrays.asList("pebble"), dictionary.suggest("pebbel", 1));
+    assertEquals(Arrays.asList("java", "lava"), dictionary.suggest("jaava", 5));
+  }
+
+  public void testSuggestTransposition() {
+    assertEquals(Arrays.asList("java"), dictionary.suggest("jvaa", 5));
+  }
+
+  public void testNoSuggestionForDistantWords() {
+    assertEquals(Collections.<String>emptyList(), dictionary.suggest("python", 5));
+    // short words may only differ by a single edit
+    assertEquals(Collections.<String>emptyList(), dictionary.suggest("jxxa", 5));
+  }
+
+  public void testAddText() throws Exception {
+    dictionary.add(new SimpleAnalyzer(), "blogEntry", "Pebble and Lucene, Lucene and Pebble");
+    assertTrue(dictionary.contains("lucene"));
+    assertEquals(Arrays.asList("lucene"), dictionary.suggest("lucine", 5));
+  }
+
+  public void testDistance() {
+    assertEquals(0, SpellingDictionary.distance("java", "java", 2));
+    assertEquals(1, SpellingDictionary.distance("java", "jaav", 2));
+    assertEquals(1, SpellingDictionary.distance("java", "jav", 2));
+    assertEquals(1, SpellingDictionary.distance("pebble", "pebbel", 2));
+    assertEquals(2, SpellingDictionary.distance("pebble", "pebel", 2));
+    assertEquals(3, SpellingDictionary.distance("java", "python", 2));
+  }
+
+}
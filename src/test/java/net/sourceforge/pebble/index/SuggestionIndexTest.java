@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.index;
+
+import net.sourceforge.pebble.domain.*;
+import net.sourceforge.pebble.search.Suggestion;
+
+import java.util.List;
+
+/**
+ * Tests for the SuggestionIndex class.
+ *
+ * @author    Simon Brown
+ */
+public class SuggestionIndexTest extends SingleBlogTestCase {
+
+  private SuggestionIndex index;
+  private BlogService service;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    index = blog.getSuggestionIndex();
+    service = new BlogService();
+  }
+
+  /**
+   * Tests that published titles, tags and categories are suggested.
+   */
+  public void testSuggestions() throws Exception {
+    Category javaCategory = new Category("/java", "Java");
+    blog.addCategory(javaCategory);
+
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("Unit testing with JUnit");
+    blogEntry.setTags("junit");
+    blogEntry.addCategory(javaCategory);
+    blogEntry.setPublished(true);
+    service.putBlogEntry(blogEntry);
+
+    List<Suggestion> suggestions = index.suggest("jun", 10);
+    assertEquals(2, suggestions.size());
+    assertEquals(Suggestion.TAG, suggestions.get(0).getType());
+    assertEquals("junit", suggestions.get(0).getText());
+    assertEquals(Suggestion.TITLE, suggestions.get(1).getType());
+    assertEquals("Unit testing with JUnit", suggestions.get(1).getText());
+    assertEquals(blogEntry.getPermalink(), suggestions.get(1).getUrl());
+
+    suggestions = index.suggest("  Ja", 10);
+    assertEquals(1, suggestions.size());
+    assertEquals(Suggestion.CATEGORY, suggestions.get(0).getType());
+    assertEquals("Java", suggestions.get(0).getText());
+
+    assertEquals(1, index.suggest("unit", 10).size());
+    assertEquals(1, index.suggest("jun", 1).size());
+    assertTrue(index.suggest("testing junit", 10).isEmpty());
+    assertTrue(index.suggest("", 10).isEmpty());
+    assertTrue(index.getMemoryFootprint() > 0);
+  }
+
+  /**
+   * Tests that unpublished and removed blog entries aren't suggested.
+   */
+  public void testUnpublishedBlogEntriesNotSuggested() throws Exception {
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("Draft");
+    blogEntry.setPublished(false);
+    service.putBlogEntry(blogEntry);
+    assertTrue(index.suggest("dra", 10).isEmpty());
+
+    blogEntry.setPublished(true);
+    service.putBlogEntry(blogEntry);
+    assertEquals(1, index.suggest("dra", 10).size());
+
+    blogEntry.setTitle("Final");
+    service.putBlogEntry(blogEntry);
+    assertTrue(index.suggest("dra", 10).isEmpty());
+    assertEquals(1, index.suggest("fin", 10).size());
+
+    service.removeBlogEntry(blogEntry);
+    assertTrue(index.suggest("fin", 10).isEmpty());
+  }
+
+  /**
+   * Tests that updating the index as blog entries change leaves it the
+   * same as loading it again from scratch.
+   */
+  public void testIncrementalUpdatesMatchReload() throws Exception {
+    blog.getSearchIndex().clear();
+    Category javaCategory = new Category("/java", "Java");
+    blog.addCategory(javaCategory);
+    index.suggest("a", 10);
+
+    BlogEntry blogEntry1 = new BlogEntry(blog);
+    blogEntry1.setTitle("Unit testing with JUnit");
+    blogEntry1.setTags("junit, testing");
+    blogEntry1.addCategory(javaCategory);
+    blogEntry1.setPublished(true);
+    service.putBlogEntry(blogEntry1);
+
+    BlogEntry blogEntry2 = new BlogEntry(blog);
+    blogEntry2.setDate(new java.util.Date(blogEntry1.getDate().getTime() + 1000));
+    blogEntry2.setTitle("Building with Maven");
+    blogEntry2.setTags("maven");
+    blogEntry2.setPublished(true);
+    service.putBlogEntry(blogEntry2);
+
+    blogEntry1.setTitle("Testing with TestNG");
+    blogEntry1.setTags("testng");
+    service.putBlogEntry(blogEntry1);
+    service.removeBlogEntry(blogEntry2);
+
+    assertTrue(index.suggest("jun", 10).isEmpty());
+    assertTrue(index.suggest("mav", 10).isEmpty());
+    assertEquals(2, index.suggest("testng", 10).size());
+    int keys = index.getNumberOfKeys();
+    long footprint = index.getMemoryFootprint();
+
+    blog.getSearchIndexQueue().flush();
+    index.clear();
+    index.suggest("a", 10);
+    assertEquals(keys, index.getNumberOfKeys());
+    assertEquals(footprint, index.getMemoryFootprint());
+  }
+
+  /**
+   * Tests that the titles are loaded from the search index when the
+   * suggestion index is first used.
+   */
+  public void testTitlesLoadedFromSearchIndex() throws Exception {
+    blog.getSearchIndex().clear();
+    BlogEntry blogEntry = new BlogEntry(blog);
+    blogEntry.setTitle("Loaded on demand");
+    blogEntry.setPublished(true);
+    service.putBlogEntry(blogEntry);
+    blog.getSearchIndexQueue().flush();
+
+    index.clear();
+    List<Suggestion> suggestions = index.suggest("dem", 10);
+    assertEquals(1, suggestions.size());
+    assertEquals("Loaded on demand", suggestions.get(0).getText());
+  }
+
+}
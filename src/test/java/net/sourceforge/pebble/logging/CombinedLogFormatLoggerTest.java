@@ -31,9 +31,17 @@
  */
 package net.sourceforge.pebble.logging;
 
+import net.sourceforge.pebble.Constants;
 import net.sourceforge.pebble.domain.SingleBlogTestCase;
+import net.sourceforge.pebble.mock.MockHttpServletRequest;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.Iterator;
 
 /**
@@ -48,6 +56,8 @@ public class CombinedLogFormatLoggerTest extends SingleBlogTestCase {
   protected void setUp() throws Exception {
     super.setUp();
 
+    // the blog's own logger tidies up the log files that these tests write
+    blog.getLogger().stop();
     this.logger = new CombinedLogFormatLogger(blog);
   }
 
@@ -67,4 +77,267 @@ public class CombinedLogFormatLoggerTest extends SingleBlogTestCase {
     }
   }
 
+  public void testRequestsAreWrittenByTheWriterThread() {
+    logger.start();
+    for (int i = 0; i < 100; i++) {
+      logger.log(createRequest("/page" + i + ".html"), 200);
+    }
+    logger.flush();
+
+    Log log = logger.getLog();
+    assertEquals(100, log.getLogEntries().size());
+
+    // the log file is kept open between batches
+    logger.log(createRequest("/another.html"), 404);
+    logger.flush();
+    assertEquals(101, logger.getLog().getLogEntries().size());
+    logger.stop();
+  }
+
+  public void testRequestsAreCountedInTheTrafficMonitor() {
+    logger.log(createRequest("/page.html"), 200);
+    logger.log(createRequest("/page.html"), 200);
+    logger.log(createRequest("/other.html"), 404);
+
+    TrafficMonitor monitor = logger.getTrafficMonitor();
+    long now = System.currentTimeMillis();
+    assertEquals(3, monitor.getTotalRequests(now));
+    assertEquals(1, monitor.getStatusCodes(now).get(404).longValue());
+    assertEquals("/page.html", monitor.getTopUrls(now, 1).get(0).getKey());
+    logger.stop();
+  }
+
+  public void testQueuedRequestsAreWrittenOnStop() {
+    logger.log(createRequest("/page.html"), 200);
+    logger.log(createRequest("/other.html"), 200);
+    assertEquals(0, logger.getLog().getLogEntries().size());
+
+    logger.stop();
+    assertEquals(2, logger.getLog().getLogEntries().size());
+  }
+
+  public void testRequestsAreDroppedWhenFull() {
+    logger = new CombinedLogFormatLogger(blog, 2, false);
+    for (int i = 0; i < 5; i++) {
+      logger.log(createRequest("/page" + i + ".html"), 200);
+    }
+    assertEquals(3, logger.getDroppedCount());
+
+    logger.stop();
+    assertEquals(2, logger.getLog().getLogEntries().size());
+  }
+
+  public void testRequestsWaitWhenFull() throws Exception {
+    logger = new CombinedLogFormatLogger(blog, 2, true);
+    logger.start();
+    for (int i = 0; i < 500; i++) {
+      logger.log(createRequest("/page" + i + ".html"), 200);
+    }
+    logger.stop();
+
+    assertEquals(0, logger.getDroppedCount());
+    assertEquals(500, logger.getLog().getLogEntries().size());
+  }
+
+  public void testRollupIsStoredForPastDaysAndRebuiltWhenTheLogChanges() throws Exception {
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    File rollupFile = new File(blog.getLogsDirectory(), "blog-20050304.rollup");
+    writeLogFile(logFile, 3);
+
+    assertEquals(3, logger.getRollup(2005, 3, 4).getTotalRequests());
+    assertTrue(rollupFile.exists());
+    assertEquals(3, ((LogSummaryItem)logger.getLogSummary(2005, 3, 4)).getTotalRequests());
+
+    // the stored rollup is used while the log file is unchanged
+    assertEquals(3, logger.getRollup(2005, 3, 4).getTotalRequests());
+    assertEquals(3, logger.getRollup(2005, 3).getTotalRequests());
+
+    writeLogFile(logFile, 2);
+    assertEquals(5, ((LogSummaryItem)logger.getLogSummary(2005, 3, 4)).getTotalRequests());
+    assertEquals(5, logger.getRollup(2005, 3, 4).getTotalRequests());
+  }
+
+  public void testSketchIsStoredForPastDaysAndMergedOverARange() throws Exception {
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    File sketchFile = new File(blog.getLogsDirectory(), "blog-20050304.sketch");
+    writeLogFile(logFile, 3);
+    writeLogFile(new File(blog.getLogsDirectory(), "blog-20050305.log"), 2);
+
+    LogSketch sketch = logger.getSketch(2005, 3, 4);
+    assertEquals(3, sketch.getTotalRequests());
+    assertTrue(sketchFile.exists());
+    assertEquals(logFile.length(), LogSketch.read(sketchFile).getSourceLength());
+
+    sketch = logger.getSketch(2005);
+    assertEquals(5, sketch.getTotalRequests());
+    assertEquals(0, sketch.getMaximumError());
+    assertEquals(3, sketch.getRequests().size());
+    assertEquals(2, sketch.getRequests().getUpperBound("/page0.html"));
+    assertEquals(2, sketch.getTopRequests(blog, 10).get(0).getCount());
+
+    Calendar cal = blog.getCalendar();
+    cal.set(2005, Calendar.MARCH, 5, 23, 0, 0);
+    Date to = cal.getTime();
+    cal.set(2005, Calendar.MARCH, 5, 12, 0, 0);
+    assertEquals(2, logger.getSketch(cal.getTime(), to).getTotalRequests());
+
+    // the stored sketch is rebuilt when the log file changes
+    writeLogFile(logFile, 2);
+    assertEquals(5, logger.getSketch(2005, 3, 4).getTotalRequests());
+    assertEquals(7, logger.getSketch(2005).getTotalRequests());
+  }
+
+  public void testRollupIsNotStoredForToday() {
+    logger.start();
+    logger.log(createRequest("/page.html"), 200);
+    logger.flush();
+
+    assertEquals(1, logger.getRollup().getTotalRequests());
+    File[] rollups = new File(blog.getLogsDirectory()).listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.endsWith(".rollup");
+      }
+    });
+    assertEquals(0, rollups.length);
+    logger.stop();
+  }
+
+  public void testYearlySummaryCountsEveryDay() throws Exception {
+    writeLogFile(new File(blog.getLogsDirectory(), "blog-20050304.log"), 3);
+
+    LogSummaryContainer summary = (LogSummaryContainer)logger.getLogSummary(2005);
+    assertEquals(3, summary.getTotalRequests());
+    LogSummaryContainer march = (LogSummaryContainer)summary.getLogSummaries().get(2);
+    assertEquals(3, march.getTotalRequests());
+    assertEquals(31, march.getLogSummaries().size());
+    assertEquals(3, ((LogSummary)march.getLogSummaries().get(3)).getTotalRequests());
+    assertEquals(3, logger.getLogSummary(2005, 3).getTotalRequests());
+  }
+
+  public void testVisitLogForMonth() throws Exception {
+    writeLogFile(new File(blog.getLogsDirectory(), "blog-20050304.log"), 3);
+
+    final int[] count = new int[1];
+    logger.visitLog(2005, 3, new LogEntryVisitor() {
+      public void visit(LogEntry logEntry) {
+        count[0]++;
+      }
+    });
+    assertEquals(3, count[0]);
+    assertEquals(3, logger.getLog(2005, 3).getTotalLogEntries());
+  }
+
+  public void testPastDaysAreCompressedAndReadTransparently() throws Exception {
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    File compressedFile = new File(blog.getLogsDirectory(), "blog-20050304.log.gz");
+    File rollupFile = new File(blog.getLogsDirectory(), "blog-20050304.rollup");
+    writeLogFile(logFile, 3);
+    String contents = logger.getLogFile(2005, 3, 4);
+
+    logger.housekeep();
+    assertFalse(logFile.exists());
+    assertTrue(compressedFile.exists());
+
+    // the rollup is built before compressing and is still up to date afterwards
+    assertEquals(compressedFile.length(), LogRollup.read(rollupFile).getSourceLength());
+    File sketchFile = new File(blog.getLogsDirectory(), "blog-20050304.sketch");
+    assertEquals(compressedFile.length(), LogSketch.read(sketchFile).getSourceLength());
+    assertEquals(3, logger.getSketch(2005, 3, 4).getTotalRequests());
+    assertEquals(3, logger.getRollup(2005, 3, 4).getTotalRequests());
+    assertEquals(3, ((LogSummaryItem)logger.getLogSummary(2005, 3, 4)).getTotalRequests());
+    assertEquals(3, logger.getLog(2005, 3, 4).getTotalLogEntries());
+    assertEquals(3, logger.getLog(2005, 3).getTotalLogEntries());
+    assertEquals(contents, logger.getLogFile(2005, 3, 4));
+
+    rollupFile.delete();
+    assertEquals(3, logger.getRollup(2005, 3, 4).getTotalRequests());
+  }
+
+  public void testLateRequestsForACompressedDayAreKept() throws Exception {
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    writeLogFile(logFile, 3);
+    logger.housekeep();
+
+    writeLogFile(logFile, 2);
+    assertEquals(5, logger.getLog(2005, 3, 4).getTotalLogEntries());
+    assertEquals(5, ((LogSummaryItem)logger.getLogSummary(2005, 3, 4)).getTotalRequests());
+    assertEquals(5, logger.getRollup(2005, 3, 4).getTotalRequests());
+
+    logger.housekeep();
+    assertFalse(logFile.exists());
+    assertEquals(5, logger.getLog(2005, 3, 4).getTotalLogEntries());
+    assertEquals(5, logger.getRollup(2005, 3, 4).getTotalRequests());
+  }
+
+  public void testInterruptedCompressionIsRolledBack() throws Exception {
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    File compressedFile = new File(blog.getLogsDirectory(), "blog-20050304.log.gz");
+    File backupFile = new File(blog.getLogsDirectory(), "blog-20050304.log.gz.old");
+    writeLogFile(logFile, 3);
+    logger.housekeep();
+    writeLogFile(logFile, 2);
+
+    // as if the server stopped after the new compressed log was renamed into place
+    assertTrue(compressedFile.renameTo(backupFile));
+    FileOutputStream out = new FileOutputStream(compressedFile);
+    out.write("unconfirmed".getBytes());
+    out.close();
+
+    logger.housekeep();
+    assertFalse(logFile.exists());
+    assertFalse(backupFile.exists());
+    assertEquals(5, logger.getLog(2005, 3, 4).getTotalLogEntries());
+    assertEquals(5, logger.getRollup(2005, 3, 4).getTotalRequests());
+  }
+
+  public void testCompressionCanBeTurnedOff() throws Exception {
+    blog.getPluginProperties().setProperty(CombinedLogFormatLogger.COMPRESS_KEY, "false");
+    logger = new CombinedLogFormatLogger(blog);
+    File logFile = new File(blog.getLogsDirectory(), "blog-20050304.log");
+    writeLogFile(logFile, 3);
+
+    logger.housekeep();
+    assertTrue(logFile.exists());
+    assertFalse(new File(blog.getLogsDirectory(), "blog-20050304.log.gz").exists());
+  }
+
+  public void testLogsOlderThanTheRetentionPeriodAreDeleted() throws Exception {
+    blog.getPluginProperties().setProperty(CombinedLogFormatLogger.RETENTION_DAYS_KEY, "30");
+    logger = new CombinedLogFormatLogger(blog);
+    writeLogFile(new File(blog.getLogsDirectory(), "blog-20050304.log"), 3);
+    logger.getRollup(2005, 3, 4);
+    logger.log(createRequest("/page.html"), 200);
+    logger.stop();
+
+    logger.housekeep();
+    assertEquals(0, logger.getLog(2005, 3, 4).getTotalLogEntries());
+    assertEquals(0, logger.getRollup(2005, 3, 4).getTotalRequests());
+    assertFalse(new File(blog.getLogsDirectory(), "blog-20050304.rollup").exists());
+    assertEquals(1, logger.getLog().getTotalLogEntries());
+  }
+
+  private void writeLogFile(File file, int entries) throws Exception {
+    CombinedFormatLogEntryFormat format = new CombinedFormatLogEntryFormat(blog);
+    Calendar cal = blog.getCalendar();
+    cal.set(2005, Calendar.MARCH, 4, 12, 0, 0);
+    BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
+    for (int i = 0; i < entries; i++) {
+      LogEntry entry = new LogEntry();
+      entry.setHost("127.0.0." + i);
+      entry.setDate(cal.getTime());
+      entry.setRequest("GET /page" + i + ".html");
+      entry.setStatusCode(200);
+      writer.write(format.format(entry));
+      writer.newLine();
+    }
+    writer.close();
+  }
+
+  private MockHttpServletRequest createRequest(String uri) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAttribute(Constants.EXTERNAL_URI, uri);
+    request.setHeader("User-Agent", "Mozilla/5.0");
+    return request;
+  }
+
 }
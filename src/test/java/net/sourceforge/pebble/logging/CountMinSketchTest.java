@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the CountMinSketch class.
+ *
+ * @author    Simon Brown
+ */
+public class CountMinSketchTest extends TestCase {
+
+  public void testEstimatesAreNeverTooLowAndUsuallyWithinTheBound() {
+    CountMinSketch sketch = new CountMinSketch(256, 4);
+    Map<String,Long> counts = new HashMap<String,Long>();
+    Random random = new Random(1);
+    for (int i = 0; i < 20000; i++) {
+      String key = "/page" + random.nextInt(2000) + ".html";
+      sketch.add(key, 1);
+      Long count = counts.get(key);
+      counts.put(key, count != null ? count + 1 : 1);
+    }
+
+    assertEquals(20000, sketch.getTotal());
+    int outside = 0;
+    for (Map.Entry<String,Long> entry : counts.entrySet()) {
+      long estimate = sketch.estimate(entry.getKey());
+      assertTrue(estimate >= entry.getValue());
+      if (estimate - entry.getValue() > sketch.getErrorBound()) {
+        outside++;
+      }
+    }
+    assertTrue(outside <= counts.size() * (1 - sketch.getConfidence()));
+    assertEquals(0, sketch.estimate("/unknown.html"), sketch.getErrorBound());
+  }
+
+  public void testMergedSketchIsTheSameAsOneSketch() {
+    CountMinSketch all = new CountMinSketch(64, 3);
+    CountMinSketch first = new CountMinSketch(64, 3);
+    CountMinSketch second = new CountMinSketch(64, 3);
+    for (int i = 0; i < 100; i++) {
+      all.add("item" + i, i);
+      (i % 2 == 0 ? first : second).add("item" + i, i);
+    }
+
+    first.merge(second);
+    assertEquals(all.getTotal(), first.getTotal());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(all.estimate("item" + i), first.estimate("item" + i));
+    }
+  }
+
+  public void testSketchesOfDifferentSizesCantBeMerged() {
+    try {
+      new CountMinSketch(64, 3).merge(new CountMinSketch(64, 4));
+      fail();
+    } catch (IllegalArgumentException iae) {
+      // expected
+    }
+  }
+
+  public void testWriteAndRead() throws Exception {
+    CountMinSketch sketch = new CountMinSketch(1024, 4);
+    sketch.add("/index.html", 1);
+    sketch.add("/about.html", 300);
+    sketch.add("/rss.xml", 5000000000L);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    // only the non-empty cells are written
+    assertTrue(bytes.size() < 100);
+
+    CountMinSketch read = CountMinSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(1024, read.getWidth());
+    assertEquals(4, read.getDepth());
+    assertEquals(sketch.getTotal(), read.getTotal());
+    assertEquals(sketch.estimate("/index.html"), read.estimate("/index.html"));
+    assertEquals(sketch.estimate("/about.html"), read.estimate("/about.html"));
+    assertEquals(5000000000L, read.estimate("/rss.xml"));
+  }
+
+}
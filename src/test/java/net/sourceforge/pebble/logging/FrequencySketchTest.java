@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the FrequencySketch class.
+ *
+ * @author    Simon Brown
+ */
+public class FrequencySketchTest extends TestCase {
+
+  public void testCountsExactlyWhenThereIsRoom() {
+    FrequencySketch sketch = new FrequencySketch(10, 256, 4);
+    for (int i = 0; i < 5; i++) {
+      sketch.add("item" + i, i + 1);
+    }
+
+    assertEquals(15, sketch.getTotal());
+    assertEquals(0, sketch.getMaximumError());
+    List<SpaceSavingSketch.Item> top = sketch.getTop(3);
+    assertEquals(3, top.size());
+    assertEquals("item4", top.get(0).getKey());
+    assertEquals(5, top.get(0).getCount());
+    assertEquals(0, top.get(0).getError());
+    assertEquals("item3", top.get(1).getKey());
+    assertEquals("item2", top.get(2).getKey());
+    assertEquals(5, sketch.getTop(10).size());
+  }
+
+  public void testMergedDaysBoundTheTrueCounts() {
+    FrequencySketch year = new FrequencySketch(50, 512, 4);
+    Map<String,Long> counts = new HashMap<String,Long>();
+    Random random = new Random(1);
+    for (int day = 0; day < 60; day++) {
+      // like a day's rollup, the day's counts are exact before they are sketched
+      Map<String,Long> dayCounts = new HashMap<String,Long>();
+      for (int i = 0; i < 2000; i++) {
+        String key;
+        if (i % 10 == 0) {
+          key = "/hot.html";
+        } else if (i % 25 == 0) {
+          key = "/warm.html";
+        } else if (i % 49 == 0) {
+          // popular on some days only
+          key = "/page" + (day % 3) + ".html";
+        } else {
+          key = "/page" + random.nextInt(20000) + ".html";
+        }
+        increment(dayCounts, key, 1);
+      }
+
+      FrequencySketch sketch = new FrequencySketch(50, 512, 4);
+      for (Map.Entry<String,Long> entry : dayCounts.entrySet()) {
+        sketch.add(entry.getKey(), entry.getValue());
+        increment(counts, entry.getKey(), entry.getValue());
+      }
+      year.merge(sketch);
+    }
+
+    assertEquals(120000, year.getTotal());
+    assertTrue(year.size() <= 100);
+    assertTrue(year.getMaximumError() <= year.getTotal() / 51);
+    for (Map.Entry<String,Long> entry : counts.entrySet()) {
+      assertTrue(year.getLowerBound(entry.getKey()) <= entry.getValue());
+      assertTrue(year.getUpperBound(entry.getKey()) >= entry.getValue());
+    }
+
+    List<SpaceSavingSketch.Item> top = year.getTop(5);
+    assertEquals("/hot.html", top.get(0).getKey());
+    assertEquals("/warm.html", top.get(1).getKey());
+    for (SpaceSavingSketch.Item item : top) {
+      long count = counts.get(item.getKey());
+      assertTrue(item.getCount() >= count);
+      assertTrue(item.getCount() - item.getError() <= count);
+    }
+
+    // anything more frequent than the maximum error is guaranteed to be kept
+    for (Map.Entry<String,Long> entry : counts.entrySet()) {
+      if (entry.getValue() > year.getMaximumError()) {
+        assertTrue(year.getLowerBound(entry.getKey()) > 0);
+      }
+    }
+  }
+
+  public void testWriteAndRead() throws Exception {
+    FrequencySketch sketch = new FrequencySketch(2, 256, 4);
+    StringBuilder longReferer = new StringBuilder("http://www.google.com/search?q=");
+    while (longReferer.length() < 70000) {
+      longReferer.append("pebble+");
+    }
+    sketch.add(longReferer.toString(), 10);
+    sketch.add("http://www.example.com/\u00e9t\u00e9", 7);
+    for (int i = 0; i < 5; i++) {
+      sketch.add("/page" + i + ".html", 1);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sketch.write(new DataOutputStream(bytes));
+    FrequencySketch read = FrequencySketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(sketch.getTotal(), read.getTotal());
+    assertEquals(sketch.getMaximumError(), read.getMaximumError());
+    assertEquals(sketch.size(), read.size());
+    assertEquals(sketch.getLowerBound(longReferer.toString()), read.getLowerBound(longReferer.toString()));
+    assertEquals(sketch.getUpperBound("http://www.example.com/\u00e9t\u00e9"), read.getUpperBound("http://www.example.com/\u00e9t\u00e9"));
+    assertEquals(longReferer.toString(), read.getTop(1).get(0).getKey());
+  }
+
+  private static void increment(Map<String,Long> counts, String key, long count) {
+    Long existing = counts.get(key);
+    counts.put(key, existing != null ? existing + count : count);
+  }
+
+}
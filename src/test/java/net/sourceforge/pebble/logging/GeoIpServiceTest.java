@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import com.maxmind.geoip.LookupService;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * Tests for the GeoIpService class.
+ *
+ * @author Simon Brown
+ */
+public class GeoIpServiceTest extends TestCase {
+
+  public void testSharedInstance() {
+    GeoIpService service = GeoIpService.getInstance();
+    assertSame(service, GeoIpService.getInstance());
+    assertTrue(service.isAvailable());
+    assertEquals("United States", service.getCountry("8.8.8.8"));
+  }
+
+  public void testUnavailableDatabase() {
+    GeoIpService service = new GeoIpService(null, 10);
+    assertFalse(service.isAvailable());
+    assertNull(service.getCountry("8.8.8.8"));
+  }
+
+  public void testCountriesAreCached() {
+    GeoIpService service = createService(16);
+    String country = service.getCountry("8.8.4.4");
+    assertEquals(1, service.getCacheSize());
+    assertSame(country, service.getCountry("8.8.4.4"));
+    assertEquals(1, service.getCacheSize());
+  }
+
+  public void testCacheIsBounded() {
+    GeoIpService service = createService(16);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(GeoIpService.getInstance().getCountry("8.8.8." + i), service.getCountry("8.8.8." + i));
+      assertTrue(service.getCacheSize() <= 16);
+    }
+  }
+
+  public void testLogEntryCountry() {
+    LogEntry logEntry = new LogEntry();
+    logEntry.setHost("8.8.8.8");
+    assertEquals("United States", logEntry.getCountry());
+  }
+
+  private GeoIpService createService(int cacheSize) {
+    try {
+      String filename = getClass().getResource("/geo-ip.dat").toExternalForm().substring(5);
+      return new GeoIpService(new LookupService(filename, LookupService.GEOIP_MEMORY_CACHE), cacheSize);
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import net.sourceforge.pebble.domain.SingleBlogTestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for the LogFileReader class.
+ *
+ * @author Simon Brown
+ */
+public class LogFileReaderTest extends SingleBlogTestCase {
+
+  private File file;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    file = new File(TEST_BLOG_LOCATION, "test.log");
+    file.delete();
+  }
+
+  public void testCountLines() throws Exception {
+    assertEquals(0, LogFileReader.countLines(file));
+
+    write("");
+    assertEquals(0, LogFileReader.countLines(file));
+
+    write("one\ntwo\r\nthree\n");
+    assertEquals(3, LogFileReader.countLines(file));
+
+    // a last line without a newline still counts
+    write("one\ntwo");
+    assertEquals(2, LogFileReader.countLines(file));
+  }
+
+  public void testVisit() throws Exception {
+    String line1 = "127.0.0.1 - - [01/Mar/2005:10:11:12 +0000] \"GET /index.html\" 200 - \"http://www.google.com\" \"Mozilla\"";
+    String line2 = "127.0.0.2 - - [01/Mar/2005:10:11:13 +0000] \"GET /feed.xml\" 304 - - \"Bloglines\"";
+    write(line1 + "\r\nthis is not a log line\n" + line2);
+
+    final List<LogEntry> logEntries = new ArrayList<LogEntry>();
+    LogFileReader.visit(file, new CombinedFormatLogEntryFormat(blog), new LogEntryVisitor() {
+      public void visit(LogEntry logEntry) {
+        logEntries.add(logEntry);
+      }
+    });
+
+    assertEquals(2, logEntries.size());
+    assertEquals("127.0.0.1", logEntries.get(0).getHost());
+    assertEquals("/index.html", logEntries.get(0).getRequestUri());
+    assertEquals("Mozilla", logEntries.get(0).getAgent());
+    assertEquals("127.0.0.2", logEntries.get(1).getHost());
+    assertEquals(304, logEntries.get(1).getStatusCode());
+    assertEquals("Bloglines", logEntries.get(1).getAgent());
+  }
+
+  public void testCompressedFile() throws Exception {
+    File compressed = new File(TEST_BLOG_LOCATION, "test.log.gz");
+    String line1 = "127.0.0.1 - - [01/Mar/2005:10:11:12 +0000] \"GET /index.html\" 200 - \"http://www.google.com\" \"Mozilla\"";
+    String line2 = "127.0.0.2 - - [01/Mar/2005:10:11:13 +0000] \"GET /feed.xml\" 304 - - \"Bloglines\"";
+
+    // compressed files may contain more than one gzip member
+    OutputStream out = new FileOutputStream(compressed);
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write((line1 + "\r\nthis is not a log line\n").getBytes());
+    gzip.finish();
+    gzip = new GZIPOutputStream(out);
+    gzip.write(line2.getBytes());
+    gzip.finish();
+    out.close();
+
+    assertTrue(LogFileReader.isCompressed(compressed));
+    assertFalse(LogFileReader.isCompressed(file));
+    assertEquals(3, LogFileReader.countLines(compressed));
+
+    final List<LogEntry> logEntries = new ArrayList<LogEntry>();
+    LogFileReader.visit(compressed, new CombinedFormatLogEntryFormat(blog), new LogEntryVisitor() {
+      public void visit(LogEntry logEntry) {
+        logEntries.add(logEntry);
+      }
+    });
+
+    assertEquals(2, logEntries.size());
+    assertEquals("/index.html", logEntries.get(0).getRequestUri());
+    assertEquals("Bloglines", logEntries.get(1).getAgent());
+  }
+
+  private void write(String content) throws Exception {
+    Writer writer = new FileWriter(file);
+    writer.write(content);
+    writer.close();
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import net.sourceforge.pebble.domain.SingleBlogTestCase;
+
+import java.io.File;
+import java.util.Calendar;
+
+/**
+ * Tests for the LogRollup class.
+ *
+ * @author Simon Brown
+ */
+public class LogRollupTest extends SingleBlogTestCase {
+
+  private LogRollup rollup;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    rollup = new LogRollup();
+    add(rollup, "/", "http://www.google.com/search?q=pebble", "Mozilla/5.0 Firefox/3.6", "1.2.3.4", 10, 200, "United Kingdom");
+    add(rollup, "/", "http://www.google.co.uk/search?q=pebble", "Mozilla/5.0 Firefox/3.6", "1.2.3.4", 10, 200, "United Kingdom");
+    add(rollup, "/rss.xml", null, null, "5.6.7.8", 10, 200, "France");
+    add(rollup, "/missing.html", "http://www.example.com/\tpage", "Googlebot", "5.6.7.8", 23, 404, null);
+  }
+
+  public void testCounts() {
+    assertEquals(4, rollup.getTotalRequests());
+
+    int[] requestsPerHour = rollup.getRequestsPerHour();
+    assertEquals(3, requestsPerHour[10]);
+    assertEquals(1, requestsPerHour[23]);
+    int[] uniqueHostsPerHour = rollup.getUniqueHostsPerHour();
+    assertEquals(2, uniqueHostsPerHour[10]);
+    assertEquals(1, uniqueHostsPerHour[23]);
+
+    assertEquals(2, (int)rollup.getUserAgents().get("Mozilla/5.0 Firefox/3.6"));
+    assertEquals(1, (int)rollup.getUserAgents().get(""));
+    assertEquals(3, (int)rollup.getStatusCodes().get(200));
+    assertEquals(1, (int)rollup.getStatusCodes().get(404));
+
+    assertEquals(2, rollup.getCountries().size());
+    assertEquals(2, rollup.getPageViews("United Kingdom"));
+    assertEquals(1, rollup.getNewsFeeds("France"));
+    assertEquals(0, rollup.getFileDownloads("France"));
+  }
+
+  public void testRequestsAndReferers() {
+    for (Request request : rollup.getRequests(blog)) {
+      if (request.getUrl().equals("/")) {
+        assertEquals(2, request.getCount());
+        assertTrue(request.isPageView());
+      } else {
+        assertEquals(1, request.getCount());
+      }
+    }
+
+    // both searches for "pebble" are grouped together
+    int searches = 0;
+    for (Referer referer : rollup.getReferers()) {
+      if (referer.getName().startsWith("Google")) {
+        assertEquals(2, referer.getCount());
+        searches++;
+      }
+    }
+    assertEquals(1, searches);
+    assertEquals(3, rollup.getReferers().size());
+  }
+
+  public void testMerge() {
+    LogRollup month = new LogRollup();
+    month.add(rollup);
+    month.add(rollup);
+
+    assertEquals(8, month.getTotalRequests());
+    assertEquals(6, month.getRequestsPerHour()[10]);
+    assertEquals(2, month.getUniqueHostsPerHour()[10]);
+    assertEquals(4, month.getPageViews("United Kingdom"));
+    assertEquals(4, (int)month.getUserAgents().get("Mozilla/5.0 Firefox/3.6"));
+  }
+
+  public void testWriteAndRead() throws Exception {
+    rollup.setSourceLength(1234);
+    File file = new File(TEST_BLOG_LOCATION, "test.rollup");
+    rollup.write(file);
+
+    LogRollup copy = LogRollup.read(file);
+    assertEquals(1234, copy.getSourceLength());
+    assertEquals(4, copy.getTotalRequests());
+    assertEquals(rollup.getUserAgents(), copy.getUserAgents());
+    assertEquals(rollup.getStatusCodes(), copy.getStatusCodes());
+    assertEquals(rollup.getCountries(), copy.getCountries());
+    assertEquals(2, copy.getPageViews("United Kingdom"));
+    assertEquals(2, copy.getUniqueHostsPerHour()[10]);
+    assertEquals(3, copy.getReferers().size());
+    assertEquals(rollup.getRequests(blog).size(), copy.getRequests(blog).size());
+
+    // merging hosts across rollups still works after a round trip
+    copy.add(rollup);
+    assertEquals(2, copy.getUniqueHostsPerHour()[10]);
+
+    LogRollup header = LogRollup.readHeader(file);
+    assertEquals(1234, header.getSourceLength());
+    assertEquals(4, header.getTotalRequests());
+  }
+
+  private void add(LogRollup rollup, String uri, String referer, String agent, String host, int hour, int status, String country) {
+    LogEntry logEntry = new LogEntry();
+    logEntry.setRequest("GET " + uri);
+    logEntry.setReferer(referer);
+    logEntry.setAgent(agent);
+    logEntry.setHost(host);
+    logEntry.setStatusCode(status);
+    Calendar cal = blog.getCalendar();
+    cal.set(Calendar.HOUR_OF_DAY, hour);
+    logEntry.setDate(cal.getTime());
+    rollup.add(logEntry, hour, country, new Request(logEntry.getRequestUri(), blog));
+  }
+
+}
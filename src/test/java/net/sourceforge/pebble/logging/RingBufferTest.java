@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the RingBuffer class.
+ *
+ * @author    Simon Brown
+ */
+public class RingBufferTest extends TestCase {
+
+  public void testCapacityIsRoundedUpToAPowerOfTwo() {
+    assertEquals(8, new RingBuffer<String>(5).getCapacity());
+    assertEquals(8, new RingBuffer<String>(8).getCapacity());
+    assertEquals(1, new RingBuffer<String>(1).getCapacity());
+  }
+
+  public void testElementsAreReadInOrder() {
+    RingBuffer<String> buffer = new RingBuffer<String>(4);
+    assertTrue(buffer.isEmpty());
+    assertNull(buffer.poll());
+
+    for (int round = 0; round < 3; round++) {
+      assertTrue(buffer.offer("a" + round));
+      assertTrue(buffer.offer("b" + round));
+      assertFalse(buffer.isEmpty());
+      assertEquals("a" + round, buffer.poll());
+      assertEquals("b" + round, buffer.poll());
+      assertTrue(buffer.isEmpty());
+    }
+    assertEquals(6, buffer.getTail());
+    assertEquals(6, buffer.getHead());
+  }
+
+  public void testOfferFailsWhenFull() {
+    RingBuffer<String> buffer = new RingBuffer<String>(2);
+    assertTrue(buffer.offer("a"));
+    assertTrue(buffer.offer("b"));
+    assertFalse(buffer.offer("c"));
+
+    assertEquals("a", buffer.poll());
+    assertTrue(buffer.offer("c"));
+    assertEquals("b", buffer.poll());
+    assertEquals("c", buffer.poll());
+  }
+
+  public void testConcurrentProducers() throws Exception {
+    final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+    final int producers = 4;
+    final int perProducer = 20000;
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      Thread thread = new Thread() {
+        public void run() {
+          for (int i = 0; i < perProducer; i++) {
+            while (!buffer.offer(producer * perProducer + i)) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+
+    // every element arrives exactly once, in order for each producer
+    int[] last = new int[producers];
+    java.util.Arrays.fill(last, -1);
+    int received = 0;
+    while (received < producers * perProducer) {
+      Integer element = buffer.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      int producer = element / perProducer;
+      int sequence = element % perProducer;
+      assertEquals(last[producer] + 1, sequence);
+      last[producer] = sequence;
+      received++;
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(buffer.isEmpty());
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the SlidingWindowCounter class.
+ *
+ * @author    Simon Brown
+ */
+public class SlidingWindowCounterTest extends TestCase {
+
+  private static final long NOW = 1234567890000L;
+
+  public void testCountsWithinTheWindow() {
+    SlidingWindowCounter counter = new SlidingWindowCounter(10);
+    counter.increment(NOW - 12000);
+    counter.increment(NOW - 9000);
+    counter.increment(NOW - 1000);
+    counter.increment(NOW);
+    counter.increment(NOW + 999);
+
+    assertEquals(4, counter.getCount(NOW));
+    assertEquals(3, counter.getCount(NOW, 2));
+    assertEquals(2, counter.getCount(NOW, 1));
+
+    long[] counts = counter.getCounts(NOW, 3);
+    assertEquals(0, counts[0]);
+    assertEquals(1, counts[1]);
+    assertEquals(2, counts[2]);
+  }
+
+  public void testOldCountsAreForgotten() {
+    SlidingWindowCounter counter = new SlidingWindowCounter(10);
+    counter.increment(NOW);
+    counter.increment(NOW);
+    assertEquals(2, counter.getCount(NOW + 9000));
+    assertEquals(0, counter.getCount(NOW + 10000));
+
+    // the slot is reused for the new second
+    counter.increment(NOW + 10000);
+    assertEquals(1, counter.getCount(NOW + 10000));
+  }
+
+  public void testConcurrentIncrementsAreAllCounted() throws Exception {
+    final SlidingWindowCounter counter = new SlidingWindowCounter(60);
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < 100000; j++) {
+            counter.increment(NOW + (j % 5) * 1000);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(400000, counter.getCount(NOW + 4000));
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the SpaceSavingSketch class.
+ *
+ * @author    Simon Brown
+ */
+public class SpaceSavingSketchTest extends TestCase {
+
+  public void testCountsExactlyWhenThereIsRoom() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j <= i; j++) {
+        sketch.offer("item" + i);
+      }
+    }
+
+    List<SpaceSavingSketch.Item> top = sketch.getTop(3);
+    assertEquals(3, top.size());
+    assertEquals("item4", top.get(0).getKey());
+    assertEquals(5, top.get(0).getCount());
+    assertEquals(0, top.get(0).getError());
+    assertEquals("item3", top.get(1).getKey());
+    assertEquals("item2", top.get(2).getKey());
+    assertEquals(5, sketch.getTop(10).size());
+  }
+
+  public void testHeavyHittersAreKeptInALongTail() {
+    SpaceSavingSketch sketch = new SpaceSavingSketch(50);
+    Random random = new Random(1);
+    for (int i = 0; i < 100000; i++) {
+      if (i % 10 == 0) {
+        sketch.offer("/hot.html");
+      } else if (i % 25 == 0) {
+        sketch.offer("/warm.html");
+      } else {
+        sketch.offer("/page" + random.nextInt(50000) + ".html");
+      }
+    }
+
+    assertEquals(50, sketch.size());
+    List<SpaceSavingSketch.Item> top = sketch.getTop(2);
+    assertEquals("/hot.html", top.get(0).getKey());
+    assertTrue(top.get(0).getCount() >= 10000);
+    assertTrue(top.get(0).getCount() - top.get(0).getError() <= 10000);
+    assertEquals("/warm.html", top.get(1).getKey());
+    assertTrue(top.get(1).getCount() >= 2000);
+    assertTrue(top.get(1).getCount() - top.get(1).getError() <= 2000);
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for the TrafficMonitor class.
+ *
+ * @author    Simon Brown
+ */
+public class TrafficMonitorTest extends TestCase {
+
+  private static final long NOW = 1234567890000L;
+
+  private TrafficMonitor monitor;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    monitor = new TrafficMonitor();
+  }
+
+  public void testRecord() {
+    record(NOW, "127.0.0.1", "GET /index.html", 200, "http://www.google.com");
+    record(NOW, "127.0.0.1", "GET /index.html?page=2", 200, null);
+    record(NOW - 1000, "127.0.0.2", "GET /missing.html", 404, "");
+    record(NOW - 1000, "127.0.0.1", "GET /rss.xml", 304, "http://www.google.com");
+
+    assertEquals(4, monitor.getTotalRequests(NOW));
+    assertEquals(2.0, monitor.getRequestsPerSecond(NOW, 1), 0.0);
+    assertEquals(2.0, monitor.getRequestsPerSecond(NOW, 2), 0.0);
+
+    Map<Integer,Long> statusCodes = monitor.getStatusCodes(NOW);
+    assertEquals(3, statusCodes.size());
+    assertEquals(2, statusCodes.get(200).longValue());
+    assertEquals(1, statusCodes.get(304).longValue());
+    assertEquals(1, statusCodes.get(404).longValue());
+
+    List<SpaceSavingSketch.Item> urls = monitor.getTopUrls(NOW, 10);
+    assertEquals(3, urls.size());
+    assertEquals("/index.html", urls.get(0).getKey());
+    assertEquals(2, urls.get(0).getCount());
+
+    List<SpaceSavingSketch.Item> referers = monitor.getTopReferers(NOW, 10);
+    assertEquals(1, referers.size());
+    assertEquals(2, referers.get(0).getCount());
+
+    List<SpaceSavingSketch.Item> hosts = monitor.getTopHosts(NOW, 1);
+    assertEquals(1, hosts.size());
+    assertEquals("127.0.0.1", hosts.get(0).getKey());
+    assertEquals(3, hosts.get(0).getCount());
+  }
+
+  public void testStatisticsExpireWithTheWindow() {
+    record(NOW, "127.0.0.1", "GET /index.html", 200, null);
+    record(NOW + 60000, "127.0.0.1", "GET /other.html", 200, null);
+
+    long later = NOW + TrafficMonitor.WINDOW_SECONDS * 1000L;
+    assertEquals(1, monitor.getTotalRequests(later));
+    assertEquals(1, monitor.getStatusCodes(later).get(200).longValue());
+    List<SpaceSavingSketch.Item> urls = monitor.getTopUrls(later, 10);
+    assertEquals(1, urls.size());
+    assertEquals("/other.html", urls.get(0).getKey());
+
+    later += 60000;
+    assertEquals(0, monitor.getTotalRequests(later));
+    assertTrue(monitor.getStatusCodes(later).isEmpty());
+    assertTrue(monitor.getTopUrls(later, 10).isEmpty());
+  }
+
+  private void record(long time, String host, String request, int status, String referer) {
+    LogEntry logEntry = new LogEntry();
+    logEntry.setDate(new Date(time));
+    logEntry.setHost(host);
+    logEntry.setRequest(request);
+    logEntry.setStatusCode(status);
+    logEntry.setReferer(referer);
+    monitor.record(logEntry);
+  }
+
+}
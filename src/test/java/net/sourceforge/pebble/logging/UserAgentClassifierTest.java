@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.logging;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Tests for the UserAgentClassifier class.
+ *
+ * @author    Simon Brown
+ */
+public class UserAgentClassifierTest extends TestCase {
+
+  private UserAgentClassifier classifier;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    classifier = new UserAgentClassifier(Arrays.asList(
+        "# comment",
+        "",
+        "bot Googlebot",
+        "bot bingbot = Bing",
+        "browser Chrome",
+        "browser Safari",
+        "unknown Opera",
+        "bot bot = Other"), 2);
+  }
+
+  public void testRulesAreParsed() {
+    assertEquals(5, classifier.getNumberOfRules());
+  }
+
+  public void testClassify() {
+    UserAgentFamily family = classifier.classify("Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)");
+    assertEquals("Googlebot", family.getName());
+    assertTrue(family.isBot());
+
+    family = classifier.classify("Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)");
+    assertEquals("Bing", family.getName());
+    assertTrue(family.isBot());
+
+    family = classifier.classify("Mozilla/5.0 (Windows NT 10.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.149 Safari/537.36");
+    assertEquals("Chrome", family.getName());
+    assertFalse(family.isBot());
+
+    family = classifier.classify("Mozilla/5.0 (compatible; Tagoobot/3.0; +http://www.tagoo.ru)");
+    assertEquals("Other", family.getName());
+    assertTrue(family.isBot());
+
+    assertSame(UserAgentFamily.OTHER, classifier.classify("Opera/9.80 (Windows NT 6.0) Presto/2.12.388 Version/12.14"));
+    assertSame(UserAgentFamily.OTHER, classifier.classify(""));
+    assertSame(UserAgentFamily.OTHER, classifier.classify(null));
+    assertFalse(classifier.isBot(null));
+  }
+
+  public void testCacheIsBounded() {
+    classifier.classify("a bot");
+    classifier.classify("another bot");
+    assertEquals(2, classifier.getCacheSize());
+    classifier.classify("yet another bot");
+    assertEquals(2, classifier.getCacheSize());
+    assertTrue(classifier.isBot("another bot"));
+  }
+
+  public void testDefaultRules() {
+    UserAgentClassifier classifier = UserAgentClassifier.getInstance();
+    assertTrue(classifier.getNumberOfRules() > 0);
+    assertTrue(classifier.isBot("Mozilla/5.0 (compatible; Yahoo! Slurp/3.0; http://help.yahoo.com/help/us/ysearch/slurp)"));
+    assertTrue(classifier.isBot("Mozilla/5.0 (compatible; iCcrawler - iCjobs Stellenangebote Jobs; http://www.icjobs.de)"));
+    assertFalse(classifier.isBot("Mozilla/5.0 (Windows; U; Windows NT 5.1; de; rv:1.9.1.5) Gecko/20091102 Firefox/3.5.5"));
+    assertEquals("Edge", classifier.classify("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/80.0.3987.163 Safari/537.36 Edg/80.0.361.109").getName());
+  }
+
+}
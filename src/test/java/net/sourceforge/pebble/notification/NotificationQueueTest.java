@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.notification;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.domain.SingleBlogTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tests for the NotificationQueue class, delivering to a local HTTP server.
+ *
+ * @author    Simon Brown
+ */
+public class NotificationQueueTest extends SingleBlogTestCase {
+
+  private static final String PING_RESPONSE =
+      "<?xml version=\"1.0\"?><methodResponse><params><param><value><struct>" +
+      "<member><name>flerror</name><value><boolean>%s</boolean></value></member>" +
+      "<member><name>message</name><value>%s</value></member>" +
+      "</struct></value></param></params></methodResponse>";
+
+  private HttpServer server;
+  private String endpoint;
+  private final List<String> requests = new ArrayList<String>();
+  private final List<Integer> ports = new ArrayList<Integer>();
+  private final LinkedList<Integer> responseCodes = new LinkedList<Integer>();
+  private String responseBody;
+
+  private NotificationQueue queue;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int read = in.read(buf);
+        while (read != -1) {
+          body.write(buf, 0, read);
+          read = in.read(buf);
+        }
+
+        int rc;
+        synchronized (requests) {
+          requests.add(body.toString("UTF-8"));
+          ports.add(exchange.getRemoteAddress().getPort());
+          rc = responseCodes.isEmpty() ? 204 : responseCodes.removeFirst();
+        }
+
+        if (rc == 204 || responseBody == null) {
+          exchange.sendResponseHeaders(rc, -1);
+        } else {
+          byte[] bytes = responseBody.getBytes("UTF-8");
+          exchange.sendResponseHeaders(rc, bytes.length);
+          OutputStream out = exchange.getResponseBody();
+          out.write(bytes);
+          out.close();
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/hub";
+
+    blog.getPluginProperties().setProperty(NotificationQueue.WINDOW_PROPERTY, "0");
+    queue = new NotificationQueue(blog, 50);
+  }
+
+  protected void tearDown() throws Exception {
+    queue.stop();
+    server.stop(0);
+
+    super.tearDown();
+  }
+
+  /**
+   * Tests that a hub publish request is posted as a form.
+   */
+  public void testHubPublishRequestDelivered() throws Exception {
+    queue.start();
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    waitFor(1, 0);
+
+    assertEquals(1, requests.size());
+    assertEquals("hub.mode=publish&hub.url=http%3A%2F%2Fwww.yourdomain.com%2Fblog%2Fatom.xml", requests.get(0));
+    assertEquals(0, queue.getNumberOfPendingNotifications());
+    assertTrue(queue.getRecentDeliveries().get(0).isSuccessful());
+    assertEquals(0, new File(blog.getNotificationsDirectory()).list().length);
+  }
+
+  /**
+   * Tests that consecutive requests to the same host reuse a connection.
+   */
+  public void testConnectionsAreReused() throws Exception {
+    queue.start();
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    waitFor(1, 0);
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/categories/java/atom.xml"));
+    waitFor(2, 0);
+
+    assertEquals(2, ports.size());
+    assertEquals(ports.get(0), ports.get(1));
+  }
+
+  /**
+   * Tests that notifications with the same key queued within the window
+   * are sent as a single request.
+   */
+  public void testNotificationsAreCoalesced() throws Exception {
+    blog.getPluginProperties().setProperty(NotificationQueue.WINDOW_PROPERTY, "0.5");
+    queue.start();
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/categories/java/atom.xml"));
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    assertEquals(1, queue.getNumberOfPendingNotifications());
+    waitFor(1, 0);
+
+    assertEquals(1, requests.size());
+    assertEquals("hub.mode=publish" +
+        "&hub.url=http%3A%2F%2Fwww.yourdomain.com%2Fblog%2Fatom.xml" +
+        "&hub.url=http%3A%2F%2Fwww.yourdomain.com%2Fblog%2Fcategories%2Fjava%2Fatom.xml", requests.get(0));
+  }
+
+  /**
+   * Tests that a server error is retried.
+   */
+  public void testServerErrorIsRetried() throws Exception {
+    responseCodes.add(503);
+    responseCodes.add(503);
+    queue.start();
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    waitFor(1, 0);
+
+    assertEquals(3, requests.size());
+    assertEquals(3, queue.getRecentDeliveries().get(0).getAttempts());
+  }
+
+  /**
+   * Tests that a rejected request isn't retried.
+   */
+  public void testClientErrorIsNotRetried() throws Exception {
+    responseCodes.add(400);
+    queue.start();
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    waitFor(0, 1);
+
+    assertEquals(1, requests.size());
+    NotificationQueue.Delivery delivery = queue.getRecentDeliveries().get(0);
+    assertFalse(delivery.isSuccessful());
+    assertTrue(delivery.getError().indexOf("400") > -1);
+    assertEquals(0, new File(blog.getNotificationsDirectory()).list().length);
+  }
+
+  /**
+   * Tests that notifications queued while the queue is stopped are written
+   * to disk and delivered after a restart.
+   */
+  public void testPendingNotificationsSurviveRestart() throws Exception {
+    queue.enqueue(createHubNotification("http://www.yourdomain.com/blog/atom.xml"));
+    assertEquals(1, new File(blog.getNotificationsDirectory()).list().length);
+
+    queue = new NotificationQueue(blog, 50);
+    queue.start();
+    assertEquals(1, queue.getNumberOfPendingNotifications());
+    waitFor(1, 0);
+
+    assertEquals(1, requests.size());
+    assertEquals("hub.mode=publish&hub.url=http%3A%2F%2Fwww.yourdomain.com%2Fblog%2Fatom.xml", requests.get(0));
+  }
+
+  /**
+   * Tests that a weblogUpdates.ping is sent as XML-RPC.
+   */
+  public void testPingDelivered() throws Exception {
+    responseCodes.add(200);
+    responseBody = String.format(PING_RESPONSE, "0", "Thanks for the ping.");
+    queue.start();
+    queue.enqueue(createPingNotification());
+    waitFor(1, 0);
+
+    assertEquals(1, requests.size());
+    assertTrue(requests.get(0).indexOf("<methodName>weblogUpdates.ping</methodName>") > -1);
+    assertTrue(requests.get(0).indexOf("<string>" + blog.getName() + "</string>") > -1);
+    assertTrue(requests.get(0).indexOf("<string>" + blog.getUrl() + "</string>") > -1);
+  }
+
+  /**
+   * Tests that a ping with flerror set isn't retried.
+   */
+  public void testRejectedPingIsNotRetried() throws Exception {
+    responseCodes.add(200);
+    responseBody = String.format(PING_RESPONSE, "1", "Too many pings.");
+    queue.start();
+    queue.enqueue(createPingNotification());
+    waitFor(0, 1);
+
+    assertEquals(1, requests.size());
+    assertTrue(queue.getRecentDeliveries().get(0).getError().indexOf("Too many pings.") > -1);
+  }
+
+  /**
+   * Tests that no more than the maximum number of deliveries to the same
+   * host are in progress at once.
+   */
+  public void testDeliveriesPerEndpointAreLimited() throws Exception {
+    final int[] concurrent = new int[2];
+    queue.setSender(Notification.HUB, new NotificationSender() {
+      public void send(Blog blog, Notification notification) throws NotificationException {
+        synchronized (concurrent) {
+          concurrent[0]++;
+          concurrent[1] = Math.max(concurrent[1], concurrent[0]);
+        }
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        synchronized (concurrent) {
+          concurrent[0]--;
+        }
+      }
+    });
+    queue.start();
+    for (int i = 0; i < 6; i++) {
+      Notification notification = new Notification(Notification.HUB, endpoint, null);
+      notification.addParameter("hub.url", "http://www.yourdomain.com/blog/" + i);
+      queue.enqueue(notification);
+    }
+    waitFor(6, 0);
+
+    assertEquals(NotificationQueue.MAX_PER_ENDPOINT, concurrent[1]);
+  }
+
+  private Notification createHubNotification(String url) {
+    Notification notification = new Notification(Notification.HUB, endpoint, Notification.HUB + " " + endpoint);
+    notification.addParameter("hub.mode", "publish");
+    notification.addParameter("hub.url", url);
+    return notification;
+  }
+
+  private Notification createPingNotification() {
+    Notification notification = new Notification(Notification.PING, endpoint, null);
+    notification.addParameter("name", blog.getName());
+    notification.addParameter("url", blog.getUrl());
+    return notification;
+  }
+
+  private void waitFor(int deliveries, int failures) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10 * 1000;
+    while ((queue.getNumberOfDeliveries() < deliveries || queue.getNumberOfFailures() < failures) &&
+        System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(deliveries, queue.getNumberOfDeliveries());
+    assertEquals(failures, queue.getNumberOfFailures());
+  }
+
+}
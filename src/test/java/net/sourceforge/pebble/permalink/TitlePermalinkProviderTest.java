@@ -149,6 +149,33 @@ public class TitlePermalinkProviderTest extends PermalinkProviderSupportTestCase
     assertEquals(prefix + "a_title_" + blogEntry2.getId() + suffix, permalinkProvider.getPermalink(blogEntry2));
   }
 
+  /**
+   * Tests that memoized permalinks are discarded when a blog entry with the
+   * same title is removed.
+   */
+  public void testBlogEntryPermalinkForEntriesWithSameTitleAfterRemoval() throws Exception {
+    BlogService service = new BlogService();
+
+    BlogEntry blogEntry1 = new BlogEntry(blog);
+    blogEntry1.setTitle("A Title");
+    service.putBlogEntry(blogEntry1);
+
+    BlogEntry blogEntry2 = new BlogEntry(blog);
+    blogEntry2.setTitle("A Title");
+    service.putBlogEntry(blogEntry2);
+
+    SimpleDateFormat sdf = new SimpleDateFormat("yyyy'/'MM'/'dd'/'");
+    sdf.setTimeZone(blog.getTimeZone());
+    String prefix = "/";
+    prefix += sdf.format(blogEntry1.getDate());
+    String suffix = ".html";
+    assertEquals(prefix + "a_title_" + blogEntry2.getId() + suffix, permalinkProvider.getPermalink(blogEntry2));
+    assertEquals(prefix + "a_title_" + blogEntry2.getId() + suffix, permalinkProvider.getPermalink(blogEntry2));
+
+    service.removeBlogEntry(blogEntry1);
+    assertEquals(prefix + "a_title" + suffix, permalinkProvider.getPermalink(blogEntry2));
+  }
+
   /**
    * Tests that a blog entry permalink is recognised.
    */
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.util;
+
+import net.sourceforge.pebble.PebbleContext;
+import net.sourceforge.pebble.domain.SingleBlogTestCase;
+
+import javax.mail.Session;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Tests for the MailQueue class, delivering to a local SMTP server.
+ *
+ * @author    Simon Brown
+ */
+public class MailQueueTest extends SingleBlogTestCase {
+
+  private SmtpServer server;
+  private Session session;
+  private File outbox;
+  private MailQueue queue;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    server = new SmtpServer();
+    Properties props = new Properties();
+    props.put("mail.smtp.host", "127.0.0.1");
+    props.put("mail.smtp.port", Integer.toString(server.getPort()));
+    session = Session.getInstance(props, null);
+
+    outbox = new File(TEST_BLOG_LOCATION, "outbox");
+    queue = new MailQueue(outbox, 1, 0, 50);
+  }
+
+  protected void tearDown() throws Exception {
+    queue.stop();
+    MailUtils.setQueue(null);
+    server.close();
+
+    super.tearDown();
+  }
+
+  /**
+   * Tests that consecutive messages are sent over a single connection.
+   */
+  public void testConnectionIsReused() throws Exception {
+    queue.start(session);
+    for (int i = 0; i < 5; i++) {
+      queue.enqueue(session, createMessage("someone@somedomain.com", "Message " + i));
+    }
+    waitFor(5);
+
+    assertEquals(5, server.getMessages().size());
+    assertEquals(1, server.getNumberOfConnections());
+    assertEquals(0, outbox.list().length);
+  }
+
+  /**
+   * Tests that messages are kept in the outbox until they've been sent.
+   */
+  public void testUnsentMessagesSurviveRestart() throws Exception {
+    queue.enqueue(session, createMessage("someone@somedomain.com", "Message"));
+    assertEquals(1, outbox.list().length);
+
+    queue = new MailQueue(outbox, 1, 0, 50);
+    queue.start(session);
+    waitFor(1);
+
+    assertEquals(1, server.getMessages().size());
+    assertTrue(server.getMessages().get(0).indexOf("Subject: Message") > -1);
+    assertEquals(0, outbox.list().length);
+  }
+
+  /**
+   * Tests that a message the server doesn't accept is retried.
+   */
+  public void testFailedMessageIsRetried() throws Exception {
+    server.rejectNextMessages(2);
+    queue.start(session);
+    queue.enqueue(session, createMessage("someone@somedomain.com", "Message"));
+    waitFor(1);
+
+    assertEquals(1, server.getMessages().size());
+    assertEquals(0, outbox.list().length);
+  }
+
+  /**
+   * Tests that sending is paced to the maximum rate.
+   */
+  public void testSendingIsRateLimited() throws Exception {
+    queue = new MailQueue(outbox, 2, 600, 50);
+    queue.start(session);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 4; i++) {
+      queue.enqueue(session, createMessage("someone@somedomain.com", "Message " + i));
+    }
+    waitFor(4);
+
+    // 600 per minute is one every 100ms, the first being sent straight away
+    assertTrue(System.currentTimeMillis() - start >= 300);
+  }
+
+  /**
+   * Tests that bulk e-mail is sent in batches of BCC recipients.
+   */
+  public void testBulkMailIsSentInBatches() throws Exception {
+    PebbleContext.getInstance().getConfiguration().setMailBatchSize(2);
+    MailUtils.setQueue(queue);
+    queue.start(session);
+
+    List<String> recipients = new ArrayList<String>();
+    for (int i = 1; i <= 5; i++) {
+      recipients.add("subscriber" + i + "@somedomain.com");
+    }
+    MailUtils.sendBulkMail(session, blog, recipients, "Subject", "Message");
+    waitFor(3);
+
+    List<List<String>> batches = server.getRecipients();
+    assertEquals(3, batches.size());
+    Set<String> all = new HashSet<String>();
+    int copiesToBlog = 0;
+    for (List<String> batch : batches) {
+      if (batch.contains("blog@yourdomain.com")) {
+        copiesToBlog++;
+      }
+      assertTrue(batch.size() <= 3);
+      all.addAll(batch);
+    }
+    assertEquals(6, all.size());
+
+    // the blog only gets one copy
+    assertEquals(1, copiesToBlog);
+
+    // recipients mustn't see each other
+    int undisclosed = 0;
+    for (String message : server.getMessages()) {
+      assertTrue(message.indexOf("subscriber") == -1);
+      if (message.indexOf("To: undisclosed-recipients:;") > -1) {
+        undisclosed++;
+      }
+    }
+    assertEquals(2, undisclosed);
+  }
+
+  private javax.mail.internet.MimeMessage createMessage(String to, String subject) throws Exception {
+    return MailUtils.createMessage(session, blog, Collections.singleton(to), new HashSet(), new HashSet(), subject, "Body");
+  }
+
+  private void waitFor(int messages) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10 * 1000;
+    while (queue.getNumberOfMessagesSent() < messages && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(messages, queue.getNumberOfMessagesSent());
+  }
+
+  /**
+   * Just enough of an SMTP server to accept messages from JavaMail.
+   */
+  static class SmtpServer implements Runnable {
+
+    private final ServerSocket serverSocket;
+    private final List<String> messages = new ArrayList<String>();
+    private final List<List<String>> recipients = new ArrayList<List<String>>();
+    private int connections = 0;
+    private int rejections = 0;
+
+    SmtpServer() throws IOException {
+      serverSocket = new ServerSocket(0);
+      Thread thread = new Thread(this, "smtp-stub");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    synchronized int getNumberOfConnections() {
+      return connections;
+    }
+
+    synchronized List<String> getMessages() {
+      return new ArrayList<String>(messages);
+    }
+
+    synchronized List<List<String>> getRecipients() {
+      return new ArrayList<List<String>>(recipients);
+    }
+
+    synchronized void rejectNextMessages(int count) {
+      rejections = count;
+    }
+
+    void close() throws IOException {
+      serverSocket.close();
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          final Socket socket = serverSocket.accept();
+          synchronized (this) {
+            connections++;
+          }
+          Thread thread = new Thread(new Runnable() {
+            public void run() {
+              handle(socket);
+            }
+          });
+          thread.setDaemon(true);
+          thread.start();
+        }
+      } catch (IOException e) {
+        // closed
+      }
+    }
+
+    private void handle(Socket socket) {
+      try {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+        reply(out, "220 localhost");
+
+        List<String> rcpts = new ArrayList<String>();
+        String line = in.readLine();
+        while (line != null) {
+          String command = line.toUpperCase();
+          if (command.startsWith("QUIT")) {
+            reply(out, "221 bye");
+            break;
+          } else if (command.startsWith("RCPT")) {
+            rcpts.add(line.substring(line.indexOf('<') + 1, line.indexOf('>')));
+            reply(out, "250 ok");
+          } else if (command.startsWith("MAIL") || command.startsWith("RSET")) {
+            rcpts = new ArrayList<String>();
+            reply(out, "250 ok");
+          } else if (command.startsWith("DATA")) {
+            reply(out, "354 go ahead");
+            StringBuffer data = new StringBuffer();
+            line = in.readLine();
+            while (line != null && !line.equals(".")) {
+              data.append(line).append("\n");
+              line = in.readLine();
+            }
+
+            synchronized (this) {
+              if (rejections > 0) {
+                rejections--;
+                reply(out, "451 try again later");
+              } else {
+                messages.add(data.toString());
+                recipients.add(rcpts);
+                reply(out, "250 ok");
+              }
+            }
+          } else {
+            reply(out, "250 ok");
+          }
+          line = in.readLine();
+        }
+        socket.close();
+      } catch (IOException e) {
+        // connection closed
+      }
+    }
+
+    private void reply(Writer out, String reply) throws IOException {
+      out.write(reply + "\r\n");
+      out.flush();
+    }
+
+  }
+
+}
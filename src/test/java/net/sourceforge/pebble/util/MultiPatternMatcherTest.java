@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.util;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+
+/**
+ * Tests for the MultiPatternMatcher class.
+ *
+ * @author    Simon Brown
+ */
+public class MultiPatternMatcherTest extends TestCase {
+
+  public void testNoMatch() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"he", "she", "his", "hers"}, true);
+    assertEquals(-1, matcher.match("abcdef"));
+    assertEquals(-1, matcher.match(""));
+  }
+
+  public void testHighestPriorityPatternWinsRegardlessOfPosition() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"Chrome", "Safari"}, true);
+    assertEquals(0, matcher.match("AppleWebKit (KHTML, like Gecko) Safari/537.36 Chrome/80.0"));
+    assertEquals(0, matcher.match("AppleWebKit (KHTML, like Gecko) Chrome/80.0 Safari/537.36"));
+    assertEquals(1, matcher.match("AppleWebKit (KHTML, like Gecko) Version/4.0 Safari/531.21"));
+  }
+
+  public void testPatternsFoundThroughFailureLinks() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"hers", "his", "she", "he"}, true);
+    assertEquals(2, matcher.match("ushe"));
+    assertEquals(0, matcher.match("ushers"));
+    assertEquals(1, matcher.match("hhis"));
+    assertEquals(3, matcher.match("the"));
+  }
+
+  public void testPatternContainedInAnotherPattern() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"Firefox/3.5", "Firefox/3.", "ref"}, true);
+    assertEquals(0, matcher.match("Gecko/20091102 Firefox/3.5.5"));
+    assertEquals(1, matcher.match("Gecko/20091102 Firefox/3.6.5"));
+    assertEquals(2, matcher.match("Gecko/20091102 Firefox/4.0"));
+  }
+
+  public void testMatchingIgnoresCase() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"Googlebot", "bot", "été"}, true);
+    assertEquals(0, matcher.match("Mozilla/5.0 (compatible; GOOGLEBOT/2.1)"));
+    assertEquals(1, matcher.match("BingBot"));
+    assertEquals(2, matcher.match("ÉTÉ"));
+  }
+
+  public void testMatchingCanBeCaseSensitive() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"Googlebot", "été"}, false);
+    assertEquals(-1, matcher.match("Mozilla/5.0 (compatible; GOOGLEBOT/2.1)"));
+    assertEquals(0, matcher.match("Mozilla/5.0 (compatible; Googlebot/2.1)"));
+    assertEquals(-1, matcher.match("ÉTÉ"));
+    assertEquals(1, matcher.match("été"));
+  }
+
+  public void testMatchAll() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher(new String[] {"hers", "his", "she", "he", "spam"}, false);
+    BitSet found = matcher.matchAll("ushers");
+    assertEquals(3, found.cardinality());
+    assertTrue(found.get(0));
+    assertTrue(found.get(2));
+    assertTrue(found.get(3));
+
+    found = matcher.matchAll("http://www.spam.com/this");
+    assertEquals(2, found.cardinality());
+    assertTrue(found.get(1));
+    assertTrue(found.get(4));
+
+    assertTrue(matcher.matchAll("http://www.example.com").isEmpty());
+  }
+
+  public void testEmptyPatternsAreRejected() {
+    try {
+      new MultiPatternMatcher(new String[] {"a", ""}, false);
+      fail();
+    } catch (IllegalArgumentException iae) {
+    }
+  }
+
+}
@@ -187,4 +187,17 @@ public class PageableTest extends TestCase {
     assertEquals(13, pageable.getMaxPageRange());
   }
 
+  public void testListHoldingOnlyOnePage() {
+    // the list holds items 10-19 of 30
+    pageable = new Pageable(list.subList(10, 20), 30, 10);
+    pageable.setPageSize(10);
+    pageable.setPage(2);
+
+    assertEquals(2, pageable.getPage());
+    assertEquals(3, pageable.getMaxPages());
+    assertEquals(1, pageable.getPreviousPage());
+    assertEquals(3, pageable.getNextPage());
+    assertEquals(list.subList(10, 20), pageable.getListForPage());
+  }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2003-2011, Simon Brown
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in
+ *     the documentation and/or other materials provided with the
+ *     distribution.
+ *
+ *   - Neither the name of Pebble nor the names of its contributors may
+ *     be used to endorse or promote products derived from this software
+ *     without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.sourceforge.pebble.web.filter;
+
+import net.sourceforge.pebble.Configuration;
+import net.sourceforge.pebble.PebbleContext;
+import net.sourceforge.pebble.dao.DAOFactory;
+import net.sourceforge.pebble.dao.mock.MockDAOFactory;
+import net.sourceforge.pebble.domain.Blog;
+import net.sourceforge.pebble.util.FileUtils;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A simple benchmark measuring how long UriTransformer takes to map a
+ * realistic mix of external URIs (permalinks, feeds, images, tags and so
+ * on) to internal URIs. This isn't a unit test; run it with
+ * <code>java net.sourceforge.pebble.web.filter.UriTransformerBenchmark [iterations]</code>.
+ *
+ * @author    Simon Brown
+ */
+public class UriTransformerBenchmark {
+
+  /** URIs and how many of every 100 requests are for them */
+  private static final Object[][] URI_MIX = {
+      { "/", 12 },
+      { "/2011/03/14/1300115612000.html", 14 },
+      { "/2011/03/14.html", 2 },
+      { "/2011/03.html", 2 },
+      { "/rss.xml", 8 },
+      { "/atom.xml", 6 },
+      { "/responses/rss.xml", 2 },
+      { "/responses/rss.xml?entry=1300115612000", 1 },
+      { "/categories/java/rss.xml", 2 },
+      { "/categories/java/", 3 },
+      { "/tags/lucene/", 4 },
+      { "/tags/lucene/atom.xml", 1 },
+      { "/authors/sbrown/", 1 },
+      { "/images/photo.jpg", 10 },
+      { "/files/slides.pdf", 2 },
+      { "/theme/screen.css", 12 },
+      { "/pages/about-me.html", 3 },
+      { "/blogentries/2.html", 3 },
+      { "/help/index.html", 1 },
+      { "/about.html", 1 },
+      { "/search.action", 3 },
+      { "/favicon.ico", 5 },
+  };
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+    File directory = new File(System.getProperty("java.io.tmpdir"), "pebble-uri-benchmark");
+    FileUtils.deleteFile(directory);
+    directory.mkdirs();
+
+    Configuration config = new Configuration();
+    config.setDataDirectory(directory.getAbsolutePath());
+    config.setUrl("http://www.yourdomain.com/blog/");
+    PebbleContext.getInstance().setConfiguration(config);
+    PebbleContext.getInstance().setApplicationContext(new StaticApplicationContext());
+    DAOFactory.setConfiguredFactory(new MockDAOFactory());
+    Blog blog = new Blog(directory.getAbsolutePath());
+
+    List<String> uris = new ArrayList<String>();
+    for (Object[] uri : URI_MIX) {
+      for (int i = 0; i < (Integer)uri[1]; i++) {
+        uris.add((String)uri[0]);
+      }
+    }
+    Collections.shuffle(uris, new Random(42));
+
+    UriTransformer transformer = new UriTransformer();
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      int length = 0;
+      for (int i = 0; i < iterations; i++) {
+        length += transformer.getUri(uris.get(i % uris.size()), blog).length();
+      }
+      long elapsed = System.nanoTime() - start;
+      System.out.println("Round " + (round + 1) + " : " + (elapsed / iterations) + " ns per URI (" + length + ")");
+    }
+
+    FileUtils.deleteFile(directory);
+  }
+
+}